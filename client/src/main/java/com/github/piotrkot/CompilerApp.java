@@ -24,11 +24,14 @@
 
 package com.github.piotrkot;
 
+import com.github.piotrkot.auth.CachedAuthenticator;
 import com.github.piotrkot.auth.SimpleAuthenticator;
 import com.github.piotrkot.auth.User;
+import com.github.piotrkot.core.ServerGateway;
 import com.github.piotrkot.health.ServerHealthCheck;
 import com.github.piotrkot.resources.CompilerResource;
 import com.github.piotrkot.resources.HomeResource;
+import com.github.piotrkot.views.PrecompiledRenderer;
 import io.dropwizard.Application;
 import io.dropwizard.auth.AuthFactory;
 import io.dropwizard.auth.basic.BasicAuthFactory;
@@ -36,6 +39,9 @@ import io.dropwizard.forms.MultiPartBundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import io.dropwizard.views.ViewBundle;
+import io.dropwizard.views.ViewRenderer;
+import java.util.Collections;
+import java.util.concurrent.SynchronousQueue;
 import lombok.SneakyThrows;
 
 /**
@@ -61,27 +67,48 @@ public final class CompilerApp extends Application<CompilerConf> {
 
     @Override
     public void initialize(final Bootstrap<CompilerConf> bootstrap) {
-        bootstrap.addBundle(new ViewBundle());
+        bootstrap.addBundle(
+            new ViewBundle<>(
+                Collections.<ViewRenderer>singletonList(
+                    new PrecompiledRenderer()
+                )
+            )
+        );
         bootstrap.addBundle(new MultiPartBundle());
     }
 
     @Override
     public void run(final CompilerConf conf,
         final Environment env) {
+        final ServerGateway gateway = new ServerGateway(conf, env.metrics());
+        env.lifecycle().manage(gateway);
+        final CachedAuthenticator<User> auth = new CachedAuthenticator<>(
+            new SimpleAuthenticator(conf, gateway), conf.getLogins(),
+            conf.getRelogin(), env.metrics()
+        );
         env.jersey().register(
             AuthFactory.binder(
                 new BasicAuthFactory<>(
-                    new SimpleAuthenticator(conf),
+                    auth,
                     "Login credentials",
                     User.class
                 )
             )
         );
-        env.jersey().register(new CompilerResource(conf));
+        env.jersey().register(
+            new CompilerResource(
+                conf, gateway, auth,
+                env.lifecycle().executorService("relay-%d")
+                    .minThreads(conf.getRelays())
+                    .maxThreads(conf.getRelays())
+                    .workQueue(new SynchronousQueue<>())
+                    .build()
+            )
+        );
         env.jersey().register(new HomeResource());
         env.healthChecks().register(
             "serverAvailable",
-            new ServerHealthCheck(conf.getCompiler())
+            new ServerHealthCheck(conf.getCompiler(), gateway)
         );
     }
 }
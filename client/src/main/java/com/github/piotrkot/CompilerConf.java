@@ -25,6 +25,8 @@ package com.github.piotrkot;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import lombok.Getter;
 
@@ -43,4 +45,61 @@ public final class CompilerConf extends Configuration {
     @JsonProperty
     @Getter
     private String compiler;
+    /**
+     * Maximal number of pooled connections to the server, not counting
+     * those of the live results.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int connections = 32;
+    /**
+     * Deadline of connecting to the server.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration connect = Duration.seconds(2L);
+    /**
+     * Deadline of waiting for data from the server.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration read = Duration.seconds(30L);
+    /**
+     * Number of consecutive failed calls stopping further calls.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int failures = 5;
+    /**
+     * Time calls are stopped for before the server is tried again.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration cooldown = Duration.seconds(30L);
+    /**
+     * Maximal number of remembered successful logins.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private long logins = 1000L;
+    /**
+     * Time a successful login is remembered before it is checked again.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration relogin = Duration.minutes(5L);
+    /**
+     * Maximal number of result pages with live results.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int relays = 64;
 }
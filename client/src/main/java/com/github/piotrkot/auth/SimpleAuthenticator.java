@@ -25,6 +25,7 @@
 package com.github.piotrkot.auth;
 
 import com.github.piotrkot.CompilerConf;
+import com.github.piotrkot.core.ServerGateway;
 import com.google.common.base.Optional;
 import io.dropwizard.auth.Authenticator;
 import io.dropwizard.auth.basic.BasicCredentials;
@@ -45,13 +46,20 @@ public final class SimpleAuthenticator implements
      * Authentication configuration.
      */
     private final transient CompilerConf conf;
+    /**
+     * Gateway to the server.
+     */
+    private final transient ServerGateway server;
 
     /**
      * Class constructor.
      * @param config Configuration.
+     * @param gateway Gateway to the server.
      */
-    public SimpleAuthenticator(final CompilerConf config) {
+    public SimpleAuthenticator(final CompilerConf config,
+        final ServerGateway gateway) {
         this.conf = config;
+        this.server = gateway;
     }
 
     @Override
@@ -59,9 +67,11 @@ public final class SimpleAuthenticator implements
         Optional<User> option = Optional.absent();
         try {
             final User user = new User(cred.getUsername(), cred.getPassword());
-            Request.Post(String.format("%s/auth", this.conf.getCompiler()))
-                .setHeader("Authorization", user.toBase64())
-                .execute().returnContent().asString();
+            this.server.content(
+                "auth",
+                Request.Post(String.format("%s/auth", this.conf.getCompiler()))
+                    .setHeader("Authorization", user.toBase64())
+            );
             option = Optional.of(user);
         } catch (final IOException ex) {
             log.error("Authentication failure", ex);
@@ -0,0 +1,111 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import io.dropwizard.util.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker of the calls to the server.
+ *
+ * <p>After the given number of consecutive failures the circuit opens and
+ * calls are refused without reaching the server. Once the cooldown passes,
+ * a single call is let through as a probe; its success closes the circuit
+ * again, its failure keeps it open for another cooldown.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+final class Breaker {
+    /**
+     * Number of consecutive failures opening the circuit.
+     */
+    private final transient int threshold;
+    /**
+     * Time the circuit stays open, in milliseconds.
+     */
+    private final transient long cooldown;
+    /**
+     * Consecutive failures.
+     */
+    private final transient AtomicInteger failures;
+    /**
+     * Time until which calls are refused, zero if the circuit is closed.
+     */
+    private final transient AtomicLong until;
+
+    /**
+     * Class constructor.
+     * @param max Number of consecutive failures opening the circuit.
+     * @param open Time the circuit stays open.
+     */
+    Breaker(final int max, final Duration open) {
+        this.threshold = max;
+        this.cooldown = open.toMilliseconds();
+        this.failures = new AtomicInteger();
+        this.until = new AtomicLong();
+    }
+
+    /**
+     * Whether a call may go to the server.
+     *
+     * <p>Only one caller gets the probe once the cooldown passes, the others
+     * are refused until the probe reports back.
+     *
+     * @return True if the call is allowed.
+     */
+    public boolean allow() {
+        final long end = this.until.get();
+        final long now = System.currentTimeMillis();
+        return end == 0L
+            || now >= end && this.until.compareAndSet(end, now + this.cooldown);
+    }
+
+    /**
+     * Whether the circuit is open.
+     * @return True if calls are refused.
+     */
+    public boolean open() {
+        return this.until.get() != 0L;
+    }
+
+    /**
+     * Report successful call.
+     */
+    public void success() {
+        this.failures.set(0);
+        this.until.set(0L);
+    }
+
+    /**
+     * Report failed call.
+     */
+    public void failure() {
+        if (this.failures.incrementAndGet() >= this.threshold) {
+            this.until.set(System.currentTimeMillis() + this.cooldown);
+        }
+    }
+}
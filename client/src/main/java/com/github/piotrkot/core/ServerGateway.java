@@ -0,0 +1,350 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.piotrkot.CompilerConf;
+import io.dropwizard.lifecycle.Managed;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Gateway of all calls to the compiler server.
+ *
+ * <p>Calls share one pool of keep-alive connections and are bounded by
+ * the connect and read deadlines. While the server keeps failing, calls
+ * are refused at once by the circuit breaker so that client threads are
+ * not tied up waiting for it. Latency of every endpoint is timed.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class ServerGateway implements Managed {
+    /**
+     * Time after which idle pooled connections are closed, in seconds.
+     */
+    private static final long IDLE = 30L;
+    /**
+     * Pool of connections to the server.
+     */
+    private final transient PoolingHttpClientConnectionManager pool;
+    /**
+     * HTTP client.
+     */
+    private final transient CloseableHttpClient client;
+    /**
+     * Executor of requests through the client.
+     */
+    private final transient Executor executor;
+    /**
+     * Circuit breaker.
+     */
+    private final transient Breaker breaker;
+    /**
+     * Metrics registry.
+     */
+    private final transient MetricRegistry registry;
+    /**
+     * Calls refused by the open circuit.
+     */
+    private final transient Meter rejected;
+
+    /**
+     * Class constructor.
+     * @param conf Configuration.
+     * @param metrics Metrics registry.
+     */
+    public ServerGateway(final CompilerConf conf,
+        final MetricRegistry metrics) {
+        this.pool = new PoolingHttpClientConnectionManager();
+        final int total = conf.getConnections() + conf.getRelays();
+        this.pool.setMaxTotal(total);
+        this.pool.setDefaultMaxPerRoute(total);
+        final int connect = (int) conf.getConnect().toMilliseconds();
+        this.client = HttpClients.custom()
+            .setConnectionManager(this.pool)
+            .setDefaultRequestConfig(
+                RequestConfig.custom()
+                    .setConnectTimeout(connect)
+                    .setConnectionRequestTimeout(connect)
+                    .setSocketTimeout((int) conf.getRead().toMilliseconds())
+                    .build()
+            )
+            .evictExpiredConnections()
+            .evictIdleConnections(ServerGateway.IDLE, TimeUnit.SECONDS)
+            .build();
+        this.executor = Executor.newInstance(this.client);
+        this.breaker = new Breaker(conf.getFailures(), conf.getCooldown());
+        this.registry = metrics;
+        this.rejected = metrics.meter(
+            MetricRegistry.name(ServerGateway.class, "rejected")
+        );
+        metrics.register(
+            MetricRegistry.name(ServerGateway.class, "open"),
+            (Gauge<Boolean>) this.breaker::open
+        );
+        metrics.register(
+            MetricRegistry.name(ServerGateway.class, "leased"),
+            (Gauge<Integer>) () -> this.pool.getTotalStats().getLeased()
+        );
+    }
+
+    @Override
+    public void start() {
+        // Nothing to do.
+    }
+
+    @Override
+    public void stop() throws IOException {
+        this.client.close();
+    }
+
+    /**
+     * Call the server.
+     *
+     * <p>The response body is read fully so that the connection is back in
+     * the pool once this returns. Server errors and failed calls count
+     * towards opening the circuit, client errors do not.
+     *
+     * @param endpoint Name of the endpoint the latency is timed for.
+     * @param request Request to the server.
+     * @return Server response.
+     * @throws IOException If the call fails or the circuit is open.
+     */
+    public HttpResponse response(final String endpoint, final Request request)
+        throws IOException {
+        return this.call(endpoint, request, () -> false);
+    }
+
+    /**
+     * Call the server streaming the body through.
+     *
+     * <p>The body is copied through a small fixed buffer as it is read, so
+     * the sender is slowed down to the pace of the server. Failures to read
+     * the body do not count towards opening the circuit.
+     *
+     * @param endpoint Name of the endpoint the latency is timed for.
+     * @param request Request to the server.
+     * @param body Body of the request.
+     * @param length Bytes of the body, negative if not known.
+     * @return Server response.
+     * @throws IOException If the call fails or the circuit is open.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    public HttpResponse relay(final String endpoint, final Request request,
+        final InputStream body, final long length) throws IOException {
+        final ServerGateway.Source source = new ServerGateway.Source(body);
+        return this.call(
+            endpoint,
+            request.body(
+                new InputStreamEntity(
+                    source, length, ContentType.APPLICATION_OCTET_STREAM
+                )
+            ),
+            source::failed
+        );
+    }
+
+    /**
+     * Call the server handling the response while it streams.
+     *
+     * <p>The latency is timed until the response starts. Failures after it
+     * started, such as a stream broken midway, do not count towards opening
+     * the circuit.
+     *
+     * @param endpoint Name of the endpoint the latency is timed for.
+     * @param request Request to the server.
+     * @param handler Handler of the streaming response.
+     * @param <T> Type of the handled result.
+     * @return Handled result.
+     * @throws IOException If the call fails or the circuit is open.
+     */
+    public <T> T stream(final String endpoint, final Request request,
+        final ResponseHandler<T> handler) throws IOException {
+        if (!this.breaker.allow()) {
+            this.rejected.mark();
+            throw new IOException("Server is failing, the call was refused");
+        }
+        final Timer.Context timer = this.registry.timer(
+            MetricRegistry.name(ServerGateway.class, endpoint)
+        ).time();
+        final AtomicBoolean started = new AtomicBoolean();
+        try {
+            return this.executor.execute(request).handleResponse(
+                response -> {
+                    started.set(true);
+                    timer.stop();
+                    this.account(response);
+                    return handler.handleResponse(response);
+                }
+            );
+        } catch (final IOException ex) {
+            if (!started.get()) {
+                timer.stop();
+                this.breaker.failure();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Call the server.
+     * @param endpoint Name of the endpoint the latency is timed for.
+     * @param request Request to the server.
+     * @param excused Whether a failed call is not to be blamed on the server.
+     * @return Server response.
+     * @throws IOException If the call fails or the circuit is open.
+     */
+    private HttpResponse call(final String endpoint, final Request request,
+        final BooleanSupplier excused) throws IOException {
+        if (!this.breaker.allow()) {
+            this.rejected.mark();
+            throw new IOException("Server is failing, the call was refused");
+        }
+        final Timer.Context timer = this.registry.timer(
+            MetricRegistry.name(ServerGateway.class, endpoint)
+        ).time();
+        try {
+            final HttpResponse response =
+                this.executor.execute(request).returnResponse();
+            this.account(response);
+            return response;
+        } catch (final IOException ex) {
+            if (!excused.getAsBoolean()) {
+                this.breaker.failure();
+            }
+            throw ex;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Call the server expecting a successful response.
+     * @param endpoint Name of the endpoint the latency is timed for.
+     * @param request Request to the server.
+     * @return Response body.
+     * @throws IOException If the call fails or is not successful.
+     */
+    public String content(final String endpoint, final Request request)
+        throws IOException {
+        final HttpResponse response = this.response(endpoint, request);
+        if (response.getStatusLine().getStatusCode()
+            >= HttpStatus.SC_MULTIPLE_CHOICES) {
+            throw new HttpResponseException(
+                response.getStatusLine().getStatusCode(),
+                response.getStatusLine().getReasonPhrase()
+            );
+        }
+        String body = "";
+        if (response.getEntity() != null) {
+            body = EntityUtils.toString(
+                response.getEntity(), StandardCharsets.UTF_8
+            );
+        }
+        return body;
+    }
+
+    /**
+     * Count the server response towards the state of the circuit.
+     * @param response Server response.
+     */
+    private void account(final HttpResponse response) {
+        if (response.getStatusLine().getStatusCode()
+            >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+            this.breaker.failure();
+        } else {
+            this.breaker.success();
+        }
+    }
+
+    /**
+     * Body relayed to the server, noticing failures to read it.
+     */
+    private static final class Source extends FilterInputStream {
+        /**
+         * Whether reading failed.
+         */
+        private transient volatile boolean broken;
+
+        /**
+         * Class constructor.
+         * @param stream Body.
+         */
+        Source(final InputStream stream) {
+            super(stream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (final IOException ex) {
+                this.broken = true;
+                throw ex;
+            }
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int off, final int len)
+            throws IOException {
+            try {
+                return super.read(buffer, off, len);
+            } catch (final IOException ex) {
+                this.broken = true;
+                throw ex;
+            }
+        }
+
+        /**
+         * Whether reading failed.
+         * @return True if failed.
+         */
+        public boolean failed() {
+            return this.broken;
+        }
+    }
+}
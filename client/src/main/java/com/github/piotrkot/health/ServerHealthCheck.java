@@ -24,6 +24,7 @@
 package com.github.piotrkot.health;
 
 import com.codahale.metrics.health.HealthCheck;
+import com.github.piotrkot.core.ServerGateway;
 import com.google.common.collect.Range;
 import lombok.EqualsAndHashCode;
 import org.apache.http.client.fluent.Request;
@@ -48,14 +49,21 @@ public final class ServerHealthCheck extends HealthCheck {
      * Server location.
      */
     private final transient String addr;
+    /**
+     * Gateway to the server.
+     */
+    private final transient ServerGateway server;
 
     /**
      * Class constructor.
      * @param address Server address.
+     * @param gateway Gateway to the server.
      */
-    public ServerHealthCheck(final String address) {
+    public ServerHealthCheck(final String address,
+        final ServerGateway gateway) {
         super();
         this.addr = address;
+        this.server = gateway;
     }
 
     @Override
@@ -63,7 +71,7 @@ public final class ServerHealthCheck extends HealthCheck {
         Result result = Result.healthy();
         if (this.addr.isEmpty() || !Range.closed(HTTP_OK_MIN, HTTP_OK_MAX)
             .contains(
-                Request.Get(this.addr).execute().returnResponse()
+                this.server.response("health", Request.Get(this.addr))
                     .getStatusLine().getStatusCode()
             )
             ) {
@@ -25,30 +25,48 @@ package com.github.piotrkot.resources;
 
 import com.codahale.metrics.annotation.Timed;
 import com.github.piotrkot.CompilerConf;
+import com.github.piotrkot.auth.CachedAuthenticator;
 import com.github.piotrkot.auth.User;
+import com.github.piotrkot.core.ServerGateway;
 import com.github.piotrkot.views.CompilerView;
 import com.github.piotrkot.views.ResultView;
+import com.google.common.net.UrlEscapers;
 import io.dropwizard.auth.Auth;
+import io.dropwizard.auth.basic.BasicCredentials;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import lombok.Synchronized;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
+import org.glassfish.jersey.server.ChunkedOutput;
 
 /**
  * Compiler resource.
@@ -59,17 +77,50 @@ import org.glassfish.jersey.media.multipart.FormDataParam;
 @Path("/compiler")
 @Slf4j
 public final class CompilerResource {
+    /**
+     * Results shown when the server logs cannot be fetched.
+     */
+    private static final String FAILURE = "Cannot fetch server logs";
+    /**
+     * Header with the checksum of the content.
+     */
+    private static final String DIGEST = "Digest";
+    /**
+     * Media type of server-sent events.
+     */
+    private static final String EVENTS = "text/event-stream";
     /**
      * Authentication configuration.
      */
     private final transient CompilerConf conf;
+    /**
+     * Gateway to the server.
+     */
+    private final transient ServerGateway server;
+    /**
+     * Remembered logins.
+     */
+    private final transient CachedAuthenticator<User> logins;
+    /**
+     * Workers relaying the events of the results.
+     */
+    private final transient ExecutorService relays;
 
     /**
      * Class constructor.
      * @param config Configuration.
+     * @param gateway Gateway to the server.
+     * @param auth Remembered logins.
+     * @param relayers Bounded executor of the events relaying workers.
+     * @checkstyle ParameterNumberCheck (4 lines)
      */
-    public CompilerResource(final CompilerConf config) {
+    public CompilerResource(final CompilerConf config,
+        final ServerGateway gateway, final CachedAuthenticator<User> auth,
+        final ExecutorService relayers) {
         this.conf = config;
+        this.server = gateway;
+        this.logins = auth;
+        this.relays = relayers;
     }
 
     /**
@@ -79,7 +130,6 @@ public final class CompilerResource {
      */
     @GET
     @Timed
-    @Synchronized
     @Produces(MediaType.TEXT_HTML)
     public CompilerView compilerView(@Auth final User user) {
         return new CompilerView(user);
@@ -102,16 +152,19 @@ public final class CompilerResource {
         @FormDataParam("inputFile") final FormDataContentDisposition details) {
         Response response = Response.serverError().build();
         try {
-            final String request = Request.Post(
-                String.format("%s/source", this.conf.getCompiler())
-            ).setHeader(this.authorization(user))
-                .body(MultipartEntityBuilder.create().addBinaryBody(
-                        "file",
-                        stream,
-                        ContentType.DEFAULT_BINARY,
-                        details.getName()
-                    ).build()
-                ).execute().returnContent().asString();
+            final String request = this.server.content(
+                "source",
+                Request.Post(
+                    String.format("%s/source", this.conf.getCompiler())
+                ).setHeader(this.authorization(user))
+                    .body(MultipartEntityBuilder.create().addBinaryBody(
+                            "file",
+                            stream,
+                            ContentType.DEFAULT_BINARY,
+                            details.getName()
+                        ).build()
+                    )
+            );
             response = Response.seeOther(
                 URI.create(String.format("/compiler/result/%s", request))
             ).build();
@@ -122,10 +175,117 @@ public final class CompilerResource {
     }
 
     /**
-     * Showing server results.
+     * Start the upload of an archive in parts.
+     * @param user Logged in user.
+     * @param size Bytes of the archive.
+     * @param part Bytes of a part.
+     * @return Server response with the state of the upload.
+     */
+    @Path("/uploads")
+    @POST
+    @Timed
+    public Response openUpload(@Auth final User user,
+        @QueryParam("size") final long size,
+        @QueryParam("part") final long part) {
+        return this.relay(
+            user,
+            Request.Post(
+                String.format(
+                    "%s/uploads?size=%d&part=%d",
+                    this.conf.getCompiler(), size, part
+                )
+            )
+        );
+    }
+
+    /**
+     * Show the state of the upload, to resume it.
+     * @param user Logged in user.
+     * @param upload Upload id.
+     * @return Server response with the state of the upload.
+     */
+    @Path("/uploads/{upload}")
+    @GET
+    @Timed
+    public Response showUpload(@Auth final User user,
+        @PathParam("upload") final String upload) {
+        return this.relay(user, Request.Get(this.upload(upload)));
+    }
+
+    /**
+     * Stream the part of the upload through to the server.
+     * @param user Logged in user.
+     * @param upload Upload id.
+     * @param index Part number.
+     * @param digest SHA-256 checksum of the part.
+     * @param length Bytes of the part.
+     * @param body Content of the part.
+     * @return Server response with the state of the upload.
+     * @checkstyle ParameterNumberCheck (8 lines)
+     */
+    @Path("/uploads/{upload}/{index}")
+    @PUT
+    @Timed
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    public Response uploadPart(@Auth final User user,
+        @PathParam("upload") final String upload,
+        @PathParam("index") final int index,
+        @HeaderParam(CompilerResource.DIGEST) final String digest,
+        @HeaderParam(HttpHeaders.CONTENT_LENGTH) @DefaultValue("-1")
+        final long length, final InputStream body) {
+        final Request put = Request.Put(
+            String.format("%s/%d", this.upload(upload), index)
+        ).setHeader(this.authorization(user));
+        if (digest != null) {
+            put.setHeader(CompilerResource.DIGEST, digest);
+        }
+        Response response = CompilerResource.unreachable();
+        try {
+            response = this.relayed(
+                user, this.server.relay("parts", put, body, length)
+            );
+        } catch (final IOException ex) {
+            log.error("Cannot relay the part to the server", ex);
+        }
+        return response;
+    }
+
+    /**
+     * Compile the sources of the complete upload.
+     * @param user Logged in user.
+     * @param upload Upload id.
+     * @return Server response with the request id.
+     */
+    @Path("/uploads/{upload}")
+    @POST
+    @Timed
+    public Response compileUpload(@Auth final User user,
+        @PathParam("upload") final String upload) {
+        return this.relay(user, Request.Post(this.upload(upload)));
+    }
+
+    /**
+     * Abandon the upload.
+     * @param user Logged in user.
+     * @param upload Upload id.
+     * @return Server response.
+     */
+    @Path("/uploads/{upload}")
+    @DELETE
+    @Timed
+    public Response deleteUpload(@Auth final User user,
+        @PathParam("upload") final String upload) {
+        return this.relay(user, Request.Delete(this.upload(upload)));
+    }
+
+    /**
+     * Showing server results as they arrive.
+     *
+     * <p>The page has no results, it gets them from the events stream.
+     *
      * @param user Logged in user.
      * @param request User request/session.
-     * @return Server compiler results.
+     * @return Live server compiler results.
      */
     @Path("/result/{request}")
     @GET
@@ -133,16 +293,183 @@ public final class CompilerResource {
     @Produces(MediaType.TEXT_HTML)
     public ResultView showResults(@Auth final User user,
         @PathParam("request") final String request) {
-        String results = "Cannot fetch server logs";
+        return new ResultView(user, request);
+    }
+
+    /**
+     * Relay server results as server-sent events until the job finishes.
+     *
+     * <p>Browsers reconnecting send the id of the last event received and
+     * get only the results after it.
+     *
+     * @param user Logged in user.
+     * @param request User request/session.
+     * @param last Id of the last event received by a reconnecting browser.
+     * @return Server-sent events with sequence numbers as ids.
+     * @throws WebApplicationException With status 503 if too many browsers.
+     */
+    @Path("/result/{request}/events")
+    @GET
+    @Produces(CompilerResource.EVENTS)
+    public ChunkedOutput<String> streamResults(@Auth final User user,
+        @PathParam("request") final String request,
+        @HeaderParam("Last-Event-ID") @DefaultValue("0") final long last) {
+        final ChunkedOutput<String> output = new ChunkedOutput<>(String.class);
+        try {
+            this.relays.execute(
+                new EventsRelay(
+                    this.server,
+                    String.format(
+                        "%s/logs/%s/events", this.conf.getCompiler(),
+                        UrlEscapers.urlPathSegmentEscaper().escape(request)
+                    ),
+                    this.authorization(user), last, output
+                )
+            );
+        } catch (final RejectedExecutionException ex) {
+            throw new WebApplicationException(
+                ex, Response.Status.SERVICE_UNAVAILABLE
+            );
+        }
+        return output;
+    }
+
+    /**
+     * Showing server results at once, for browsers without events.
+     *
+     * <p>The entity tag of the server logs is passed both ways, so the page
+     * is not rendered again while the logs stay unchanged.
+     *
+     * @param user Logged in user.
+     * @param request User request/session.
+     * @param tag Entity tag of the results already shown, if any.
+     * @return Server compiler results.
+     */
+    @Path("/result/{request}/log")
+    @GET
+    @Timed
+    @Produces(MediaType.TEXT_HTML)
+    public Response showLog(@Auth final User user,
+        @PathParam("request") final String request,
+        @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String tag) {
+        Response response = Response.ok(
+            new ResultView(user, request, CompilerResource.FAILURE)
+        ).build();
         try {
-            results = Request.Get(
+            final Request get = Request.Get(
                 String.format("%s/logs/%s", this.conf.getCompiler(), request)
-            ).setHeader(this.authorization(user)).execute()
-                .returnContent().asString();
+            ).setHeader(this.authorization(user));
+            if (tag != null) {
+                get.setHeader(HttpHeaders.IF_NONE_MATCH, tag);
+            }
+            final HttpResponse logs = this.server.response("logs", get);
+            final Header etag = logs.getFirstHeader(HttpHeaders.ETAG);
+            final Response.ResponseBuilder builder;
+            if (logs.getStatusLine().getStatusCode()
+                == HttpStatus.SC_NOT_MODIFIED) {
+                builder = Response.notModified();
+            } else if (logs.getStatusLine().getStatusCode()
+                == HttpStatus.SC_OK) {
+                builder = Response.ok(
+                    new ResultView(
+                        user, request,
+                        EntityUtils.toString(
+                            logs.getEntity(), StandardCharsets.UTF_8
+                        )
+                    )
+                );
+            } else {
+                if (logs.getStatusLine().getStatusCode()
+                    == HttpStatus.SC_UNAUTHORIZED) {
+                    this.logins.invalidate(
+                        new BasicCredentials(user.getName(), user.getPass())
+                    );
+                }
+                log.error("Server replied with {}", logs.getStatusLine());
+                builder = Response.ok(
+                    new ResultView(user, request, CompilerResource.FAILURE)
+                );
+            }
+            if (etag != null) {
+                builder.header(HttpHeaders.ETAG, etag.getValue());
+            }
+            response = builder.build();
         } catch (final IOException ex) {
             log.error("Cannot call GET on server", ex);
         }
-        return new ResultView(user, results);
+        return response;
+    }
+
+    /**
+     * Location of the upload on the server.
+     * @param upload Upload id.
+     * @return URI.
+     */
+    private String upload(final String upload) {
+        return String.format(
+            "%s/uploads/%s", this.conf.getCompiler(),
+            UrlEscapers.urlPathSegmentEscaper().escape(upload)
+        );
+    }
+
+    /**
+     * Pass the request to the server and its response back.
+     * @param user Logged in user.
+     * @param request Request to the server.
+     * @return Server response.
+     */
+    private Response relay(final User user, final Request request) {
+        Response response = CompilerResource.unreachable();
+        try {
+            response = this.relayed(
+                user,
+                this.server.response(
+                    "uploads", request.setHeader(this.authorization(user))
+                )
+            );
+        } catch (final IOException ex) {
+            log.error("Cannot relay the upload request to the server", ex);
+        }
+        return response;
+    }
+
+    /**
+     * Response of the server passed back.
+     *
+     * <p>A login rejected by the server is forgotten.
+     *
+     * @param user Logged in user.
+     * @param reply Server response.
+     * @return Response with the status, type and body of the server one.
+     * @throws IOException If reading the body fails.
+     */
+    private Response relayed(final User user, final HttpResponse reply)
+        throws IOException {
+        final int status = reply.getStatusLine().getStatusCode();
+        if (status == HttpStatus.SC_UNAUTHORIZED) {
+            this.logins.invalidate(
+                new BasicCredentials(user.getName(), user.getPass())
+            );
+        }
+        final Response.ResponseBuilder builder = Response.status(status);
+        final HttpEntity entity = reply.getEntity();
+        if (entity != null) {
+            builder.entity(EntityUtils.toByteArray(entity));
+            if (entity.getContentType() != null) {
+                builder.type(entity.getContentType().getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Response when the server cannot be reached.
+     * @return Response with status 502.
+     */
+    private static Response unreachable() {
+        return Response.status(Response.Status.BAD_GATEWAY)
+            .entity("Cannot connect to the server")
+            .type(MediaType.TEXT_PLAIN).build();
     }
 
     /**
@@ -0,0 +1,247 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.resources;
+
+import com.github.piotrkot.core.ServerGateway;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.fluent.Request;
+import org.glassfish.jersey.server.ChunkedOutput;
+
+/**
+ * Server-sent events of the log lines relayed from the server to the
+ * browser.
+ *
+ * <p>Events are read from the server through a small fixed buffer and
+ * written to the browser one at a time, so a slow browser slows down
+ * reading from the server instead of piling events up in memory; the server
+ * then fills the gap from its persistent logs. The id of the last relayed
+ * event is remembered and a broken server stream is resumed after it.
+ * Relaying stops once the {@code end} event is relayed, the browser is gone
+ * or the server keeps failing.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+final class EventsRelay implements Runnable {
+    /**
+     * Number of attempts to resume the stream without any event relayed.
+     */
+    private static final int RETRIES = 5;
+    /**
+     * Pause before resuming the stream, multiplied by the attempt.
+     */
+    private static final long PAUSE = TimeUnit.SECONDS.toMillis(1L);
+    /**
+     * Size of the buffer reading from the server.
+     */
+    private static final int BUFFER = 8192;
+    /**
+     * Field name of the event id.
+     */
+    private static final String ID = "id:";
+    /**
+     * Field name of the event type.
+     */
+    private static final String EVENT = "event:";
+    /**
+     * Gateway to the server.
+     */
+    private final transient ServerGateway server;
+    /**
+     * Location of the events on the server.
+     */
+    private final transient String uri;
+    /**
+     * Authorization header.
+     */
+    private final transient Header auth;
+    /**
+     * Events output to the browser.
+     */
+    private final transient ChunkedOutput<String> output;
+    /**
+     * Id of the last relayed event.
+     */
+    private transient long last;
+    /**
+     * Whether the end of the stream was relayed.
+     */
+    private transient boolean ended;
+    /**
+     * Whether the browser is gone.
+     */
+    private transient boolean gone;
+
+    /**
+     * Class constructor.
+     * @param gateway Gateway to the server.
+     * @param location Location of the events on the server.
+     * @param header Authorization header.
+     * @param seq Id of the last event the browser received.
+     * @param events Events output to the browser.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    EventsRelay(final ServerGateway gateway, final String location,
+        final Header header, final long seq,
+        final ChunkedOutput<String> events) {
+        this.server = gateway;
+        this.uri = location;
+        this.auth = header;
+        this.last = seq;
+        this.output = events;
+    }
+
+    @Override
+    public void run() {
+        int attempt = 0;
+        try {
+            while (!this.ended && !this.gone
+                && attempt < EventsRelay.RETRIES) {
+                if (this.connect()) {
+                    attempt = 0;
+                } else {
+                    attempt += 1;
+                    Thread.sleep(EventsRelay.PAUSE * attempt);
+                }
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.close();
+        }
+    }
+
+    /**
+     * Relay the events of one server stream.
+     * @return Whether any event was relayed.
+     */
+    private boolean connect() {
+        final Request get = Request.Get(
+            String.format("%s?after=%d", this.uri, this.last)
+        ).setHeader(this.auth);
+        boolean relayed = false;
+        try {
+            relayed = this.server.stream(
+                "events", get, response -> this.pipe(get, response)
+            );
+        } catch (final IOException ex) {
+            log.debug("Events stream from {} broken", this.uri, ex);
+        }
+        return relayed;
+    }
+
+    /**
+     * Relay the events of the server response.
+     *
+     * <p>Server errors are tried again, other unsuccessful responses end
+     * the relay with an end event telling the refusal, so the browser does
+     * not reconnect.
+     *
+     * @param get Request of the events, aborted if the browser is gone.
+     * @param response Server response.
+     * @return Whether any event was relayed.
+     * @throws IOException If reading from the server fails.
+     */
+    private boolean pipe(final Request get, final HttpResponse response)
+        throws IOException {
+        final int status = response.getStatusLine().getStatusCode();
+        boolean relayed = false;
+        if (status == HttpStatus.SC_OK) {
+            final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(
+                    response.getEntity().getContent(), StandardCharsets.UTF_8
+                ),
+                EventsRelay.BUFFER
+            );
+            final StringBuilder event = new StringBuilder();
+            long seq = this.last;
+            String line = reader.readLine();
+            while (line != null && !this.gone) {
+                event.append(line).append('\n');
+                if (line.startsWith(EventsRelay.ID)) {
+                    seq = Long.parseLong(
+                        line.substring(EventsRelay.ID.length()).trim()
+                    );
+                } else if (line.startsWith(EventsRelay.EVENT)) {
+                    this.ended = "end".equals(
+                        line.substring(EventsRelay.EVENT.length()).trim()
+                    );
+                } else if (line.isEmpty()) {
+                    this.send(event.toString());
+                    event.setLength(0);
+                    this.last = seq;
+                    relayed = true;
+                }
+                line = reader.readLine();
+            }
+            if (this.gone) {
+                get.abort();
+            }
+        } else if (status < HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+            log.info("Events from {} refused with {}", this.uri, status);
+            this.send(
+                String.format(
+                    "%s end\ndata: Not available (%d)\n\n",
+                    EventsRelay.EVENT, status
+                )
+            );
+            this.ended = true;
+        }
+        return relayed;
+    }
+
+    /**
+     * Write the event to the browser.
+     * @param event Event with its trailing blank line.
+     */
+    private void send(final String event) {
+        try {
+            this.output.write(event);
+        } catch (final IOException ex) {
+            log.debug("Events client of {} gone", this.uri);
+            this.gone = true;
+        }
+    }
+
+    /**
+     * Close the events output.
+     */
+    private void close() {
+        try {
+            this.output.close();
+        } catch (final IOException ex) {
+            log.debug("Events output of {} not closed", this.uri);
+        }
+    }
+}
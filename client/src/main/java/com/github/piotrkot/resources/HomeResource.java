@@ -29,7 +29,6 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
-import lombok.Synchronized;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -50,7 +49,6 @@ public final class HomeResource {
      */
     @GET
     @Timed
-    @Synchronized
     @Produces(MediaType.TEXT_HTML)
     public HomeView homeView() {
         return new HomeView();
@@ -40,7 +40,7 @@ public final class CompilerView extends View {
     /**
      * Template location.
      */
-    private static final String LOCATION = "mustache/compiler.mustache";
+    static final String LOCATION = "mustache/compiler.mustache";
     /**
      * Logged in user.
      */
@@ -38,7 +38,7 @@ public final class HomeView extends View {
     /**
      * Template location.
      */
-    private static final String LOCATION = "mustache/home.mustache";
+    static final String LOCATION = "mustache/home.mustache";
     /**
      * Home Compiler view.
      */
@@ -0,0 +1,146 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.views;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheException;
+import com.github.mustachejava.MustacheFactory;
+import io.dropwizard.views.View;
+import io.dropwizard.views.ViewRenderer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Renderer of Mustache views compiled once at startup.
+ *
+ * <p>Templates of all the client views, with their partials, are compiled
+ * when the renderer is created, so a broken template stops the start and
+ * no page waits for a compilation. Compiled templates are shared by all
+ * threads and rendered without any lock.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class PrecompiledRenderer implements ViewRenderer {
+    /**
+     * Template file suffix.
+     */
+    private static final String SUFFIX = ".mustache";
+    /**
+     * Factory of the compiled templates.
+     */
+    private final transient MustacheFactory factory;
+    /**
+     * Compiled templates by their names.
+     */
+    private final transient ConcurrentMap<String, Mustache> templates;
+
+    /**
+     * Class constructor compiling templates of the client views.
+     */
+    public PrecompiledRenderer() {
+        this(HomeView.LOCATION, CompilerView.LOCATION, ResultView.LOCATION);
+    }
+
+    /**
+     * Class constructor.
+     * @param names Names of the templates relative to the views package.
+     */
+    public PrecompiledRenderer(final String... names) {
+        this.factory = new PrecompiledRenderer.Resources();
+        this.templates = new ConcurrentHashMap<>(names.length);
+        for (final String name : names) {
+            final String path = String.format(
+                "/%s/%s",
+                PrecompiledRenderer.class.getPackage().getName()
+                    .replace('.', '/'),
+                name
+            );
+            this.templates.put(path, this.factory.compile(path));
+        }
+    }
+
+    @Override
+    public boolean isRenderable(final View view) {
+        return view.getTemplateName().endsWith(PrecompiledRenderer.SUFFIX);
+    }
+
+    @Override
+    public void render(final View view, final Locale locale,
+        final OutputStream output) throws IOException {
+        Mustache template = this.templates.get(view.getTemplateName());
+        if (template == null) {
+            template = this.templates.computeIfAbsent(
+                view.getTemplateName(), this.factory::compile
+            );
+        }
+        try (Writer writer = new OutputStreamWriter(
+            output, view.getCharset().or(StandardCharsets.UTF_8)
+        )) {
+            template.execute(writer, view);
+        }
+    }
+
+    @Override
+    public void configure(final Map<String, String> options) {
+        // Nothing to configure.
+    }
+
+    @Override
+    public String getSuffix() {
+        return PrecompiledRenderer.SUFFIX;
+    }
+
+    /**
+     * Factory reading templates and their partials from class path.
+     */
+    private static final class Resources extends DefaultMustacheFactory {
+        @Override
+        public Reader getReader(final String name) {
+            final InputStream stream =
+                PrecompiledRenderer.class.getResourceAsStream(name);
+            if (stream == null) {
+                throw new MustacheException(
+                    String.format("Template %s not found", name)
+                );
+            }
+            return new BufferedReader(
+                new InputStreamReader(stream, StandardCharsets.UTF_8)
+            );
+        }
+    }
+}
@@ -40,26 +40,62 @@ public final class ResultView extends View {
     /**
      * Template location.
      */
-    private static final String LOCATION = "mustache/result.mustache";
+    static final String LOCATION = "mustache/result.mustache";
     /**
      * Logged in user.
      */
     @Getter
     private final User usr;
+    /**
+     * User request.
+     */
+    @Getter
+    private final String req;
     /**
      * Server compiling results.
      */
     @Getter
     private final String res;
+    /**
+     * Whether results are streamed into the page as they arrive.
+     */
+    @Getter
+    private final boolean live;
+
+    /**
+     * Class constructor of the page streaming the results.
+     * @param user Logged in user.
+     * @param request User request.
+     */
+    public ResultView(final User user, final String request) {
+        this(user, request, "", true);
+    }
+
+    /**
+     * Class constructor of the page with all the results.
+     * @param user Logged in user.
+     * @param request User request.
+     * @param results Server results.
+     */
+    public ResultView(final User user, final String request,
+        final String results) {
+        this(user, request, results, false);
+    }
 
     /**
      * Class constructor.
      * @param user Logged in user.
+     * @param request User request.
      * @param results Server results.
+     * @param streamed Whether results are streamed into the page.
+     * @checkstyle ParameterNumberCheck (3 lines)
      */
-    public ResultView(final User user, final String results) {
+    private ResultView(final User user, final String request,
+        final String results, final boolean streamed) {
         super(ResultView.LOCATION);
         this.usr = user;
+        this.req = request;
         this.res = results;
+        this.live = streamed;
     }
 }
@@ -0,0 +1,96 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.auth;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import io.dropwizard.auth.basic.BasicCredentials;
+import io.dropwizard.util.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for authenticator remembering the logins confirmed by the server.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class CachedAuthenticatorTest {
+    /**
+     * Login should be confirmed by the server once until the server
+     * rejects it.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testRelogin() throws Exception {
+        final List<String> asked = new ArrayList<>(0);
+        final CachedAuthenticator<User> auth = new CachedAuthenticator<>(
+            cred -> {
+                asked.add(cred.getPassword());
+                return Optional.of(
+                    new User(cred.getUsername(), cred.getPassword())
+                );
+            },
+            10L, Duration.minutes(1L), new MetricRegistry()
+        );
+        final BasicCredentials login = new BasicCredentials("user", "pass");
+        final User user = new User("user", "pass");
+        Assert.assertEquals(Optional.of(user), auth.authenticate(login));
+        Assert.assertEquals(Optional.of(user), auth.authenticate(login));
+        auth.authenticate(new BasicCredentials("user", "other"));
+        Assert.assertEquals(Arrays.asList("pass", "other"), asked);
+        auth.invalidate(login);
+        Assert.assertEquals(Optional.of(user), auth.authenticate(login));
+        Assert.assertEquals(Arrays.asList("pass", "other", "pass"), asked);
+    }
+
+    /**
+     * Logins should be checked again once all are forgotten.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testForgetAll() throws Exception {
+        final List<String> asked = new ArrayList<>(0);
+        final CachedAuthenticator<User> auth = new CachedAuthenticator<>(
+            cred -> {
+                asked.add(cred.getUsername());
+                return Optional.of(
+                    new User(cred.getUsername(), cred.getPassword())
+                );
+            },
+            10L, Duration.minutes(1L), new MetricRegistry()
+        );
+        final BasicCredentials login = new BasicCredentials("user", "pass");
+        final User user = new User("user", "pass");
+        Assert.assertEquals(Optional.of(user), auth.authenticate(login));
+        Assert.assertEquals(Optional.of(user), auth.authenticate(login));
+        Assert.assertEquals(Arrays.asList("user"), asked);
+        auth.invalidateAll();
+        Assert.assertEquals(Optional.of(user), auth.authenticate(login));
+        Assert.assertEquals(Arrays.asList("user", "user"), asked);
+    }
+}
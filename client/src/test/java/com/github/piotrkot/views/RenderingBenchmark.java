@@ -0,0 +1,161 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.views;
+
+import com.github.piotrkot.auth.User;
+import com.google.common.io.ByteStreams;
+import io.dropwizard.views.View;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+/**
+ * Benchmark of concurrent page rendering against rendering under one lock.
+ *
+ * <p>Not run with the tests, run it with
+ * {@code mvn test -Dtest=RenderingBenchmark}.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class RenderingBenchmark {
+    /**
+     * Number of measured runs.
+     */
+    private static final int RUNS = 3;
+    /**
+     * Number of pages rendered in a run.
+     */
+    private static final int PAGES = 20_000;
+
+    /**
+     * Compare page throughput from one thread up to the number of cores.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void benchThroughput() throws Exception {
+        final PrecompiledRenderer renderer = new PrecompiledRenderer();
+        final StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 200; ++line) {
+            text.append("[INFO] Compiling module ").append(line).append('\n');
+        }
+        final ResultView view = new ResultView(
+            new User("student", "secret"), "1", text.toString()
+        );
+        final Object lock = new Object();
+        final int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            final long free = RenderingBenchmark.measure(
+                threads, () -> RenderingBenchmark.render(renderer, view)
+            );
+            final long locked = RenderingBenchmark.measure(
+                threads,
+                () -> {
+                    synchronized (lock) {
+                        RenderingBenchmark.render(renderer, view);
+                    }
+                }
+            );
+            log.info(
+                "{} threads: {} pages/s without lock, {} pages/s locked",
+                threads,
+                RenderingBenchmark.PAGES * TimeUnit.SECONDS.toNanos(1L) / free,
+                RenderingBenchmark.PAGES * TimeUnit.SECONDS.toNanos(1L)
+                    / locked
+            );
+        }
+    }
+
+    /**
+     * Best time of rendering all pages on the given number of threads.
+     * @param threads Number of threads.
+     * @param page Rendering of one page.
+     * @return Time in nanoseconds.
+     * @throws Exception If something fails.
+     */
+    private static long measure(final int threads, final Page page)
+        throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long best = Long.MAX_VALUE;
+        try {
+            for (int run = 0; run <= RenderingBenchmark.RUNS; ++run) {
+                final List<Callable<Void>> tasks = new ArrayList<>(threads);
+                for (int idx = 0; idx < threads; ++idx) {
+                    tasks.add(
+                        () -> {
+                            for (int num = 0;
+                                num < RenderingBenchmark.PAGES / threads;
+                                ++num) {
+                                page.render();
+                            }
+                            return null;
+                        }
+                    );
+                }
+                final long start = System.nanoTime();
+                for (final Future<Void> done : pool.invokeAll(tasks)) {
+                    done.get();
+                }
+                final long time = System.nanoTime() - start;
+                if (run > 0) {
+                    best = Math.min(best, time);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return best;
+    }
+
+    /**
+     * Render the view discarding the page.
+     * @param renderer Renderer.
+     * @param view View.
+     * @throws Exception If something fails.
+     */
+    private static void render(final PrecompiledRenderer renderer,
+        final View view) throws Exception {
+        renderer.render(view, Locale.ENGLISH, ByteStreams.nullOutputStream());
+    }
+
+    /**
+     * Rendering of one page.
+     */
+    private interface Page {
+        /**
+         * Render the page.
+         * @throws Exception If something fails.
+         */
+        void render() throws Exception;
+    }
+}
@@ -23,7 +23,33 @@
  */
 package com.github.piotrkot;
 
+import com.github.piotrkot.api.Engine;
+import com.github.piotrkot.api.Job;
+import com.github.piotrkot.api.PersistentJobs;
+import com.github.piotrkot.api.PersistentLogs;
+import com.github.piotrkot.auth.CachedAuthenticator;
 import com.github.piotrkot.auth.SimpleAuthenticator;
+import com.github.piotrkot.core.BatchedLogs;
+import com.github.piotrkot.core.Builds;
+import com.github.piotrkot.core.DaemonEngine;
+import com.github.piotrkot.core.DbJobs;
+import com.github.piotrkot.core.Extractor;
+import com.github.piotrkot.core.FileJobs;
+import com.github.piotrkot.core.FileLogs;
+import com.github.piotrkot.core.ForkedEngine;
+import com.github.piotrkot.core.JobIds;
+import com.github.piotrkot.core.Jobs;
+import com.github.piotrkot.core.LogBus;
+import com.github.piotrkot.core.Outcomes;
+import com.github.piotrkot.core.Partitions;
+import com.github.piotrkot.core.PartitionsCheck;
+import com.github.piotrkot.core.PublishedLogs;
+import com.github.piotrkot.core.Repository;
+import com.github.piotrkot.core.Scheduler;
+import com.github.piotrkot.core.Schema;
+import com.github.piotrkot.core.Spool;
+import com.github.piotrkot.core.Uploads;
+import com.github.piotrkot.core.Workspaces;
 import com.github.piotrkot.resources.CompilerResource;
 import io.dropwizard.Application;
 import io.dropwizard.auth.AuthFactory;
@@ -32,7 +58,13 @@ import io.dropwizard.forms.MultiPartBundle;
 import io.dropwizard.jdbi.DBIFactory;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import java.io.File;
+import java.nio.file.Paths;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.SynchronousQueue;
 import lombok.SneakyThrows;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.skife.jdbi.v2.DBI;
 
 /**
@@ -67,14 +99,236 @@ public final class CompilerApp extends Application<CompilerConf> {
         env.jersey().register(
             AuthFactory.binder(
                 new BasicAuthFactory<>(
-                    new SimpleAuthenticator(conf),
+                    new CachedAuthenticator<>(
+                        new SimpleAuthenticator(conf), conf.getLogins(),
+                        conf.getRelogin(), env.metrics()
+                    ),
                     "Login credentials",
                     String.class
                 )
             )
         );
-        final DBIFactory factory = new DBIFactory();
-        final DBI dbi = factory.build(env, conf.getDatabase(), "postgresql");
-        env.jersey().register(new CompilerResource(dbi));
+        final Optional<DBI> dbi = CompilerApp.dbi(conf, env);
+        final Engine engine = CompilerApp.engine(conf, env);
+        final Repository repository = new Repository(
+            Paths.get(conf.getRepository()),
+            conf.getMirror(),
+            conf.isOffline(),
+            conf.getSeeds(),
+            engine,
+            env.metrics()
+        );
+        env.lifecycle().manage(repository);
+        final PersistentLogs logs = CompilerApp.logs(conf, env, dbi);
+        final Extractor extractor = new Extractor(
+            conf.getInflaters(),
+            conf.getParallelism(),
+            env.metrics()
+        );
+        env.lifecycle().manage(extractor);
+        final Scheduler scheduler = new Scheduler(
+            env.lifecycle().executorService("build-%d")
+                .minThreads(conf.getWorkers())
+                .maxThreads(conf.getWorkers())
+                .build(),
+            conf.getWorkers(),
+            conf.getQueue(),
+            env.lifecycle().scheduledExecutorService("watchdog-%d").build(),
+            conf.getTimeout().toMilliseconds(),
+            env.metrics()
+        );
+        final Workspaces workspaces = new Workspaces(
+            Paths.get(conf.getWorkspaces()),
+            conf.getQuota().toBytes(),
+            conf.getCap().toBytes(),
+            conf.getRetention().toMilliseconds(),
+            request -> scheduler.stop(request, Job.Status.OUT_OF_SPACE),
+            env.metrics()
+        );
+        env.lifecycle().manage(workspaces);
+        final Uploads uploads = new Uploads(
+            Paths.get(conf.getUploads()),
+            conf.getArchive().toBytes(),
+            conf.getPart().toBytes(),
+            conf.getAbandoned().toMilliseconds(),
+            conf.getPending(),
+            conf.getStaging().toBytes(),
+            env.metrics()
+        );
+        env.lifecycle().manage(uploads);
+        final LogBus bus = new LogBus(
+            conf.getBacklog(),
+            conf.getHeartbeat().toMilliseconds(),
+            env.metrics()
+        );
+        env.jersey().register(SseFeature.class);
+        env.jersey().register(
+            new CompilerResource(
+                scheduler,
+                new Builds(
+                    engine,
+                    repository,
+                    extractor,
+                    workspaces,
+                    conf.getEntries(),
+                    conf.getUnpacked().toBytes(),
+                    new Spool(
+                        conf.getSpool().toBytes(),
+                        conf.getMemory().toBytes(),
+                        env.metrics()
+                    ),
+                    conf.isStreaming()
+                ),
+                new Outcomes(
+                    conf.getOutcomes(),
+                    conf.getExpiry().toSeconds(),
+                    conf.getRecorded(),
+                    env.metrics()
+                ),
+                new PublishedLogs(logs, bus),
+                bus,
+                env.lifecycle().executorService("stream-%d")
+                    .minThreads(conf.getStreams())
+                    .maxThreads(conf.getStreams())
+                    .workQueue(new SynchronousQueue<>())
+                    .build(),
+                new Jobs(
+                    CompilerApp.jobs(conf, env, dbi),
+                    new JobIds(conf.getNode()),
+                    env.metrics()
+                ),
+                conf.getAppended().toBytes(),
+                uploads
+            )
+        );
+    }
+
+    /**
+     * DB access, unless the logs and the jobs are in files.
+     * @param conf Configuration.
+     * @param env Environment.
+     * @return DBI access with the schema created on start, empty for files.
+     */
+    private static Optional<DBI> dbi(final CompilerConf conf,
+        final Environment env) {
+        Optional<DBI> dbi = Optional.empty();
+        if (!"file".equals(conf.getLogs())) {
+            if (conf.getDatabase() == null) {
+                throw new IllegalStateException(
+                    "database is required unless logs is file"
+                );
+            }
+            final DBI access = new DBIFactory().build(
+                env, conf.getDatabase(), "postgresql"
+            );
+            env.lifecycle().manage(new Schema(access));
+            dbi = Optional.of(access);
+        }
+        return dbi;
+    }
+
+    /**
+     * Store of the log lines selected in the configuration.
+     * @param conf Configuration.
+     * @param env Environment.
+     * @param dbi DBI access, empty for files.
+     * @return Persistent log messages.
+     */
+    private static PersistentLogs logs(final CompilerConf conf,
+        final Environment env, final Optional<DBI> dbi) {
+        final PersistentLogs logs;
+        if (dbi.isPresent()) {
+            final BatchedLogs batched = new BatchedLogs(
+                dbi.get(),
+                conf.getBatch(),
+                conf.getBuffer(),
+                conf.getLinger().toMilliseconds(),
+                conf.getChunk(),
+                conf.getWeight(),
+                env.metrics()
+            );
+            final Partitions partitions = new Partitions(
+                dbi.get(),
+                CompilerApp.span(conf.getPartition()),
+                conf.getKeep().toMilliseconds(),
+                env.metrics()
+            );
+            env.lifecycle().manage(partitions);
+            env.healthChecks().register(
+                "partitions", new PartitionsCheck(partitions)
+            );
+            env.lifecycle().manage(batched);
+            logs = batched;
+        } else {
+            final FileLogs files = new FileLogs(
+                Paths.get(conf.getJournal()),
+                conf.getSegment().toBytes(),
+                env.metrics()
+            );
+            env.lifecycle().manage(files);
+            logs = files;
+        }
+        return logs;
+    }
+
+    /**
+     * Store of the jobs selected in the configuration.
+     * @param conf Configuration.
+     * @param env Environment.
+     * @param dbi DBI access, empty for files.
+     * @return Persistent jobs.
+     */
+    private static PersistentJobs jobs(final CompilerConf conf,
+        final Environment env, final Optional<DBI> dbi) {
+        final PersistentJobs jobs;
+        if (dbi.isPresent()) {
+            jobs = new DbJobs(dbi.get());
+        } else {
+            final FileJobs files = new FileJobs(
+                Paths.get(conf.getRecords()), env.getObjectMapper()
+            );
+            env.lifecycle().manage(files);
+            jobs = files;
+        }
+        return jobs;
+    }
+
+    /**
+     * Time span of the log partitions.
+     * @param partition Span in the configuration.
+     * @return Time unit.
+     */
+    private static ChronoUnit span(final String partition) {
+        final ChronoUnit span;
+        if ("hour".equals(partition)) {
+            span = ChronoUnit.HOURS;
+        } else {
+            span = ChronoUnit.DAYS;
+        }
+        return span;
+    }
+
+    /**
+     * Build engine selected in the configuration.
+     * @param conf Configuration.
+     * @param env Environment.
+     * @return Build engine.
+     */
+    private static Engine engine(final CompilerConf conf,
+        final Environment env) {
+        final Engine engine;
+        if ("daemon".equals(conf.getEngine())) {
+            final DaemonEngine daemon = new DaemonEngine(
+                new File(conf.getDaemon()),
+                conf.getWorkers(),
+                conf.getGrace().toMilliseconds(),
+                new ForkedEngine(conf.getGrace().toMilliseconds())
+            );
+            env.lifecycle().manage(daemon);
+            engine = daemon;
+        } else {
+            engine = new ForkedEngine(conf.getGrace().toMilliseconds());
+        }
+        return engine;
     }
 }
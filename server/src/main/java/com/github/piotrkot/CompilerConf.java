@@ -24,10 +24,20 @@
 package com.github.piotrkot;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.piotrkot.core.JobIds;
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import io.dropwizard.util.SizeUnit;
+import io.dropwizard.validation.MaxSize;
+import java.util.Collections;
+import java.util.List;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 import lombok.Getter;
 
 /**
@@ -53,13 +63,349 @@ public final class CompilerConf extends Configuration {
     @Getter
     private String password;
     /**
-     * Database source.
-     * @checkstyle ConstantUsage (6 lines)
+     * Maximal number of remembered successful logins.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private long logins = 1000L;
+    /**
+     * Time a successful login is remembered before it is checked again.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration relogin = Duration.minutes(5L);
+    /**
+     * Database source, not needed when the logs are in files.
      */
     @Valid
+    @JsonProperty
+    @Getter
+    private DataSourceFactory database;
+    /**
+     * Number of concurrently running builds.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int workers = Runtime.getRuntime().availableProcessors();
+    /**
+     * Maximal number of builds waiting for a worker.
+     */
+    @Min(0)
+    @JsonProperty
+    @Getter
+    private int queue = 64;
+    /**
+     * Build engine, either forking mvn per build or using Maven daemons.
+     */
     @NotNull
+    @Pattern(regexp = "fork|daemon")
     @JsonProperty
     @Getter
-    private final DataSourceFactory database = new DataSourceFactory();
-
+    private String engine = "fork";
+    /**
+     * Maven daemon client executable.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private String daemon = "mvnd";
+    /**
+     * Local Maven repository shared by the builds.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private String repository = "repository";
+    /**
+     * Mirror of all remote repositories, empty to use user settings.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private String mirror = "";
+    /**
+     * Whether to resolve artifacts offline first.
+     */
+    @JsonProperty
+    @Getter
+    private boolean offline = true;
+    /**
+     * POM files of projects seeding the local repository on start.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private List<String> seeds = Collections.emptyList();
+    /**
+     * Maximal number of cached build outcomes.
+     */
+    @Min(0)
+    @JsonProperty
+    @Getter
+    private int outcomes = 256;
+    /**
+     * Time build outcomes are cached.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration expiry = Duration.minutes(10L);
+    /**
+     * Maximal number of log lines of a cached build outcome.
+     */
+    @Min(0)
+    @JsonProperty
+    @Getter
+    private int recorded = 10_000;
+    /**
+     * Store of the log lines and the jobs, either the DB or files.
+     */
+    @NotNull
+    @Pattern(regexp = "db|file")
+    @JsonProperty
+    @Getter
+    private String logs = "db";
+    /**
+     * Directory of the log segment files.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private String journal = "journal";
+    /**
+     * Directory of the job files.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private String records = "records";
+    /**
+     * Size of a log segment file after which a new one is started.
+     */
+    @NotNull
+    @MaxSize(value = 1L, unit = SizeUnit.GIGABYTES)
+    @JsonProperty
+    @Getter
+    private Size segment = Size.megabytes(64L);
+    /**
+     * Number of log lines written in one batch.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int batch = 500;
+    /**
+     * Maximal number of log lines buffered per request.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int buffer = 10_000;
+    /**
+     * Maximal number of log lines of a compressed chunk.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int chunk = 1000;
+    /**
+     * Maximal number of characters of a compressed chunk.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private long weight = 65_536L;
+    /**
+     * Time span of a partition of the log chunks.
+     */
+    @NotNull
+    @Pattern(regexp = "day|hour")
+    @JsonProperty
+    @Getter
+    private String partition = "day";
+    /**
+     * Time log lines are kept in the DB, zero for ever.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration keep = Duration.days(30L);
+    /**
+     * Time log lines may wait in the buffer.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration linger = Duration.milliseconds(200L);
+    /**
+     * Maximal size of log lines appended in one request.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Size appended = Size.megabytes(8L);
+    /**
+     * Maximal number of clients pushed log events at once.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int streams = 64;
+    /**
+     * Maximal number of log lines buffered per events client.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int backlog = 1000;
+    /**
+     * Time after which idle events clients are sent a heartbeat.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration heartbeat = Duration.seconds(15L);
+    /**
+     * Maximal size of an upload kept in memory.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Size spool = Size.megabytes(1L);
+    /**
+     * Maximal memory taken by all uploads kept in memory.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Size memory = Size.megabytes(64L);
+    /**
+     * Number of threads inflating archives of all builds.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int inflaters = Runtime.getRuntime().availableProcessors();
+    /**
+     * Maximal number of threads inflating the archive of one build.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * Maximal number of entries of an uploaded archive.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int entries = 100_000;
+    /**
+     * Maximal uncompressed size of an uploaded archive.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Size unpacked = Size.gigabytes(1L);
+    /**
+     * Whether to extract archives while they are uploaded.
+     */
+    @JsonProperty
+    @Getter
+    private boolean streaming;
+    /**
+     * Root of the build workspaces, a tmpfs mount for faster builds.
+     */
+    @JsonProperty
+    @Getter
+    private String workspaces = "workspaces";
+    /**
+     * Maximal disk space taken by all build workspaces.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Size quota = Size.gigabytes(10L);
+    /**
+     * Maximal disk space taken by one build workspace.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Size cap = Size.gigabytes(2L);
+    /**
+     * Time workspaces of finished builds are kept.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration retention = Duration.hours(1L);
+    /**
+     * Directory of the archives uploaded in parts.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private String uploads = "uploads";
+    /**
+     * Maximal size of an archive uploaded in parts.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Size archive = Size.gigabytes(2L);
+    /**
+     * Maximal size of a part of an uploaded archive.
+     */
+    @NotNull
+    @MaxSize(value = 1L, unit = SizeUnit.GIGABYTES)
+    @JsonProperty
+    @Getter
+    private Size part = Size.megabytes(64L);
+    /**
+     * Maximal number of archives uploaded in parts open by one user.
+     */
+    @Min(1)
+    @JsonProperty
+    @Getter
+    private int pending = 4;
+    /**
+     * Maximal disk space reserved by all open archives uploaded in parts.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Size staging = Size.gigabytes(8L);
+    /**
+     * Time after which an upload in parts not touched is deleted.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration abandoned = Duration.hours(1L);
+    /**
+     * Maximal running time of a build, zero for none.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration timeout = Duration.minutes(30L);
+    /**
+     * Time killed builds have to terminate before being killed forcibly.
+     */
+    @NotNull
+    @JsonProperty
+    @Getter
+    private Duration grace = Duration.seconds(10L);
+    /**
+     * Number of this server within the cluster, part of the job ids.
+     */
+    @Min(0)
+    @Max(JobIds.NODES)
+    @JsonProperty
+    @Getter
+    private int node;
 }
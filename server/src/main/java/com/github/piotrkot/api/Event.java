@@ -0,0 +1,209 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Structured event of a build found in its output.
+ *
+ * <p>The sequence number points to the log line of the event. Fields not
+ * relevant to the kind are null and not written.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@EqualsAndHashCode
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class Event {
+    /**
+     * Sequence number of the log line.
+     */
+    @JsonProperty
+    @Getter
+    private final long seq;
+    /**
+     * Kind of the event.
+     */
+    @JsonProperty
+    @Getter
+    private final Event.Kind kind;
+    /**
+     * Module being built, null before the first one.
+     */
+    @JsonProperty
+    @Getter
+    private final String module;
+    /**
+     * Module name, plugin goal, error message, test class or failed test.
+     */
+    @JsonProperty
+    @Getter
+    private final String text;
+    /**
+     * Source file of the error.
+     */
+    @JsonProperty
+    @Getter
+    private final String file;
+    /**
+     * Line of the error in the source file.
+     */
+    @JsonProperty
+    @Getter
+    private final Integer line;
+    /**
+     * Test counts.
+     */
+    @JsonProperty
+    @Getter
+    private final Event.Tests tests;
+
+    /**
+     * Class constructor.
+     * @param number Sequence number of the log line.
+     * @param type Kind of the event.
+     * @param name Module being built.
+     * @param mesg Text of the event.
+     */
+    public Event(final long number, final Event.Kind type, final String name,
+        final String mesg) {
+        this(number, type, name, mesg, null, null, null);
+    }
+
+    /**
+     * Class constructor.
+     * @param number Sequence number of the log line.
+     * @param type Kind of the event.
+     * @param name Module being built.
+     * @param mesg Text of the event.
+     * @param source Source file of the error.
+     * @param row Line of the error in the source file.
+     * @param counts Test counts.
+     * @checkstyle ParameterNumberCheck (5 lines)
+     */
+    public Event(final long number, final Event.Kind type, final String name,
+        final String mesg, final String source, final Integer row,
+        final Event.Tests counts) {
+        this.seq = number;
+        this.kind = type;
+        this.module = name;
+        this.text = mesg;
+        this.file = source;
+        this.line = row;
+        this.tests = counts;
+    }
+
+    /**
+     * The same event at another log line.
+     * @param number Sequence number of the log line.
+     * @return Event.
+     */
+    public Event at(final long number) {
+        return new Event(
+            number, this.kind, this.module, this.text, this.file, this.line,
+            this.tests
+        );
+    }
+
+    /**
+     * Kind of an event.
+     */
+    public enum Kind {
+        /**
+         * Module of the reactor started.
+         */
+        MODULE,
+        /**
+         * Plugin goal of a lifecycle phase started.
+         */
+        PHASE,
+        /**
+         * Compiler error.
+         */
+        ERROR,
+        /**
+         * Test results of a class, or of the module if no class.
+         */
+        TESTS,
+        /**
+         * Failed test.
+         */
+        FAILURE
+    }
+
+    /**
+     * Test counts.
+     */
+    @EqualsAndHashCode
+    @ToString
+    public static final class Tests {
+        /**
+         * Tests run.
+         */
+        @JsonProperty
+        @Getter
+        private final int run;
+        /**
+         * Tests failed.
+         */
+        @JsonProperty
+        @Getter
+        private final int failures;
+        /**
+         * Tests in error.
+         */
+        @JsonProperty
+        @Getter
+        private final int errors;
+        /**
+         * Tests skipped.
+         */
+        @JsonProperty
+        @Getter
+        private final int skipped;
+
+        /**
+         * Class constructor.
+         * @param total Tests run.
+         * @param failed Tests failed.
+         * @param broken Tests in error.
+         * @param ignored Tests skipped.
+         * @checkstyle ParameterNumberCheck (3 lines)
+         */
+        public Tests(final int total, final int failed, final int broken,
+            final int ignored) {
+            this.run = total;
+            this.failures = failed;
+            this.errors = broken;
+            this.skipped = ignored;
+        }
+    }
+}
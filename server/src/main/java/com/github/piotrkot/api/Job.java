@@ -0,0 +1,225 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.api;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * State of a build job.
+ *
+ * <p>The id is written as a JSON string, as 64-bit numbers are not exact in
+ * JavaScript. Times are milliseconds since the epoch, null until reached.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@EqualsAndHashCode
+@ToString
+public final class Job {
+    /**
+     * Job id.
+     */
+    @JsonProperty
+    @JsonSerialize(using = ToStringSerializer.class)
+    @Getter
+    private final long id;
+    /**
+     * User name.
+     */
+    @JsonProperty
+    @Getter
+    private final String user;
+    /**
+     * Status.
+     */
+    @JsonProperty
+    @Getter
+    private final Job.Status status;
+    /**
+     * Last stage reached.
+     */
+    @JsonProperty
+    @Getter
+    private final Job.Stage stage;
+    /**
+     * Time of the submission.
+     */
+    @JsonProperty
+    @Getter
+    private final long created;
+    /**
+     * Time the build started, null if not started.
+     */
+    @JsonProperty
+    @Getter
+    private final Long started;
+    /**
+     * Time the job finished, null if active.
+     */
+    @JsonProperty
+    @Getter
+    private final Long finished;
+    /**
+     * Exit code of Maven, null if it did not run to the end.
+     */
+    @JsonProperty
+    @Getter
+    private final Integer exit;
+
+    /**
+     * Class constructor.
+     * @param number Job id.
+     * @param name User name.
+     * @param time Time of the submission.
+     */
+    public Job(final long number, final String name, final long time) {
+        this(
+            number, name, Job.Status.ACTIVE, Job.Stage.UPLOAD, time, null,
+            null, null
+        );
+    }
+
+    /**
+     * Class constructor.
+     * @param number Job id.
+     * @param name User name.
+     * @param state Status.
+     * @param step Last stage reached.
+     * @param time Time of the submission.
+     * @param start Time the build started, null if not started.
+     * @param end Time the job finished, null if active.
+     * @param code Exit code of Maven, null if it did not run to the end.
+     * @checkstyle ParameterNumberCheck (5 lines)
+     */
+    public Job(final long number, final String name, final Job.Status state,
+        final Job.Stage step, final long time, final Long start,
+        final Long end, final Integer code) {
+        this.id = number;
+        this.user = name;
+        this.status = state;
+        this.stage = step;
+        this.created = time;
+        this.started = start;
+        this.finished = end;
+        this.exit = code;
+    }
+
+    /**
+     * Job which reached the stage.
+     * @param step Stage.
+     * @param time Current time.
+     * @return New state of the job.
+     */
+    public Job reached(final Job.Stage step, final long time) {
+        Long start = this.started;
+        if (start == null && step == Job.Stage.EXTRACT) {
+            start = time;
+        }
+        return new Job(
+            this.id, this.user, this.status, step, this.created, start,
+            this.finished, this.exit
+        );
+    }
+
+    /**
+     * Job which finished.
+     * @param state Final status.
+     * @param code Exit code of Maven, null if it did not run to the end.
+     * @param time Current time.
+     * @return New state of the job.
+     */
+    public Job finish(final Job.Status state, final Integer code,
+        final long time) {
+        return new Job(
+            this.id, this.user, state, this.stage, this.created,
+            this.started, time, code
+        );
+    }
+
+    /**
+     * Status of a job.
+     */
+    public enum Status {
+        /**
+         * Not finished yet.
+         */
+        ACTIVE,
+        /**
+         * Built successfully.
+         */
+        SUCCEEDED,
+        /**
+         * Build failed.
+         */
+        FAILED,
+        /**
+         * Cancelled by the user.
+         */
+        CANCELLED,
+        /**
+         * Stopped after running too long.
+         */
+        TIMED_OUT,
+        /**
+         * Stopped after its workspace grew past the cap or the quota.
+         */
+        OUT_OF_SPACE,
+        /**
+         * Upload rejected.
+         */
+        REJECTED,
+        /**
+         * Outcome of an identical upload reused.
+         */
+        REUSED
+    }
+
+    /**
+     * Stage of a job.
+     */
+    public enum Stage {
+        /**
+         * Receiving and checking the upload.
+         */
+        UPLOAD,
+        /**
+         * Waiting for a worker.
+         */
+        QUEUE,
+        /**
+         * Extracting the archive.
+         */
+        EXTRACT,
+        /**
+         * Running Maven.
+         */
+        BUILD
+    }
+}
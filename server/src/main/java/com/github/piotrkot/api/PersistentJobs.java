@@ -0,0 +1,69 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.api;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Persistent records of the build jobs and their events.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public interface PersistentJobs {
+
+    /**
+     * Store the new job.
+     * @param job Job.
+     */
+    void insert(Job job);
+
+    /**
+     * Store the new state of the job.
+     * @param job Job.
+     */
+    void update(Job job);
+
+    /**
+     * Store the build events of the job.
+     * @param id Job id.
+     * @param events Events in order of their lines, at least one.
+     */
+    void record(long id, List<Event> events);
+
+    /**
+     * Build events of the job.
+     * @param id Job id.
+     * @return Events in order of their lines.
+     */
+    List<Event> events(long id);
+
+    /**
+     * Stored state of the job.
+     * @param id Job id.
+     * @return Job, empty if not known.
+     */
+    Optional<Job> find(long id);
+}
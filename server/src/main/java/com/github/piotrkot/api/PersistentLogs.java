@@ -23,6 +23,9 @@
  */
 package com.github.piotrkot.api;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * Persistent log messages appender.
  * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
@@ -35,13 +38,58 @@ public interface PersistentLogs {
      * Append the line to the persistent messages for the given request.
      * @param request Client request.
      * @param line Message line.
+     * @return Sequence number of the line within the request.
+     */
+    long append(long request, String line);
+
+    /**
+     * Append the lines to the persistent messages for the given request.
+     *
+     * <p>The lines get consecutive sequence numbers, not interleaved with
+     * lines appended concurrently for the same request.
+     *
+     * @param request Client request.
+     * @param lines Message lines, at least one.
+     * @return Sequence number of the last line within the request.
      */
-    void append(int request, String line);
+    long append(long request, List<String> lines);
 
     /**
      * Append the line to the persistent messages for the given request.
      * @param request Client request.
      * @param error Error message.
+     * @return Sequence number of the line within the request.
+     */
+    long append(long request, Throwable error);
+
+    /**
+     * Read the lines of the given request in sequence order.
+     * @param request Client request.
+     * @param after Sequence number after which lines are read.
+     * @param limit Maximal number of lines.
+     * @param reader Reader of the lines.
+     */
+    void read(long request, long after, int limit, Consumer<Line> reader);
+
+    /**
+     * Sequence number of the last line of the given request.
+     * @param request Client request.
+     * @return Sequence number, zero if there are no lines.
+     */
+    long last(long request);
+
+    /**
+     * Delete the lines of the given request.
+     * @param request Client request.
+     * @return Number of deleted lines.
+     */
+    long delete(long request);
+
+    /**
+     * Make all lines appended for the given request persistent.
+     * @param request Client request.
      */
-    void append(int request, Throwable error);
+    default void flush(long request) {
+        // lines are persisted on append by default
+    }
 }
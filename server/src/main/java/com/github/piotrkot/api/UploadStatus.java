@@ -0,0 +1,89 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.api;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * State of an archive uploaded in parts.
+ *
+ * <p>Parts are numbered from zero, each of them but the last one has the
+ * part size. The upload can be completed once no part is missing.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@EqualsAndHashCode
+@ToString
+public final class UploadStatus {
+    /**
+     * Upload id.
+     */
+    @JsonProperty
+    @Getter
+    private final String id;
+    /**
+     * Size of the archive in bytes.
+     */
+    @JsonProperty
+    @Getter
+    private final long size;
+    /**
+     * Size of a part in bytes.
+     */
+    @JsonProperty
+    @Getter
+    private final long part;
+    /**
+     * Numbers of the parts not yet received.
+     */
+    @JsonProperty
+    @Getter
+    private final List<Integer> missing;
+
+    /**
+     * Class constructor.
+     * @param upload Upload id.
+     * @param bytes Size of the archive in bytes.
+     * @param chunk Size of a part in bytes.
+     * @param parts Numbers of the parts not yet received.
+     * @checkstyle ParameterNumberCheck (6 lines)
+     */
+    @JsonCreator
+    public UploadStatus(@JsonProperty("id") final String upload,
+        @JsonProperty("size") final long bytes,
+        @JsonProperty("part") final long chunk,
+        @JsonProperty("missing") final List<Integer> parts) {
+        this.id = upload;
+        this.size = bytes;
+        this.part = chunk;
+        this.missing = parts;
+    }
+}
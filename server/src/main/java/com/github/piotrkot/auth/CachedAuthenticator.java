@@ -0,0 +1,156 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.auth;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.basic.BasicCredentials;
+import io.dropwizard.util.Duration;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authenticator remembering successful authentications for a while.
+ *
+ * <p>Every request of the API carries the credentials, so checking them
+ * once per login saves the work on each one. Credentials are kept only as
+ * their hash salted with a random value of this instance, never as plain
+ * text. Failed authentications are not remembered, so they are always
+ * checked again.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ * @param <P> Type of authenticated principal.
+ */
+public final class CachedAuthenticator<P> implements
+    Authenticator<BasicCredentials, P> {
+    /**
+     * Number of bytes of the salt.
+     */
+    private static final int SALT = 16;
+    /**
+     * Original authenticator.
+     */
+    private final transient Authenticator<BasicCredentials, P> origin;
+    /**
+     * Principals by hashes of their credentials.
+     */
+    private final transient Cache<HashCode, P> cache;
+    /**
+     * Salt of the hashes.
+     */
+    private final transient byte[] salt;
+    /**
+     * Authentications answered from the cache.
+     */
+    private final transient Meter hits;
+    /**
+     * Authentications passed to the original authenticator.
+     */
+    private final transient Meter misses;
+
+    /**
+     * Class constructor.
+     * @param auth Original authenticator.
+     * @param max Maximal number of remembered authentications.
+     * @param expiry Time authentications are remembered.
+     * @param metrics Metrics registry.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    public CachedAuthenticator(final Authenticator<BasicCredentials, P> auth,
+        final long max, final Duration expiry,
+        final MetricRegistry metrics) {
+        this.origin = auth;
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize(max)
+            .expireAfterWrite(expiry.toMilliseconds(), TimeUnit.MILLISECONDS)
+            .build();
+        this.salt = new byte[CachedAuthenticator.SALT];
+        new SecureRandom().nextBytes(this.salt);
+        this.hits = metrics.meter(
+            MetricRegistry.name(CachedAuthenticator.class, "hits")
+        );
+        this.misses = metrics.meter(
+            MetricRegistry.name(CachedAuthenticator.class, "misses")
+        );
+    }
+
+    @Override
+    public Optional<P> authenticate(final BasicCredentials cred)
+        throws AuthenticationException {
+        final HashCode key = this.key(cred);
+        Optional<P> principal = Optional.fromNullable(
+            this.cache.getIfPresent(key)
+        );
+        if (principal.isPresent()) {
+            this.hits.mark();
+        } else {
+            this.misses.mark();
+            principal = this.origin.authenticate(cred);
+            if (principal.isPresent()) {
+                this.cache.put(key, principal.get());
+            }
+        }
+        return principal;
+    }
+
+    /**
+     * Forget the authentication of the credentials.
+     * @param cred Credentials.
+     */
+    public void invalidate(final BasicCredentials cred) {
+        this.cache.invalidate(this.key(cred));
+    }
+
+    /**
+     * Forget all authentications.
+     */
+    public void invalidateAll() {
+        this.cache.invalidateAll();
+    }
+
+    /**
+     * Salted hash of the credentials.
+     * @param cred Credentials.
+     * @return Hash.
+     */
+    private HashCode key(final BasicCredentials cred) {
+        final byte[] user = cred.getUsername().getBytes(StandardCharsets.UTF_8);
+        final byte[] pass = cred.getPassword().getBytes(StandardCharsets.UTF_8);
+        return Hashing.sha256().newHasher()
+            .putBytes(this.salt)
+            .putInt(user.length).putBytes(user)
+            .putInt(pass.length).putBytes(pass)
+            .hash();
+    }
+}
@@ -24,14 +24,10 @@
 package com.github.piotrkot.core;
 
 import com.github.piotrkot.api.PersistentLogs;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
-import net.lingala.zip4j.core.ZipFile;
-import net.lingala.zip4j.exception.ZipException;
 
 /**
  * Compressed archive.
@@ -42,9 +38,9 @@ import net.lingala.zip4j.exception.ZipException;
 @Slf4j
 public final class Archive {
     /**
-     * Compressed file.
+     * Compressed content.
      */
-    private final transient File zip;
+    private final transient InputStreamCache zip;
     /**
      * DB log messages.
      */
@@ -52,38 +48,51 @@ public final class Archive {
     /**
      * Request id.
      */
-    private final transient int rqst;
+    private final transient long rqst;
+    /**
+     * Extraction of the archive.
+     */
+    private final transient Extractor extractor;
+    /**
+     * Directory of the extraction.
+     */
+    private final transient Path dir;
 
     /**
      * Class constructor.
      * @param dblogs DB log messages.
      * @param request Request id.
-     * @param file Compressed file stream.
+     * @param content Compressed content.
+     * @param extraction Extraction of the archive.
+     * @param target Directory of the extraction.
+     * @checkstyle ParameterNumberCheck (4 lines)
      */
-    public Archive(final PersistentLogs dblogs, final int request,
-        final File file) {
+    public Archive(final PersistentLogs dblogs, final long request,
+        final InputStreamCache content, final Extractor extraction,
+        final Path target) {
         this.logs = dblogs;
         this.rqst = request;
-        this.zip = file;
+        this.zip = content;
+        this.extractor = extraction;
+        this.dir = target;
     }
 
     /**
      * Uncompress archive.
-     * @return Path to the decompressed temporary directory.
+     * @return Path to the decompressed directory.
      */
     public Optional<Path> uncompress() {
         Optional<Path> unzipped = Optional.empty();
         try {
-            final Path unzip = Files.createTempDirectory("unzip");
-            new ZipFile(this.zip).extractAll(unzip.toAbsolutePath().toString());
+            this.extractor.extract(this.zip::channel, this.dir);
             final String msg = String.format(
                 "Zip archive content uncompressed in %s",
-                unzip.toFile().getName()
+                this.dir.toFile().getName()
             );
             log.info(msg);
             this.logs.append(this.rqst, msg);
-            unzipped = Optional.of(unzip);
-        } catch (final ZipException | IOException ex) {
+            unzipped = Optional.of(this.dir);
+        } catch (final IOException ex) {
             log.error("Could not read zip", ex);
             this.logs.append(this.rqst, ex);
         }
@@ -0,0 +1,921 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.piotrkot.api.Line;
+import com.github.piotrkot.api.PersistentLogs;
+import io.dropwizard.lifecycle.Managed;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.PreparedBatch;
+import org.skife.jdbi.v2.ResultIterator;
+import org.skife.jdbi.v2.TransactionIsolationLevel;
+import org.skife.jdbi.v2.util.LongMapper;
+
+/**
+ * DB log messages appender writing in batches.
+ *
+ * <p>Lines are queued in a bounded buffer per request and written with
+ * JDBC batch inserts when the buffer reaches the batch size, periodically
+ * and when the request is explicitly flushed. Appending only waits for the
+ * write when the buffer of the request is full. Lines get consecutive
+ * sequence numbers within the request. Lines which fail to be written are
+ * put back to the buffer and written with the next attempt, which is
+ * delayed for longer after each failure. While it is delayed, the oldest
+ * lines over the buffer capacity are dropped, so appending never waits for
+ * an unavailable DB.
+ *
+ * <p>Lines are stored in compressed chunks of limited number of lines and
+ * characters, each row holding the sequence numbers of its first and last
+ * line and the time of the first one, which also picks its partition. The
+ * last chunk of a request stays open in memory while the request is
+ * appended, its lines written one per row to the tails table, so slowly
+ * appended lines still end up in large chunks. A chunk is inserted once,
+ * when it is full or the request goes idle or is flushed, replacing its
+ * tail rows in the same transaction. Tail rows left by a previous run are
+ * taken back to the open chunk when the request is appended again. Reads
+ * only decompress the chunks with lines after the requested sequence
+ * number. Lines written one per row by older servers are read first and
+ * the tail rows last.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class BatchedLogs implements PersistentLogs, Managed {
+    /**
+     * Milliseconds after the last line when the buffer is dropped.
+     */
+    private static final long IDLE = TimeUnit.MINUTES.toMillis(1L);
+    /**
+     * Longest delay of the next write after failures in milliseconds.
+     */
+    private static final long BACKOFF = TimeUnit.MINUTES.toMillis(1L);
+    /**
+     * Most times the delay after failures is doubled.
+     */
+    private static final int DOUBLINGS = 10;
+    /**
+     * Number of chunks fetched at once.
+     */
+    private static final int FETCH = 16;
+    /**
+     * DBI access.
+     */
+    private final transient DBI dbi;
+    /**
+     * Number of lines triggering the write.
+     */
+    private final transient int batch;
+    /**
+     * Maximal number of lines buffered per request.
+     */
+    private final transient int capacity;
+    /**
+     * Milliseconds between periodic writes.
+     */
+    private final transient long linger;
+    /**
+     * Maximal number of lines of a chunk.
+     */
+    private final transient int lines;
+    /**
+     * Maximal number of characters of a chunk.
+     */
+    private final transient long chars;
+    /**
+     * Buffers of the requests.
+     */
+    private final transient Map<Long, BatchedLogs.Buffer> buffers;
+    /**
+     * Writer of the buffers.
+     */
+    private final transient ScheduledExecutorService writer;
+    /**
+     * Latency of the writes.
+     */
+    private final transient Timer latency;
+    /**
+     * Failed writes.
+     */
+    private final transient Meter failures;
+    /**
+     * Lines dropped over the capacity while writes are failing.
+     */
+    private final transient Meter dropped;
+
+    /**
+     * Class constructor.
+     * @param dbaccess DBI access.
+     * @param size Number of lines triggering the write.
+     * @param max Maximal number of lines buffered per request.
+     * @param period Milliseconds between periodic writes.
+     * @param chunk Maximal number of lines of a chunk.
+     * @param weight Maximal number of characters of a chunk.
+     * @param metrics Metrics registry.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    public BatchedLogs(final DBI dbaccess, final int size, final int max,
+        final long period, final int chunk, final long weight,
+        final MetricRegistry metrics) {
+        this.dbi = dbaccess;
+        this.batch = size;
+        this.capacity = max;
+        this.linger = period;
+        this.lines = chunk;
+        this.chars = weight;
+        this.buffers = new ConcurrentHashMap<>(0);
+        this.writer = Executors.newSingleThreadScheduledExecutor();
+        this.latency = metrics.timer(
+            MetricRegistry.name(BatchedLogs.class, "flush")
+        );
+        this.failures = metrics.meter(
+            MetricRegistry.name(BatchedLogs.class, "failures")
+        );
+        this.dropped = metrics.meter(
+            MetricRegistry.name(BatchedLogs.class, "dropped")
+        );
+        metrics.register(
+            MetricRegistry.name(BatchedLogs.class, "queued"),
+            (Gauge<Integer>) () -> this.buffers.values().stream()
+                .mapToInt(BatchedLogs.Buffer::size).sum()
+        );
+    }
+
+    @Override
+    public void start() {
+        this.writer.scheduleWithFixedDelay(
+            this::flushAll, this.linger, this.linger, TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        this.writer.shutdown();
+        this.writer.awaitTermination(1L, TimeUnit.MINUTES);
+        for (final Map.Entry<Long, BatchedLogs.Buffer> entry
+            : this.buffers.entrySet()) {
+            this.attempt(entry.getKey(), entry.getValue(), Instant.MIN, true);
+        }
+    }
+
+    /**
+     * Append log message for the given request.
+     * @param request Client request.
+     * @param line Message line.
+     * @return Sequence number of the line.
+     */
+    public long append(final long request, final String line) {
+        return this.append(request, Collections.singletonList(line));
+    }
+
+    /**
+     * Append log messages for the given request in one go.
+     *
+     * <p>The lines are buffered together, so they get consecutive sequence
+     * numbers, and are written in the same batch unless the buffer of the
+     * request fills up. A full buffer is written at once, unless writes of
+     * the request are failing, then its oldest lines are dropped.
+     *
+     * @param request Client request.
+     * @param lines Message lines.
+     * @return Sequence number of the last line.
+     */
+    public long append(final long request, final List<String> lines) {
+        long seq;
+        do {
+            final BatchedLogs.Buffer buffer =
+                this.buffers.computeIfAbsent(request, this::open);
+            seq = buffer.offer(lines);
+            final int size = buffer.size();
+            if (size >= this.capacity) {
+                this.attempt(request, buffer, Instant.MIN, false);
+                final int over = buffer.trim(this.capacity);
+                if (over > 0) {
+                    this.dropped.mark(over);
+                    log.warn(
+                        "Dropped {} lines of request {}, DB not available",
+                        over, request
+                    );
+                }
+            } else if (size >= this.batch
+                && size - lines.size() < this.batch) {
+                this.writer.execute(
+                    () -> this.attempt(request, buffer, Instant.MIN, false)
+                );
+            }
+        } while (seq < 0L);
+        return seq;
+    }
+
+    /**
+     * Append error log for the given request.
+     * @param request Client request.
+     * @param error Error message.
+     * @return Sequence number of the line.
+     */
+    public long append(final long request, final Throwable error) {
+        return this.append(
+            request, String.format("ERROR: %s", error.getMessage())
+        );
+    }
+
+    @Override
+    public void flush(final long request) {
+        this.flush(request, Instant.MAX);
+    }
+
+    /**
+     * Delete log messages of the given request.
+     *
+     * <p>The buffer of the request is taken out and dropped with its lines
+     * not written yet, so they cannot be written after the delete.
+     *
+     * @param request Client request.
+     * @return Number of deleted messages.
+     */
+    public long delete(final long request) {
+        long deleted = 0L;
+        final BatchedLogs.Buffer buffer = this.buffers.remove(request);
+        if (buffer != null) {
+            buffer.write.lock();
+            try {
+                deleted += buffer.discard();
+            } finally {
+                buffer.write.unlock();
+            }
+        }
+        return deleted + this.dbi.inTransaction(
+            (han, status) -> han.update(
+                "DELETE FROM requests WHERE req = ?", request
+            ) + han.update(
+                "DELETE FROM tails WHERE req = ?", request
+            ) + han.createQuery(
+                String.join(
+                    " ",
+                    "WITH gone AS (DELETE FROM chunks WHERE req = :r",
+                    "RETURNING last - first + 1 AS lines)",
+                    "SELECT COALESCE(SUM(lines), 0) FROM gone"
+                )
+            ).bind("r", request).map(LongMapper.FIRST).first()
+        );
+    }
+
+    /**
+     * Read log messages of the given request.
+     *
+     * <p>Rows are streamed from the DB instead of being collected in memory
+     * and no more chunks are fetched once the limit is reached. The queries
+     * share one snapshot, so lines moved from the tail rows to a chunk
+     * meanwhile are seen exactly once.
+     *
+     * @param request Client request.
+     * @param after Sequence number after which lines are read.
+     * @param limit Maximal number of lines.
+     * @param reader Reader of the lines.
+     */
+    public void read(final long request, final long after, final int limit,
+        final Consumer<Line> reader) {
+        this.flush(request, Instant.MIN);
+        this.dbi.inTransaction(
+            TransactionIsolationLevel.REPEATABLE_READ,
+            (han, status) -> {
+                final AtomicLong seen = new AtomicLong(after);
+                final AtomicInteger count = new AtomicInteger();
+                final ResultIterator<Line> legacy = han.createQuery(
+                    String.join(
+                        " ",
+                        "SELECT seq, mesg FROM requests",
+                        "WHERE req = :r AND seq > :a ORDER BY seq LIMIT :l"
+                    )
+                ).bind("r", request).bind("a", after).bind("l", limit)
+                    .setFetchSize(this.batch)
+                    .map(
+                        (index, rset, ctx) -> new Line(
+                            rset.getLong(1), rset.getString(2)
+                        )
+                    ).iterator();
+                try {
+                    legacy.forEachRemaining(
+                        line -> {
+                            seen.set(line.getSeq());
+                            count.incrementAndGet();
+                            reader.accept(line);
+                        }
+                    );
+                } finally {
+                    legacy.close();
+                }
+                int left = limit - count.get();
+                final ResultIterator<Chunk> chunks = han.createQuery(
+                    String.join(
+                        " ",
+                        "SELECT first, body FROM chunks",
+                        "WHERE req = :r AND last > :a ORDER BY first"
+                    )
+                ).bind("r", request).bind("a", seen.get())
+                    .setFetchSize(BatchedLogs.FETCH)
+                    .map(
+                        (index, rset, ctx) -> Chunk.unpacked(
+                            rset.getLong(1), rset.getBytes(2)
+                        )
+                    ).iterator();
+                try {
+                    while (left > 0 && chunks.hasNext()) {
+                        left -= chunks.next().read(seen.get(), left, reader);
+                    }
+                } finally {
+                    chunks.close();
+                }
+                if (left > 0) {
+                    final ResultIterator<Line> tails = han.createQuery(
+                        String.join(
+                            " ",
+                            "SELECT seq, mesg FROM tails",
+                            "WHERE req = :r AND seq > :a ORDER BY seq",
+                            "LIMIT :l"
+                        )
+                    ).bind("r", request).bind("a", seen.get())
+                        .bind("l", left)
+                        .map(
+                            (index, rset, ctx) -> new Line(
+                                rset.getLong(1), rset.getString(2)
+                            )
+                        ).iterator();
+                    try {
+                        tails.forEachRemaining(reader);
+                    } finally {
+                        tails.close();
+                    }
+                }
+                return null;
+            }
+        );
+    }
+
+    /**
+     * Last sequence number of the request, taken from its buffer if any.
+     * @param request Client request.
+     * @return Sequence number, zero if none.
+     */
+    public long last(final long request) {
+        final BatchedLogs.Buffer buffer = this.buffers.get(request);
+        final long last;
+        if (buffer == null) {
+            last = this.stored(request);
+        } else {
+            last = buffer.seq();
+        }
+        return last;
+    }
+
+    /**
+     * Last sequence number of the request stored in the DB.
+     * @param request Client request.
+     * @return Sequence number, zero if none.
+     */
+    private long stored(final long request) {
+        return this.dbi.withHandle(
+            han -> han.createQuery(
+                String.join(
+                    " ",
+                    "SELECT GREATEST(0,",
+                    "(SELECT MAX(last) FROM chunks WHERE req = :r),",
+                    "(SELECT MAX(seq) FROM tails WHERE req = :r),",
+                    "(SELECT MAX(seq) FROM requests WHERE req = :r))"
+                )
+            ).bind("r", request).map(LongMapper.FIRST).first()
+        );
+    }
+
+    /**
+     * New buffer of the request, its open chunk taken from the tail rows.
+     * @param request Client request.
+     * @return Buffer.
+     */
+    private BatchedLogs.Buffer open(final long request) {
+        final BatchedLogs.Buffer buffer =
+            new BatchedLogs.Buffer(this.stored(request));
+        buffer.open = new ArrayList<>(
+            this.dbi.withHandle(
+                han -> han.createQuery(
+                    String.join(
+                        " ",
+                        "SELECT seq, mesg, timestmp FROM tails",
+                        "WHERE req = :r ORDER BY seq"
+                    )
+                ).bind("r", request).map(
+                    (index, rset, ctx) -> new BatchedLogs.Row(
+                        rset.getLong(1), rset.getString(2),
+                        rset.getTimestamp(3)
+                    )
+                ).list()
+            )
+        );
+        buffer.weight = BatchedLogs.weight(buffer.open);
+        return buffer;
+    }
+
+    /**
+     * Write all buffers, dropping the idle ones.
+     */
+    private void flushAll() {
+        final Instant cutoff = Instant.now().minusMillis(BatchedLogs.IDLE);
+        for (final Map.Entry<Long, BatchedLogs.Buffer> entry
+            : this.buffers.entrySet()) {
+            this.attempt(entry.getKey(), entry.getValue(), cutoff, false);
+        }
+    }
+
+    /**
+     * Write buffered lines of the request, logging the failure as the lines
+     * stay buffered for the next attempt.
+     * @param request Client request.
+     * @param buffer Buffer of the request.
+     * @param cutoff Time of the last line before which the buffer is dropped
+     *  once written.
+     * @param force Whether to write even if delayed after failures.
+     * @checkstyle IllegalCatchCheck (20 lines)
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void attempt(final long request, final BatchedLogs.Buffer buffer,
+        final Instant cutoff, final boolean force) {
+        try {
+            if (force || buffer.due()) {
+                this.flush(request, buffer, cutoff);
+            }
+        } catch (final RuntimeException ex) {
+            log.error(
+                "Could not write lines of request {}, kept buffered",
+                request, ex
+            );
+        }
+    }
+
+    /**
+     * Write buffered lines of the request, dropping its buffer if idle.
+     * @param request Client request.
+     * @param cutoff Time of the last line before which the buffer is idle.
+     */
+    private void flush(final long request, final Instant cutoff) {
+        final BatchedLogs.Buffer buffer = this.buffers.get(request);
+        if (buffer != null) {
+            this.flush(request, buffer, cutoff);
+        }
+    }
+
+    /**
+     * Write buffered lines of the request, putting them back to the buffer
+     * if the write fails.
+     * @param request Client request.
+     * @param buffer Buffer of the request.
+     * @param cutoff Time of the last line before which the buffer is dropped
+     *  once written, with its open chunk.
+     */
+    private void flush(final long request, final BatchedLogs.Buffer buffer,
+        final Instant cutoff) {
+        final boolean closed;
+        buffer.write.lock();
+        try {
+            final boolean idle = buffer.idle(cutoff);
+            final List<BatchedLogs.Row> rows = buffer.drain();
+            if (!rows.isEmpty() || (idle && !buffer.open.isEmpty())) {
+                boolean written = false;
+                try {
+                    this.write(request, buffer, rows, idle);
+                    written = true;
+                } finally {
+                    buffer.written(written, this.linger);
+                    if (!written) {
+                        buffer.requeue(rows);
+                        this.failures.mark();
+                    }
+                }
+            }
+            closed = buffer.close(cutoff);
+        } finally {
+            buffer.write.unlock();
+        }
+        if (closed) {
+            this.buffers.remove(request, buffer);
+        }
+    }
+
+    /**
+     * Write the rows of the request, inserting the chunks they fill and the
+     * tail rows of its open chunk. Lines dropped before make a chunk end
+     * early, as the lines of a chunk are consecutive.
+     * @param request Client request.
+     * @param buffer Buffer of the request, its write lock held.
+     * @param rows Rows taken from the buffer.
+     * @param seal Whether to insert the open chunk even if not full.
+     * @checkstyle ExecutableStatementCountCheck (60 lines)
+     */
+    private void write(final long request, final BatchedLogs.Buffer buffer,
+        final List<BatchedLogs.Row> rows, final boolean seal) {
+        final List<List<BatchedLogs.Row>> sealed = new ArrayList<>(1);
+        List<BatchedLogs.Row> head = buffer.open;
+        int from = 0;
+        int count = head.size();
+        long weight = buffer.weight;
+        long prev = Long.MIN_VALUE;
+        if (!head.isEmpty()) {
+            prev = head.get(head.size() - 1).seq;
+        }
+        for (int idx = 0; idx < rows.size(); ++idx) {
+            if (count > 0 && rows.get(idx).seq != prev + 1L) {
+                sealed.add(BatchedLogs.join(head, rows.subList(from, idx)));
+                head = Collections.emptyList();
+                from = idx;
+                count = 0;
+                weight = 0L;
+            }
+            prev = rows.get(idx).seq;
+            count += 1;
+            weight += rows.get(idx).text.length();
+            if (count >= this.lines || weight >= this.chars) {
+                sealed.add(BatchedLogs.join(head, rows.subList(from, idx + 1)));
+                head = Collections.emptyList();
+                from = idx + 1;
+                count = 0;
+                weight = 0L;
+            }
+        }
+        List<BatchedLogs.Row> tail = rows.subList(from, rows.size());
+        if (seal && count > 0) {
+            sealed.add(BatchedLogs.join(head, tail));
+            head = Collections.emptyList();
+            tail = Collections.emptyList();
+            weight = 0L;
+        }
+        final long stored;
+        if (buffer.open.isEmpty()) {
+            stored = Long.MIN_VALUE;
+        } else {
+            stored = buffer.open.get(buffer.open.size() - 1).seq;
+        }
+        final List<BatchedLogs.Row> fresh = tail;
+        final Timer.Context timer = this.latency.time();
+        this.dbi.inTransaction(
+            (han, status) -> {
+                if (!sealed.isEmpty()) {
+                    final PreparedBatch insert = han.prepareBatch(
+                        String.join(
+                            " ",
+                            "INSERT INTO chunks",
+                            "(req, first, last, body, timestmp)",
+                            "VALUES (?, ?, ?, ?, ?)"
+                        )
+                    );
+                    for (final List<BatchedLogs.Row> full : sealed) {
+                        BatchedLogs.add(insert, request, full);
+                    }
+                    insert.execute();
+                    han.update(
+                        "DELETE FROM tails WHERE req = ? AND seq <= ?",
+                        request, stored
+                    );
+                }
+                if (!fresh.isEmpty()) {
+                    final PreparedBatch insert = han.prepareBatch(
+                        String.join(
+                            " ",
+                            "INSERT INTO tails (req, seq, mesg, timestmp)",
+                            "VALUES (?, ?, ?, ?)"
+                        )
+                    );
+                    for (final BatchedLogs.Row row : fresh) {
+                        insert.add(request, row.seq, row.text, row.time);
+                    }
+                    insert.execute();
+                }
+                return null;
+            }
+        );
+        timer.stop();
+        if (head.isEmpty()) {
+            buffer.open = new ArrayList<>(tail);
+        } else {
+            buffer.open.addAll(tail);
+        }
+        buffer.weight = weight;
+        log.debug("Flushed lines request: {}", request);
+    }
+
+    /**
+     * Rows of the chunk.
+     * @param head Rows of the open chunk.
+     * @param rest Rows added to it.
+     * @return All rows.
+     */
+    private static List<BatchedLogs.Row> join(
+        final List<BatchedLogs.Row> head, final List<BatchedLogs.Row> rest) {
+        final List<BatchedLogs.Row> rows =
+            new ArrayList<>(head.size() + rest.size());
+        rows.addAll(head);
+        rows.addAll(rest);
+        return rows;
+    }
+
+    /**
+     * Number of characters of the rows.
+     * @param rows Rows.
+     * @return Number of characters.
+     */
+    private static long weight(final List<BatchedLogs.Row> rows) {
+        return rows.stream().mapToLong(row -> row.text.length()).sum();
+    }
+
+    /**
+     * Add the chunk to the batch.
+     * @param upsert Batch of the chunks.
+     * @param request Client request.
+     * @param chunk Rows of the chunk.
+     */
+    private static void add(final PreparedBatch upsert, final long request,
+        final List<BatchedLogs.Row> chunk) {
+        final BatchedLogs.Row first = chunk.get(0);
+        upsert.add(
+            request, first.seq, chunk.get(chunk.size() - 1).seq,
+            new Chunk(
+                first.seq,
+                chunk.stream().map(row -> row.text)
+                    .collect(Collectors.toList())
+            ).packed(),
+            first.time
+        );
+    }
+
+    /**
+     * Buffered log row.
+     */
+    private static final class Row {
+        /**
+         * Sequence number.
+         */
+        private final transient long seq;
+        /**
+         * Message line.
+         */
+        private final transient String text;
+        /**
+         * Time of the message.
+         */
+        private final transient Timestamp time;
+
+        /**
+         * Class constructor.
+         * @param number Sequence number.
+         * @param mesg Message line.
+         * @param stamp Time of the message.
+         */
+        Row(final long number, final String mesg, final Timestamp stamp) {
+            this.seq = number;
+            this.text = mesg;
+            this.time = stamp;
+        }
+    }
+
+    /**
+     * Buffer of the request lines.
+     *
+     * <p>The buffer is closed only while holding the write lock and when
+     * empty, so all its lines are in the DB before the next buffer of the
+     * request reads the last sequence number.
+     */
+    private static final class Buffer {
+        /**
+         * Lock serializing writes of the buffer.
+         */
+        private final transient Lock write = new ReentrantLock();
+        /**
+         * Buffered rows.
+         */
+        private final transient Deque<BatchedLogs.Row> rows =
+            new ArrayDeque<>();
+        /**
+         * Last sequence number.
+         */
+        private transient long seq;
+        /**
+         * Time of the last line.
+         */
+        private transient Instant last = Instant.EPOCH;
+        /**
+         * Whether the buffer is closed for new lines.
+         */
+        private transient boolean closed;
+        /**
+         * Number of consecutive failed writes.
+         */
+        private transient int failed;
+        /**
+         * Milliseconds before which writes are delayed.
+         */
+        private transient long resume;
+        /**
+         * Rows of the open chunk, written as tail rows, guarded by the
+         * write lock.
+         */
+        private transient List<BatchedLogs.Row> open = new ArrayList<>(0);
+        /**
+         * Number of characters of the open chunk, guarded by the write
+         * lock.
+         */
+        private transient long weight;
+
+        /**
+         * Class constructor.
+         * @param start Last sequence number of the request.
+         */
+        Buffer(final long start) {
+            this.seq = start;
+        }
+
+        /**
+         * Add the lines unless the buffer is closed.
+         * @param texts Message lines.
+         * @return Sequence number of the last line, negative if the lines
+         *  were not added because the buffer is closed.
+         */
+        public synchronized long offer(final List<String> texts) {
+            long number = -1L;
+            if (!this.closed) {
+                for (final String text : texts) {
+                    Instant now = Instant.now();
+                    if (!now.isAfter(this.last)) {
+                        now = this.last.plus(1L, ChronoUnit.MICROS);
+                    }
+                    this.last = now;
+                    this.seq += 1L;
+                    this.rows.add(
+                        new BatchedLogs.Row(
+                            this.seq, text, Timestamp.from(now)
+                        )
+                    );
+                }
+                number = this.seq;
+            }
+            return number;
+        }
+
+        /**
+         * Last sequence number.
+         * @return Sequence number.
+         */
+        public synchronized long seq() {
+            return this.seq;
+        }
+
+        /**
+         * Number of buffered rows.
+         * @return Number of rows.
+         */
+        public synchronized int size() {
+            return this.rows.size();
+        }
+
+        /**
+         * Take all buffered rows.
+         * @return Rows.
+         */
+        public synchronized List<BatchedLogs.Row> drain() {
+            final List<BatchedLogs.Row> drained = new ArrayList<>(this.rows);
+            this.rows.clear();
+            return drained;
+        }
+
+        /**
+         * Put the rows which were not written back before the buffered ones.
+         * @param taken Rows taken from the buffer.
+         */
+        public synchronized void requeue(final List<BatchedLogs.Row> taken) {
+            for (int idx = taken.size() - 1; idx >= 0; idx -= 1) {
+                this.rows.addFirst(taken.get(idx));
+            }
+        }
+
+        /**
+         * Drop the oldest rows over the capacity if writes are delayed.
+         * @param max Capacity of the buffer.
+         * @return Number of dropped rows.
+         */
+        public synchronized int trim(final int max) {
+            int over = 0;
+            if (!this.due()) {
+                while (this.rows.size() > max) {
+                    this.rows.removeFirst();
+                    over += 1;
+                }
+            }
+            return over;
+        }
+
+        /**
+         * Record the result of a write, delaying the next one after
+         * failures twice as long each time.
+         * @param success Whether the rows were written.
+         * @param delay Delay after the first failure in milliseconds.
+         */
+        public synchronized void written(final boolean success,
+            final long delay) {
+            if (success) {
+                this.failed = 0;
+                this.resume = 0L;
+            } else {
+                this.failed = Math.min(this.failed + 1, BatchedLogs.DOUBLINGS);
+                this.resume = System.currentTimeMillis() + Math.min(
+                    BatchedLogs.BACKOFF, delay << (this.failed - 1)
+                );
+            }
+        }
+
+        /**
+         * Whether writes are not delayed after failures.
+         * @return True if a write may be attempted.
+         */
+        public synchronized boolean due() {
+            return System.currentTimeMillis() >= this.resume;
+        }
+
+        /**
+         * Whether no line was added since the time.
+         * @param cutoff Time of the last line before which it is idle.
+         * @return True if idle.
+         */
+        public synchronized boolean idle(final Instant cutoff) {
+            return this.last.isBefore(cutoff);
+        }
+
+        /**
+         * Close the buffer, dropping the buffered rows and the open chunk.
+         * @return Number of dropped rows not written yet.
+         */
+        public synchronized int discard() {
+            final int dropped = this.rows.size();
+            this.rows.clear();
+            this.open = new ArrayList<>(0);
+            this.weight = 0L;
+            this.closed = true;
+            return dropped;
+        }
+
+        /**
+         * Close the buffer if it is empty and idle.
+         * @param cutoff Time of the last line before which it is idle.
+         * @return True if closed.
+         */
+        public synchronized boolean close(final Instant cutoff) {
+            if (this.rows.isEmpty() && this.last.isBefore(cutoff)) {
+                this.closed = true;
+            }
+            return this.closed;
+        }
+    }
+}
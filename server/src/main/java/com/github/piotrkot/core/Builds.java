@@ -0,0 +1,207 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Engine;
+import com.github.piotrkot.api.PersistentLogs;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.apache.maven.shared.invoker.InvocationResult;
+
+/**
+ * Builds of the uploaded sources.
+ *
+ * <p>Extracts the uploaded archive into the workspace of the job and builds
+ * the project with Maven, in separate steps.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class Builds {
+    /**
+     * Engine running the builds.
+     */
+    private final transient Engine engine;
+    /**
+     * Local repository of the builds.
+     */
+    private final transient Repository repo;
+    /**
+     * Extraction of the archives.
+     */
+    private final transient Extractor extractor;
+    /**
+     * Working directories of the builds.
+     */
+    private final transient Workspaces spaces;
+    /**
+     * Maximal number of entries of an archive.
+     */
+    private final transient int entries;
+    /**
+     * Maximal uncompressed size of an archive.
+     */
+    private final transient long bytes;
+    /**
+     * Memory of the upload spools.
+     */
+    private final transient Spool spool;
+    /**
+     * Whether to extract archives while they arrive.
+     */
+    private final transient boolean streaming;
+
+    /**
+     * Class constructor.
+     * @param runner Engine running the builds.
+     * @param repository Local repository of the builds.
+     * @param extraction Extraction of the archives.
+     * @param workspaces Working directories of the builds.
+     * @param count Maximal number of entries of an archive.
+     * @param size Maximal uncompressed size of an archive in bytes.
+     * @param uploads Memory of the upload spools.
+     * @param stream Whether to extract archives while they arrive.
+     * @checkstyle ParameterNumberCheck (5 lines)
+     */
+    public Builds(final Engine runner, final Repository repository,
+        final Extractor extraction, final Workspaces workspaces,
+        final int count, final long size, final Spool uploads,
+        final boolean stream) {
+        this.engine = runner;
+        this.repo = repository;
+        this.extractor = extraction;
+        this.spaces = workspaces;
+        this.entries = count;
+        this.bytes = size;
+        this.spool = uploads;
+        this.streaming = stream;
+    }
+
+    /**
+     * Receive the uploaded archive into a new workspace.
+     * @param request Request id.
+     * @param stream Uploaded stream.
+     * @return Uploaded archive, close or discard it when done.
+     * @throws IOException If the workspace cannot be created.
+     */
+    public Upload upload(final long request, final InputStream stream)
+        throws IOException {
+        return new Upload(
+            stream, this.spool, this.spaces.allocate(request), this.streaming,
+            Math.min(this.bytes, this.spaces.cap())
+        );
+    }
+
+    /**
+     * Scan the central directory of the uploaded archive, not reading the
+     * entries of archives with too many of them.
+     * @param upload Uploaded archive.
+     * @return Contents of the archive.
+     * @throws IOException If not a readable zip archive.
+     */
+    public Contents scan(final Upload upload) throws IOException {
+        return upload.scan(this.entries);
+    }
+
+    /**
+     * Check the archive against the limits.
+     * @param contents Contents of the archive.
+     * @return Reason of the rejection, empty if within the limits.
+     */
+    public Optional<String> oversized(final Contents contents) {
+        Optional<String> reason = Optional.empty();
+        if (contents.count() > this.entries) {
+            reason = Optional.of(
+                String.format(
+                    "Archive has %d entries, at most %d allowed",
+                    contents.count(), this.entries
+                )
+            );
+        } else if (contents.size() > this.bytes) {
+            reason = Optional.of(
+                String.format(
+                    "Archive uncompresses to %d bytes, at most %d allowed",
+                    contents.size(), this.bytes
+                )
+            );
+        } else if (contents.size() > this.spaces.cap()) {
+            reason = Optional.of(
+                String.format(
+                    "Archive uncompresses to %d bytes, workspace holds %d",
+                    contents.size(), this.spaces.cap()
+                )
+            );
+        }
+        return reason;
+    }
+
+    /**
+     * Extract the uploaded archive unless done while uploading.
+     * @param logs Log messages of the build.
+     * @param request Request id.
+     * @param upload Uploaded archive.
+     * @return Directory of the sources, empty if not extracted.
+     */
+    public Optional<Path> extract(final PersistentLogs logs,
+        final long request, final Upload upload) {
+        Optional<Path> dir = upload.extracted();
+        if (dir.isPresent()) {
+            logs.append(
+                request,
+                String.format(
+                    "Zip archive content uncompressed while uploading in %s",
+                    dir.get().toFile().getName()
+                )
+            );
+        } else {
+            dir = new Archive(
+                logs, request, upload.cache(), this.extractor,
+                upload.workspace().dir()
+            ).uncompress();
+        }
+        return dir;
+    }
+
+    /**
+     * Build the extracted sources, a running build is killed when
+     * interrupted.
+     * @param logs Log messages of the build.
+     * @param request Request id.
+     * @param dir Directory of the sources.
+     * @param contents Contents of the archive.
+     * @return Exit code of Maven, empty if it did not run to the end.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    public Optional<Integer> build(final PersistentLogs logs,
+        final long request, final Path dir, final Contents contents) {
+        return new Maven(
+            this.engine, this.repo, logs, request, dir, contents.pom()
+        ).build()
+            .filter(result -> result.getExecutionException() == null)
+            .map(InvocationResult::getExitCode);
+    }
+}
@@ -0,0 +1,443 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Central directory of a zip archive.
+ *
+ * <p>Reads the end of central directory record, the ZIP64 one if present,
+ * and all entries of the directory with random access to the archive,
+ * without touching the compressed data.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class CentralDirectory {
+    /**
+     * Signature of the end of central directory record.
+     */
+    private static final int END = 0x06054b50;
+    /**
+     * Signature of the ZIP64 end of central directory locator.
+     */
+    private static final int LOCATOR = 0x07064b50;
+    /**
+     * Signature of the ZIP64 end of central directory record.
+     */
+    private static final int END64 = 0x06064b50;
+    /**
+     * Signature of a central directory header.
+     */
+    private static final int HEADER = 0x02014b50;
+    /**
+     * Signature of a local file header.
+     */
+    private static final int LOCAL = 0x04034b50;
+    /**
+     * Size of the end of central directory record without comment.
+     */
+    private static final int END_SIZE = 22;
+    /**
+     * Size of the ZIP64 locator.
+     */
+    private static final int LOCATOR_SIZE = 20;
+    /**
+     * Size of the ZIP64 end of central directory record.
+     */
+    private static final int END64_SIZE = 56;
+    /**
+     * Size of a central directory header without variable fields.
+     */
+    private static final int HEADER_SIZE = 46;
+    /**
+     * Size of a local file header without variable fields.
+     */
+    private static final int LOCAL_SIZE = 30;
+    /**
+     * Maximal size of the archive comment.
+     */
+    private static final int COMMENT = 0xffff;
+    /**
+     * Value of 16-bit fields moved to ZIP64 records.
+     */
+    private static final int SHORT64 = 0xffff;
+    /**
+     * Value of 32-bit fields moved to ZIP64 records.
+     */
+    private static final long LONG64 = 0xffffffffL;
+    /**
+     * Id of the ZIP64 extra field.
+     */
+    private static final int EXTRA64 = 0x0001;
+    /**
+     * Archive content.
+     */
+    private final transient SeekableByteChannel zip;
+
+    /**
+     * Class constructor.
+     * @param channel Archive content.
+     */
+    public CentralDirectory(final SeekableByteChannel channel) {
+        this.zip = channel;
+    }
+
+    /**
+     * Number of entries, without reading them.
+     * @return Entries as declared by the end of central directory record.
+     * @throws IOException If not a readable zip archive.
+     */
+    public long count() throws IOException {
+        return this.directory()[0];
+    }
+
+    /**
+     * Read the entries.
+     * @return Entries in the order of the directory.
+     * @throws IOException If not a readable zip archive.
+     */
+    public List<CentralDirectory.Entry> entries() throws IOException {
+        final long[] location = this.directory();
+        final ByteBuffer dir = this.read(location[2], (int) location[1]);
+        final List<CentralDirectory.Entry> entries = new ArrayList<>(0);
+        for (long idx = 0L; idx < location[0]; ++idx) {
+            entries.add(CentralDirectory.entry(dir));
+        }
+        return entries;
+    }
+
+    /**
+     * Locate the central directory.
+     *
+     * <p>The number of entries is checked against the size of the directory,
+     * every entry taking at least the fixed fields of its header, so that a
+     * crafted count is rejected before anything is allocated for it.
+     *
+     * @return Number of entries, size and position of the directory.
+     * @throws IOException If not a readable zip archive.
+     */
+    private long[] directory() throws IOException {
+        final long end = this.end();
+        final ByteBuffer record = this.read(end, CentralDirectory.END_SIZE);
+        long count = record.getShort(10) & 0xffffL;
+        long size = record.getInt(12) & 0xffffffffL;
+        long offset = record.getInt(16) & 0xffffffffL;
+        if (count == CentralDirectory.SHORT64
+            || size == CentralDirectory.LONG64
+            || offset == CentralDirectory.LONG64) {
+            final ByteBuffer zip64 = this.end64(end);
+            count = zip64.getLong(32);
+            size = zip64.getLong(40);
+            offset = zip64.getLong(48);
+        }
+        if (count < 0L || size < 0L || offset < 0L
+            || size > Integer.MAX_VALUE || offset + size > end
+            || count > size / CentralDirectory.HEADER_SIZE) {
+            throw new ZipException("Invalid central directory");
+        }
+        return new long[] {count, size, offset};
+    }
+
+    /**
+     * Position of the compressed data of the entry.
+     * @param entry Entry.
+     * @return Position in the archive.
+     * @throws IOException If the local header is invalid.
+     */
+    public long data(final CentralDirectory.Entry entry) throws IOException {
+        final ByteBuffer local = this.read(
+            entry.offset(), CentralDirectory.LOCAL_SIZE
+        );
+        if (local.getInt(0) != CentralDirectory.LOCAL) {
+            throw new ZipException(
+                String.format("Invalid local header of %s", entry.name())
+            );
+        }
+        return entry.offset() + CentralDirectory.LOCAL_SIZE
+            + (local.getShort(26) & 0xffff) + (local.getShort(28) & 0xffff);
+    }
+
+    /**
+     * Find the end of central directory record.
+     * @return Position of the record.
+     * @throws IOException If not found.
+     */
+    private long end() throws IOException {
+        final long length = this.zip.size();
+        final int tail = (int) Math.min(
+            length, CentralDirectory.END_SIZE + CentralDirectory.COMMENT
+        );
+        final ByteBuffer buffer = this.read(length - tail, tail);
+        int pos = tail - CentralDirectory.END_SIZE;
+        while (pos >= 0 && buffer.getInt(pos) != CentralDirectory.END) {
+            --pos;
+        }
+        if (pos < 0) {
+            throw new ZipException("End of central directory not found");
+        }
+        return length - tail + pos;
+    }
+
+    /**
+     * Read the ZIP64 end of central directory record.
+     * @param end Position of the end of central directory record.
+     * @return Record.
+     * @throws IOException If not found.
+     */
+    private ByteBuffer end64(final long end) throws IOException {
+        if (end < CentralDirectory.LOCATOR_SIZE) {
+            throw new ZipException("ZIP64 locator not found");
+        }
+        final ByteBuffer locator = this.read(
+            end - CentralDirectory.LOCATOR_SIZE, CentralDirectory.LOCATOR_SIZE
+        );
+        if (locator.getInt(0) != CentralDirectory.LOCATOR) {
+            throw new ZipException("ZIP64 locator not found");
+        }
+        final ByteBuffer record = this.read(
+            locator.getLong(8), CentralDirectory.END64_SIZE
+        );
+        if (record.getInt(0) != CentralDirectory.END64) {
+            throw new ZipException("ZIP64 end of central directory not found");
+        }
+        return record;
+    }
+
+    /**
+     * Read bytes of the archive.
+     * @param position Position in the archive.
+     * @param length Number of bytes.
+     * @return Little endian buffer.
+     * @throws IOException If the archive is too short.
+     */
+    private ByteBuffer read(final long position, final int length)
+        throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        this.zip.position(position);
+        while (buffer.hasRemaining()) {
+            if (this.zip.read(buffer) < 0) {
+                throw new ZipException("Truncated zip archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Read the next entry of the directory.
+     * @param dir Central directory positioned at the entry.
+     * @return Entry.
+     * @throws IOException If the header is invalid.
+     */
+    private static CentralDirectory.Entry entry(final ByteBuffer dir)
+        throws IOException {
+        final int start = dir.position();
+        if (dir.remaining() < CentralDirectory.HEADER_SIZE
+            || dir.getInt(start) != CentralDirectory.HEADER) {
+            throw new ZipException("Invalid central directory header");
+        }
+        final int flags = dir.getShort(start + 8) & 0xffff;
+        final int method = dir.getShort(start + 10) & 0xffff;
+        final long crc = dir.getInt(start + 16) & 0xffffffffL;
+        long compressed = dir.getInt(start + 20) & 0xffffffffL;
+        long size = dir.getInt(start + 24) & 0xffffffffL;
+        final int name = dir.getShort(start + 28) & 0xffff;
+        final int extra = dir.getShort(start + 30) & 0xffff;
+        final int comment = dir.getShort(start + 32) & 0xffff;
+        long offset = dir.getInt(start + 42) & 0xffffffffL;
+        final int next = start + CentralDirectory.HEADER_SIZE + name + extra
+            + comment;
+        if (next > dir.limit()) {
+            throw new ZipException("Invalid central directory header");
+        }
+        final byte[] bytes = new byte[name];
+        dir.position(start + CentralDirectory.HEADER_SIZE);
+        dir.get(bytes);
+        int pos = start + CentralDirectory.HEADER_SIZE + name;
+        final int last = pos + extra;
+        while (pos + 4 <= last) {
+            final int id = dir.getShort(pos) & 0xffff;
+            final int length = dir.getShort(pos + 2) & 0xffff;
+            int field = pos + 4;
+            if (id == CentralDirectory.EXTRA64) {
+                if (size == CentralDirectory.LONG64) {
+                    size = dir.getLong(field);
+                    field += 8;
+                }
+                if (compressed == CentralDirectory.LONG64) {
+                    compressed = dir.getLong(field);
+                    field += 8;
+                }
+                if (offset == CentralDirectory.LONG64) {
+                    offset = dir.getLong(field);
+                }
+            }
+            pos += 4 + length;
+        }
+        if (size < 0L || compressed < 0L || offset < 0L) {
+            throw new ZipException("Invalid central directory header");
+        }
+        dir.position(next);
+        return new CentralDirectory.Entry(
+            new String(bytes, StandardCharsets.UTF_8), flags, method, crc,
+            compressed, size, offset
+        );
+    }
+
+    /**
+     * Entry of the central directory.
+     */
+    public static final class Entry {
+        /**
+         * Flag of encrypted entries.
+         */
+        private static final int ENCRYPTED = 1;
+        /**
+         * Entry name.
+         */
+        private final transient String path;
+        /**
+         * General purpose flags.
+         */
+        private final transient int flags;
+        /**
+         * Compression method.
+         */
+        private final transient int compression;
+        /**
+         * CRC-32 of the uncompressed data.
+         */
+        private final transient long checksum;
+        /**
+         * Compressed size.
+         */
+        private final transient long packed;
+        /**
+         * Uncompressed size.
+         */
+        private final transient long length;
+        /**
+         * Position of the local header.
+         */
+        private final transient long local;
+
+        /**
+         * Class constructor.
+         * @param name Entry name.
+         * @param bits General purpose flags.
+         * @param method Compression method.
+         * @param crc CRC-32 of the uncompressed data.
+         * @param compressed Compressed size.
+         * @param size Uncompressed size.
+         * @param offset Position of the local header.
+         * @checkstyle ParameterNumberCheck (4 lines)
+         */
+        Entry(final String name, final int bits, final int method,
+            final long crc, final long compressed, final long size,
+            final long offset) {
+            this.path = name;
+            this.flags = bits;
+            this.compression = method;
+            this.checksum = crc;
+            this.packed = compressed;
+            this.length = size;
+            this.local = offset;
+        }
+
+        /**
+         * Entry name.
+         * @return Name relative to the archive root.
+         */
+        public String name() {
+            return this.path;
+        }
+
+        /**
+         * Whether the entry is a directory.
+         * @return True if directory.
+         */
+        public boolean directory() {
+            return this.path.endsWith("/");
+        }
+
+        /**
+         * Whether the entry is encrypted.
+         * @return True if encrypted.
+         */
+        public boolean encrypted() {
+            return (this.flags & CentralDirectory.Entry.ENCRYPTED) != 0;
+        }
+
+        /**
+         * Compression method.
+         * @return Zero if stored, eight if deflated.
+         */
+        public int method() {
+            return this.compression;
+        }
+
+        /**
+         * CRC-32 of the uncompressed data.
+         * @return Checksum.
+         */
+        public long crc() {
+            return this.checksum;
+        }
+
+        /**
+         * Compressed size.
+         * @return Bytes.
+         */
+        public long compressed() {
+            return this.packed;
+        }
+
+        /**
+         * Uncompressed size.
+         * @return Bytes.
+         */
+        public long size() {
+            return this.length;
+        }
+
+        /**
+         * Position of the local header.
+         * @return Position in the archive.
+         */
+        public long offset() {
+            return this.local;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Line;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compressed chunk of consecutive log lines.
+ *
+ * <p>The number of lines is written first, then each line as its UTF-8
+ * length followed by its bytes, all deflated with the fastest level.
+ * Repetitive build output shrinks several times even so.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+final class Chunk {
+    /**
+     * Sequence number of the first line.
+     */
+    private final transient long first;
+    /**
+     * Message lines.
+     */
+    private final transient List<String> lines;
+
+    /**
+     * Class constructor.
+     * @param start Sequence number of the first line.
+     * @param texts Message lines.
+     */
+    Chunk(final long start, final List<String> texts) {
+        this.first = start;
+        this.lines = texts;
+    }
+
+    /**
+     * Chunk of the compressed lines.
+     * @param start Sequence number of the first line.
+     * @param body Compressed lines.
+     * @return Chunk.
+     */
+    public static Chunk unpacked(final long start, final byte[] body) {
+        final List<String> texts = new ArrayList<>(0);
+        try (DataInputStream input = new DataInputStream(
+            new InflaterInputStream(new ByteArrayInputStream(body))
+        )) {
+            final int count = input.readInt();
+            for (int idx = 0; idx < count; ++idx) {
+                final byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                texts.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return new Chunk(start, texts);
+    }
+
+    /**
+     * Compressed lines.
+     * @return Bytes.
+     */
+    public byte[] packed() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream output = new DataOutputStream(
+            new DeflaterOutputStream(bytes, deflater)
+        )) {
+            output.writeInt(this.lines.size());
+            for (final String line : this.lines) {
+                final byte[] text = line.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(text.length);
+                output.write(text);
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Sequence number of the first line.
+     * @return Sequence number.
+     */
+    public long first() {
+        return this.first;
+    }
+
+    /**
+     * Sequence number of the last line.
+     * @return Sequence number.
+     */
+    public long last() {
+        return this.first + this.lines.size() - 1L;
+    }
+
+    /**
+     * Read the lines of the chunk.
+     * @param after Sequence number after which lines are read.
+     * @param limit Maximal number of lines.
+     * @param reader Reader of the lines.
+     * @return Number of lines read.
+     */
+    public int read(final long after, final int limit,
+        final Consumer<Line> reader) {
+        int count = 0;
+        long seq = Math.max(after + 1L, this.first);
+        while (count < limit && seq <= this.last()) {
+            reader.accept(
+                new Line(seq, this.lines.get((int) (seq - this.first)))
+            );
+            seq += 1L;
+            count += 1;
+        }
+        return count;
+    }
+}
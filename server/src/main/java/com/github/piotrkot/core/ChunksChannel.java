@@ -0,0 +1,152 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.List;
+
+/**
+ * Read-only channel over buffers of equal size filled one after another.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+final class ChunksChannel implements SeekableByteChannel {
+    /**
+     * Filled buffers.
+     */
+    private final transient List<ByteBuffer> chunks;
+    /**
+     * Size of a buffer.
+     */
+    private final transient int chunk;
+    /**
+     * Size of the content.
+     */
+    private final transient long length;
+    /**
+     * Current position.
+     */
+    private transient long pos;
+    /**
+     * Whether the channel is open.
+     */
+    private transient boolean open;
+
+    /**
+     * Class constructor.
+     * @param buffers Filled buffers, all full but the last one.
+     * @param capacity Size of a buffer.
+     * @param size Size of the content.
+     */
+    ChunksChannel(final List<ByteBuffer> buffers, final int capacity,
+        final long size) {
+        this.chunks = buffers;
+        this.chunk = capacity;
+        this.length = size;
+        this.open = true;
+    }
+
+    @Override
+    public int read(final ByteBuffer dst) throws ClosedChannelException {
+        this.ensureOpen();
+        int read = -1;
+        if (this.pos < this.length) {
+            read = 0;
+            while (dst.hasRemaining() && this.pos < this.length) {
+                final int offset = (int) (this.pos % this.chunk);
+                final int count = (int) Math.min(
+                    Math.min(this.chunk - offset, dst.remaining()),
+                    this.length - this.pos
+                );
+                final ByteBuffer src = this.chunks.get(
+                    (int) (this.pos / this.chunk)
+                ).duplicate();
+                src.limit(offset + count);
+                src.position(offset);
+                dst.put(src);
+                this.pos += count;
+                read += count;
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public int write(final ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws ClosedChannelException {
+        this.ensureOpen();
+        return this.pos;
+    }
+
+    @Override
+    public SeekableByteChannel position(final long position)
+        throws ClosedChannelException {
+        this.ensureOpen();
+        if (position < 0L) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        this.pos = position;
+        return this;
+    }
+
+    @Override
+    public long size() throws ClosedChannelException {
+        this.ensureOpen();
+        return this.length;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(final long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    @Override
+    public void close() {
+        this.open = false;
+    }
+
+    /**
+     * Fail unless open.
+     * @throws ClosedChannelException If closed.
+     */
+    private void ensureOpen() throws ClosedChannelException {
+        if (!this.open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Contents of an uploaded archive known from its central directory.
+ *
+ * <p>Scanned before the build is queued, so that archives which cannot be
+ * built are rejected right away, and the POM files are known without
+ * walking the extracted tree.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class Contents {
+    /**
+     * Name of the POM file.
+     */
+    private static final String POM = "pom.xml";
+    /**
+     * All entries.
+     */
+    private final transient List<CentralDirectory.Entry> all;
+    /**
+     * Number of entries.
+     */
+    private final transient int entries;
+    /**
+     * Uncompressed size of all entries.
+     */
+    private final transient long bytes;
+    /**
+     * Paths of POM files, shallowest first.
+     */
+    private final transient List<String> poms;
+
+    /**
+     * Class constructor.
+     * @param upload Uploaded archive.
+     * @throws IOException If not a readable zip archive.
+     */
+    public Contents(final InputStreamCache upload) throws IOException {
+        this(upload, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * <p>Entries of archives with more of them than allowed are not read,
+     * such archives only tell their number.
+     *
+     * @param upload Uploaded archive.
+     * @param max Maximal number of entries read.
+     * @throws IOException If not a readable zip archive.
+     */
+    public Contents(final InputStreamCache upload, final int max)
+        throws IOException {
+        try (SeekableByteChannel channel = upload.channel()) {
+            final CentralDirectory dir = new CentralDirectory(channel);
+            this.entries = (int) dir.count();
+            if (this.entries > max) {
+                this.all = Collections.emptyList();
+            } else {
+                this.all = Collections.unmodifiableList(dir.entries());
+            }
+        }
+        this.bytes = this.all.stream()
+            .mapToLong(CentralDirectory.Entry::size)
+            .sum();
+        this.poms = Collections.unmodifiableList(
+            this.all.stream()
+                .filter(entry -> !entry.directory())
+                .map(CentralDirectory.Entry::name)
+                .filter(
+                    name -> Contents.POM.equals(name)
+                        || name.endsWith(String.format("/%s", Contents.POM))
+                )
+                .sorted(
+                    Comparator.comparingInt(Contents::depth)
+                        .thenComparing(Comparator.naturalOrder())
+                )
+                .collect(Collectors.toList())
+        );
+    }
+
+    /**
+     * All entries.
+     * @return Entries in the order of the central directory.
+     */
+    public List<CentralDirectory.Entry> entries() {
+        return this.all;
+    }
+
+    /**
+     * Number of entries.
+     * @return Entries including directories.
+     */
+    public int count() {
+        return this.entries;
+    }
+
+    /**
+     * Uncompressed size of all entries.
+     * @return Bytes as declared in the central directory.
+     */
+    public long size() {
+        return this.bytes;
+    }
+
+    /**
+     * Paths of all POM files.
+     * @return Paths relative to the archive root, shallowest first.
+     */
+    public List<String> poms() {
+        return this.poms;
+    }
+
+    /**
+     * POM file of the top project.
+     * @return Path relative to the archive root, empty if there is no POM.
+     */
+    public Optional<String> pom() {
+        return this.poms.stream().findFirst();
+    }
+
+    /**
+     * Depth of the path.
+     * @param name Path in the archive.
+     * @return Number of directories above.
+     */
+    private static int depth(final String name) {
+        return (int) name.chars().filter(chr -> chr == '/').count();
+    }
+}
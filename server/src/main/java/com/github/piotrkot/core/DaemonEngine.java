@@ -0,0 +1,219 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Engine;
+import io.dropwizard.lifecycle.Managed;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.MavenInvocationException;
+
+/**
+ * Engine running builds on warm Maven daemons.
+ *
+ * <p>Builds are executed through the mvnd client, which hands them to
+ * long-lived daemons keeping Maven loaded and plugin realms cached between
+ * builds. Daemons are warmed up on start, one per worker. When the client
+ * cannot be executed, builds fall back to the given engine.
+ *
+ * <p>Killing the client does not stop the build already handed to the
+ * daemon. Each daemon is therefore kept in its own registry, a slot taken
+ * by one build at a time, and the daemon of an interrupted build is stopped
+ * so that a cancelled or timed out build does not go on in the background.
+ * The next build in the slot starts a fresh daemon.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class DaemonEngine implements Engine, Managed {
+    /**
+     * Property of the mvnd client with the daemon registry directory.
+     */
+    private static final String STORAGE = "mvnd.daemonStorage";
+    /**
+     * Launcher of the daemon client.
+     */
+    private final transient Launcher client;
+    /**
+     * Number of daemons to warm up.
+     */
+    private final transient int size;
+    /**
+     * Engine used when daemons are not available.
+     */
+    private final transient Engine fallback;
+    /**
+     * Whether daemons are available.
+     */
+    private final transient AtomicBoolean available;
+    /**
+     * Registry directories of the daemons not running a build.
+     */
+    private final transient BlockingQueue<Path> slots;
+
+    /**
+     * Class constructor.
+     * @param executable Maven daemon client executable.
+     * @param daemons Number of daemons to warm up.
+     * @param grace Milliseconds killed builds have to terminate gracefully.
+     * @param backup Engine used when daemons are not available.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    public DaemonEngine(final File executable, final int daemons,
+        final long grace, final Engine backup) {
+        this.client = new Launcher(Optional.of(executable), grace);
+        this.size = daemons;
+        this.fallback = backup;
+        this.available = new AtomicBoolean(true);
+        this.slots = new ArrayBlockingQueue<>(daemons);
+    }
+
+    @Override
+    public void start() throws IOException {
+        final Path storage = Files.createTempDirectory("mvnd");
+        final ExecutorService warmup = Executors.newFixedThreadPool(this.size);
+        for (int daemon = 0; daemon < this.size; daemon += 1) {
+            final Path slot = Files.createDirectory(
+                storage.resolve(String.valueOf(daemon))
+            );
+            this.slots.add(slot);
+            warmup.execute(() -> this.command("--version", slot));
+        }
+        warmup.shutdown();
+    }
+
+    @Override
+    public void stop() {
+        this.slots.forEach(slot -> this.command("--stop", slot));
+    }
+
+    @Override
+    public InvocationResult execute(final InvocationRequest request,
+        final InvocationOutputHandler handler)
+        throws MavenInvocationException {
+        InvocationResult result = null;
+        if (this.available.get()) {
+            result = this.daemon(request, handler);
+            if (result.getExecutionException() != null) {
+                log.warn(
+                    "Maven daemon failed, falling back",
+                    result.getExecutionException()
+                );
+                result = null;
+            }
+        }
+        if (result == null) {
+            result = this.fallback.execute(request, handler);
+        }
+        return result;
+    }
+
+    /**
+     * Execute the build on a daemon of a free slot, stopping the daemon if
+     * the build is interrupted.
+     * @param request Invocation request.
+     * @param handler Handler of output and error lines.
+     * @return Result of the build.
+     * @throws MavenInvocationException If the build cannot be configured or
+     *  was interrupted.
+     */
+    private InvocationResult daemon(final InvocationRequest request,
+        final InvocationOutputHandler handler)
+        throws MavenInvocationException {
+        final Path slot;
+        try {
+            slot = this.slots.take();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MavenInvocationException(
+                "Build interrupted waiting for a Maven daemon", ex
+            );
+        }
+        final Properties original = request.getProperties();
+        final Properties props = new Properties();
+        if (original != null) {
+            props.putAll(original);
+        }
+        props.setProperty(DaemonEngine.STORAGE, slot.toString());
+        request.setProperties(props);
+        try {
+            return this.client.execute(request, handler);
+        } catch (final MavenInvocationException ex) {
+            if (Thread.interrupted()) {
+                log.info("Stopping Maven daemon of interrupted build");
+                this.command("--stop", slot);
+                Thread.currentThread().interrupt();
+            }
+            throw ex;
+        } finally {
+            request.setProperties(original);
+            this.slots.add(slot);
+        }
+    }
+
+    /**
+     * Run the daemon client command, disabling daemons if it cannot be run.
+     * @param option Client option.
+     * @param slot Registry directory of the daemon.
+     */
+    private void command(final String option, final Path slot) {
+        final InvocationRequest request = new DefaultInvocationRequest();
+        request.setGoals(Collections.singletonList(option));
+        final Properties props = new Properties();
+        props.setProperty(DaemonEngine.STORAGE, slot.toString());
+        request.setProperties(props);
+        try {
+            final InvocationResult result = this.client.execute(
+                request, line -> log.debug("mvnd: {}", line)
+            );
+            if (result.getExecutionException() != null
+                || result.getExitCode() != 0) {
+                this.available.set(false);
+                log.warn(
+                    "Maven daemon client not usable, using fallback engine"
+                );
+            }
+        } catch (final MavenInvocationException ex) {
+            this.available.set(false);
+            log.warn("Maven daemon client failed", ex);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Event;
+import com.github.piotrkot.api.Job;
+import com.github.piotrkot.api.PersistentJobs;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.PreparedBatch;
+
+/**
+ * Build jobs in the DB.
+ *
+ * <p>Every job is a row of the jobs table, updated by primary key on each
+ * transition. Events found in the build output are rows of the events
+ * table, written at once when the build finishes.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class DbJobs implements PersistentJobs {
+    /**
+     * DBI access.
+     */
+    private final transient DBI dbi;
+
+    /**
+     * Class constructor.
+     * @param dbaccess DBI access.
+     */
+    public DbJobs(final DBI dbaccess) {
+        this.dbi = dbaccess;
+    }
+
+    @Override
+    public void insert(final Job job) {
+        this.dbi.withHandle(
+            han -> han.insert(
+                String.join(
+                    " ",
+                    "INSERT INTO jobs (id, username, status, stage, created)",
+                    "VALUES (?, ?, ?, ?, ?)"
+                ),
+                job.getId(), job.getUser(), job.getStatus().name(),
+                job.getStage().name(), new Timestamp(job.getCreated())
+            )
+        );
+    }
+
+    @Override
+    public void update(final Job job) {
+        this.dbi.withHandle(
+            han -> han.update(
+                String.join(
+                    " ",
+                    "UPDATE jobs SET status = ?, stage = ?, started = ?,",
+                    "finished = ?, exit = ? WHERE id = ?"
+                ),
+                job.getStatus().name(), job.getStage().name(),
+                DbJobs.time(job.getStarted()), DbJobs.time(job.getFinished()),
+                job.getExit(), job.getId()
+            )
+        );
+    }
+
+    @Override
+    public void record(final long id, final List<Event> events) {
+        this.dbi.withHandle(
+            han -> {
+                final PreparedBatch insert = han.prepareBatch(
+                    String.join(
+                        " ",
+                        "INSERT INTO events (job, seq, kind, module, text,",
+                        "file, line, run, failures, errors, skipped)",
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+                    )
+                );
+                for (final Event event : events) {
+                    final Optional<Event.Tests> tests =
+                        Optional.ofNullable(event.getTests());
+                    insert.add(
+                        id, event.getSeq(), event.getKind().name(),
+                        event.getModule(), event.getText(),
+                        event.getFile(), event.getLine(),
+                        tests.map(Event.Tests::getRun).orElse(null),
+                        tests.map(Event.Tests::getFailures).orElse(null),
+                        tests.map(Event.Tests::getErrors).orElse(null),
+                        tests.map(Event.Tests::getSkipped).orElse(null)
+                    );
+                }
+                return insert.execute();
+            }
+        );
+    }
+
+    @Override
+    public List<Event> events(final long id) {
+        return this.dbi.withHandle(
+            han -> han.createQuery(
+                String.join(
+                    " ",
+                    "SELECT seq, kind, module, text, file, line, run,",
+                    "failures, errors, skipped FROM events WHERE job = :j",
+                    "ORDER BY seq"
+                )
+            ).bind("j", id).map(
+                (index, rset, ctx) -> DbJobs.event(rset)
+            ).list()
+        );
+    }
+
+    @Override
+    public Optional<Job> find(final long id) {
+        return Optional.ofNullable(
+            this.dbi.withHandle(
+                han -> han.createQuery(
+                    String.join(
+                        " ",
+                        "SELECT id, username, status, stage, created,",
+                        "started, finished, exit FROM jobs WHERE id = :i"
+                    )
+                ).bind("i", id).map(
+                    (index, rset, ctx) -> DbJobs.job(rset)
+                ).first()
+            )
+        );
+    }
+
+    /**
+     * Job of the row.
+     * @param rset Result set at the row.
+     * @return Job.
+     * @throws SQLException If fails.
+     */
+    private static Job job(final ResultSet rset) throws SQLException {
+        final Integer exit = (Integer) rset.getObject(8);
+        return new Job(
+            rset.getLong(1), rset.getString(2),
+            Job.Status.valueOf(rset.getString(3)),
+            Job.Stage.valueOf(rset.getString(4)),
+            rset.getTimestamp(5).getTime(), DbJobs.millis(rset.getTimestamp(6)),
+            DbJobs.millis(rset.getTimestamp(7)), exit
+        );
+    }
+
+    /**
+     * Build event of the row.
+     * @param rset Result set at the row.
+     * @return Event.
+     * @throws SQLException If fails.
+     */
+    private static Event event(final ResultSet rset) throws SQLException {
+        Event.Tests tests = null;
+        if (rset.getObject(7) != null) {
+            tests = new Event.Tests(
+                rset.getInt(7), rset.getInt(8), rset.getInt(9), rset.getInt(10)
+            );
+        }
+        return new Event(
+            rset.getLong(1), Event.Kind.valueOf(rset.getString(2)),
+            rset.getString(3), rset.getString(4), rset.getString(5),
+            (Integer) rset.getObject(6), tests
+        );
+    }
+
+    /**
+     * Timestamp of the time.
+     * @param millis Milliseconds, null if not reached.
+     * @return Timestamp, null if not reached.
+     */
+    private static Timestamp time(final Long millis) {
+        Timestamp time = null;
+        if (millis != null) {
+            time = new Timestamp(millis);
+        }
+        return time;
+    }
+
+    /**
+     * Time of the timestamp.
+     * @param time Timestamp, null if not reached.
+     * @return Milliseconds, null if not reached.
+     */
+    private static Long millis(final Timestamp time) {
+        Long millis = null;
+        if (time != null) {
+            millis = time.getTime();
+        }
+        return millis;
+    }
+}
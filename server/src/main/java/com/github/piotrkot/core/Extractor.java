@@ -0,0 +1,355 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.io.ByteStreams;
+import io.dropwizard.lifecycle.Managed;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Parallel extraction of zip archives.
+ *
+ * <p>The central directory is read once, all directories are created up
+ * front, then the entries are inflated by a number of tasks of the shared
+ * fork-join pool. The tasks take the entries in the order of the archive,
+ * each reading with its own channel, so at most the configured parallelism,
+ * the same for all jobs, of them run for one archive. The tasks stop taking
+ * entries once one of them fails or the thread which requested the
+ * extraction is interrupted, and the extraction returns only when all of
+ * them have stopped. Entries are inflated up to their declared size and
+ * their checksums are verified, names must be unique.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class Extractor implements Managed {
+    /**
+     * Compression method of stored entries.
+     */
+    private static final int STORED = 0;
+    /**
+     * Compression method of deflated entries.
+     */
+    private static final int DEFLATED = 8;
+    /**
+     * Size of the inflater buffer.
+     */
+    private static final int BUFFER = 8192;
+    /**
+     * Pool inflating the entries.
+     */
+    private final transient ForkJoinPool pool;
+    /**
+     * Maximal number of tasks extracting one archive.
+     */
+    private final transient int parallelism;
+    /**
+     * Time of extraction.
+     */
+    private final transient Timer time;
+
+    /**
+     * Class constructor.
+     * @param threads Number of threads of the pool.
+     * @param tasks Maximal number of tasks extracting any archive.
+     * @param metrics Metrics registry.
+     */
+    public Extractor(final int threads, final int tasks,
+        final MetricRegistry metrics) {
+        this.pool = new ForkJoinPool(threads);
+        this.parallelism = tasks;
+        this.time = metrics.timer(MetricRegistry.name(Extractor.class, "time"));
+    }
+
+    @Override
+    public void start() {
+        // pool threads start on demand
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        this.pool.shutdown();
+        this.pool.awaitTermination(1L, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Extract the archive into the directory.
+     * @param archive Channels reading the archive, one per call.
+     * @param dir Target directory.
+     * @return Number of extracted entries.
+     * @throws IOException If the archive is invalid, writing fails or the
+     *  calling thread is interrupted.
+     */
+    public int extract(final Supplier<SeekableByteChannel> archive,
+        final Path dir) throws IOException {
+        final Timer.Context timer = this.time.time();
+        try {
+            final List<CentralDirectory.Entry> entries;
+            try (SeekableByteChannel channel = archive.get()) {
+                entries = new CentralDirectory(channel).entries();
+            }
+            final List<CentralDirectory.Entry> files =
+                Extractor.prepare(entries, dir);
+            files.sort(
+                Comparator.comparingLong(CentralDirectory.Entry::offset)
+            );
+            final AtomicInteger next = new AtomicInteger();
+            final Thread caller = Thread.currentThread();
+            final Collection<ForkJoinTask<Void>> tasks = new ArrayList<>(0);
+            final int count = Math.max(
+                1, Math.min(this.parallelism, files.size())
+            );
+            for (int task = 0; task < count; ++task) {
+                tasks.add(
+                    this.pool.submit(
+                        (Callable<Void>) () -> {
+                            try {
+                                Extractor.inflate(
+                                    archive, files, next, dir, caller
+                                );
+                            } catch (final IOException ex) {
+                                next.set(files.size());
+                                throw ex;
+                            }
+                            return null;
+                        }
+                    )
+                );
+            }
+            try {
+                for (final Future<Void> done : tasks) {
+                    Extractor.join(done);
+                }
+            } finally {
+                next.set(files.size());
+                for (final ForkJoinTask<Void> task : tasks) {
+                    task.quietlyJoin();
+                }
+            }
+            return files.size();
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Create the directories and select the file entries.
+     * @param entries All entries.
+     * @param dir Target directory.
+     * @return File entries.
+     * @throws IOException If an entry is not supported or points outside
+     *  the target directory.
+     */
+    private static List<CentralDirectory.Entry> prepare(
+        final List<CentralDirectory.Entry> entries, final Path dir)
+        throws IOException {
+        final SortedSet<Path> dirs = new TreeSet<>();
+        final Set<Path> targets = new HashSet<>(0);
+        final List<CentralDirectory.Entry> files = new ArrayList<>(0);
+        for (final CentralDirectory.Entry entry : entries) {
+            final Path target = Extractor.target(dir, entry);
+            if (!targets.add(target)) {
+                throw new ZipException(
+                    String.format("Entry %s duplicated", entry.name())
+                );
+            }
+            if (entry.directory()) {
+                dirs.add(target);
+            } else {
+                if (entry.encrypted()) {
+                    throw new ZipException(
+                        String.format("Entry %s encrypted", entry.name())
+                    );
+                }
+                if (entry.method() != Extractor.STORED
+                    && entry.method() != Extractor.DEFLATED) {
+                    throw new ZipException(
+                        String.format(
+                            "Entry %s compressed with unsupported method %d",
+                            entry.name(), entry.method()
+                        )
+                    );
+                }
+                dirs.add(target.getParent());
+                files.add(entry);
+            }
+        }
+        for (final Path path : dirs) {
+            Files.createDirectories(path);
+        }
+        return files;
+    }
+
+    /**
+     * Inflate the next entries until none is left.
+     * @param archive Channels reading the archive.
+     * @param files File entries ordered by position.
+     * @param next Index of the next entry.
+     * @param dir Target directory.
+     * @param caller Thread which requested the extraction.
+     * @throws IOException If fails or the caller is interrupted.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    private static void inflate(final Supplier<SeekableByteChannel> archive,
+        final List<CentralDirectory.Entry> files, final AtomicInteger next,
+        final Path dir, final Thread caller) throws IOException {
+        try (SeekableByteChannel channel = archive.get()) {
+            final CentralDirectory central = new CentralDirectory(channel);
+            int idx = next.getAndIncrement();
+            while (idx < files.size()) {
+                if (caller.isInterrupted()) {
+                    next.set(files.size());
+                    throw new InterruptedIOException("Extraction interrupted");
+                }
+                final CentralDirectory.Entry entry = files.get(idx);
+                channel.position(central.data(entry));
+                Extractor.write(
+                    ByteStreams.limit(
+                        Channels.newInputStream(channel), entry.compressed()
+                    ),
+                    entry,
+                    Extractor.target(dir, entry)
+                );
+                idx = next.getAndIncrement();
+            }
+        }
+    }
+
+    /**
+     * Write the uncompressed entry, verifying its size and checksum.
+     *
+     * <p>No more than one byte over the declared size is inflated, so data
+     * larger than declared fail without filling the disk.
+     *
+     * @param data Compressed data of the entry.
+     * @param entry Entry.
+     * @param target Target file.
+     * @throws IOException If fails or the size or checksum does not match.
+     */
+    private static void write(final InputStream data,
+        final CentralDirectory.Entry entry, final Path target)
+        throws IOException {
+        final CRC32 crc = new CRC32();
+        final Inflater inflater = new Inflater(true);
+        try {
+            final InputStream raw;
+            if (entry.method() == Extractor.DEFLATED) {
+                raw = new InflaterInputStream(
+                    new SequenceInputStream(
+                        data, new ByteArrayInputStream(new byte[1])
+                    ),
+                    inflater,
+                    Extractor.BUFFER
+                );
+            } else {
+                raw = data;
+            }
+            final long size = Files.copy(
+                new CheckedInputStream(
+                    ByteStreams.limit(raw, entry.size() + 1L), crc
+                ),
+                target,
+                StandardCopyOption.REPLACE_EXISTING
+            );
+            if (size != entry.size() || crc.getValue() != entry.crc()) {
+                throw new ZipException(
+                    String.format("Entry %s corrupted", entry.name())
+                );
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Target path of the entry.
+     * @param dir Target directory.
+     * @param entry Entry.
+     * @return Path within the directory.
+     * @throws IOException If the entry points outside the directory.
+     */
+    private static Path target(final Path dir,
+        final CentralDirectory.Entry entry) throws IOException {
+        final Path target = dir.resolve(entry.name()).normalize();
+        if (!target.startsWith(dir) || target.equals(dir)
+            && !entry.directory()) {
+            throw new ZipException(
+                String.format("Entry %s outside", entry.name())
+            );
+        }
+        return target;
+    }
+
+    /**
+     * Wait for the task, rethrowing its failure.
+     * @param task Task.
+     * @throws IOException If the task failed.
+     */
+    private static void join(final Future<Void> task) throws IOException {
+        try {
+            task.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Extraction interrupted");
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+}
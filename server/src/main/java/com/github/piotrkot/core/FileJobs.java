@@ -0,0 +1,221 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.piotrkot.api.Event;
+import com.github.piotrkot.api.Job;
+import com.github.piotrkot.api.PersistentJobs;
+import io.dropwizard.lifecycle.Managed;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Build jobs in files.
+ *
+ * <p>Every job is a JSON file named after its id, replaced atomically on
+ * each transition. Events found in the build output are a JSON array next
+ * to it, written at once when the build finishes. Meant for single-node
+ * servers keeping their logs in files, so they need no DB.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class FileJobs implements PersistentJobs, Managed {
+    /**
+     * Extension of the job files.
+     */
+    private static final String JOB = ".job";
+    /**
+     * Extension of the event files.
+     */
+    private static final String EVENTS = ".events";
+    /**
+     * Directory of the job files.
+     */
+    private final transient Path root;
+    /**
+     * JSON mapper.
+     */
+    private final transient ObjectMapper mapper;
+
+    /**
+     * Class constructor.
+     * @param dir Directory of the job files.
+     * @param json JSON mapper.
+     */
+    public FileJobs(final Path dir, final ObjectMapper json) {
+        this.root = dir;
+        this.mapper = json;
+    }
+
+    @Override
+    public void start() throws IOException {
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public void stop() {
+        // files are written on each change
+    }
+
+    @Override
+    public void insert(final Job job) {
+        this.write(job.getId(), FileJobs.JOB, job);
+    }
+
+    @Override
+    public void update(final Job job) {
+        this.write(job.getId(), FileJobs.JOB, job);
+    }
+
+    @Override
+    public void record(final long id, final List<Event> events) {
+        this.write(id, FileJobs.EVENTS, events);
+    }
+
+    @Override
+    public List<Event> events(final long id) {
+        final List<Event> events = new ArrayList<>(0);
+        this.read(id, FileJobs.EVENTS).ifPresent(
+            array -> array.forEach(node -> events.add(FileJobs.event(node)))
+        );
+        return events;
+    }
+
+    @Override
+    public Optional<Job> find(final long id) {
+        return this.read(id, FileJobs.JOB).map(FileJobs::job);
+    }
+
+    /**
+     * Replace the file of the job.
+     * @param id Job id.
+     * @param extension Extension of the file.
+     * @param value Value written as JSON.
+     */
+    private void write(final long id, final String extension,
+        final Object value) {
+        try {
+            final Path temp = Files.createTempFile(this.root, null, extension);
+            try {
+                this.mapper.writeValue(temp.toFile(), value);
+                Files.move(
+                    temp, this.root.resolve(id + extension),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE
+                );
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Read the file of the job.
+     * @param id Job id.
+     * @param extension Extension of the file.
+     * @return JSON tree, empty if there is no such file.
+     */
+    private Optional<JsonNode> read(final long id, final String extension) {
+        final Path file = this.root.resolve(id + extension);
+        Optional<JsonNode> tree = Optional.empty();
+        if (Files.exists(file)) {
+            try {
+                tree = Optional.of(this.mapper.readTree(file.toFile()));
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Job of the JSON tree.
+     * @param node JSON object.
+     * @return Job.
+     */
+    private static Job job(final JsonNode node) {
+        return new Job(
+            node.get("id").asLong(), node.get("user").asText(),
+            Job.Status.valueOf(node.get("status").asText()),
+            Job.Stage.valueOf(node.get("stage").asText()),
+            node.get("created").asLong(),
+            FileJobs.field(node, "started").map(JsonNode::asLong)
+                .orElse(null),
+            FileJobs.field(node, "finished").map(JsonNode::asLong)
+                .orElse(null),
+            FileJobs.field(node, "exit").map(JsonNode::asInt).orElse(null)
+        );
+    }
+
+    /**
+     * Build event of the JSON tree.
+     * @param node JSON object.
+     * @return Event.
+     */
+    private static Event event(final JsonNode node) {
+        final Event.Tests tests = FileJobs.field(node, "tests").map(
+            counts -> new Event.Tests(
+                counts.get("run").asInt(), counts.get("failures").asInt(),
+                counts.get("errors").asInt(), counts.get("skipped").asInt()
+            )
+        ).orElse(null);
+        return new Event(
+            node.get("seq").asLong(),
+            Event.Kind.valueOf(node.get("kind").asText()),
+            FileJobs.field(node, "module").map(JsonNode::asText)
+                .orElse(null),
+            FileJobs.field(node, "text").map(JsonNode::asText).orElse(null),
+            FileJobs.field(node, "file").map(JsonNode::asText).orElse(null),
+            FileJobs.field(node, "line").map(JsonNode::asInt).orElse(null),
+            tests
+        );
+    }
+
+    /**
+     * Field of the JSON object.
+     * @param node JSON object.
+     * @param name Field name.
+     * @return Field, empty if missing or null.
+     */
+    private static Optional<JsonNode> field(final JsonNode node,
+        final String name) {
+        Optional<JsonNode> field = Optional.empty();
+        if (node.hasNonNull(name)) {
+            field = Optional.of(node.get(name));
+        }
+        return field;
+    }
+}
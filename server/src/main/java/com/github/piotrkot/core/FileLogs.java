@@ -0,0 +1,755 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.piotrkot.api.Line;
+import com.github.piotrkot.api.PersistentLogs;
+import io.dropwizard.lifecycle.Managed;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * File log messages appender for running without the DB.
+ *
+ * <p>Lines of each request are appended to segment files in a directory of
+ * the request, each segment named after the sequence number of its first
+ * line. A line is written as its UTF-8 length followed by its bytes, so its
+ * sequence number follows from its position. A sparse index next to each
+ * segment holds the sequence number and the offset of a line every few
+ * kilobytes, reads map the segment into memory and scan from the closest
+ * indexed line before the requested ones.
+ *
+ * <p>Segments of requests not appended for a while are closed. The last
+ * segment of a request appended again is scanned, dropping a partially
+ * written line, and its index is rebuilt.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class FileLogs implements PersistentLogs, Managed {
+    /**
+     * Bytes of lines between the index entries.
+     */
+    private static final long INTERVAL = 4096L;
+    /**
+     * Bytes of an index entry.
+     */
+    private static final int ENTRY = 16;
+    /**
+     * Milliseconds after which segments not appended are closed.
+     */
+    private static final long IDLE = TimeUnit.MINUTES.toMillis(1L);
+    /**
+     * Extension of the segment files.
+     */
+    private static final String SEGMENT = ".log";
+    /**
+     * Extension of the index files.
+     */
+    private static final String INDEX = ".idx";
+    /**
+     * Directory of the log files.
+     */
+    private final transient Path root;
+    /**
+     * Size of a segment in bytes after which a new one is started.
+     */
+    private final transient long segment;
+    /**
+     * Journals of the requests being appended.
+     */
+    private final transient Map<Long, FileLogs.Journal> journals;
+    /**
+     * Closer of the idle journals.
+     */
+    private final transient ScheduledExecutorService closer;
+
+    /**
+     * Class constructor.
+     * @param dir Directory of the log files.
+     * @param size Size of a segment in bytes.
+     * @param metrics Metrics registry.
+     */
+    public FileLogs(final Path dir, final long size,
+        final MetricRegistry metrics) {
+        this.root = dir;
+        this.segment = size;
+        this.journals = new ConcurrentHashMap<>(0);
+        this.closer = Executors.newSingleThreadScheduledExecutor();
+        metrics.register(
+            MetricRegistry.name(FileLogs.class, "open"),
+            (Gauge<Integer>) this.journals::size
+        );
+    }
+
+    @Override
+    public void start() throws IOException {
+        Files.createDirectories(this.root);
+        this.closer.scheduleWithFixedDelay(
+            this::closeIdle, FileLogs.IDLE, FileLogs.IDLE,
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        this.closer.shutdown();
+        this.closer.awaitTermination(1L, TimeUnit.MINUTES);
+        for (final Long request : this.journals.keySet()) {
+            this.journals.computeIfPresent(
+                request,
+                (key, journal) -> {
+                    journal.close();
+                    return null;
+                }
+            );
+        }
+    }
+
+    @Override
+    public long append(final long request, final String line) {
+        return this.append(request, Collections.singletonList(line));
+    }
+
+    @Override
+    public long append(final long request, final List<String> lines) {
+        long seq;
+        do {
+            final FileLogs.Journal journal =
+                this.journals.computeIfAbsent(request, this::open);
+            try {
+                seq = journal.append(lines);
+            } catch (final UncheckedIOException ex) {
+                this.journals.remove(request, journal);
+                throw ex;
+            }
+            if (seq < 0L) {
+                this.journals.remove(request, journal);
+            }
+        } while (seq < 0L);
+        return seq;
+    }
+
+    @Override
+    public long append(final long request, final Throwable error) {
+        return this.append(
+            request, String.format("ERROR: %s", error.getMessage())
+        );
+    }
+
+    @Override
+    public void read(final long request, final long after, final int limit,
+        final Consumer<Line> reader) {
+        final Path dir = this.dir(request);
+        final List<Long> bases = FileLogs.segments(dir);
+        int first = 0;
+        while (first + 1 < bases.size() && bases.get(first + 1) <= after + 1L) {
+            first += 1;
+        }
+        int left = limit;
+        for (int idx = first; idx < bases.size() && left > 0; ++idx) {
+            try {
+                left -= FileLogs.read(dir, bases.get(idx), after, left, reader);
+            } catch (final NoSuchFileException ex) {
+                log.debug("Segment deleted while read: {}", ex.getMessage());
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public void flush(final long request) {
+        final FileLogs.Journal journal = this.journals.get(request);
+        if (journal != null) {
+            journal.force();
+        }
+    }
+
+    @Override
+    public long last(final long request) {
+        final FileLogs.Journal journal = this.journals.get(request);
+        final long last;
+        if (journal == null) {
+            final Path dir = this.dir(request);
+            final List<Long> bases = FileLogs.segments(dir);
+            if (bases.isEmpty()) {
+                last = 0L;
+            } else {
+                try {
+                    last = FileLogs.tail(dir, bases.get(bases.size() - 1));
+                } catch (final IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        } else {
+            last = journal.last();
+        }
+        return last;
+    }
+
+    @Override
+    public long delete(final long request) {
+        final AtomicLong deleted = new AtomicLong();
+        this.journals.compute(
+            request,
+            (key, journal) -> {
+                final Path dir = this.dir(key);
+                if (journal != null) {
+                    journal.close();
+                }
+                if (Files.isDirectory(dir)) {
+                    final FileLogs.Journal last = this.open(key);
+                    last.close();
+                    deleted.set(last.count());
+                    FileLogs.delete(dir);
+                }
+                return null;
+            }
+        );
+        return deleted.get();
+    }
+
+    /**
+     * Open the journal of the request.
+     * @param request Client request.
+     * @return Journal.
+     */
+    private FileLogs.Journal open(final long request) {
+        try {
+            return new FileLogs.Journal(this.dir(request), this.segment);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Directory of the request.
+     * @param request Client request.
+     * @return Directory.
+     */
+    private Path dir(final long request) {
+        return this.root.resolve(Long.toString(request));
+    }
+
+    /**
+     * Close the journals not appended for a while.
+     */
+    private void closeIdle() {
+        final long cutoff = System.currentTimeMillis() - FileLogs.IDLE;
+        for (final Long request : this.journals.keySet()) {
+            this.journals.computeIfPresent(
+                request,
+                (key, journal) -> {
+                    FileLogs.Journal kept = journal;
+                    if (journal.idle(cutoff)) {
+                        journal.close();
+                        kept = null;
+                    }
+                    return kept;
+                }
+            );
+        }
+    }
+
+    /**
+     * Read the lines of the segment.
+     * @param dir Directory of the request.
+     * @param base Sequence number of the first line of the segment.
+     * @param after Sequence number after which lines are read.
+     * @param limit Maximal number of lines.
+     * @param reader Reader of the lines.
+     * @return Number of lines read.
+     * @throws IOException If reading fails.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    private static int read(final Path dir, final long base, final long after,
+        final int limit, final Consumer<Line> reader) throws IOException {
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(
+            dir.resolve(FileLogs.name(base, FileLogs.SEGMENT)),
+            StandardOpenOption.READ
+        )) {
+            final MappedByteBuffer buffer = channel.map(
+                FileChannel.MapMode.READ_ONLY, 0L, channel.size()
+            );
+            long seq = base;
+            if (after >= base) {
+                final long[] entry = FileLogs.entry(dir, base, after + 1L);
+                seq = entry[0];
+                buffer.position((int) Math.min(entry[1], buffer.limit()));
+            }
+            while (count < limit && FileLogs.complete(buffer)) {
+                final byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                if (seq > after) {
+                    reader.accept(
+                        new Line(seq, new String(bytes, StandardCharsets.UTF_8))
+                    );
+                    count += 1;
+                }
+                seq += 1L;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sequence number of the last complete line of the segment.
+     * @param dir Directory of the request.
+     * @param base Sequence number of the first line of the segment.
+     * @return Sequence number, one less than the base if it has no lines.
+     * @throws IOException If reading fails.
+     */
+    private static long tail(final Path dir, final long base)
+        throws IOException {
+        final long[] entry = FileLogs.entry(dir, base, Long.MAX_VALUE);
+        long seq = entry[0] - 1L;
+        try (FileChannel channel = FileChannel.open(
+            dir.resolve(FileLogs.name(base, FileLogs.SEGMENT)),
+            StandardOpenOption.READ
+        )) {
+            final MappedByteBuffer buffer = channel.map(
+                FileChannel.MapMode.READ_ONLY, 0L, channel.size()
+            );
+            buffer.position((int) Math.min(entry[1], buffer.limit()));
+            while (FileLogs.complete(buffer)) {
+                final int length = buffer.getInt();
+                buffer.position(buffer.position() + length);
+                seq += 1L;
+            }
+        }
+        return seq;
+    }
+
+    /**
+     * Closest index entry of the segment not after the sequence number.
+     * @param dir Directory of the request.
+     * @param base Sequence number of the first line of the segment.
+     * @param seq Sequence number looked up.
+     * @return Sequence number and offset of the indexed line.
+     * @throws IOException If reading fails.
+     */
+    private static long[] entry(final Path dir, final long base,
+        final long seq) throws IOException {
+        final long[] entry = {base, 0L};
+        final Path index = dir.resolve(FileLogs.name(base, FileLogs.INDEX));
+        if (Files.exists(index)) {
+            try (FileChannel channel = FileChannel.open(
+                index, StandardOpenOption.READ
+            )) {
+                final MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0L, channel.size()
+                );
+                int low = 0;
+                int high = buffer.limit() / FileLogs.ENTRY - 1;
+                while (low <= high) {
+                    final int mid = (low + high) >>> 1;
+                    final long indexed = buffer.getLong(mid * FileLogs.ENTRY);
+                    if (indexed <= seq) {
+                        entry[0] = indexed;
+                        entry[1] = buffer.getLong(mid * FileLogs.ENTRY + 8);
+                        low = mid + 1;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Whether the buffer has a complete line at its position.
+     * @param buffer Segment buffer.
+     * @return True if complete.
+     */
+    private static boolean complete(final ByteBuffer buffer) {
+        final boolean complete;
+        if (buffer.remaining() < Integer.BYTES) {
+            complete = false;
+        } else {
+            final int length = buffer.getInt(buffer.position());
+            complete = length >= 0
+                && buffer.remaining() - Integer.BYTES >= length;
+        }
+        return complete;
+    }
+
+    /**
+     * Sequence numbers of the first lines of the request segments.
+     * @param dir Directory of the request.
+     * @return Sequence numbers in order.
+     */
+    private static List<Long> segments(final Path dir) {
+        final List<Long> bases = new ArrayList<>(0);
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                dir, String.format("*%s", FileLogs.SEGMENT)
+            )) {
+                for (final Path file : files) {
+                    final String name = file.getFileName().toString();
+                    bases.add(
+                        Long.parseLong(
+                            name.substring(
+                                0, name.length() - FileLogs.SEGMENT.length()
+                            )
+                        )
+                    );
+                }
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        Collections.sort(bases);
+        return bases;
+    }
+
+    /**
+     * Name of the segment file.
+     * @param base Sequence number of the first line of the segment.
+     * @param extension File extension.
+     * @return File name.
+     */
+    private static String name(final long base, final String extension) {
+        return String.format("%019d%s", base, extension);
+    }
+
+    /**
+     * Delete the directory of the request.
+     * @param dir Directory of the request.
+     */
+    private static void delete(final Path dir) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (final Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        } catch (final IOException ex) {
+            log.warn("Could not delete {}", dir, ex);
+        }
+    }
+
+    /**
+     * Open last segment of a request with its index.
+     *
+     * <p>A journal failing to write is closed, so the request is recovered
+     * from its files when appended again.
+     */
+    private static final class Journal {
+        /**
+         * Directory of the request.
+         */
+        private final transient Path dir;
+        /**
+         * Size of a segment in bytes.
+         */
+        private final transient long limit;
+        /**
+         * Lines of the segment.
+         */
+        private transient FileChannel lines;
+        /**
+         * Index of the segment.
+         */
+        private transient FileChannel index;
+        /**
+         * Sequence number of the first line of the request.
+         */
+        private transient long first;
+        /**
+         * Last sequence number.
+         */
+        private transient long seq;
+        /**
+         * Size of the segment in bytes.
+         */
+        private transient long size;
+        /**
+         * Offset from which the next line is indexed.
+         */
+        private transient long mark;
+        /**
+         * Time of the last append.
+         */
+        private transient long touched;
+        /**
+         * Whether the journal is closed for new lines.
+         */
+        private transient boolean closed;
+
+        /**
+         * Class constructor.
+         * @param path Directory of the request.
+         * @param max Size of a segment in bytes.
+         * @throws IOException If the last segment cannot be recovered.
+         */
+        Journal(final Path path, final long max) throws IOException {
+            this.dir = path;
+            this.limit = max;
+            this.touched = System.currentTimeMillis();
+            Files.createDirectories(path);
+            final List<Long> bases = FileLogs.segments(path);
+            if (bases.isEmpty()) {
+                this.first = 1L;
+                this.roll(1L);
+            } else {
+                this.first = bases.get(0);
+                this.recover(bases.get(bases.size() - 1));
+            }
+        }
+
+        /**
+         * Append the lines.
+         * @param texts Message lines.
+         * @return Sequence number of the last line, negative if the lines
+         *  were not appended because the journal is closed.
+         */
+        public synchronized long append(final List<String> texts) {
+            long number = -1L;
+            if (!this.closed) {
+                try {
+                    this.write(texts);
+                } catch (final IOException ex) {
+                    this.close();
+                    throw new UncheckedIOException(ex);
+                }
+                this.touched = System.currentTimeMillis();
+                number = this.seq;
+            }
+            return number;
+        }
+
+        /**
+         * Last sequence number.
+         * @return Sequence number.
+         */
+        public synchronized long last() {
+            return this.seq;
+        }
+
+        /**
+         * Number of lines of the request.
+         * @return Number of lines.
+         */
+        public synchronized long count() {
+            return this.seq - this.first + 1L;
+        }
+
+        /**
+         * Whether the journal was not appended since the time.
+         * @param cutoff Time in milliseconds.
+         * @return True if idle.
+         */
+        public synchronized boolean idle(final long cutoff) {
+            return this.touched < cutoff;
+        }
+
+        /**
+         * Write the appended lines to the disk.
+         */
+        public synchronized void force() {
+            if (!this.closed) {
+                try {
+                    this.lines.force(false);
+                    this.index.force(false);
+                } catch (final IOException ex) {
+                    log.warn("Could not force {}", this.dir, ex);
+                }
+            }
+        }
+
+        /**
+         * Close the journal.
+         */
+        public synchronized void close() {
+            this.closed = true;
+            try {
+                this.release();
+            } catch (final IOException ex) {
+                log.warn("Could not close {}", this.dir, ex);
+            }
+        }
+
+        /**
+         * Write the lines, starting new segments when full.
+         * @param texts Message lines.
+         * @throws IOException If writing fails.
+         */
+        private void write(final List<String> texts) throws IOException {
+            final ByteArrayOutputStream records = new ByteArrayOutputStream();
+            final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            final DataOutputStream record = new DataOutputStream(records);
+            final DataOutputStream entry = new DataOutputStream(entries);
+            for (final String text : texts) {
+                if (this.size >= this.limit) {
+                    this.flush(records, entries);
+                    this.roll(this.seq + 1L);
+                }
+                if (this.size >= this.mark) {
+                    entry.writeLong(this.seq + 1L);
+                    entry.writeLong(this.size);
+                    this.mark = (this.size / FileLogs.INTERVAL + 1L)
+                        * FileLogs.INTERVAL;
+                }
+                final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                record.writeInt(bytes.length);
+                record.write(bytes);
+                this.size += Integer.BYTES + bytes.length;
+                this.seq += 1L;
+            }
+            this.flush(records, entries);
+        }
+
+        /**
+         * Write the encoded lines and then their index entries.
+         * @param records Encoded lines.
+         * @param entries Encoded index entries.
+         * @throws IOException If writing fails.
+         */
+        private void flush(final ByteArrayOutputStream records,
+            final ByteArrayOutputStream entries) throws IOException {
+            Journal.write(this.lines, records);
+            Journal.write(this.index, entries);
+        }
+
+        /**
+         * Start a new segment.
+         * @param base Sequence number of its first line.
+         * @throws IOException If the segment cannot be created.
+         */
+        private void roll(final long base) throws IOException {
+            this.release();
+            this.lines = Journal.open(
+                this.dir.resolve(FileLogs.name(base, FileLogs.SEGMENT))
+            );
+            this.index = Journal.open(
+                this.dir.resolve(FileLogs.name(base, FileLogs.INDEX))
+            );
+            this.seq = base - 1L;
+            this.size = 0L;
+            this.mark = 0L;
+        }
+
+        /**
+         * Reopen the last segment, truncating a partially written line and
+         * rebuilding the index.
+         * @param base Sequence number of its first line.
+         * @throws IOException If the segment cannot be recovered.
+         */
+        private void recover(final long base) throws IOException {
+            this.roll(base);
+            final ByteBuffer buffer = this.lines.map(
+                FileChannel.MapMode.READ_ONLY, 0L, this.lines.size()
+            );
+            final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            final DataOutputStream entry = new DataOutputStream(entries);
+            while (FileLogs.complete(buffer)) {
+                if (this.size >= this.mark) {
+                    entry.writeLong(this.seq + 1L);
+                    entry.writeLong(this.size);
+                    this.mark = (this.size / FileLogs.INTERVAL + 1L)
+                        * FileLogs.INTERVAL;
+                }
+                final int length = buffer.getInt();
+                buffer.position(buffer.position() + length);
+                this.size += Integer.BYTES + length;
+                this.seq += 1L;
+            }
+            this.lines.truncate(this.size);
+            this.lines.position(this.size);
+            this.index.truncate(0L);
+            Journal.write(this.index, entries);
+        }
+
+        /**
+         * Close the channels of the segment.
+         * @throws IOException If closing fails.
+         */
+        private void release() throws IOException {
+            if (this.lines != null) {
+                this.lines.close();
+            }
+            if (this.index != null) {
+                this.index.close();
+            }
+        }
+
+        /**
+         * Open the file for writing at its end.
+         * @param file File.
+         * @return Channel.
+         * @throws IOException If the file cannot be opened.
+         */
+        private static FileChannel open(final Path file) throws IOException {
+            final FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+            );
+            channel.position(channel.size());
+            return channel;
+        }
+
+        /**
+         * Write and reset the buffered bytes.
+         * @param channel Channel.
+         * @param bytes Buffered bytes.
+         * @throws IOException If writing fails.
+         */
+        private static void write(final FileChannel channel,
+            final ByteArrayOutputStream bytes) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            bytes.reset();
+        }
+    }
+}
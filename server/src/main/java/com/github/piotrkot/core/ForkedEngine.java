@@ -23,54 +23,48 @@
  */
 package com.github.piotrkot.core;
 
-import com.github.piotrkot.api.PersistentLogs;
-import lombok.extern.slf4j.Slf4j;
-import org.skife.jdbi.v2.DBI;
+import com.github.piotrkot.api.Engine;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.MavenInvocationException;
 
 /**
- * DB log messages appender.
+ * Engine forking a fresh mvn process for every build.
+ *
+ * <p>Interrupting the build kills the mvn process with the JVMs it forked.
+ *
  * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
  * @version $Id$
  * @since 1.0
  */
-@Slf4j
-public final class DBLogs implements PersistentLogs {
+public final class ForkedEngine implements Engine {
     /**
-     * DBI access.
+     * Launcher of the processes.
      */
-    private final transient DBI dbi;
+    private final transient Launcher launcher;
 
     /**
      * Class constructor.
-     * @param dbaccess DBI access.
      */
-    public DBLogs(final DBI dbaccess) {
-        this.dbi = dbaccess;
+    public ForkedEngine() {
+        this(TimeUnit.SECONDS.toMillis(10L));
     }
 
     /**
-     * Append log message for the given request.
-     * @param request Client request.
-     * @param line Message line.
+     * Class constructor.
+     * @param grace Milliseconds killed builds have to terminate gracefully.
      */
-    public void append(final int request, final String line) {
-        this.dbi.withHandle(
-            han -> han.insert(
-                "INSERT INTO requests (req, mesg) VALUES (?, ?)",
-                request,
-                line
-            )
-        );
-        log.info("Appended info request: {}", request);
+    public ForkedEngine(final long grace) {
+        this.launcher = new Launcher(Optional.empty(), grace);
     }
 
-    /**
-     * Append error log for the given request.
-     * @param request Client request.
-     * @param error Error message.
-     */
-    public void append(final int request, final Throwable error) {
-        this.append(request, String.format("ERROR: %s", error.getMessage()));
-        log.info("Appended error request: {}", request);
+    @Override
+    public InvocationResult execute(final InvocationRequest request,
+        final InvocationOutputHandler handler)
+        throws MavenInvocationException {
+        return this.launcher.execute(request, handler);
     }
 }
@@ -23,21 +23,41 @@
  */
 package com.github.piotrkot.core;
 
+import com.google.common.io.BaseEncoding;
 import com.google.common.io.ByteStreams;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Temporary cache of input stream so that it can be re-read.
  *
+ * <p>Content up to the spool threshold is kept in pooled memory buffers,
+ * larger content or one not fitting the memory budget spills to a temporary
+ * file. Closing the cache gives the memory back or deletes the file.
+ *
  * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
  * @version $Id$
  * @since 1.0
  */
-public final class InputStreamCache {
+@Slf4j
+public final class InputStreamCache implements Closeable {
     /**
      * Temporal file name.
      */
@@ -47,35 +67,215 @@ public final class InputStreamCache {
      */
     private static final String TEMP_SUFF = ".strm";
     /**
-     * Temporal file.
+     * Size of the copy buffer.
+     */
+    private static final int COPY = 8192;
+    /**
+     * Memory of the spools.
+     */
+    private final transient Spool spool;
+    /**
+     * Memory buffers with the content unless spilled.
+     */
+    private final transient List<ByteBuffer> chunks;
+    /**
+     * Temporal file with the content if spilled.
      */
-    private final transient File temp;
+    private transient Optional<Path> temp;
+    /**
+     * Size of the content.
+     */
+    private transient long size;
+    /**
+     * SHA-256 hash of the content.
+     */
+    private final transient String sha;
+    /**
+     * Whether the cache is closed.
+     */
+    private final transient AtomicBoolean closed;
+
     /**
      * Class constructor.
      *
      * @param stream Character stream to be temporarily stored.
+     * @param memory Memory of the spools.
      */
     @SneakyThrows
-    public InputStreamCache(final InputStream stream) {
-        this.temp = File.createTempFile(TEMP_NAME, TEMP_SUFF);
-        ByteStreams.copy(stream, new FileOutputStream(this.temp));
+    public InputStreamCache(final InputStream stream, final Spool memory) {
+        this.spool = memory;
+        this.chunks = new ArrayList<>(0);
+        this.temp = Optional.empty();
+        this.closed = new AtomicBoolean();
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try {
+            this.store(new DigestInputStream(stream, digest));
+        } catch (final IOException ex) {
+            this.close();
+            throw ex;
+        }
+        this.sha = BaseEncoding.base16().lowerCase().encode(digest.digest());
     }
+
     /**
      * Copy of original character stream.
      *
      * @return New instance of character stream reader.
      */
-    @SneakyThrows
     public InputStream reader() {
-        return new FileInputStream(this.temp);
+        return Channels.newInputStream(this.channel());
     }
+
     /**
-     * Copy of original character stream as a file.
+     * Copy of original character stream with random access.
      *
-     * @return New instance of character stream reader.
+     * @return New instance of read-only channel.
      */
     @SneakyThrows
-    public File file() {
+    public SeekableByteChannel channel() {
+        final SeekableByteChannel channel;
+        if (this.temp.isPresent()) {
+            channel = Files.newByteChannel(this.temp.get());
+        } else {
+            channel = new ChunksChannel(
+                Collections.unmodifiableList(this.chunks),
+                this.spool.chunk(),
+                this.size
+            );
+        }
+        return channel;
+    }
+
+    /**
+     * Copy of original character stream as a file if spilled to disk.
+     *
+     * @return Temporal file, empty if kept in memory.
+     */
+    public Optional<Path> file() {
         return this.temp;
     }
+
+    /**
+     * Size of the content.
+     *
+     * @return Bytes.
+     */
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * Hash of the content computed while it was stored.
+     *
+     * @return Hex encoded SHA-256 hash.
+     */
+    public String hash() {
+        return this.sha;
+    }
+
+    /**
+     * Give the memory back or delete the temporal file.
+     */
+    @Override
+    public void close() {
+        if (this.closed.compareAndSet(false, true)) {
+            this.spool.release(this.chunks);
+            this.chunks.clear();
+            if (this.temp.isPresent()) {
+                try {
+                    Files.deleteIfExists(this.temp.get());
+                } catch (final IOException ex) {
+                    log.warn("Could not delete {}", this.temp.get(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Store the stream in memory, spilling to disk when needed.
+     * @param stream Stream to store.
+     * @throws IOException If fails.
+     */
+    private void store(final InputStream stream) throws IOException {
+        final byte[] buffer = new byte[InputStreamCache.COPY];
+        int read = stream.read(buffer);
+        while (read >= 0) {
+            final int kept = this.keep(buffer, read);
+            if (kept < read) {
+                try (OutputStream out = this.spill()) {
+                    out.write(buffer, kept, read - kept);
+                    this.size += read - kept + ByteStreams.copy(stream, out);
+                }
+                read = -1;
+            } else {
+                read = stream.read(buffer);
+            }
+        }
+    }
+
+    /**
+     * Keep the bytes in memory as long as the threshold and budget allow.
+     * @param buffer Bytes.
+     * @param length Number of bytes.
+     * @return Number of bytes kept.
+     */
+    private int keep(final byte[] buffer, final int length) {
+        int kept = 0;
+        if (this.size + length <= this.spool.threshold()) {
+            boolean room = true;
+            while (kept < length && room) {
+                ByteBuffer last = null;
+                if (!this.chunks.isEmpty()) {
+                    last = this.chunks.get(this.chunks.size() - 1);
+                }
+                if (last == null || !last.hasRemaining()) {
+                    final Optional<ByteBuffer> fresh = this.spool.acquire();
+                    room = fresh.isPresent();
+                    if (room) {
+                        last = fresh.get();
+                        this.chunks.add(last);
+                    }
+                }
+                if (room) {
+                    final int count = Math.min(length - kept, last.remaining());
+                    last.put(buffer, kept, count);
+                    kept += count;
+                }
+            }
+        }
+        this.size += kept;
+        return kept;
+    }
+
+    /**
+     * Move the content kept in memory to a temporal file.
+     * @return Stream appending to the file.
+     * @throws IOException If fails.
+     */
+    private OutputStream spill() throws IOException {
+        final Path file = Files.createTempFile(
+            InputStreamCache.TEMP_NAME, InputStreamCache.TEMP_SUFF
+        );
+        this.temp = Optional.of(file);
+        this.spool.spill();
+        final OutputStream out = Files.newOutputStream(
+            file, StandardOpenOption.APPEND
+        );
+        try {
+            ByteStreams.copy(
+                Channels.newInputStream(
+                    new ChunksChannel(
+                        this.chunks, this.spool.chunk(), this.size
+                    )
+                ),
+                out
+            );
+        } catch (final IOException ex) {
+            out.close();
+            throw ex;
+        }
+        this.spool.release(this.chunks);
+        this.chunks.clear();
+        return out;
+    }
 }
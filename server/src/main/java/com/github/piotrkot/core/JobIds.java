@@ -0,0 +1,122 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generator of time-ordered 64-bit job ids.
+ *
+ * <p>An id holds the milliseconds since 2015 in the upper 41 bits, the node
+ * in the next 10 bits and a sequence within the millisecond in the lowest
+ * 12 bits, so ids of one node always grow and fit a {@code bigint} column
+ * for the next 69 years. The last id is swapped with compare-and-set, there
+ * are no locks. When the sequence is used up or the clock goes back, ids
+ * borrow from the following milliseconds.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JobIds {
+    /**
+     * Maximal node number.
+     */
+    public static final int NODES = 1023;
+    /**
+     * Start of the time of the ids, 2015-01-01T00:00:00Z.
+     */
+    private static final long EPOCH = 1_420_070_400_000L;
+    /**
+     * Bits of the sequence.
+     */
+    private static final int SEQ_BITS = 12;
+    /**
+     * Bits of the node and the sequence.
+     */
+    private static final int TIME_SHIFT = 22;
+    /**
+     * Mask of the sequence.
+     */
+    private static final long SEQ_MASK = (1L << JobIds.SEQ_BITS) - 1L;
+    /**
+     * Node bits of the ids.
+     */
+    private final transient long node;
+    /**
+     * Clock in milliseconds.
+     */
+    private final transient LongSupplier clock;
+    /**
+     * Last generated id.
+     */
+    private final transient AtomicLong last;
+
+    /**
+     * Class constructor.
+     * @param number Node number, between zero and {@link #NODES}.
+     */
+    public JobIds(final int number) {
+        this(number, System::currentTimeMillis);
+    }
+
+    /**
+     * Class constructor.
+     * @param number Node number, between zero and {@link #NODES}.
+     * @param millis Clock in milliseconds.
+     */
+    JobIds(final int number, final LongSupplier millis) {
+        if (number < 0 || number > JobIds.NODES) {
+            throw new IllegalArgumentException(
+                String.format("Node %d not within 0-%d", number, JobIds.NODES)
+            );
+        }
+        this.node = (long) number << JobIds.SEQ_BITS;
+        this.clock = millis;
+        this.last = new AtomicLong();
+    }
+
+    /**
+     * Next id.
+     * @return Id greater than all the previous ones.
+     */
+    public long next() {
+        long prev;
+        long next;
+        do {
+            prev = this.last.get();
+            final long stamp = prev >>> JobIds.TIME_SHIFT;
+            final long now = this.clock.getAsLong() - JobIds.EPOCH;
+            if (now > stamp) {
+                next = now << JobIds.TIME_SHIFT | this.node;
+            } else if ((prev & JobIds.SEQ_MASK) < JobIds.SEQ_MASK) {
+                next = prev + 1L;
+            } else {
+                next = (stamp + 1L) << JobIds.TIME_SHIFT | this.node;
+            }
+        } while (!this.last.compareAndSet(prev, next));
+        return next;
+    }
+}
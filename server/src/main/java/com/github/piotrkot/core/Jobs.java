@@ -0,0 +1,156 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.piotrkot.api.Event;
+import com.github.piotrkot.api.Job;
+import com.github.piotrkot.api.PersistentJobs;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the build jobs.
+ *
+ * <p>Every job is stored on creation and on each transition. Active jobs
+ * are also kept in memory, so asking for them does not touch the store.
+ * Events found in the build output are stored at once when the build
+ * finishes.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class Jobs {
+    /**
+     * Store of the jobs.
+     */
+    private final transient PersistentJobs store;
+    /**
+     * Generator of the job ids.
+     */
+    private final transient JobIds ids;
+    /**
+     * Active jobs by their ids.
+     */
+    private final transient Map<Long, Job> live;
+
+    /**
+     * Class constructor.
+     * @param records Store of the jobs.
+     * @param generator Generator of the job ids.
+     * @param metrics Metrics registry.
+     */
+    public Jobs(final PersistentJobs records, final JobIds generator,
+        final MetricRegistry metrics) {
+        this.store = records;
+        this.ids = generator;
+        this.live = new ConcurrentHashMap<>(0);
+        metrics.register(
+            MetricRegistry.name(Jobs.class, "active"),
+            (Gauge<Integer>) this.live::size
+        );
+    }
+
+    /**
+     * Register a new job.
+     * @param user User name.
+     * @return Job id.
+     */
+    public long create(final String user) {
+        final long id = this.ids.next();
+        final Job job = new Job(id, user, System.currentTimeMillis());
+        this.live.put(id, job);
+        this.store.insert(job);
+        return id;
+    }
+
+    /**
+     * Record the stage the active job reached.
+     * @param id Job id.
+     * @param stage Stage.
+     */
+    public void reach(final long id, final Job.Stage stage) {
+        final Job job = this.live.computeIfPresent(
+            id, (key, prev) -> prev.reached(stage, System.currentTimeMillis())
+        );
+        if (job != null) {
+            this.store.update(job);
+        }
+    }
+
+    /**
+     * Record the end of the active job.
+     * @param id Job id.
+     * @param status Final status.
+     * @param exit Exit code of Maven, empty if it did not run to the end.
+     */
+    public void finish(final long id, final Job.Status status,
+        final Optional<Integer> exit) {
+        final Job job = this.live.remove(id);
+        if (job != null) {
+            this.store.update(
+                job.finish(
+                    status, exit.orElse(null), System.currentTimeMillis()
+                )
+            );
+        }
+    }
+
+    /**
+     * Record the build events of the job.
+     * @param id Job id.
+     * @param events Events in order of their lines.
+     */
+    public void record(final long id, final List<Event> events) {
+        if (!events.isEmpty()) {
+            this.store.record(id, events);
+        }
+    }
+
+    /**
+     * Build events of the job, recorded when its build finished.
+     * @param id Job id.
+     * @return Events in order of their lines.
+     */
+    public List<Event> events(final long id) {
+        return this.store.events(id);
+    }
+
+    /**
+     * State of the job.
+     * @param id Job id.
+     * @return Job, empty if not known.
+     */
+    public Optional<Job> get(final long id) {
+        Optional<Job> job = Optional.ofNullable(this.live.get(id));
+        if (!job.isPresent()) {
+            job = this.store.find(id);
+        }
+        return job;
+    }
+}
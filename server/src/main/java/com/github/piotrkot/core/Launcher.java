@@ -0,0 +1,180 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.maven.shared.invoker.CommandLineConfigurationException;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.MavenCommandLineBuilder;
+import org.apache.maven.shared.invoker.MavenInvocationException;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.Commandline;
+
+/**
+ * Launcher of Maven processes which can be interrupted.
+ *
+ * <p>Works like the default invoker, but waits for the process so that
+ * interrupting the calling thread kills the whole process tree, including
+ * the JVMs forked by the build, and returns at once.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+final class Launcher {
+    /**
+     * Maven executable, the one of the Maven home if empty.
+     */
+    private final transient Optional<File> executable;
+    /**
+     * Milliseconds the killed processes have to terminate gracefully.
+     */
+    private final transient long grace;
+
+    /**
+     * Class constructor.
+     * @param mvn Maven executable, the one of the Maven home if empty.
+     * @param wait Milliseconds the killed processes have to terminate.
+     */
+    Launcher(final Optional<File> mvn, final long wait) {
+        this.executable = mvn;
+        this.grace = wait;
+    }
+
+    /**
+     * Execute the Maven build.
+     * @param request Invocation request.
+     * @param handler Handler of output and error lines.
+     * @return Result of the build.
+     * @throws MavenInvocationException If the build cannot be configured or
+     *  was interrupted.
+     */
+    public InvocationResult execute(final InvocationRequest request,
+        final InvocationOutputHandler handler)
+        throws MavenInvocationException {
+        final MavenCommandLineBuilder builder = new MavenCommandLineBuilder();
+        this.executable.ifPresent(builder::setMavenExecutable);
+        final Commandline cli;
+        try {
+            cli = builder.build(request);
+        } catch (final CommandLineConfigurationException ex) {
+            throw new MavenInvocationException(
+                "Error configuring command line", ex
+            );
+        }
+        InvocationResult result;
+        try {
+            final Process process = cli.execute();
+            final Thread out = Launcher.pump(process.getInputStream(), handler);
+            final Thread err = Launcher.pump(process.getErrorStream(), handler);
+            try {
+                final int code = process.waitFor();
+                out.join();
+                err.join();
+                result = new Launcher.Result(code, null);
+            } catch (final InterruptedException ex) {
+                new ProcessTree(process).kill(this.grace);
+                Thread.currentThread().interrupt();
+                throw new MavenInvocationException(
+                    "Build interrupted, Maven processes killed", ex
+                );
+            }
+        } catch (final CommandLineException ex) {
+            result = new Launcher.Result(1, ex);
+        }
+        return result;
+    }
+
+    /**
+     * Pass the lines of the stream to the handler in a new thread.
+     * @param stream Output stream of the process.
+     * @param handler Handler of the lines.
+     * @return Started thread.
+     */
+    private static Thread pump(final InputStream stream,
+        final InvocationOutputHandler handler) {
+        final Thread thread = new Thread(
+            () -> {
+                try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(stream, Charset.defaultCharset())
+                )) {
+                    for (String line = reader.readLine(); line != null;
+                        line = reader.readLine()) {
+                        handler.consumeLine(line);
+                    }
+                } catch (final IOException ex) {
+                    log.debug("Maven output closed", ex);
+                }
+            },
+            "mvn-output"
+        );
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Result of the build.
+     */
+    private static final class Result implements InvocationResult {
+        /**
+         * Exit code of the process.
+         */
+        private final transient int code;
+        /**
+         * Failure to execute the process, null if executed.
+         */
+        private final transient CommandLineException failure;
+
+        /**
+         * Class constructor.
+         * @param exit Exit code of the process.
+         * @param error Failure to execute the process, null if executed.
+         */
+        Result(final int exit, final CommandLineException error) {
+            this.code = exit;
+            this.failure = error;
+        }
+
+        @Override
+        public int getExitCode() {
+            return this.code;
+        }
+
+        @Override
+        public CommandLineException getExecutionException() {
+            return this.failure;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.github.piotrkot.api.Line;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process bus of log lines with a topic per running request.
+ *
+ * <p>A topic is open while the job of its request runs. Subscribers get the
+ * lines published after they subscribed into bounded buffers; a subscriber
+ * whose buffer overflows is marked lagging and is expected to catch up from
+ * the persistent logs. Closing the topic ends all its subscriptions.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class LogBus {
+    /**
+     * Open topics by request.
+     */
+    private final transient Map<Long, LogBus.Topic> topics;
+    /**
+     * Maximal number of lines buffered per subscriber.
+     */
+    private final transient int capacity;
+    /**
+     * Maximal time in milliseconds subscribers wait for a line.
+     */
+    private final transient long heartbeat;
+    /**
+     * Number of subscribers.
+     */
+    private final transient AtomicInteger subscribers;
+    /**
+     * Lines dropped on overflowing subscriber buffers.
+     */
+    private final transient Meter dropped;
+
+    /**
+     * Class constructor.
+     * @param buffer Maximal number of lines buffered per subscriber.
+     * @param wait Maximal time in milliseconds subscribers wait for a line.
+     * @param metrics Metrics registry.
+     */
+    public LogBus(final int buffer, final long wait,
+        final MetricRegistry metrics) {
+        this.topics = new ConcurrentHashMap<>();
+        this.capacity = buffer;
+        this.heartbeat = wait;
+        this.subscribers = new AtomicInteger();
+        this.dropped = metrics.meter(
+            MetricRegistry.name(LogBus.class, "dropped")
+        );
+        metrics.register(
+            MetricRegistry.name(LogBus.class, "topics"),
+            (Gauge<Integer>) this.topics::size
+        );
+        metrics.register(
+            MetricRegistry.name(LogBus.class, "subscribers"),
+            (Gauge<Integer>) this.subscribers::get
+        );
+    }
+
+    /**
+     * Open the topic of the request.
+     * @param request Request id.
+     */
+    public void open(final long request) {
+        this.topics.putIfAbsent(request, new LogBus.Topic());
+    }
+
+    /**
+     * Close the topic of the request ending its subscriptions.
+     * @param request Request id.
+     */
+    public void close(final long request) {
+        final LogBus.Topic topic = this.topics.remove(request);
+        if (topic != null) {
+            topic.close();
+        }
+    }
+
+    /**
+     * Publish the line to the subscribers of the request.
+     * @param request Request id.
+     * @param line Log line.
+     */
+    public void publish(final long request, final Line line) {
+        final LogBus.Topic topic = this.topics.get(request);
+        if (topic != null) {
+            topic.publish(line);
+        }
+    }
+
+    /**
+     * Subscribe to the lines of the request.
+     *
+     * <p>The subscription of a request without an open topic is ended right
+     * away.
+     *
+     * @param request Request id.
+     * @return Subscription, cancel it when done.
+     */
+    public LogBus.Subscription subscribe(final long request) {
+        final LogBus.Subscription sub = new LogBus.Subscription(request);
+        final LogBus.Topic topic = this.topics.get(request);
+        if (topic == null) {
+            sub.end();
+        } else {
+            topic.subscribe(sub);
+        }
+        return sub;
+    }
+
+    /**
+     * Topic of a request.
+     */
+    private final class Topic {
+        /**
+         * Subscriptions to the topic.
+         */
+        private final transient Collection<LogBus.Subscription> subs =
+            new CopyOnWriteArraySet<>();
+        /**
+         * Whether the topic is closed.
+         */
+        private transient boolean closed;
+
+        /**
+         * Add the subscription unless the topic is closed.
+         * @param sub Subscription.
+         */
+        public void subscribe(final LogBus.Subscription sub) {
+            synchronized (this.subs) {
+                if (this.closed) {
+                    sub.end();
+                } else {
+                    this.subs.add(sub);
+                    LogBus.this.subscribers.incrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Remove the subscription.
+         * @param sub Subscription.
+         */
+        public void unsubscribe(final LogBus.Subscription sub) {
+            if (this.subs.remove(sub)) {
+                LogBus.this.subscribers.decrementAndGet();
+            }
+        }
+
+        /**
+         * Pass the line to all subscriptions.
+         * @param line Log line.
+         */
+        public void publish(final Line line) {
+            for (final LogBus.Subscription sub : this.subs) {
+                sub.offer(line);
+            }
+        }
+
+        /**
+         * End all subscriptions.
+         */
+        public void close() {
+            synchronized (this.subs) {
+                this.closed = true;
+            }
+            for (final LogBus.Subscription sub : this.subs) {
+                sub.end();
+                this.unsubscribe(sub);
+            }
+        }
+    }
+
+    /**
+     * Bounded buffer of the lines of one subscriber.
+     */
+    public final class Subscription {
+        /**
+         * Request id.
+         */
+        private final transient long request;
+        /**
+         * Buffered lines.
+         */
+        private final transient Queue<Line> lines;
+        /**
+         * Whether lines were dropped since the last poll.
+         */
+        private transient boolean lagging;
+        /**
+         * Whether the topic is closed.
+         */
+        private transient boolean ended;
+
+        /**
+         * Class constructor.
+         * @param req Request id.
+         */
+        Subscription(final long req) {
+            this.request = req;
+            this.lines = new ArrayDeque<>();
+        }
+
+        /**
+         * Wait for the next line at most the heartbeat period.
+         * @return Next line, empty if none arrived in time, the subscriber
+         *  lags behind or the subscription ended.
+         * @throws InterruptedException If interrupted while waiting.
+         */
+        public Optional<Line> poll() throws InterruptedException {
+            final long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(LogBus.this.heartbeat);
+            synchronized (this.lines) {
+                long left = deadline - System.nanoTime();
+                while (this.lines.isEmpty() && !this.ended && left > 0L) {
+                    TimeUnit.NANOSECONDS.timedWait(this.lines, left);
+                    left = deadline - System.nanoTime();
+                }
+                final Optional<Line> next;
+                if (this.lagging) {
+                    next = Optional.empty();
+                } else {
+                    next = Optional.ofNullable(this.lines.poll());
+                }
+                return next;
+            }
+        }
+
+        /**
+         * Whether lines were dropped, clearing the buffer and the flag.
+         *
+         * <p>The subscriber should then read the persistent logs up to the
+         * lines published afterwards.
+         *
+         * @return True if lines were dropped.
+         */
+        public boolean lagging() {
+            synchronized (this.lines) {
+                final boolean lags = this.lagging;
+                if (lags) {
+                    this.lines.clear();
+                    this.lagging = false;
+                }
+                return lags;
+            }
+        }
+
+        /**
+         * Whether the topic is closed and all buffered lines were taken.
+         * @return True if ended.
+         */
+        public boolean ended() {
+            synchronized (this.lines) {
+                return this.ended && this.lines.isEmpty();
+            }
+        }
+
+        /**
+         * Stop receiving lines.
+         */
+        public void cancel() {
+            final LogBus.Topic topic = LogBus.this.topics.get(this.request);
+            if (topic != null) {
+                topic.unsubscribe(this);
+            }
+        }
+
+        /**
+         * Buffer the line, drop it if the buffer is full.
+         * @param line Log line.
+         */
+        void offer(final Line line) {
+            synchronized (this.lines) {
+                if (this.lines.size() < LogBus.this.capacity) {
+                    this.lines.add(line);
+                    this.lines.notifyAll();
+                } else {
+                    this.lagging = true;
+                    LogBus.this.dropped.mark();
+                }
+            }
+        }
+
+        /**
+         * End the subscription.
+         */
+        void end() {
+            synchronized (this.lines) {
+                this.ended = true;
+                this.lines.notifyAll();
+            }
+        }
+    }
+}
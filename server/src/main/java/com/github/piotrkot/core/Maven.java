@@ -23,18 +23,21 @@
  */
 package com.github.piotrkot.core;
 
+import com.codahale.metrics.MetricRegistry;
+import com.github.piotrkot.api.Engine;
 import com.github.piotrkot.api.PersistentLogs;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.maven.shared.invoker.DefaultInvocationRequest;
-import org.apache.maven.shared.invoker.DefaultInvoker;
 import org.apache.maven.shared.invoker.InvocationRequest;
 import org.apache.maven.shared.invoker.InvocationResult;
-import org.apache.maven.shared.invoker.Invoker;
 import org.apache.maven.shared.invoker.MavenInvocationException;
 
 /**
@@ -45,10 +48,22 @@ import org.apache.maven.shared.invoker.MavenInvocationException;
  */
 @Slf4j
 public final class Maven {
+    /**
+     * Engine running the build.
+     */
+    private final transient Engine engine;
+    /**
+     * Local repository of the build.
+     */
+    private final transient Repository repo;
     /**
      * Maven project directory.
      */
     private final transient Path dir;
+    /**
+     * POM file of the project relative to the directory, if known.
+     */
+    private final transient Optional<String> pom;
     /**
      * Persistent log messages.
      */
@@ -56,7 +71,7 @@ public final class Maven {
     /**
      * Request id.
      */
-    private final transient int rqst;
+    private final transient long rqst;
 
     /**
      * Class constructor.
@@ -64,36 +79,113 @@ public final class Maven {
      * @param request Request id.
      * @param directory Maven project directory.
      */
-    public Maven(final PersistentLogs dblogs, final int request,
+    public Maven(final PersistentLogs dblogs, final long request,
         final Path directory) {
+        this(
+            new ForkedEngine(),
+            new Repository(
+                Paths.get(System.getProperty("user.home"), ".m2", "repository"),
+                "",
+                false,
+                Collections.emptyList(),
+                new ForkedEngine(),
+                new MetricRegistry()
+            ),
+            dblogs,
+            request,
+            directory
+        );
+    }
+
+    /**
+     * Class constructor.
+     * @param runner Engine running the build.
+     * @param repository Local repository of the build.
+     * @param dblogs DB log messages.
+     * @param request Request id.
+     * @param directory Maven project directory.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    public Maven(final Engine runner, final Repository repository,
+        final PersistentLogs dblogs, final long request,
+        final Path directory) {
+        this(runner, repository, dblogs, request, directory, Optional.empty());
+    }
+
+    /**
+     * Class constructor.
+     * @param runner Engine running the build.
+     * @param repository Local repository of the build.
+     * @param dblogs DB log messages.
+     * @param request Request id.
+     * @param directory Maven project directory.
+     * @param file POM file relative to the directory, searched if empty.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    public Maven(final Engine runner, final Repository repository,
+        final PersistentLogs dblogs, final long request,
+        final Path directory, final Optional<String> file) {
+        this.engine = runner;
+        this.repo = repository;
         this.logs = dblogs;
         this.rqst = request;
         this.dir = directory;
+        this.pom = file;
     }
 
     /**
      * Build of maven project.
+     *
+     * <p>When the repository resolves offline first and the build fails on
+     * artifacts missing in it, the build is repeated resolving them from the
+     * mirror.
+     *
      * @return Result of the build.
      */
     public Optional<InvocationResult> build() {
         Optional<InvocationResult> result = Optional.empty();
-        final InvocationRequest request = new DefaultInvocationRequest();
-        if (this.pomFile().isPresent()) {
-            request.setPomFile(this.pomFile().get().toFile());
-            request.setGoals(Collections.singletonList("test"));
+        final Optional<Path> pom = this.pomFile();
+        if (pom.isPresent()) {
+            final AtomicBoolean missing = new AtomicBoolean();
+            final AtomicInteger downloads = new AtomicInteger();
             try {
-                final Invoker invoker = new DefaultInvoker();
-                invoker.setOutputHandler(
-                    line -> this.logs.append(this.rqst, line)
+                final AtomicBoolean unresolved = new AtomicBoolean();
+                InvocationResult res = this.execute(
+                    pom.get(), this.repo.offlineFirst(), unresolved, downloads
                 );
-                invoker.setErrorHandler(
-                    line -> this.logs.append(this.rqst, line)
+                missing.set(
+                    this.repo.offlineFirst()
+                        && this.repo.missing(res, unresolved.get())
                 );
-                result = Optional.of(invoker.execute(request));
-            } catch (final MavenInvocationException ex) {
+                if (missing.get()) {
+                    this.logs.append(
+                        this.rqst,
+                        "Artifacts missing in local repository, resolving"
+                    );
+                    res = this.execute(
+                        pom.get(), false, unresolved, downloads
+                    );
+                }
+                result = Optional.of(res);
+            } catch (final IOException | MavenInvocationException ex) {
                 log.error("Maven invocation failed", ex);
                 this.logs.append(this.rqst, ex);
             }
+            if (!result.isPresent()) {
+                log.debug("No local repository statistics, build not run");
+            } else if (missing.get() || downloads.get() > 0) {
+                this.repo.miss(downloads.get());
+                this.logs.append(
+                    this.rqst,
+                    String.format(
+                        "Local repository miss, %d artifacts downloaded",
+                        downloads.get()
+                    )
+                );
+            } else {
+                this.repo.hit();
+                this.logs.append(this.rqst, "Local repository hit");
+            }
         } else {
             final String mesg = "POM file not found";
             log.info(mesg);
@@ -103,10 +195,54 @@ public final class Maven {
     }
 
     /**
-     * Searches for pom.xml file in the, presumably, project.
+     * Execute Maven test phase of the project.
+     * @param pom Project POM file.
+     * @param offline Whether to resolve offline.
+     * @param unresolved Set when artifacts are not resolved offline.
+     * @param downloads Counter of downloaded artifacts.
+     * @return Result of the build.
+     * @throws IOException If repository cannot be configured.
+     * @throws MavenInvocationException If the build cannot be executed.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    private InvocationResult execute(final Path pom, final boolean offline,
+        final AtomicBoolean unresolved, final AtomicInteger downloads)
+        throws IOException, MavenInvocationException {
+        final InvocationRequest request = new DefaultInvocationRequest();
+        request.setPomFile(pom.toFile());
+        request.setGoals(Collections.singletonList("test"));
+        this.repo.configure(request, offline);
+        return this.engine.execute(
+            request,
+            line -> {
+                if (offline && this.repo.unresolved(line)) {
+                    unresolved.set(true);
+                }
+                if (this.repo.downloaded(line)) {
+                    downloads.incrementAndGet();
+                }
+                this.logs.append(this.rqst, line);
+            }
+        );
+    }
+
+    /**
+     * POM file of the project, searched for in the directory unless known.
      * @return Path of pom.xml file.
      */
     private Optional<Path> pomFile() {
+        Optional<Path> pom = this.pom.map(this.dir::resolve);
+        if (!pom.isPresent()) {
+            pom = this.search();
+        }
+        return pom;
+    }
+
+    /**
+     * Searches for pom.xml file in the, presumably, project.
+     * @return Path of pom.xml file.
+     */
+    private Optional<Path> search() {
         Optional<Path> pom = Optional.empty();
         try {
             pom = Files.find(
@@ -0,0 +1,170 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Event;
+import com.google.common.base.Strings;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parser of the Maven output into build events.
+ *
+ * <p>Lines are parsed one by one as they are written. The parser keeps the
+ * module being built and the test class running, which later lines refer
+ * to. Colors of the output are ignored.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class MavenOutput {
+    /**
+     * Color escape sequence.
+     */
+    private static final Pattern COLOR = Pattern.compile("\u001B\\[[;\\d]*m");
+    /**
+     * Start of a module.
+     */
+    private static final Pattern MODULE = Pattern.compile(
+        "^\\[INFO\\] Building ([^:]+?) (\\S+)( \\[\\d+/\\d+\\])?$"
+    );
+    /**
+     * Start of a plugin goal.
+     */
+    private static final Pattern PHASE = Pattern.compile(
+        "^\\[INFO\\] --- (\\S+) (\\(\\S+\\)) @ \\S+ ---$"
+    );
+    /**
+     * Compiler error with its location.
+     */
+    private static final Pattern ERROR = Pattern.compile(
+        "^\\[ERROR\\] (.+?):\\[(\\d+),\\d+\\] (.*)$"
+    );
+    /**
+     * Start of a test class.
+     */
+    private static final Pattern RUNNING = Pattern.compile(
+        "^(?:\\[\\w+\\] )?Running (\\S+)$"
+    );
+    /**
+     * Test counts of a class or of the module.
+     */
+    private static final Pattern TESTS = Pattern.compile(
+        String.join(
+            "",
+            "^(?:\\[\\w+\\] )?Tests run: (\\d+), Failures: (\\d+), ",
+            "Errors: (\\d+), Skipped: (\\d+)(, Time elapsed: .*?)?",
+            "(?: -+ in (\\S+))?$"
+        )
+    );
+    /**
+     * Failed test.
+     */
+    private static final Pattern FAILURE = Pattern.compile(
+        "^(?:\\[\\w+\\] )?(\\S+)\\s+Time elapsed: .*<<< (?:FAILURE|ERROR)!$"
+    );
+    /**
+     * Module being built.
+     */
+    private transient String module;
+    /**
+     * Test class running.
+     */
+    private transient String running;
+
+    /**
+     * Event of the output line.
+     * @param seq Sequence number of the line.
+     * @param text Output line.
+     * @return Event, empty if the line is not one.
+     */
+    public Optional<Event> parse(final long seq, final String text) {
+        String line = Strings.nullToEmpty(text);
+        if (line.indexOf('\u001B') >= 0) {
+            line = MavenOutput.COLOR.matcher(line).replaceAll("");
+        }
+        final Matcher start = MavenOutput.MODULE.matcher(line);
+        final Matcher phase = MavenOutput.PHASE.matcher(line);
+        final Matcher error = MavenOutput.ERROR.matcher(line);
+        final Matcher begun = MavenOutput.RUNNING.matcher(line);
+        final Matcher counts = MavenOutput.TESTS.matcher(line);
+        final Matcher failure = MavenOutput.FAILURE.matcher(line);
+        Optional<Event> event = Optional.empty();
+        if (start.matches()) {
+            this.module = start.group(1);
+            event = Optional.of(
+                new Event(seq, Event.Kind.MODULE, this.module, this.module)
+            );
+        } else if (phase.matches()) {
+            event = Optional.of(
+                new Event(
+                    seq, Event.Kind.PHASE, this.module,
+                    String.format("%s %s", phase.group(1), phase.group(2))
+                )
+            );
+        } else if (error.matches()) {
+            event = Optional.of(
+                new Event(
+                    seq, Event.Kind.ERROR, this.module, error.group(3),
+                    error.group(1), Integer.valueOf(error.group(2)), null
+                )
+            );
+        } else if (begun.matches()) {
+            this.running = begun.group(1);
+        } else if (counts.matches()) {
+            event = Optional.of(this.tests(seq, counts));
+        } else if (failure.matches()) {
+            event = Optional.of(
+                new Event(
+                    seq, Event.Kind.FAILURE, this.module, failure.group(1)
+                )
+            );
+        }
+        return event;
+    }
+
+    /**
+     * Event of the test counts.
+     * @param seq Sequence number of the line.
+     * @param match Matched test counts.
+     * @return Event.
+     */
+    private Event tests(final long seq, final Matcher match) {
+        String name = match.group(6);
+        if (name == null && match.group(5) != null) {
+            name = this.running;
+        }
+        return new Event(
+            seq, Event.Kind.TESTS, this.module, name, null, null,
+            new Event.Tests(
+                Integer.parseInt(match.group(1)),
+                Integer.parseInt(match.group(2)),
+                Integer.parseInt(match.group(3)),
+                Integer.parseInt(match.group(4))
+            )
+        );
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Event;
+import com.github.piotrkot.api.Job;
+import com.github.piotrkot.api.PersistentLogs;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Outcome of a build which can be replayed for an identical one.
+ *
+ * <p>Events are numbered by the index of their line in the outcome, and by
+ * the sequence numbers of the log lines once the outcome is replayed. A
+ * build stopped before the end has no lines, only the status it was
+ * stopped with.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class Outcome {
+    /**
+     * Output lines.
+     */
+    private final transient List<String> lines;
+    /**
+     * Exit code of Maven, empty if it did not run to the end.
+     */
+    private final transient Optional<Integer> code;
+    /**
+     * Build events.
+     */
+    private final transient List<Event> found;
+    /**
+     * Status the build was stopped with, empty if it ran to the end.
+     */
+    private final transient Optional<Job.Status> stop;
+
+    /**
+     * Class constructor.
+     * @param output Output lines.
+     * @param exit Exit code of Maven, empty if it did not run to the end.
+     * @param events Build events.
+     */
+    public Outcome(final List<String> output, final Optional<Integer> exit,
+        final List<Event> events) {
+        this(output, exit, events, Optional.empty());
+    }
+
+    /**
+     * Class constructor.
+     * @param output Output lines.
+     * @param exit Exit code of Maven, empty if it did not run to the end.
+     * @param events Build events.
+     * @param why Status the build was stopped with, empty if it ran to the
+     *  end.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    private Outcome(final List<String> output, final Optional<Integer> exit,
+        final List<Event> events, final Optional<Job.Status> why) {
+        this.lines = Collections.unmodifiableList(output);
+        this.code = exit;
+        this.found = Collections.unmodifiableList(events);
+        this.stop = why;
+    }
+
+    /**
+     * Outcome of a build stopped before the end.
+     * @param why Status the build was stopped with.
+     * @return Outcome.
+     */
+    public static Outcome stopped(final Job.Status why) {
+        return new Outcome(
+            Collections.emptyList(), Optional.empty(), Collections.emptyList(),
+            Optional.of(why)
+        );
+    }
+
+    /**
+     * Status the build was stopped with.
+     * @return Status, empty if the build ran to the end.
+     */
+    public Optional<Job.Status> stopped() {
+        return this.stop;
+    }
+
+    /**
+     * Exit code of Maven.
+     * @return Exit code, empty if it did not run to the end.
+     */
+    public Optional<Integer> exit() {
+        return this.code;
+    }
+
+    /**
+     * Build events.
+     * @return Events in order of their lines.
+     */
+    public List<Event> events() {
+        return this.found;
+    }
+
+    /**
+     * Whether the build succeeded, so that identical builds would too.
+     * @return True if Maven exited with zero.
+     */
+    public boolean successful() {
+        return this.code.isPresent() && this.code.get() == 0;
+    }
+
+    /**
+     * Append the lines to the logs of the request.
+     * @param logs Log messages.
+     * @param request Request id.
+     * @return Outcome with the events at the appended lines.
+     */
+    public Outcome replay(final PersistentLogs logs, final long request) {
+        final long[] seqs = new long[this.lines.size()];
+        for (int idx = 0; idx < seqs.length; idx += 1) {
+            seqs[idx] = logs.append(request, this.lines.get(idx));
+        }
+        final List<Event> events = new ArrayList<>(this.found.size());
+        for (final Event event : this.found) {
+            events.add(event.at(seqs[(int) event.getSeq()]));
+        }
+        return new Outcome(this.lines, this.code, events, this.stop);
+    }
+}
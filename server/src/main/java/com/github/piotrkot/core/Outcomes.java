@@ -0,0 +1,161 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.github.piotrkot.api.Job;
+import com.github.piotrkot.api.PersistentLogs;
+import com.google.common.cache.CacheBuilder;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Content-addressed cache of build outcomes.
+ *
+ * <p>Outcomes are keyed by the hash of the uploaded archive. The first
+ * request of an archive leads the build; identical requests arriving while
+ * it runs are attached to it and later ones get the cached outcome. Either
+ * way the outcome is replayed into the logs of their own request. Outcomes
+ * of failed builds are only replayed to the attached requests, later ones
+ * build again. Requests attached to a build which was stopped are stopped
+ * with the same status.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class Outcomes {
+    /**
+     * Outcomes by archive hash, completed or in flight.
+     */
+    private final transient ConcurrentMap<String, CompletableFuture<Outcome>>
+        cache;
+    /**
+     * Maximal number of lines of a cached outcome.
+     */
+    private final transient int lines;
+    /**
+     * Requests served from completed outcomes.
+     */
+    private final transient Meter hits;
+    /**
+     * Requests attached to builds in flight.
+     */
+    private final transient Meter coalesced;
+    /**
+     * Requests leading a build.
+     */
+    private final transient Meter misses;
+
+    /**
+     * Class constructor.
+     * @param entries Maximal number of cached outcomes.
+     * @param expiry Time in seconds outcomes are kept.
+     * @param max Maximal number of lines of a cached outcome.
+     * @param metrics Metrics registry.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    public Outcomes(final int entries, final long expiry, final int max,
+        final MetricRegistry metrics) {
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize(entries)
+            .expireAfterWrite(expiry, TimeUnit.SECONDS)
+            .<String, CompletableFuture<Outcome>>build()
+            .asMap();
+        this.lines = max;
+        this.hits = metrics.meter(MetricRegistry.name(Outcomes.class, "hits"));
+        this.coalesced = metrics.meter(
+            MetricRegistry.name(Outcomes.class, "coalesced")
+        );
+        this.misses = metrics.meter(
+            MetricRegistry.name(Outcomes.class, "misses")
+        );
+    }
+
+    /**
+     * Lead the build of the archive unless an identical one is known.
+     * @param hash Archive hash.
+     * @param request Request id.
+     * @param logs Log messages of the request.
+     * @param replayed Called with the outcome of the identical build once it
+     *  is replayed, not called for the recording logs.
+     * @return Recording logs for the build to run, empty if the outcome of
+     *  the identical build is replayed instead.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    public Optional<RecordedLogs> lead(final String hash, final long request,
+        final PersistentLogs logs, final Consumer<Outcome> replayed) {
+        final CompletableFuture<Outcome> fresh = new CompletableFuture<>();
+        final CompletableFuture<Outcome> known =
+            this.cache.putIfAbsent(hash, fresh);
+        Optional<RecordedLogs> lead = Optional.empty();
+        if (known == null) {
+            this.misses.mark();
+            lead = Optional.of(
+                new RecordedLogs(
+                    logs, this.lines, fresh,
+                    () -> this.cache.remove(hash, fresh)
+                )
+            );
+        } else {
+            if (known.isDone()) {
+                this.hits.mark();
+            } else {
+                this.coalesced.mark();
+            }
+            logs.append(
+                request, String.format("Reusing identical build %s", hash)
+            );
+            known.whenComplete(
+                (outcome, error) -> {
+                    Outcome replay = Outcome.stopped(Job.Status.FAILED);
+                    if (error != null) {
+                        logs.append(request, error);
+                    } else if (outcome.stopped().isPresent()) {
+                        replay = outcome;
+                        logs.append(
+                            request,
+                            String.format(
+                                "Identical build %s",
+                                outcome.stopped().get().name()
+                                    .toLowerCase(Locale.ENGLISH)
+                                    .replace('_', ' ')
+                            )
+                        );
+                    } else {
+                        replay = outcome.replay(logs, request);
+                    }
+                    logs.flush(request);
+                    replayed.accept(replay);
+                }
+            );
+        }
+        return lead;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Event;
+import com.github.piotrkot.api.Line;
+import com.github.piotrkot.api.PersistentLogs;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Log messages appender extracting the build events.
+ *
+ * <p>Lines are passed to the original logs and parsed with their sequence
+ * numbers as Maven output. Events after the limit are not kept.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class ParsedLogs implements PersistentLogs {
+    /**
+     * Original log messages.
+     */
+    private final transient PersistentLogs origin;
+    /**
+     * Parser of the output.
+     */
+    private final transient MavenOutput parser;
+    /**
+     * Found events.
+     */
+    private final transient List<Event> found;
+    /**
+     * Maximal number of kept events.
+     */
+    private final transient int limit;
+
+    /**
+     * Class constructor.
+     * @param logs Original log messages.
+     * @param max Maximal number of kept events.
+     */
+    public ParsedLogs(final PersistentLogs logs, final int max) {
+        this.origin = logs;
+        this.limit = max;
+        this.parser = new MavenOutput();
+        this.found = new ArrayList<>(0);
+    }
+
+    @Override
+    public long append(final long request, final String line) {
+        final long seq = this.origin.append(request, line);
+        this.parse(seq, line);
+        return seq;
+    }
+
+    @Override
+    public long append(final long request, final List<String> lines) {
+        final long last = this.origin.append(request, lines);
+        long seq = last - lines.size();
+        for (final String line : lines) {
+            seq += 1L;
+            this.parse(seq, line);
+        }
+        return last;
+    }
+
+    @Override
+    public long append(final long request, final Throwable error) {
+        return this.origin.append(request, error);
+    }
+
+    @Override
+    public void read(final long request, final long after, final int limit,
+        final Consumer<Line> reader) {
+        this.origin.read(request, after, limit, reader);
+    }
+
+    @Override
+    public void flush(final long request) {
+        this.origin.flush(request);
+    }
+
+    @Override
+    public long last(final long request) {
+        return this.origin.last(request);
+    }
+
+    @Override
+    public long delete(final long request) {
+        return this.origin.delete(request);
+    }
+
+    /**
+     * Events found so far.
+     * @return Events in order of their lines.
+     */
+    public List<Event> events() {
+        final List<Event> events;
+        synchronized (this.found) {
+            events = new ArrayList<>(this.found);
+        }
+        events.sort(Comparator.comparingLong(Event::getSeq));
+        return events;
+    }
+
+    /**
+     * Parse the line, keeping its event if within the limit.
+     * @param seq Sequence number of the line.
+     * @param line Message line.
+     */
+    private void parse(final long seq, final String line) {
+        synchronized (this.found) {
+            final Optional<Event> event = this.parser.parse(seq, line);
+            if (event.isPresent() && this.found.size() < this.limit) {
+                this.found.add(event.get());
+            }
+        }
+    }
+}
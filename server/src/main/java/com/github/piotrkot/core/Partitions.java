@@ -0,0 +1,289 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.exceptions.DBIException;
+import org.skife.jdbi.v2.util.StringMapper;
+
+/**
+ * Time partitions of the log chunks with their retention.
+ *
+ * <p>Chunks are partitioned by the time of their first line into daily or
+ * hourly partitions named after their start. The current partition and the
+ * next few are created on start and then periodically, so inserts always
+ * find theirs. Chunks whose partition could not be created go to the
+ * default partition, and the partitions are reported missing until they
+ * are created. Partitions ending before the retention period are dropped
+ * whole, chunks in the default partition, lines written one per row by
+ * older servers and the tail rows of open chunks are deleted by time.
+ * Partitions of another time span, left after the span was changed, are
+ * not dropped.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class Partitions implements Managed {
+    /**
+     * Number of partitions created ahead of the current one.
+     */
+    private static final int AHEAD = 2;
+    /**
+     * Prefix of the partition names.
+     */
+    private static final String PREFIX = "chunks_";
+    /**
+     * Default partition, see the schema.
+     */
+    private static final String DEFAULT = "chunks_default";
+    /**
+     * DBI access.
+     */
+    private final transient DBI dbi;
+    /**
+     * Time span of a partition.
+     */
+    private final transient ChronoUnit unit;
+    /**
+     * Milliseconds log lines are kept, zero to keep them forever.
+     */
+    private final transient long retention;
+    /**
+     * Format of the partition start in its name.
+     */
+    private final transient DateTimeFormatter format;
+    /**
+     * Maintainer of the partitions.
+     */
+    private final transient ScheduledExecutorService maintainer;
+    /**
+     * Dropped partitions.
+     */
+    private final transient Meter dropped;
+    /**
+     * Names of the current and upcoming partitions which could not be
+     * created.
+     */
+    private transient volatile Set<String> failed;
+
+    /**
+     * Class constructor.
+     * @param dbaccess DBI access.
+     * @param span Time span of a partition, days or hours.
+     * @param keep Milliseconds log lines are kept, zero for ever.
+     * @param metrics Metrics registry.
+     */
+    public Partitions(final DBI dbaccess, final ChronoUnit span,
+        final long keep, final MetricRegistry metrics) {
+        this.dbi = dbaccess;
+        this.unit = span;
+        this.retention = keep;
+        final DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder();
+        if (span == ChronoUnit.HOURS) {
+            builder.appendPattern("yyyyMMddHH");
+        } else {
+            builder.appendPattern("yyyyMMdd")
+                .parseDefaulting(ChronoField.HOUR_OF_DAY, 0L);
+        }
+        this.format = builder.toFormatter();
+        this.maintainer = Executors.newSingleThreadScheduledExecutor();
+        this.dropped = metrics.meter(
+            MetricRegistry.name(Partitions.class, "dropped")
+        );
+        this.failed = Collections.emptySet();
+    }
+
+    @Override
+    public void start() {
+        this.maintain();
+        final long period = this.unit.getDuration().toMillis() / 4L;
+        this.maintainer.scheduleAtFixedRate(
+            this::maintain, period, period, TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        this.maintainer.shutdown();
+        this.maintainer.awaitTermination(1L, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Create the upcoming partitions and drop the expired ones.
+     */
+    public void maintain() {
+        final LocalDateTime now = LocalDateTime.now().truncatedTo(this.unit);
+        final Set<String> names = new TreeSet<>();
+        for (int ahead = 0; ahead <= Partitions.AHEAD; ++ahead) {
+            final LocalDateTime start = now.plus(ahead, this.unit);
+            final String name = this.name(start);
+            if (!this.create(name, start)) {
+                names.add(name);
+            }
+        }
+        this.failed = Collections.unmodifiableSet(names);
+        if (this.retention > 0L) {
+            try {
+                this.expire(
+                    LocalDateTime.now().minus(
+                        this.retention, ChronoUnit.MILLIS
+                    )
+                );
+            } catch (final DBIException ex) {
+                log.warn("Could not drop expired log partitions", ex);
+            }
+        }
+    }
+
+    /**
+     * Current and upcoming partitions which could not be created in the
+     * last maintenance, their chunks going to the default partition.
+     * @return Names of the partitions.
+     */
+    public Set<String> missing() {
+        return this.failed;
+    }
+
+    /**
+     * Create the partition unless it exists.
+     * @param name Name of the partition.
+     * @param start Start of the partition.
+     * @return True if it exists.
+     */
+    private boolean create(final String name, final LocalDateTime start) {
+        boolean created = false;
+        try {
+            this.dbi.withHandle(
+                han -> han.update(
+                    String.format(
+                        String.join(
+                            " ",
+                            "CREATE TABLE IF NOT EXISTS %s PARTITION OF chunks",
+                            "FOR VALUES FROM ('%s') TO ('%s')"
+                        ),
+                        name, Timestamp.valueOf(start),
+                        Timestamp.valueOf(start.plus(1L, this.unit))
+                    )
+                )
+            );
+            created = true;
+        } catch (final DBIException ex) {
+            log.warn("Could not create log partition {}", name, ex);
+        }
+        return created;
+    }
+
+    /**
+     * Drop the partitions ended before the cutoff.
+     * @param cutoff Time before which lines are dropped.
+     */
+    private void expire(final LocalDateTime cutoff) {
+        final List<String> names = this.dbi.withHandle(
+            han -> han.createQuery(
+                String.join(
+                    " ",
+                    "SELECT c.relname FROM pg_inherits i",
+                    "JOIN pg_class c ON c.oid = i.inhrelid",
+                    "WHERE i.inhparent = 'chunks'::regclass"
+                )
+            ).map(StringMapper.FIRST).list()
+        );
+        for (final String name : names) {
+            final Optional<LocalDateTime> start = this.start(name);
+            if (start.isPresent()
+                && !start.get().plus(1L, this.unit).isAfter(cutoff)) {
+                this.dbi.withHandle(
+                    han -> han.update(String.format("DROP TABLE %s", name))
+                );
+                this.dropped.mark();
+                log.info("Dropped log partition {}", name);
+            }
+        }
+        this.dbi.withHandle(
+            han -> han.update(
+                String.format(
+                    "DELETE FROM %s WHERE timestmp < ?", Partitions.DEFAULT
+                ),
+                Timestamp.valueOf(cutoff)
+            ) + han.update(
+                "DELETE FROM requests WHERE timestmp < ?",
+                Timestamp.valueOf(cutoff)
+            ) + han.update(
+                "DELETE FROM tails WHERE timestmp < ?",
+                Timestamp.valueOf(cutoff)
+            )
+        );
+    }
+
+    /**
+     * Name of the partition.
+     * @param start Start of the partition.
+     * @return Name.
+     */
+    private String name(final LocalDateTime start) {
+        return String.format(
+            "%s%s", Partitions.PREFIX, this.format.format(start)
+        );
+    }
+
+    /**
+     * Start of the partition.
+     * @param name Name of the partition.
+     * @return Start, empty if the partition is not of the time span.
+     */
+    private Optional<LocalDateTime> start(final String name) {
+        Optional<LocalDateTime> start;
+        try {
+            start = Optional.of(
+                LocalDateTime.parse(
+                    name.substring(Partitions.PREFIX.length()), this.format
+                )
+            );
+        } catch (final DateTimeParseException ex) {
+            start = Optional.empty();
+        }
+        return start;
+    }
+}
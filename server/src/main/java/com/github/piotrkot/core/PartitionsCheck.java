@@ -0,0 +1,68 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.health.HealthCheck;
+import java.util.Set;
+
+/**
+ * Health of the log partitions.
+ *
+ * <p>Unhealthy while the current or an upcoming partition could not be
+ * created, as the chunks then go to the default partition, which is not
+ * dropped whole when expired.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class PartitionsCheck extends HealthCheck {
+    /**
+     * Partitions of the log chunks.
+     */
+    private final transient Partitions partitions;
+
+    /**
+     * Class constructor.
+     * @param chunks Partitions of the log chunks.
+     */
+    public PartitionsCheck(final Partitions chunks) {
+        super();
+        this.partitions = chunks;
+    }
+
+    @Override
+    protected HealthCheck.Result check() {
+        final Set<String> missing = this.partitions.missing();
+        final HealthCheck.Result result;
+        if (missing.isEmpty()) {
+            result = HealthCheck.Result.healthy();
+        } else {
+            result = HealthCheck.Result.unhealthy(
+                "Log partitions not created: %s", String.join(", ", missing)
+            );
+        }
+        return result;
+    }
+}
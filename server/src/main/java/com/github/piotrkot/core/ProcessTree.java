@@ -0,0 +1,229 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Process with all its descendants.
+ *
+ * <p>Descendants are found with {@code ps} before the process is signalled,
+ * as they are reparented once it dies. Where the process id or {@code ps}
+ * is not available only the process itself is destroyed.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+final class ProcessTree {
+    /**
+     * Milliseconds between the checks of the terminating processes.
+     */
+    private static final long POLL = 100L;
+    /**
+     * Root process.
+     */
+    private final transient Process root;
+
+    /**
+     * Class constructor.
+     * @param process Root process.
+     */
+    ProcessTree(final Process process) {
+        this.root = process;
+    }
+
+    /**
+     * Terminate the processes, killing those still alive after the grace
+     * period.
+     * @param grace Milliseconds to terminate gracefully.
+     */
+    public void kill(final long grace) {
+        final List<Integer> children = this.pid()
+            .map(ProcessTree::descendants)
+            .orElse(new ArrayList<>(0));
+        ProcessTree.signal("-TERM", children);
+        this.root.destroy();
+        final long deadline = System.currentTimeMillis() + grace;
+        boolean interrupted = false;
+        try {
+            this.root.waitFor(grace, TimeUnit.MILLISECONDS);
+            List<Integer> alive = ProcessTree.alive(children);
+            while (!alive.isEmpty()
+                && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(ProcessTree.POLL);
+                alive = ProcessTree.alive(alive);
+            }
+        } catch (final InterruptedException ex) {
+            interrupted = true;
+        }
+        if (this.root.isAlive() || !ProcessTree.alive(children).isEmpty()) {
+            log.info("Maven processes alive after {} ms, killing", grace);
+        }
+        ProcessTree.signal("-KILL", ProcessTree.alive(children));
+        this.root.destroyForcibly();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Id of the root process.
+     *
+     * <p>Runtimes which do not open the process class to reflection fail
+     * with an unchecked exception, then only the root process is destroyed.
+     *
+     * @return Process id, empty if not known.
+     * @checkstyle IllegalCatchCheck (15 lines)
+     */
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private Optional<Integer> pid() {
+        Optional<Integer> pid = Optional.empty();
+        try {
+            final Field field = this.root.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            pid = Optional.of(field.getInt(this.root));
+        } catch (final NoSuchFieldException | IllegalAccessException
+            | RuntimeException ex) {
+            log.debug("Process id not available", ex);
+        }
+        return pid;
+    }
+
+    /**
+     * Processes still running.
+     * @param pids Process ids.
+     * @return Ids of the running ones.
+     */
+    private static List<Integer> alive(final List<Integer> pids) {
+        final List<Integer> running = new ArrayList<>(pids.size());
+        if (!pids.isEmpty()) {
+            final Set<Integer> all = ProcessTree.processes().keySet();
+            for (final Integer pid : pids) {
+                if (all.contains(pid)) {
+                    running.add(pid);
+                }
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Parents of all processes.
+     * @return Parent process ids by process ids.
+     */
+    private static Map<Integer, Integer> processes() {
+        final Map<Integer, Integer> parents = new HashMap<>();
+        for (final String line
+            : ProcessTree.run("ps", "-A", "-o", "pid=,ppid=")) {
+            final String[] ids = line.trim().split("\\s+");
+            if (ids.length == 2) {
+                parents.put(Integer.valueOf(ids[0]), Integer.valueOf(ids[1]));
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Ids of all descendants of the process, parents before children.
+     * @param pid Process id.
+     * @return Process ids.
+     */
+    private static List<Integer> descendants(final int pid) {
+        final Map<Integer, List<Integer>> children = new HashMap<>();
+        for (final Map.Entry<Integer, Integer> proc
+            : ProcessTree.processes().entrySet()) {
+            children.computeIfAbsent(
+                proc.getValue(), key -> new ArrayList<>(1)
+            ).add(proc.getKey());
+        }
+        final List<Integer> found = new ArrayList<>(0);
+        found.addAll(children.getOrDefault(pid, new ArrayList<>(0)));
+        for (int idx = 0; idx < found.size(); ++idx) {
+            found.addAll(
+                children.getOrDefault(found.get(idx), new ArrayList<>(0))
+            );
+        }
+        return found;
+    }
+
+    /**
+     * Send the signal to the processes.
+     * @param signal Signal option of kill.
+     * @param pids Process ids.
+     */
+    private static void signal(final String signal,
+        final Collection<Integer> pids) {
+        if (!pids.isEmpty()) {
+            final List<String> command = new ArrayList<>(pids.size() + 2);
+            command.add("kill");
+            command.add(signal);
+            pids.forEach(pid -> command.add(pid.toString()));
+            ProcessTree.run(command.toArray(new String[command.size()]));
+        }
+    }
+
+    /**
+     * Run the command and collect its output.
+     * @param command Command with arguments.
+     * @return Output lines, empty if the command fails.
+     */
+    private static List<String> run(final String... command) {
+        final List<String> lines = new ArrayList<>(0);
+        try {
+            final Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(
+                    process.getInputStream(), StandardCharsets.UTF_8
+                )
+            )) {
+                for (String line = reader.readLine(); line != null;
+                    line = reader.readLine()) {
+                    lines.add(line);
+                }
+            }
+            process.waitFor(1L, TimeUnit.MINUTES);
+        } catch (final IOException ex) {
+            log.warn("Could not run {}", command[0], ex);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Line;
+import com.github.piotrkot.api.PersistentLogs;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Log messages appender publishing the lines to the bus.
+ *
+ * <p>Lines are published with the sequence numbers assigned by the original
+ * logs once they were appended there.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class PublishedLogs implements PersistentLogs {
+    /**
+     * Original log messages.
+     */
+    private final transient PersistentLogs origin;
+    /**
+     * Bus of the lines.
+     */
+    private final transient LogBus bus;
+
+    /**
+     * Class constructor.
+     * @param logs Original log messages.
+     * @param topics Bus of the lines.
+     */
+    public PublishedLogs(final PersistentLogs logs, final LogBus topics) {
+        this.origin = logs;
+        this.bus = topics;
+    }
+
+    @Override
+    public long append(final long request, final String line) {
+        final long seq = this.origin.append(request, line);
+        this.bus.publish(request, new Line(seq, line));
+        return seq;
+    }
+
+    @Override
+    public long append(final long request, final List<String> lines) {
+        final long last = this.origin.append(request, lines);
+        long seq = last - lines.size();
+        for (final String line : lines) {
+            seq += 1L;
+            this.bus.publish(request, new Line(seq, line));
+        }
+        return last;
+    }
+
+    @Override
+    public long append(final long request, final Throwable error) {
+        return this.append(
+            request, String.format("ERROR: %s", error.getMessage())
+        );
+    }
+
+    @Override
+    public void read(final long request, final long after, final int limit,
+        final Consumer<Line> reader) {
+        this.origin.read(request, after, limit, reader);
+    }
+
+    @Override
+    public void flush(final long request) {
+        this.origin.flush(request);
+    }
+
+    @Override
+    public long last(final long request) {
+        return this.origin.last(request);
+    }
+
+    @Override
+    public long delete(final long request) {
+        return this.origin.delete(request);
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Event;
+import com.github.piotrkot.api.Job;
+import com.github.piotrkot.api.Line;
+import com.github.piotrkot.api.PersistentLogs;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Log messages appender recording the outcome of the build.
+ *
+ * <p>Lines are passed to the original logs and kept in memory so that the
+ * outcome can be replayed for identical builds. Only outcomes of successful
+ * builds within the limit are kept for later builds, as failures may be
+ * caused by the build infrastructure rather than the sources.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class RecordedLogs implements PersistentLogs {
+    /**
+     * Original log messages.
+     */
+    private final transient PersistentLogs origin;
+    /**
+     * Recorded lines.
+     */
+    private final transient List<String> lines;
+    /**
+     * Indexes of the recorded lines by their sequence numbers.
+     */
+    private final transient Map<Long, Integer> indexes;
+    /**
+     * Maximal number of recorded lines.
+     */
+    private final transient int limit;
+    /**
+     * Outcome of the build.
+     */
+    private final transient CompletableFuture<Outcome> outcome;
+    /**
+     * Removal of the outcome from the cache.
+     */
+    private final transient Runnable evict;
+    /**
+     * Whether some lines were not recorded.
+     */
+    private final transient AtomicBoolean truncated;
+
+    /**
+     * Class constructor.
+     * @param logs Original log messages.
+     * @param max Maximal number of recorded lines.
+     * @param future Outcome of the build.
+     * @param eviction Removal of the outcome from the cache.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    public RecordedLogs(final PersistentLogs logs, final int max,
+        final CompletableFuture<Outcome> future, final Runnable eviction) {
+        this.origin = logs;
+        this.limit = max;
+        this.outcome = future;
+        this.evict = eviction;
+        this.lines = new ArrayList<>(0);
+        this.indexes = new HashMap<>(0);
+        this.truncated = new AtomicBoolean();
+    }
+
+    @Override
+    public long append(final long request, final String line) {
+        final long seq = this.origin.append(request, line);
+        this.record(seq, line);
+        return seq;
+    }
+
+    @Override
+    public long append(final long request, final List<String> lines) {
+        final long last = this.origin.append(request, lines);
+        long seq = last - lines.size();
+        for (final String line : lines) {
+            seq += 1L;
+            this.record(seq, line);
+        }
+        return last;
+    }
+
+    @Override
+    public long append(final long request, final Throwable error) {
+        final long seq = this.origin.append(request, error);
+        this.record(seq, String.format("ERROR: %s", error.getMessage()));
+        return seq;
+    }
+
+    @Override
+    public void read(final long request, final long after, final int limit,
+        final Consumer<Line> reader) {
+        this.origin.read(request, after, limit, reader);
+    }
+
+    @Override
+    public void flush(final long request) {
+        this.origin.flush(request);
+    }
+
+    @Override
+    public long last(final long request) {
+        return this.origin.last(request);
+    }
+
+    @Override
+    public long delete(final long request) {
+        return this.origin.delete(request);
+    }
+
+    /**
+     * Complete the build outcome with the recorded lines.
+     * @param exit Exit code of Maven, empty if it did not run to the end.
+     * @param events Build events at the log lines.
+     */
+    public void finish(final Optional<Integer> exit, final List<Event> events) {
+        final List<String> copy;
+        final List<Event> found = new ArrayList<>(events.size());
+        synchronized (this.lines) {
+            copy = new ArrayList<>(this.lines);
+            for (final Event event : events) {
+                final Integer idx = this.indexes.get(event.getSeq());
+                if (idx != null) {
+                    found.add(event.at(idx));
+                }
+            }
+        }
+        if (this.truncated.get()) {
+            copy.add(
+                String.format(
+                    "Output truncated to %d lines of the identical build",
+                    this.limit
+                )
+            );
+        }
+        final Outcome done = new Outcome(copy, exit, found);
+        if (this.truncated.get() || !done.successful()) {
+            this.evict.run();
+        }
+        this.outcome.complete(done);
+    }
+
+    /**
+     * Abandon the build outcome, it will not be reused and the attached
+     * requests end with the same status.
+     * @param why Status the build was stopped with.
+     */
+    public void abort(final Job.Status why) {
+        this.evict.run();
+        this.outcome.complete(Outcome.stopped(why));
+    }
+
+    /**
+     * Record the line if within the limit.
+     * @param seq Sequence number of the line.
+     * @param line Message line.
+     */
+    private void record(final long seq, final String line) {
+        synchronized (this.lines) {
+            if (this.lines.size() < this.limit) {
+                this.indexes.put(seq, this.lines.size());
+                this.lines.add(line);
+            } else {
+                this.truncated.set(true);
+            }
+        }
+    }
+}
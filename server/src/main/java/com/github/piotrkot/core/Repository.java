@@ -0,0 +1,279 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.github.piotrkot.api.Engine;
+import com.google.common.xml.XmlEscapers;
+import io.dropwizard.lifecycle.Managed;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.MavenInvocationException;
+
+/**
+ * Local Maven repository shared by all build workers.
+ *
+ * <p>Builds resolve against the server-owned repository offline first and
+ * only go to the mirror when an artifact is missing. Concurrent writers are
+ * serialized per artifact by the resolver file locks, which only the
+ * resolver of Maven 3.9 or later honours; older Maven ignores them, so
+ * concurrent builds may then corrupt the repository.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class Repository implements Managed {
+    /**
+     * Settings file name.
+     */
+    private static final String SETTINGS = "settings.xml";
+    /**
+     * Repository directory.
+     */
+    private final transient Path root;
+    /**
+     * Mirror of all remote repositories, empty to use user settings.
+     */
+    private final transient String mirror;
+    /**
+     * Whether to resolve offline first.
+     */
+    private final transient boolean offline;
+    /**
+     * Projects whose dependencies are seeded on start.
+     */
+    private final transient Collection<String> seeds;
+    /**
+     * Engine running the seeding builds.
+     */
+    private final transient Engine engine;
+    /**
+     * Builds resolved offline.
+     */
+    private final transient Meter hits;
+    /**
+     * Builds which needed the mirror.
+     */
+    private final transient Meter misses;
+    /**
+     * Artifacts downloaded per build.
+     */
+    private final transient Histogram downloads;
+    /**
+     * Whether settings were written by this server.
+     */
+    private final transient AtomicBoolean written;
+
+    /**
+     * Class constructor.
+     * @param directory Repository directory.
+     * @param remote Mirror of all remote repositories, empty to use user
+     *  settings.
+     * @param first Whether to resolve offline first.
+     * @param projects Projects whose dependencies are seeded on start.
+     * @param runner Engine running the seeding builds.
+     * @param metrics Metrics registry.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    public Repository(final Path directory, final String remote,
+        final boolean first, final Collection<String> projects,
+        final Engine runner, final MetricRegistry metrics) {
+        this.root = directory.toAbsolutePath();
+        this.mirror = remote;
+        this.offline = first;
+        this.seeds = projects;
+        this.engine = runner;
+        this.hits = metrics.meter(
+            MetricRegistry.name(Repository.class, "hits")
+        );
+        this.misses = metrics.meter(
+            MetricRegistry.name(Repository.class, "misses")
+        );
+        this.downloads = metrics.histogram(
+            MetricRegistry.name(Repository.class, "downloads")
+        );
+        this.written = new AtomicBoolean();
+    }
+
+    @Override
+    public void start() {
+        final ExecutorService seeder = Executors.newSingleThreadExecutor();
+        for (final String seed : this.seeds) {
+            seeder.execute(() -> this.seed(new File(seed)));
+        }
+        seeder.shutdown();
+    }
+
+    @Override
+    public void stop() {
+        // nothing to release
+    }
+
+    /**
+     * Whether builds should try offline resolution first.
+     * @return True if offline first.
+     */
+    public boolean offlineFirst() {
+        return this.offline;
+    }
+
+    /**
+     * Configure the build to use this repository.
+     * @param request Invocation request.
+     * @param local Whether to resolve offline.
+     * @throws IOException If settings cannot be written.
+     */
+    public void configure(final InvocationRequest request,
+        final boolean local) throws IOException {
+        request.setLocalRepositoryDirectory(this.root.toFile());
+        if (!this.mirror.isEmpty()) {
+            request.setUserSettingsFile(this.settings());
+        }
+        request.setOffline(local);
+        final Properties props = new Properties();
+        if (request.getProperties() != null) {
+            props.putAll(request.getProperties());
+        }
+        props.setProperty("aether.syncContext.named.factory", "file-lock");
+        props.setProperty("aether.syncContext.named.nameMapper", "file-gav");
+        request.setProperties(props);
+    }
+
+    /**
+     * Whether the output line is an error of an artifact not resolved
+     * offline.
+     * @param line Maven output line.
+     * @return True if not resolved.
+     */
+    public boolean unresolved(final String line) {
+        return line.startsWith("[ERROR]") && line.contains("in offline mode");
+    }
+
+    /**
+     * Whether the offline build failed on artifacts missing in the local
+     * repository.
+     * @param result Result of the offline build.
+     * @param unresolved Whether the build reported artifacts not resolved
+     *  offline.
+     * @return True if missing.
+     */
+    public boolean missing(final InvocationResult result,
+        final boolean unresolved) {
+        return unresolved && result.getExecutionException() == null
+            && result.getExitCode() != 0;
+    }
+
+    /**
+     * Whether the output line reports a downloaded artifact.
+     * @param line Maven output line.
+     * @return True if downloaded.
+     */
+    public boolean downloaded(final String line) {
+        return line.contains("Downloaded from ")
+            || line.contains("Downloaded: ");
+    }
+
+    /**
+     * Record the build resolved from the local repository.
+     */
+    public void hit() {
+        this.hits.mark();
+        this.downloads.update(0);
+    }
+
+    /**
+     * Record the build which needed the mirror.
+     * @param artifacts Number of downloaded artifacts.
+     */
+    public void miss(final int artifacts) {
+        this.misses.mark();
+        this.downloads.update(artifacts);
+    }
+
+    /**
+     * Resolve all dependencies and plugins of the project.
+     * @param pom Project POM file.
+     */
+    private void seed(final File pom) {
+        final InvocationRequest request = new DefaultInvocationRequest();
+        request.setPomFile(pom);
+        request.setGoals(
+            Arrays.asList("dependency:go-offline", "test-compile")
+        );
+        try {
+            this.configure(request, false);
+            log.info(
+                "Seeded repository from {} with exit code {}",
+                pom,
+                this.engine.execute(
+                    request, line -> log.debug("seed: {}", line)
+                ).getExitCode()
+            );
+        } catch (final IOException | MavenInvocationException ex) {
+            log.error("Could not seed repository", ex);
+        }
+    }
+
+    /**
+     * Maven settings pointing to this repository and the mirror.
+     * @return Settings file.
+     * @throws IOException If settings cannot be written.
+     */
+    private synchronized File settings() throws IOException {
+        final Path file = this.root.resolve(Repository.SETTINGS);
+        if (!this.written.getAndSet(true)) {
+            Files.createDirectories(this.root);
+            final String xml = new StringBuilder(256)
+                .append("<settings>\n  <localRepository>")
+                .append(XmlEscapers.xmlContentEscaper().escape(
+                    this.root.toString()
+                ))
+                .append("</localRepository>\n  <mirrors>\n    <mirror>\n")
+                .append("      <id>xcompiler</id>\n")
+                .append("      <mirrorOf>*</mirrorOf>\n      <url>")
+                .append(XmlEscapers.xmlContentEscaper().escape(this.mirror))
+                .append("</url>\n    </mirror>\n  </mirrors>\n</settings>\n")
+                .toString();
+            Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+        }
+        return file.toFile();
+    }
+}
@@ -0,0 +1,426 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.piotrkot.api.Job;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded build scheduler with per-user fair queuing.
+ *
+ * <p>Jobs wait in per-user queues which are served in round-robin order,
+ * so a user submitting many builds does not starve the others. Each accepted
+ * job posts one dispatch to the fixed size worker pool and the dispatch runs
+ * whichever job is next in turn, not necessarily the one that posted it.
+ *
+ * <p>Jobs can be cancelled and are stopped when running longer than the
+ * timeout. Stopping a running job interrupts its worker, waiting jobs are
+ * taken out of the queue and run interrupted in the calling thread, so that
+ * they only release their resources.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class Scheduler {
+    /**
+     * Workers running the builds.
+     */
+    private final transient ExecutorService workers;
+    /**
+     * Number of workers.
+     */
+    private final transient int size;
+    /**
+     * Maximal number of waiting jobs.
+     */
+    private final transient int capacity;
+    /**
+     * Waiting jobs per user.
+     */
+    private final transient Map<String, Queue<Scheduler.Submitted>> queues;
+    /**
+     * Users with waiting jobs in the order of their turns.
+     */
+    private final transient Queue<String> turns;
+    /**
+     * Waiting and running jobs by their requests.
+     */
+    private final transient Map<Long, Scheduler.Submitted> jobs;
+    /**
+     * Stopper of the jobs running too long.
+     */
+    private final transient ScheduledExecutorService watchdog;
+    /**
+     * Maximal running time of a job in milliseconds, zero for none.
+     */
+    private final transient long timeout;
+    /**
+     * Number of waiting jobs.
+     */
+    private final transient AtomicInteger waiting;
+    /**
+     * Number of running jobs.
+     */
+    private final transient AtomicInteger running;
+    /**
+     * Time jobs spend in the queue.
+     */
+    private final transient Timer wait;
+    /**
+     * Time jobs spend running.
+     */
+    private final transient Timer duration;
+    /**
+     * Rejected jobs.
+     */
+    private final transient Meter rejected;
+    /**
+     * Stopped jobs.
+     */
+    private final transient Meter stopped;
+
+    /**
+     * Class constructor.
+     * @param executor Fixed size executor of the build workers.
+     * @param threads Number of threads of the executor.
+     * @param limit Maximal number of waiting jobs.
+     * @param alarms Executor stopping the jobs running too long.
+     * @param time Maximal running time of a job in milliseconds, zero for
+     *  none.
+     * @param metrics Metrics registry.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    public Scheduler(final ExecutorService executor, final int threads,
+        final int limit, final ScheduledExecutorService alarms,
+        final long time, final MetricRegistry metrics) {
+        this.workers = executor;
+        this.size = threads;
+        this.capacity = limit;
+        this.watchdog = alarms;
+        this.timeout = time;
+        this.jobs = new ConcurrentHashMap<>(0);
+        this.queues = new HashMap<>();
+        this.turns = new ArrayDeque<>();
+        this.waiting = new AtomicInteger();
+        this.running = new AtomicInteger();
+        this.wait = metrics.timer(MetricRegistry.name(Scheduler.class, "wait"));
+        this.duration = metrics.timer(
+            MetricRegistry.name(Scheduler.class, "duration")
+        );
+        this.rejected = metrics.meter(
+            MetricRegistry.name(Scheduler.class, "rejected")
+        );
+        this.stopped = metrics.meter(
+            MetricRegistry.name(Scheduler.class, "stopped")
+        );
+        metrics.register(
+            MetricRegistry.name(Scheduler.class, "queued"),
+            (Gauge<Integer>) this.waiting::get
+        );
+        metrics.register(
+            MetricRegistry.name(Scheduler.class, "running"),
+            (Gauge<Integer>) this.running::get
+        );
+    }
+
+    /**
+     * Submit the build job of the user.
+     * @param user User name.
+     * @param request Request id of the job.
+     * @param task Build job, interrupted when stopped.
+     * @return True if accepted, false if the queue is full.
+     */
+    public boolean submit(final String user, final long request,
+        final Runnable task) {
+        boolean accepted = false;
+        synchronized (this.queues) {
+            if (this.waiting.get() < this.capacity) {
+                Queue<Scheduler.Submitted> queue = this.queues.get(user);
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    this.queues.put(user, queue);
+                    this.turns.add(user);
+                }
+                final Scheduler.Submitted job =
+                    new Scheduler.Submitted(user, request, task);
+                queue.add(job);
+                this.jobs.put(request, job);
+                this.waiting.incrementAndGet();
+                accepted = true;
+            }
+        }
+        if (accepted) {
+            this.workers.execute(this::dispatch);
+        } else {
+            this.rejected.mark();
+            log.info("Build queue full, rejected job of {}", user);
+        }
+        return accepted;
+    }
+
+    /**
+     * Estimated number of seconds after which a rejected job may be retried.
+     * @return Seconds, at least one.
+     */
+    public long retryAfter() {
+        final double mean = this.duration.getSnapshot().getMean();
+        return Math.max(
+            1L,
+            (long) Math.ceil(
+                mean * this.waiting.get() / this.size
+                    / TimeUnit.SECONDS.toNanos(1L)
+            )
+        );
+    }
+
+    /**
+     * Cancel the waiting or running job.
+     * @param request Request id of the job.
+     * @return True if cancelled, false if there is no such job.
+     */
+    public boolean cancel(final long request) {
+        return this.stop(request, Job.Status.CANCELLED);
+    }
+
+    /**
+     * Stop the waiting or running job for the reason.
+     * @param request Request id of the job.
+     * @param why Status the job ends with.
+     * @return True if stopped, false if there is no such job.
+     */
+    public boolean stop(final long request, final Job.Status why) {
+        final Scheduler.Submitted job = this.jobs.get(request);
+        if (job != null && job.stop(why)) {
+            this.stopped.mark();
+            if (this.dequeue(job)) {
+                Thread.currentThread().interrupt();
+                try {
+                    job.task.run();
+                } finally {
+                    Thread.interrupted();
+                    this.jobs.remove(request, job);
+                }
+            }
+        }
+        return job != null;
+    }
+
+    /**
+     * Why the job was stopped, to be called by the job itself.
+     * @param request Request id of the job.
+     * @return Status the job ends with, empty if the job was not stopped.
+     */
+    public Optional<Job.Status> stopped(final long request) {
+        return Optional.ofNullable(this.jobs.get(request))
+            .flatMap(job -> Optional.ofNullable(job.reason));
+    }
+
+    /**
+     * Run the job which is next in turn.
+     */
+    private void dispatch() {
+        final Scheduler.Submitted job = this.next();
+        if (job != null) {
+            this.wait.update(
+                System.nanoTime() - job.since, TimeUnit.NANOSECONDS
+            );
+            this.running.incrementAndGet();
+            final Timer.Context timer = this.duration.time();
+            job.start();
+            final Optional<ScheduledFuture<?>> alarm = this.alarm(job);
+            try {
+                job.task.run();
+            } finally {
+                alarm.ifPresent(future -> future.cancel(false));
+                job.finish();
+                Thread.interrupted();
+                this.jobs.remove(job.request, job);
+                timer.stop();
+                this.running.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Schedule stopping the job when it runs too long.
+     * @param job Running job.
+     * @return Scheduled stop, empty if there is no timeout.
+     */
+    private Optional<ScheduledFuture<?>> alarm(final Scheduler.Submitted job) {
+        Optional<ScheduledFuture<?>> alarm = Optional.empty();
+        if (this.timeout > 0L) {
+            alarm = Optional.of(
+                this.watchdog.schedule(
+                    () -> {
+                        if (job.stop(Job.Status.TIMED_OUT)) {
+                            this.stopped.mark();
+                            log.info(
+                                "Job {} timed out after {} ms",
+                                job.request, this.timeout
+                            );
+                        }
+                    },
+                    this.timeout, TimeUnit.MILLISECONDS
+                )
+            );
+        }
+        return alarm;
+    }
+
+    /**
+     * Take the job of the user whose turn it is.
+     * @return Waiting job, null if cancelled jobs left the queue empty.
+     */
+    private Scheduler.Submitted next() {
+        synchronized (this.queues) {
+            Scheduler.Submitted job = null;
+            if (!this.turns.isEmpty()) {
+                final String user = this.turns.remove();
+                final Queue<Scheduler.Submitted> queue = this.queues.get(user);
+                job = queue.remove();
+                if (queue.isEmpty()) {
+                    this.queues.remove(user);
+                } else {
+                    this.turns.add(user);
+                }
+                this.waiting.decrementAndGet();
+            }
+            return job;
+        }
+    }
+
+    /**
+     * Take the job out of the queue if still waiting.
+     * @param job Job.
+     * @return True if it was waiting.
+     */
+    private boolean dequeue(final Scheduler.Submitted job) {
+        synchronized (this.queues) {
+            final Queue<Scheduler.Submitted> queue = this.queues.get(job.user);
+            final boolean removed = queue != null && queue.remove(job);
+            if (removed) {
+                if (queue.isEmpty()) {
+                    this.queues.remove(job.user);
+                    this.turns.remove(job.user);
+                }
+                this.waiting.decrementAndGet();
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Waiting or running job.
+     */
+    private static final class Submitted {
+        /**
+         * User name.
+         */
+        private final transient String user;
+        /**
+         * Request id.
+         */
+        private final transient long request;
+        /**
+         * Build task.
+         */
+        private final transient Runnable task;
+        /**
+         * Time of submission in nanoseconds.
+         */
+        private final transient long since;
+        /**
+         * Thread running the job, null unless running.
+         */
+        private transient Thread worker;
+        /**
+         * Why the job was stopped, null unless stopped.
+         */
+        private transient volatile Job.Status reason;
+
+        /**
+         * Class constructor.
+         * @param name User name.
+         * @param id Request id.
+         * @param runnable Build task.
+         */
+        Submitted(final String name, final long id, final Runnable runnable) {
+            this.user = name;
+            this.request = id;
+            this.task = runnable;
+            this.since = System.nanoTime();
+        }
+
+        /**
+         * Mark the job running in the current thread, interrupting it if
+         * the job was already stopped.
+         */
+        public synchronized void start() {
+            this.worker = Thread.currentThread();
+            if (this.reason != null) {
+                this.worker.interrupt();
+            }
+        }
+
+        /**
+         * Mark the job not running any more.
+         */
+        public synchronized void finish() {
+            this.worker = null;
+        }
+
+        /**
+         * Stop the job, interrupting it if running.
+         * @param why Cancelled or timed out.
+         * @return True if stopped now, false if stopped before.
+         */
+        public synchronized boolean stop(final Job.Status why) {
+            final boolean first = this.reason == null;
+            if (first) {
+                this.reason = why;
+                if (this.worker != null) {
+                    this.worker.interrupt();
+                }
+            }
+            return first;
+        }
+    }
+}
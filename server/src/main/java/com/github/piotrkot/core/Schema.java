@@ -0,0 +1,128 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import io.dropwizard.lifecycle.Managed;
+import java.util.Arrays;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.skife.jdbi.v2.DBI;
+
+/**
+ * DB schema of the server, created or upgraded on start.
+ *
+ * <p>Statements are idempotent and executed in order on every start.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class Schema implements Managed {
+    /**
+     * Schema statements.
+     */
+    private static final List<String> STATEMENTS = Arrays.asList(
+        String.join(
+            " ",
+            "CREATE TABLE IF NOT EXISTS requests (req bigint NOT NULL,",
+            "mesg text, timestmp timestamp NOT NULL DEFAULT now())"
+        ),
+        "ALTER TABLE requests ADD COLUMN IF NOT EXISTS seq bigint",
+        String.join(
+            " ",
+            "UPDATE requests r SET seq = n.seq FROM (SELECT ctid,",
+            "row_number() OVER (PARTITION BY req ORDER BY timestmp) AS seq",
+            "FROM requests WHERE seq IS NULL) n WHERE r.ctid = n.ctid"
+        ),
+        "CREATE INDEX IF NOT EXISTS requests_req_seq ON requests (req, seq)",
+        String.join(
+            " ",
+            "DO $$ BEGIN IF (SELECT data_type FROM information_schema.columns",
+            "WHERE table_name = 'requests' AND column_name = 'req')",
+            "= 'integer' THEN",
+            "ALTER TABLE requests ALTER COLUMN req TYPE bigint;",
+            "END IF; END $$"
+        ),
+        String.join(
+            " ",
+            "CREATE TABLE IF NOT EXISTS jobs (id bigint PRIMARY KEY,",
+            "username text NOT NULL, status text NOT NULL,",
+            "stage text NOT NULL, created timestamp NOT NULL,",
+            "started timestamp, finished timestamp, exit integer)"
+        ),
+        String.join(
+            " ",
+            "CREATE TABLE IF NOT EXISTS events (job bigint NOT NULL,",
+            "seq bigint NOT NULL, kind text NOT NULL, module text, text text,",
+            "file text, line integer, run integer, failures integer,",
+            "errors integer, skipped integer)"
+        ),
+        "CREATE INDEX IF NOT EXISTS events_job_seq ON events (job, seq)",
+        String.join(
+            " ",
+            "CREATE TABLE IF NOT EXISTS chunks (req bigint NOT NULL,",
+            "first bigint NOT NULL, last bigint NOT NULL, body bytea NOT NULL,",
+            "timestmp timestamp NOT NULL, PRIMARY KEY (req, first, timestmp))",
+            "PARTITION BY RANGE (timestmp)"
+        ),
+        "CREATE TABLE IF NOT EXISTS chunks_default PARTITION OF chunks DEFAULT",
+        String.join(
+            " ",
+            "CREATE TABLE IF NOT EXISTS tails (req bigint NOT NULL,",
+            "seq bigint NOT NULL, mesg text NOT NULL,",
+            "timestmp timestamp NOT NULL, PRIMARY KEY (req, seq))"
+        )
+    );
+    /**
+     * DBI access.
+     */
+    private final transient DBI dbi;
+
+    /**
+     * Class constructor.
+     * @param dbaccess DBI access.
+     */
+    public Schema(final DBI dbaccess) {
+        this.dbi = dbaccess;
+    }
+
+    @Override
+    public void start() {
+        this.dbi.withHandle(
+            han -> {
+                for (final String statement : Schema.STATEMENTS) {
+                    han.execute(statement);
+                }
+                return Schema.STATEMENTS.size();
+            }
+        );
+        log.info("DB schema up to date");
+    }
+
+    @Override
+    public void stop() {
+        // nothing to release
+    }
+}
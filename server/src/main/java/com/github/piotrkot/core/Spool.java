@@ -0,0 +1,145 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory of the upload spools.
+ *
+ * <p>Uploads are kept in direct byte buffers of fixed size taken from a pool.
+ * Memory taken by all spools is limited by the budget and an upload larger
+ * than the threshold spills to disk, as does one that does not get memory
+ * within the budget.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class Spool {
+    /**
+     * Size of a buffer in bytes.
+     */
+    private static final int CHUNK = 64 * 1024;
+    /**
+     * Maximal size in bytes of an upload kept in memory.
+     */
+    private final transient long threshold;
+    /**
+     * Maximal memory in bytes taken by all spools.
+     */
+    private final transient long budget;
+    /**
+     * Memory in bytes taken by spools.
+     */
+    private final transient AtomicLong used;
+    /**
+     * Released buffers.
+     */
+    private final transient Queue<ByteBuffer> pool;
+    /**
+     * Uploads spilled to disk.
+     */
+    private final transient Meter spilled;
+
+    /**
+     * Class constructor.
+     * @param limit Maximal size in bytes of an upload kept in memory.
+     * @param memory Maximal memory in bytes taken by all spools.
+     * @param metrics Metrics registry.
+     */
+    public Spool(final long limit, final long memory,
+        final MetricRegistry metrics) {
+        this.threshold = limit;
+        this.budget = memory;
+        this.used = new AtomicLong();
+        this.pool = new ConcurrentLinkedQueue<>();
+        this.spilled = metrics.meter(
+            MetricRegistry.name(Spool.class, "spilled")
+        );
+        metrics.register(
+            MetricRegistry.name(Spool.class, "memory"),
+            (Gauge<Long>) this.used::get
+        );
+    }
+
+    /**
+     * Size of a buffer.
+     * @return Bytes.
+     */
+    public int chunk() {
+        return Spool.CHUNK;
+    }
+
+    /**
+     * Maximal size of an upload kept in memory.
+     * @return Bytes.
+     */
+    public long threshold() {
+        return this.threshold;
+    }
+
+    /**
+     * Take an empty buffer if the budget allows.
+     * @return Buffer, empty if the budget is exhausted.
+     */
+    public Optional<ByteBuffer> acquire() {
+        Optional<ByteBuffer> buffer = Optional.empty();
+        if (this.used.addAndGet(Spool.CHUNK) > this.budget) {
+            this.used.addAndGet(-Spool.CHUNK);
+        } else {
+            ByteBuffer free = this.pool.poll();
+            if (free == null) {
+                free = ByteBuffer.allocateDirect(Spool.CHUNK);
+            }
+            free.clear();
+            buffer = Optional.of(free);
+        }
+        return buffer;
+    }
+
+    /**
+     * Give the buffers back to the pool.
+     * @param buffers Buffers taken before.
+     */
+    public void release(final Collection<ByteBuffer> buffers) {
+        this.pool.addAll(buffers);
+        this.used.addAndGet(-(long) Spool.CHUNK * buffers.size());
+    }
+
+    /**
+     * Record an upload spilled to disk.
+     */
+    public void spill() {
+        this.spilled.mark();
+    }
+}
@@ -0,0 +1,656 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Extraction of a zip archive driven by local headers while it arrives.
+ *
+ * <p>Bytes read from the tapped stream are pushed through the parser, which
+ * writes the entries into the directory as soon as their data arrive. The
+ * parser gives up on anything it cannot handle, for instance stored entries
+ * followed by data descriptors, and the stream is read on undisturbed.
+ * Whether the extracted files are complete is only known once they are
+ * checked against the central directory.
+ *
+ * <p>As the central directory is not known yet, the limits are enforced on
+ * every write: entries may not grow past the size declared in their local
+ * header, all of them together past the given limit, and the written bytes
+ * are reserved in the workspace as they grow. The extraction gives up once
+ * any of them is exceeded.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+final class StreamingUnzip {
+    /**
+     * Signature of a local file header.
+     */
+    private static final int LOCAL = 0x04034b50;
+    /**
+     * Signature of a central directory header.
+     */
+    private static final int HEADER = 0x02014b50;
+    /**
+     * Signature of the end of central directory record.
+     */
+    private static final int END = 0x06054b50;
+    /**
+     * Signature of a data descriptor.
+     */
+    private static final int DESCRIPTOR = 0x08074b50;
+    /**
+     * Size of a local file header without variable fields.
+     */
+    private static final int LOCAL_SIZE = 30;
+    /**
+     * Size of a data descriptor without signature.
+     */
+    private static final int DESCRIPTOR_SIZE = 12;
+    /**
+     * Flag of encrypted entries.
+     */
+    private static final int ENCRYPTED = 1;
+    /**
+     * Flag of entries followed by data descriptors.
+     */
+    private static final int DESCRIBED = 8;
+    /**
+     * Compression method of stored entries.
+     */
+    private static final int STORED = 0;
+    /**
+     * Compression method of deflated entries.
+     */
+    private static final int DEFLATED = 8;
+    /**
+     * Size of the inflated data buffer.
+     */
+    private static final int BUFFER = 8192;
+    /**
+     * Bytes reserved in the workspace at once.
+     */
+    private static final long STEP = 1L << 20;
+    /**
+     * Workspace of the extracted files.
+     */
+    private final transient Workspaces.Workspace space;
+    /**
+     * Target directory.
+     */
+    private final transient Path dir;
+    /**
+     * Maximal bytes of all extracted files.
+     */
+    private final transient long limit;
+    /**
+     * Bytes of the structure being read.
+     */
+    private final transient ByteBuffer pending;
+    /**
+     * Inflated data buffer.
+     */
+    private final transient byte[] inflated;
+    /**
+     * Written files with their checksums and sizes.
+     */
+    private final transient Map<String, long[]> written;
+    /**
+     * Part of the archive being read.
+     */
+    private transient StreamingUnzip.State state;
+    /**
+     * Entry being written.
+     */
+    private transient StreamingUnzip.Current current;
+    /**
+     * Failure which stopped the extraction, if any.
+     */
+    private transient IOException failure;
+    /**
+     * Bytes of all written files.
+     */
+    private transient long total;
+    /**
+     * Bytes reserved in the workspace.
+     */
+    private transient long reserved;
+
+    /**
+     * Class constructor.
+     * @param workspace Workspace of the extracted files.
+     * @param max Maximal bytes of all extracted files.
+     */
+    StreamingUnzip(final Workspaces.Workspace workspace, final long max) {
+        this.space = workspace;
+        this.dir = workspace.dir();
+        this.limit = max;
+        this.pending = ByteBuffer.allocate(
+            StreamingUnzip.LOCAL_SIZE + 2 * 0xffff
+        ).order(ByteOrder.LITTLE_ENDIAN);
+        this.inflated = new byte[StreamingUnzip.BUFFER];
+        this.written = new HashMap<>(0);
+        this.state = StreamingUnzip.State.SIGNATURE;
+    }
+
+    /**
+     * Stream passing read bytes through the extraction.
+     * @param stream Uploaded stream.
+     * @return Tapped stream.
+     */
+    public InputStream tap(final InputStream stream) {
+        return new StreamingUnzip.Tap(stream, this);
+    }
+
+    /**
+     * Check the extracted files against the central directory.
+     * @param entries Entries of the central directory.
+     * @return True if all files were extracted intact.
+     */
+    public boolean verify(final Collection<CentralDirectory.Entry> entries) {
+        if (this.failure != null) {
+            log.info("Streaming extraction failed", this.failure);
+        }
+        boolean intact = this.failure == null
+            && this.state == StreamingUnzip.State.DONE;
+        int files = 0;
+        for (final CentralDirectory.Entry entry : entries) {
+            if (intact && !entry.directory()) {
+                final long[] file = this.written.get(entry.name());
+                intact = file != null && file[0] == entry.crc()
+                    && file[1] == entry.size();
+                ++files;
+            }
+        }
+        return intact && this.written.size() == files;
+    }
+
+    /**
+     * Stop the extraction, closing the file being written.
+     */
+    public void stop() {
+        if (this.current != null) {
+            this.current.close();
+            this.current = null;
+        }
+        if (this.failure == null && this.state != StreamingUnzip.State.DONE) {
+            this.failure = new ZipException("Archive ended prematurely");
+        }
+    }
+
+    /**
+     * Push the bytes through the extraction.
+     * @param bytes Bytes read.
+     * @param offset Offset of the first byte.
+     * @param length Number of bytes.
+     */
+    void feed(final byte[] bytes, final int offset, final int length) {
+        final ByteBuffer input = ByteBuffer.wrap(bytes, offset, length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (input.hasRemaining() && this.failure == null
+                && this.state != StreamingUnzip.State.DONE) {
+                this.step(input);
+            }
+        } catch (final IOException ex) {
+            this.failure = ex;
+            this.stop();
+        }
+    }
+
+    /**
+     * Consume input of the current part.
+     * @param input Input bytes.
+     * @throws IOException If the archive cannot be extracted this way.
+     */
+    private void step(final ByteBuffer input) throws IOException {
+        switch (this.state) {
+            case SIGNATURE:
+                if (this.gather(input, 4)) {
+                    final int sig = this.pending.getInt(0);
+                    if (sig == StreamingUnzip.LOCAL) {
+                        this.state = StreamingUnzip.State.HEADER;
+                    } else if (sig == StreamingUnzip.HEADER
+                        || sig == StreamingUnzip.END) {
+                        this.state = StreamingUnzip.State.DONE;
+                    } else {
+                        throw new ZipException("Invalid local header");
+                    }
+                }
+                break;
+            case HEADER:
+                if (this.gather(input, StreamingUnzip.LOCAL_SIZE)) {
+                    this.state = StreamingUnzip.State.NAME;
+                }
+                break;
+            case NAME:
+                if (this.gather(input, StreamingUnzip.LOCAL_SIZE
+                    + (this.pending.getShort(26) & 0xffff)
+                    + (this.pending.getShort(28) & 0xffff))) {
+                    this.open();
+                }
+                break;
+            case DATA:
+                this.data(input);
+                break;
+            case DESCRIPTOR:
+                if (this.gather(input, 4)) {
+                    int size = StreamingUnzip.DESCRIPTOR_SIZE;
+                    if (this.pending.getInt(0) == StreamingUnzip.DESCRIPTOR) {
+                        size += 4;
+                    }
+                    this.state = StreamingUnzip.State.SKIP;
+                    this.current = new StreamingUnzip.Current(
+                        null, null, StreamingUnzip.STORED, 0, size - 4
+                    );
+                }
+                break;
+            case SKIP:
+                final int skip = (int) Math.min(
+                    input.remaining(), this.current.left
+                );
+                input.position(input.position() + skip);
+                this.current.left -= skip;
+                if (this.current.left == 0L) {
+                    this.current = null;
+                    this.next();
+                }
+                break;
+            default:
+                throw new IllegalStateException(this.state.name());
+        }
+    }
+
+    /**
+     * Start the entry whose local header was gathered.
+     * @throws IOException If the entry cannot be extracted this way.
+     */
+    private void open() throws IOException {
+        final int flags = this.pending.getShort(6) & 0xffff;
+        final int method = this.pending.getShort(8) & 0xffff;
+        final long compressed = this.pending.getInt(18) & 0xffffffffL;
+        final long size = this.pending.getInt(22) & 0xffffffffL;
+        final byte[] bytes = new byte[this.pending.getShort(26) & 0xffff];
+        this.pending.position(StreamingUnzip.LOCAL_SIZE);
+        this.pending.get(bytes);
+        final String name = new String(bytes, StandardCharsets.UTF_8);
+        if ((flags & StreamingUnzip.ENCRYPTED) != 0
+            || method != StreamingUnzip.STORED
+            && method != StreamingUnzip.DEFLATED
+            || method == StreamingUnzip.STORED
+            && (flags & StreamingUnzip.DESCRIBED) != 0
+            || compressed == 0xffffffffL || size == 0xffffffffL) {
+            throw new ZipException(
+                String.format("Entry %s not extractable on arrival", name)
+            );
+        }
+        final Path target = this.dir.resolve(name).normalize();
+        if (!target.startsWith(this.dir) || target.equals(this.dir)) {
+            throw new ZipException(String.format("Entry %s outside", name));
+        }
+        if (name.endsWith("/")) {
+            Files.createDirectories(target);
+            this.current = new StreamingUnzip.Current(
+                null, null, method, flags, compressed
+            );
+        } else {
+            Files.createDirectories(target.getParent());
+            this.current = new StreamingUnzip.Current(
+                name, Files.newOutputStream(target), method, flags, compressed
+            );
+            if ((flags & StreamingUnzip.DESCRIBED) == 0) {
+                this.current.declared = size;
+            } else {
+                this.current.declared = this.limit;
+            }
+        }
+        this.state = StreamingUnzip.State.DATA;
+        if (this.current.left == 0L && this.current.inflater == null) {
+            this.finish();
+        }
+    }
+
+    /**
+     * Consume data of the current entry.
+     * @param input Input bytes.
+     * @throws IOException If writing fails or data are corrupted.
+     */
+    private void data(final ByteBuffer input) throws IOException {
+        if (this.current.inflater == null) {
+            final int count = (int) Math.min(
+                input.remaining(), this.current.left
+            );
+            this.write(
+                input.array(), input.arrayOffset() + input.position(), count
+            );
+            input.position(input.position() + count);
+            this.current.left -= count;
+            if (this.current.left == 0L) {
+                this.finish();
+            }
+        } else {
+            final Inflater inflater = this.current.inflater;
+            final int available = input.remaining();
+            inflater.setInput(
+                input.array(), input.arrayOffset() + input.position(),
+                available
+            );
+            try {
+                int count = inflater.inflate(this.inflated);
+                while (count > 0) {
+                    this.write(this.inflated, 0, count);
+                    count = inflater.inflate(this.inflated);
+                }
+            } catch (final DataFormatException ex) {
+                throw new ZipException(ex.getMessage());
+            }
+            if (inflater.needsDictionary()) {
+                throw new ZipException("Preset dictionary not supported");
+            }
+            input.position(
+                input.position() + available - inflater.getRemaining()
+            );
+            if (inflater.finished()) {
+                this.finish();
+            }
+        }
+    }
+
+    /**
+     * Write the uncompressed bytes of the current entry within the limits.
+     * @param bytes Bytes.
+     * @param offset Offset of the first byte.
+     * @param length Number of bytes.
+     * @throws IOException If fails or the limits are exceeded.
+     */
+    private void write(final byte[] bytes, final int offset,
+        final int length) throws IOException {
+        if (this.current.size + length > this.current.declared) {
+            throw new ZipException(
+                String.format(
+                    "Entry %s larger than declared", this.current.name
+                )
+            );
+        }
+        final long written = this.total + length;
+        if (written > this.limit) {
+            throw new ZipException(
+                String.format("Archive larger than %d bytes", this.limit)
+            );
+        }
+        if (written > this.reserved) {
+            final long more = Math.min(
+                this.limit, written + StreamingUnzip.STEP
+            );
+            if (!this.space.reserve(more)) {
+                throw new ZipException("Workspace quota exhausted");
+            }
+            this.reserved = more;
+        }
+        this.current.write(bytes, offset, length);
+        this.total = written;
+    }
+
+    /**
+     * Finish the current entry.
+     */
+    private void finish() {
+        final StreamingUnzip.Current done = this.current;
+        this.current = null;
+        done.close();
+        if (done.name != null) {
+            this.written.put(
+                done.name, new long[] {done.crc.getValue(), done.size}
+            );
+        }
+        if ((done.flags & StreamingUnzip.DESCRIBED) == 0) {
+            this.next();
+        } else {
+            this.pending.clear();
+            this.state = StreamingUnzip.State.DESCRIPTOR;
+        }
+    }
+
+    /**
+     * Expect the next signature.
+     */
+    private void next() {
+        this.pending.clear();
+        this.state = StreamingUnzip.State.SIGNATURE;
+    }
+
+    /**
+     * Gather bytes of the current structure.
+     * @param input Input bytes.
+     * @param total Size of the structure.
+     * @return True if all gathered.
+     * @throws IOException If the structure is too large.
+     */
+    private boolean gather(final ByteBuffer input, final int total)
+        throws IOException {
+        if (total > this.pending.capacity()) {
+            throw new ZipException("Local header too large");
+        }
+        while (this.pending.position() < total && input.hasRemaining()) {
+            this.pending.put(input.get());
+        }
+        return this.pending.position() == total;
+    }
+
+    /**
+     * Part of the archive being read.
+     */
+    private enum State {
+        /**
+         * Signature of the next structure.
+         */
+        SIGNATURE,
+        /**
+         * Fixed fields of a local header.
+         */
+        HEADER,
+        /**
+         * Name and extra field of a local header.
+         */
+        NAME,
+        /**
+         * Data of an entry.
+         */
+        DATA,
+        /**
+         * Signature of a data descriptor, if any.
+         */
+        DESCRIPTOR,
+        /**
+         * Rest of a data descriptor.
+         */
+        SKIP,
+        /**
+         * Central directory reached.
+         */
+        DONE
+    }
+
+    /**
+     * Entry being read.
+     */
+    private static final class Current {
+        /**
+         * Entry name, null for directories and descriptors.
+         */
+        private final transient String name;
+        /**
+         * Target file, null for directories and descriptors.
+         */
+        private final transient OutputStream out;
+        /**
+         * Inflater of deflated entries, null for stored ones.
+         */
+        private final transient Inflater inflater;
+        /**
+         * General purpose flags.
+         */
+        private final transient int flags;
+        /**
+         * Checksum of the written data.
+         */
+        private final transient CRC32 crc;
+        /**
+         * Number of written bytes.
+         */
+        private transient long size;
+        /**
+         * Number of bytes left to read of stored data or a descriptor.
+         */
+        private transient long left;
+        /**
+         * Uncompressed size declared by the local header.
+         */
+        private transient long declared;
+
+        /**
+         * Class constructor.
+         * @param path Entry name.
+         * @param file Target file.
+         * @param method Compression method.
+         * @param bits General purpose flags.
+         * @param compressed Compressed size.
+         * @checkstyle ParameterNumberCheck (3 lines)
+         */
+        Current(final String path, final OutputStream file, final int method,
+            final int bits, final long compressed) {
+            this.name = path;
+            this.out = file;
+            this.flags = bits;
+            this.crc = new CRC32();
+            this.left = compressed;
+            if (method == StreamingUnzip.DEFLATED) {
+                this.inflater = new Inflater(true);
+            } else {
+                this.inflater = null;
+            }
+        }
+
+        /**
+         * Write the uncompressed bytes.
+         * @param bytes Bytes.
+         * @param offset Offset of the first byte.
+         * @param length Number of bytes.
+         * @throws IOException If fails or there is no target file.
+         */
+        void write(final byte[] bytes, final int offset, final int length)
+            throws IOException {
+            if (this.out == null) {
+                throw new ZipException("Directory with content");
+            }
+            this.out.write(bytes, offset, length);
+            this.crc.update(bytes, offset, length);
+            this.size += length;
+        }
+
+        /**
+         * Release the file and the inflater.
+         */
+        void close() {
+            if (this.inflater != null) {
+                this.inflater.end();
+            }
+            if (this.out != null) {
+                try {
+                    this.out.close();
+                } catch (final IOException ex) {
+                    log.warn("Could not close {}", this.name, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stream passing read bytes to the extraction.
+     */
+    private static final class Tap extends FilterInputStream {
+        /**
+         * Extraction.
+         */
+        private final transient StreamingUnzip unzip;
+
+        /**
+         * Class constructor.
+         * @param stream Original stream.
+         * @param extraction Extraction.
+         */
+        Tap(final InputStream stream, final StreamingUnzip extraction) {
+            super(stream);
+            this.unzip = extraction;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = super.read();
+            if (read >= 0) {
+                this.unzip.feed(new byte[] {(byte) read}, 0, 1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset,
+            final int length) throws IOException {
+            final int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                this.unzip.feed(bytes, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public long skip(final long count) throws IOException {
+            throw new IOException("Skipping a tapped stream");
+        }
+    }
+}
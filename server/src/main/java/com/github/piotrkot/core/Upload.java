@@ -0,0 +1,167 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Uploaded archive.
+ *
+ * <p>The archive is spooled and, in streaming mode, extracted into the
+ * workspace of the job while it arrives, within the size limit and the
+ * workspace quota. The extracted files are used only if they match the
+ * central directory, otherwise they are removed and the archive is
+ * extracted from the spool before the build.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class Upload implements Closeable {
+    /**
+     * Spooled archive.
+     */
+    private final transient InputStreamCache cache;
+    /**
+     * Workspace of the job.
+     */
+    private final transient Workspaces.Workspace space;
+    /**
+     * Extraction while arriving, in streaming mode.
+     */
+    private final transient Optional<StreamingUnzip> unzip;
+    /**
+     * Whether the extraction while arriving is intact.
+     */
+    private transient boolean intact;
+
+    /**
+     * Class constructor.
+     * @param stream Uploaded stream.
+     * @param spool Memory of the spools.
+     * @param workspace Workspace of the job.
+     * @param streaming Whether to extract while arriving.
+     * @param limit Maximal bytes extracted while arriving.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    public Upload(final InputStream stream, final Spool spool,
+        final Workspaces.Workspace workspace, final boolean streaming,
+        final long limit) {
+        this.space = workspace;
+        if (streaming) {
+            this.unzip = Optional.of(new StreamingUnzip(workspace, limit));
+        } else {
+            this.unzip = Optional.empty();
+        }
+        InputStreamCache spooled = null;
+        try {
+            spooled = new InputStreamCache(
+                this.unzip.map(ext -> ext.tap(stream)).orElse(stream), spool
+            );
+        } finally {
+            this.unzip.ifPresent(StreamingUnzip::stop);
+            if (spooled == null) {
+                workspace.delete();
+            }
+        }
+        this.cache = spooled;
+    }
+
+    /**
+     * Spooled archive.
+     * @return Archive with random access.
+     */
+    public InputStreamCache cache() {
+        return this.cache;
+    }
+
+    /**
+     * Workspace of the job.
+     * @return Workspace.
+     */
+    public Workspaces.Workspace workspace() {
+        return this.space;
+    }
+
+    /**
+     * Hash of the archive.
+     * @return Hex encoded SHA-256 hash.
+     */
+    public String hash() {
+        return this.cache.hash();
+    }
+
+    /**
+     * Scan the central directory, checking the extraction while arriving.
+     * @param max Maximal number of entries read.
+     * @return Contents of the archive.
+     * @throws IOException If not a readable zip archive.
+     */
+    public Contents scan(final int max) throws IOException {
+        final Contents contents = new Contents(this.cache, max);
+        this.intact = this.unzip.isPresent()
+            && this.unzip.get().verify(contents.entries());
+        if (this.unzip.isPresent() && !this.intact) {
+            log.info("Extraction while uploading incomplete, discarded");
+            this.space.clear();
+        }
+        return contents;
+    }
+
+    /**
+     * Directory of the intact extraction while arriving.
+     * @return Directory, empty if the archive is still to be extracted.
+     */
+    public Optional<Path> extracted() {
+        Optional<Path> done = Optional.empty();
+        if (this.intact) {
+            done = Optional.of(this.space.dir());
+        }
+        return done;
+    }
+
+    /**
+     * Release the spool and the workspace, which is kept for the retention
+     * period.
+     */
+    @Override
+    public void close() {
+        this.cache.close();
+        this.space.release();
+    }
+
+    /**
+     * Release the spool and delete the workspace of a job not built.
+     */
+    public void discard() {
+        this.cache.close();
+        this.space.delete();
+    }
+}
@@ -0,0 +1,565 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.github.piotrkot.api.UploadStatus;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import io.dropwizard.lifecycle.Managed;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Archives uploaded in parts.
+ *
+ * <p>The size of the archive and of its parts is declared up front and
+ * every part is written straight to its place in the archive file, so the
+ * parts may arrive in any order, in parallel and more than once. A part is
+ * received only if its length and SHA-256 checksum match, otherwise it has
+ * to be sent again. Uploads are kept in memory and their files are removed
+ * once they are abandoned for the given time or the server restarts.
+ *
+ * <p>A user may keep only a limited number of uploads open, and the
+ * declared sizes of all open uploads are reserved against a disk budget, as
+ * their files are not covered by the workspaces quota.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class Uploads implements Managed {
+    /**
+     * Maximal number of parts of an archive.
+     */
+    private static final int PARTS = 100_000;
+    /**
+     * Size of the buffer copying a part.
+     */
+    private static final int BUFFER = 65_536;
+    /**
+     * Longest time between the runs of the reaper in milliseconds.
+     */
+    private static final long PERIOD = TimeUnit.MINUTES.toMillis(1L);
+    /**
+     * Suffix of the archive files.
+     */
+    private static final String SUFFIX = ".zip";
+    /**
+     * Directory of the archive files.
+     */
+    private final transient Path root;
+    /**
+     * Maximal bytes of an archive.
+     */
+    private final transient long archive;
+    /**
+     * Maximal bytes of a part.
+     */
+    private final transient long largest;
+    /**
+     * Milliseconds after which an untouched upload is abandoned.
+     */
+    private final transient long idle;
+    /**
+     * Maximal number of open uploads of a user.
+     */
+    private final transient int each;
+    /**
+     * Maximal bytes reserved by all open uploads.
+     */
+    private final transient long budget;
+    /**
+     * Bytes reserved by the open uploads.
+     */
+    private final transient AtomicLong reserved;
+    /**
+     * Uploads by their ids.
+     */
+    private final transient Map<String, Uploads.Session> sessions;
+    /**
+     * Reaper of the abandoned uploads.
+     */
+    private final transient ScheduledExecutorService reaper;
+    /**
+     * Parts failing the checksum.
+     */
+    private final transient Meter corrupted;
+
+    /**
+     * Class constructor.
+     * @param dir Directory of the archive files.
+     * @param max Maximal bytes of an archive.
+     * @param part Maximal bytes of a part.
+     * @param abandoned Milliseconds after which an upload is abandoned.
+     * @param open Maximal number of open uploads of a user.
+     * @param disk Maximal bytes reserved by all open uploads.
+     * @param metrics Metrics registry.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    public Uploads(final Path dir, final long max, final long part,
+        final long abandoned, final int open, final long disk,
+        final MetricRegistry metrics) {
+        this.root = dir;
+        this.archive = max;
+        this.largest = part;
+        this.idle = abandoned;
+        this.each = open;
+        this.budget = disk;
+        this.reserved = new AtomicLong();
+        this.sessions = new ConcurrentHashMap<>(0);
+        this.reaper = Executors.newSingleThreadScheduledExecutor();
+        this.corrupted = metrics.meter(
+            MetricRegistry.name(Uploads.class, "corrupted")
+        );
+        metrics.register(
+            MetricRegistry.name(Uploads.class, "open"),
+            (Gauge<Integer>) this.sessions::size
+        );
+        metrics.register(
+            MetricRegistry.name(Uploads.class, "reserved"),
+            (Gauge<Long>) this.reserved::get
+        );
+    }
+
+    @Override
+    public void start() throws IOException {
+        Files.createDirectories(this.root);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+            this.root, String.format("*%s", Uploads.SUFFIX)
+        )) {
+            for (final Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        final long period = Math.max(
+            1L, Math.min(this.idle, Uploads.PERIOD)
+        );
+        this.reaper.scheduleWithFixedDelay(
+            this::reap, period, period, TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        this.reaper.shutdown();
+        this.reaper.awaitTermination(1L, TimeUnit.MINUTES);
+        this.sessions.keySet().forEach(this::delete);
+    }
+
+    /**
+     * Reason the upload cannot be accepted.
+     * @param size Bytes of the archive.
+     * @param part Bytes of a part.
+     * @return Reason, empty if the upload is accepted.
+     */
+    public Optional<String> invalid(final long size, final long part) {
+        Optional<String> reason = Optional.empty();
+        if (size <= 0L || part <= 0L) {
+            reason = Optional.of("Sizes of archive and part must be positive");
+        } else if (size > this.archive) {
+            reason = Optional.of(
+                String.format(
+                    "Archive of %d bytes over the limit of %d",
+                    size, this.archive
+                )
+            );
+        } else if (part > this.largest) {
+            reason = Optional.of(
+                String.format(
+                    "Part of %d bytes over the limit of %d",
+                    part, this.largest
+                )
+            );
+        } else if (Uploads.count(size, part) > Uploads.PARTS) {
+            reason = Optional.of(
+                String.format(
+                    "Archive split in over %d parts", Uploads.PARTS
+                )
+            );
+        }
+        return reason;
+    }
+
+    /**
+     * Start the upload of a valid archive, reserving its size.
+     * @param user User uploading.
+     * @param size Bytes of the archive.
+     * @param part Bytes of a part.
+     * @return Upload, empty if the user has too many open uploads.
+     * @throws IOException If the archive file cannot be created or its size
+     *  is over the disk budget left.
+     */
+    public synchronized Optional<Uploads.Session> open(final String user,
+        final long size, final long part) throws IOException {
+        Optional<Uploads.Session> opened = Optional.empty();
+        final long open = this.sessions.values().stream()
+            .filter(session -> session.owner.equals(user))
+            .count();
+        if (open < this.each) {
+            if (this.reserved.get() + size > this.budget) {
+                throw new IOException(
+                    String.format(
+                        "No space for archive of %d bytes, %d of %d reserved",
+                        size, this.reserved.get(), this.budget
+                    )
+                );
+            }
+            final String id = UUID.randomUUID().toString();
+            final Uploads.Session session = new Uploads.Session(
+                id, user, size, part,
+                FileChannel.open(
+                    this.root.resolve(
+                        String.format("%s%s", id, Uploads.SUFFIX)
+                    ),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE
+                )
+            );
+            this.reserved.addAndGet(size);
+            this.sessions.put(id, session);
+            opened = Optional.of(session);
+        }
+        return opened;
+    }
+
+    /**
+     * Upload of the user.
+     * @param user User uploading.
+     * @param id Upload id.
+     * @return Upload, empty if not known or of another user.
+     */
+    public Optional<Uploads.Session> session(final String user,
+        final String id) {
+        return Optional.ofNullable(this.sessions.get(id))
+            .filter(session -> session.owner.equals(user));
+    }
+
+    /**
+     * Forget the upload, delete its archive file and release its size.
+     * @param id Upload id.
+     */
+    public void delete(final String id) {
+        final Uploads.Session session = this.sessions.remove(id);
+        if (session != null) {
+            this.reserved.addAndGet(-session.size);
+            try {
+                session.channel.close();
+                Files.deleteIfExists(
+                    this.root.resolve(String.format("%s%s", id, Uploads.SUFFIX))
+                );
+            } catch (final IOException ex) {
+                log.warn("Could not delete upload {}", id, ex);
+            }
+        }
+    }
+
+    /**
+     * Delete the uploads abandoned for longer than the idle time.
+     */
+    private void reap() {
+        final long cutoff = System.currentTimeMillis() - this.idle;
+        this.sessions.values().stream()
+            .filter(session -> session.abandoned(cutoff))
+            .map(session -> session.id)
+            .collect(Collectors.toList())
+            .forEach(
+                id -> {
+                    log.info("Upload {} abandoned, deleted", id);
+                    this.delete(id);
+                }
+            );
+    }
+
+    /**
+     * Number of parts of the archive.
+     * @param size Bytes of the archive.
+     * @param part Bytes of a part.
+     * @return Number of parts.
+     */
+    private static long count(final long size, final long part) {
+        return (size + part - 1L) / part;
+    }
+
+    /**
+     * Archive being uploaded in parts.
+     */
+    public final class Session {
+        /**
+         * Upload id.
+         */
+        private final transient String id;
+        /**
+         * User uploading.
+         */
+        private final transient String owner;
+        /**
+         * Bytes of the archive.
+         */
+        private final transient long size;
+        /**
+         * Bytes of a part.
+         */
+        private final transient long part;
+        /**
+         * Number of parts.
+         */
+        private final transient int parts;
+        /**
+         * Archive file.
+         */
+        private final transient FileChannel channel;
+        /**
+         * Received parts.
+         */
+        private final transient BitSet received;
+        /**
+         * Parts being written.
+         */
+        private final transient BitSet writing;
+        /**
+         * Whether the archive was taken for the build.
+         */
+        private transient boolean taken;
+        /**
+         * Milliseconds of the last use.
+         */
+        private transient volatile long touched;
+
+        /**
+         * Class constructor.
+         * @param upload Upload id.
+         * @param user User uploading.
+         * @param bytes Bytes of the archive.
+         * @param chunk Bytes of a part.
+         * @param file Archive file.
+         * @checkstyle ParameterNumberCheck (3 lines)
+         */
+        Session(final String upload, final String user, final long bytes,
+            final long chunk, final FileChannel file) {
+            this.id = upload;
+            this.owner = user;
+            this.size = bytes;
+            this.part = chunk;
+            this.parts = (int) Uploads.count(bytes, chunk);
+            this.channel = file;
+            this.received = new BitSet(this.parts);
+            this.writing = new BitSet(this.parts);
+            this.touched = System.currentTimeMillis();
+        }
+
+        /**
+         * State of the upload.
+         * @return Upload state.
+         */
+        public UploadStatus status() {
+            synchronized (this.received) {
+                return new UploadStatus(
+                    this.id, this.size, this.part,
+                    IntStream.range(0, this.parts)
+                        .filter(idx -> !this.received.get(idx))
+                        .boxed()
+                        .collect(Collectors.toList())
+                );
+            }
+        }
+
+        /**
+         * Write the part, unless it was received already.
+         * @param index Part number.
+         * @param body Content of the part.
+         * @param digest Expected SHA-256 checksum of the part.
+         * @return Reason the part was not received, empty if it was.
+         * @throws IOException If writing fails.
+         */
+        public Optional<String> write(final int index, final InputStream body,
+            final byte[] digest) throws IOException {
+            this.touched = System.currentTimeMillis();
+            Optional<String> reason = Optional.empty();
+            if (index < 0 || index >= this.parts) {
+                reason = Optional.of(
+                    String.format("No part %d of %d", index, this.parts)
+                );
+            } else {
+                boolean busy = false;
+                boolean fresh = false;
+                synchronized (this.received) {
+                    busy = this.writing.get(index);
+                    if (!busy && !this.received.get(index)) {
+                        this.writing.set(index);
+                        fresh = true;
+                    }
+                }
+                if (busy) {
+                    reason = Optional.of(
+                        String.format("Part %d is being received", index)
+                    );
+                } else if (fresh) {
+                    reason = this.receive(index, body, digest);
+                }
+            }
+            return reason;
+        }
+
+        /**
+         * Archive of the complete upload, to be read only once.
+         * @return Archive, empty if some parts are missing.
+         * @throws IOException If the archive cannot be read.
+         */
+        public Optional<InputStream> archive() throws IOException {
+            this.touched = System.currentTimeMillis();
+            boolean complete;
+            synchronized (this.received) {
+                complete = !this.taken
+                    && this.received.cardinality() == this.parts;
+                this.taken = complete;
+            }
+            Optional<InputStream> stream = Optional.empty();
+            if (complete) {
+                stream = Optional.of(
+                    Files.newInputStream(
+                        Uploads.this.root.resolve(
+                            String.format("%s%s", this.id, Uploads.SUFFIX)
+                        )
+                    )
+                );
+            }
+            return stream;
+        }
+
+        /**
+         * Give the archive back, to be taken again later.
+         */
+        public void release() {
+            synchronized (this.received) {
+                this.taken = false;
+            }
+            this.touched = System.currentTimeMillis();
+        }
+
+        /**
+         * Whether the upload was not used since the cutoff.
+         * @param cutoff Milliseconds of the cutoff.
+         * @return True if abandoned.
+         */
+        private boolean abandoned(final long cutoff) {
+            synchronized (this.received) {
+                return !this.taken && this.writing.isEmpty()
+                    && this.touched < cutoff;
+            }
+        }
+
+        /**
+         * Write the part to its place, checking its length and checksum.
+         * @param index Part number.
+         * @param body Content of the part.
+         * @param digest Expected SHA-256 checksum of the part.
+         * @return Reason the part was not received, empty if it was.
+         * @throws IOException If writing fails.
+         */
+        private Optional<String> receive(final int index,
+            final InputStream body, final byte[] digest) throws IOException {
+            final long offset = index * this.part;
+            final long expected = Math.min(this.part, this.size - offset);
+            Optional<String> reason = Optional.empty();
+            boolean done = false;
+            try {
+                final HashingInputStream stream = new HashingInputStream(
+                    Hashing.sha256(), ByteStreams.limit(body, expected + 1L)
+                );
+                final byte[] buffer = new byte[Uploads.BUFFER];
+                long written = 0L;
+                int read = stream.read(buffer);
+                while (read >= 0) {
+                    if (written + read <= expected) {
+                        this.place(buffer, read, offset + written);
+                    }
+                    written += read;
+                    read = stream.read(buffer);
+                }
+                if (written != expected) {
+                    reason = Optional.of(
+                        String.format(
+                            "Part %d has %d bytes instead of %d",
+                            index, written, expected
+                        )
+                    );
+                } else if (!MessageDigest.isEqual(
+                    stream.hash().asBytes(), digest
+                )) {
+                    Uploads.this.corrupted.mark();
+                    reason = Optional.of(
+                        String.format("Part %d checksum mismatch", index)
+                    );
+                }
+                done = !reason.isPresent();
+            } finally {
+                synchronized (this.received) {
+                    this.writing.clear(index);
+                    this.received.set(index, done);
+                }
+                this.touched = System.currentTimeMillis();
+            }
+            return reason;
+        }
+
+        /**
+         * Write the bytes at the position of the archive file.
+         * @param buffer Bytes.
+         * @param length Number of bytes.
+         * @param position Position in the file.
+         * @throws IOException If writing fails.
+         */
+        private void place(final byte[] buffer, final int length,
+            final long position) throws IOException {
+            final ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, length);
+            long at = position;
+            while (bytes.hasRemaining()) {
+                at += this.channel.write(bytes, at);
+            }
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.ToLongFunction;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Working directories of the builds.
+ *
+ * <p>Each job gets its own directory under the root, which may be a tmpfs
+ * mount. Jobs reserve the uncompressed size of their archive, and the
+ * reservations together with the measured disk usage must stay within the
+ * quota. The reaper periodically measures the workspaces and stops the
+ * jobs whose workspace grows past the per-job cap, or past its reservation
+ * while all workspaces together take more than the quota. It deletes the
+ * released workspaces once the retention period is over. Workspaces left
+ * by a previous run are adopted on start and deleted after the retention
+ * period too.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class Workspaces implements Managed {
+    /**
+     * Longest time between the runs of the reaper in milliseconds.
+     */
+    private static final long PERIOD = TimeUnit.MINUTES.toMillis(1L);
+    /**
+     * Root of the workspaces.
+     */
+    private final transient Path root;
+    /**
+     * Maximal bytes taken by all workspaces.
+     */
+    private final transient long quota;
+    /**
+     * Maximal bytes taken by one workspace.
+     */
+    private final transient long cap;
+    /**
+     * Milliseconds released workspaces are kept.
+     */
+    private final transient long retention;
+    /**
+     * Workspaces by their directories.
+     */
+    private final transient Map<Path, Workspaces.Workspace> spaces;
+    /**
+     * Reaper of the workspaces.
+     */
+    private final transient ScheduledExecutorService reaper;
+    /**
+     * Stops the job of the request id.
+     */
+    private final transient LongConsumer stop;
+    /**
+     * Workspaces growing past the cap or the quota.
+     */
+    private final transient Meter exceeded;
+
+    /**
+     * Class constructor.
+     * @param dir Root of the workspaces.
+     * @param total Maximal bytes taken by all workspaces.
+     * @param single Maximal bytes taken by one workspace.
+     * @param keep Milliseconds released workspaces are kept.
+     * @param overrun Stops the job of the request id.
+     * @param metrics Metrics registry.
+     * @checkstyle ParameterNumberCheck (4 lines)
+     */
+    public Workspaces(final Path dir, final long total, final long single,
+        final long keep, final LongConsumer overrun,
+        final MetricRegistry metrics) {
+        this.root = dir;
+        this.quota = total;
+        this.cap = single;
+        this.retention = keep;
+        this.stop = overrun;
+        this.spaces = new ConcurrentHashMap<>(0);
+        this.reaper = Executors.newSingleThreadScheduledExecutor();
+        this.exceeded = metrics.meter(
+            MetricRegistry.name(Workspaces.class, "exceeded")
+        );
+        metrics.register(
+            MetricRegistry.name(Workspaces.class, "used"),
+            (Gauge<Long>) () -> this.sum(space -> space.used)
+        );
+        metrics.register(
+            MetricRegistry.name(Workspaces.class, "reserved"),
+            (Gauge<Long>) () -> this.sum(space -> space.reserved)
+        );
+        metrics.register(
+            MetricRegistry.name(Workspaces.class, "count"),
+            (Gauge<Integer>) this.spaces::size
+        );
+    }
+
+    @Override
+    public void start() throws IOException {
+        Files.createDirectories(this.root);
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(
+            this.root, Files::isDirectory
+        )) {
+            for (final Path dir : dirs) {
+                final Workspaces.Workspace space = new Workspaces.Workspace(
+                    dir, -1L, Files.getLastModifiedTime(dir).toMillis()
+                );
+                space.measure();
+                this.spaces.put(dir, space);
+            }
+        }
+        log.info(
+            "Workspaces in {}, {} left from the previous run",
+            this.root, this.spaces.size()
+        );
+        final long period = Math.max(
+            1L, Math.min(this.retention, Workspaces.PERIOD)
+        );
+        this.reaper.scheduleWithFixedDelay(
+            this::reap, period, period, TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        this.reaper.shutdown();
+        this.reaper.awaitTermination(1L, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Allocate the workspace of the job.
+     * @param request Request id.
+     * @return Workspace, release it when the job is done.
+     * @throws IOException If the directory cannot be created.
+     */
+    public Workspaces.Workspace allocate(final long request)
+        throws IOException {
+        final Path dir = Files.createTempDirectory(
+            this.root, String.format("job%d-", request)
+        );
+        final Workspaces.Workspace space =
+            new Workspaces.Workspace(dir, request, Long.MAX_VALUE);
+        this.spaces.put(dir, space);
+        return space;
+    }
+
+    /**
+     * Maximal bytes taken by one workspace.
+     * @return Bytes.
+     */
+    public long cap() {
+        return this.cap;
+    }
+
+    /**
+     * Delete the expired workspaces, measure the others and stop the jobs
+     * over the cap or the quota.
+     */
+    public void reap() {
+        final long now = System.currentTimeMillis();
+        long total = 0L;
+        for (final Workspaces.Workspace space : this.spaces.values()) {
+            if (now - space.released > this.retention) {
+                space.delete();
+            } else {
+                space.measure();
+                total += Workspaces.taken(space);
+                if (space.used > this.cap && !space.over) {
+                    log.warn(
+                        "Workspace {} takes {} bytes, over the cap of {}",
+                        space.dir, space.used, this.cap
+                    );
+                    this.overrun(space);
+                }
+            }
+        }
+        if (total > this.quota) {
+            log.warn(
+                "Workspaces take {} bytes, over the quota of {}",
+                total, this.quota
+            );
+            for (final Workspaces.Workspace space : this.spaces.values()) {
+                if (space.used > space.reserved && !space.over) {
+                    log.warn(
+                        "Workspace {} takes {} bytes, {} reserved",
+                        space.dir, space.used, space.reserved
+                    );
+                    this.overrun(space);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the job using the workspace, if still in use.
+     * @param space Workspace over the cap or the quota.
+     */
+    private void overrun(final Workspaces.Workspace space) {
+        space.over = true;
+        this.exceeded.mark();
+        if (space.released == Long.MAX_VALUE) {
+            this.stop.accept(space.request);
+        }
+    }
+
+    /**
+     * Bytes of all workspaces.
+     * @param bytes Bytes of a workspace.
+     * @return Sum of the bytes.
+     */
+    private long sum(final ToLongFunction<Workspaces.Workspace> bytes) {
+        return this.spaces.values().stream().mapToLong(bytes).sum();
+    }
+
+    /**
+     * Bytes counted against the quota.
+     * @param space Workspace.
+     * @return Larger of the reserved and the used bytes.
+     */
+    private static long taken(final Workspaces.Workspace space) {
+        return Math.max(space.reserved, space.used);
+    }
+
+    /**
+     * Bytes of the files in the directory.
+     * @param dir Directory.
+     * @return Bytes, skipping files which disappear while measured.
+     */
+    private static long size(final Path dir) {
+        final AtomicLong bytes = new AtomicLong();
+        try {
+            Files.walkFileTree(
+                dir,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file,
+                        final BasicFileAttributes attrs) {
+                        bytes.addAndGet(attrs.size());
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(final Path file,
+                        final IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                }
+            );
+        } catch (final IOException ex) {
+            log.warn("Could not measure {}", dir, ex);
+        }
+        return bytes.get();
+    }
+
+    /**
+     * Delete the content of the directory.
+     * @param dir Directory.
+     * @param self Whether to delete the directory itself too.
+     */
+    private static void clear(final Path dir, final boolean self) {
+        try {
+            Files.walkFileTree(
+                dir,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file,
+                        final BasicFileAttributes attrs) throws IOException {
+                        Files.deleteIfExists(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(
+                        final Path path, final IOException exc)
+                        throws IOException {
+                        if (self || !path.equals(dir)) {
+                            Files.deleteIfExists(path);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                }
+            );
+        } catch (final IOException ex) {
+            log.warn("Could not delete {}", dir, ex);
+        }
+    }
+
+    /**
+     * Working directory of a job.
+     */
+    public final class Workspace {
+        /**
+         * Directory of the workspace.
+         */
+        private final transient Path dir;
+        /**
+         * Request id of the job, negative if left by a previous run.
+         */
+        private final transient long request;
+        /**
+         * Measured bytes.
+         */
+        private transient volatile long used;
+        /**
+         * Reserved bytes.
+         */
+        private transient volatile long reserved;
+        /**
+         * Milliseconds when released, maximal value while in use.
+         */
+        private transient volatile long released;
+        /**
+         * Whether the workspace was reported over the cap or the quota.
+         */
+        private transient volatile boolean over;
+
+        /**
+         * Class constructor.
+         * @param path Directory of the workspace.
+         * @param job Request id of the job.
+         * @param time Milliseconds when released.
+         */
+        Workspace(final Path path, final long job, final long time) {
+            this.dir = path;
+            this.request = job;
+            this.released = time;
+        }
+
+        /**
+         * Directory of the workspace.
+         * @return Directory.
+         */
+        public Path dir() {
+            return this.dir;
+        }
+
+        /**
+         * Reserve the bytes the job is going to take.
+         * @param bytes Bytes to reserve.
+         * @return True if reserved within the quota.
+         */
+        public boolean reserve(final long bytes) {
+            synchronized (Workspaces.this) {
+                final long others = Workspaces.this.sum(Workspaces::taken)
+                    - Workspaces.taken(this);
+                final boolean fits = bytes <= Workspaces.this.quota - others;
+                if (fits) {
+                    this.reserved = bytes;
+                }
+                return fits;
+            }
+        }
+
+        /**
+         * Delete the content, keeping the directory.
+         */
+        public void clear() {
+            Workspaces.clear(this.dir, false);
+        }
+
+        /**
+         * Release the workspace, it is deleted after the retention period.
+         */
+        public void release() {
+            this.measure();
+            this.released = System.currentTimeMillis();
+        }
+
+        /**
+         * Delete the workspace now.
+         */
+        public void delete() {
+            Workspaces.clear(this.dir, true);
+            Workspaces.this.spaces.remove(this.dir, this);
+        }
+
+        /**
+         * Measure the bytes taken.
+         */
+        private void measure() {
+            this.used = Workspaces.size(this.dir);
+        }
+    }
+}
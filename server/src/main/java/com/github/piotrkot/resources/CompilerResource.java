@@ -24,32 +24,56 @@
 package com.github.piotrkot.resources;
 
 import com.codahale.metrics.annotation.Timed;
+import com.github.piotrkot.api.Appended;
+import com.github.piotrkot.api.Event;
+import com.github.piotrkot.api.Job;
 import com.github.piotrkot.api.PersistentLogs;
-import com.github.piotrkot.core.Archive;
-import com.github.piotrkot.core.DBLogs;
-import com.github.piotrkot.core.InputStreamCache;
-import com.github.piotrkot.core.Maven;
+import com.github.piotrkot.api.UploadStatus;
+import com.github.piotrkot.core.Builds;
+import com.github.piotrkot.core.Contents;
+import com.github.piotrkot.core.Jobs;
+import com.github.piotrkot.core.LogBus;
+import com.github.piotrkot.core.Outcomes;
+import com.github.piotrkot.core.ParsedLogs;
+import com.github.piotrkot.core.RecordedLogs;
+import com.github.piotrkot.core.Scheduler;
+import com.github.piotrkot.core.Upload;
+import com.github.piotrkot.core.Uploads;
 import io.dropwizard.auth.Auth;
+import java.io.IOException;
 import java.io.InputStream;
-import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import lombok.extern.slf4j.Slf4j;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
-import org.skife.jdbi.v2.DBI;
-import org.skife.jdbi.v2.util.StringMapper;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.SseFeature;
 
 /**
  * Compiler resource.
@@ -61,31 +85,97 @@ import org.skife.jdbi.v2.util.StringMapper;
 @Slf4j
 public final class CompilerResource {
     /**
-     * Executor of the background jobs.
+     * HTTP status of too many requests.
      */
-    private final transient ExecutorService executor;
+    private static final int TOO_MANY = 429;
     /**
-     * Random request generator.
+     * HTTP status of insufficient storage.
      */
-    private final transient SecureRandom random;
+    private static final int INSUFFICIENT = 507;
     /**
-     * DBI access point.
+     * Maximal number of build events kept per job.
      */
-    private final transient DBI dbi;
+    private static final int EVENTS = 10_000;
     /**
-     * DB messages.
+     * Header with the checksum of the content.
+     */
+    private static final String DIGEST = "Digest";
+    /**
+     * Prefix of the SHA-256 hash in the digest header.
+     */
+    private static final String SHA = "sha-256=";
+    /**
+     * Media type of JSON lines.
+     */
+    private static final String NDJSON = "application/x-ndjson";
+    /**
+     * Limit of all messages.
+     */
+    private static final String ALL = "2147483647";
+    /**
+     * Scheduler of the build jobs.
+     */
+    private final transient Scheduler scheduler;
+    /**
+     * Builds of the uploaded sources.
+     */
+    private final transient Builds builds;
+    /**
+     * Outcomes of identical builds.
+     */
+    private final transient Outcomes outcomes;
+    /**
+     * Registry of the jobs.
+     */
+    private final transient Jobs jobs;
+    /**
+     * Persistent log messages.
      */
     private final transient PersistentLogs dbmesg;
+    /**
+     * Bus of the log lines of running jobs.
+     */
+    private final transient LogBus bus;
+    /**
+     * Workers pushing the log events.
+     */
+    private final transient ExecutorService streams;
+    /**
+     * Maximal size of log lines appended in one request.
+     */
+    private final transient long appendable;
+    /**
+     * Archives uploaded in parts.
+     */
+    private final transient Uploads uploads;
 
     /**
      * Class constructor.
-     * @param dbaccess DBI access point.
+     * @param queue Scheduler of the build jobs.
+     * @param toolchain Builds of the uploaded sources.
+     * @param cache Outcomes of identical builds.
+     * @param logs Persistent log messages publishing to the bus.
+     * @param topics Bus of the log lines of running jobs.
+     * @param pushers Bounded executor of the log events workers.
+     * @param registry Registry of the jobs.
+     * @param appended Maximal size of log lines appended in one request.
+     * @param parts Archives uploaded in parts.
+     * @checkstyle ParameterNumberCheck (6 lines)
      */
-    public CompilerResource(final DBI dbaccess) {
-        this.dbi = dbaccess;
-        this.random = new SecureRandom();
-        this.executor = Executors.newCachedThreadPool();
-        this.dbmesg = new DBLogs(this.dbi);
+    public CompilerResource(final Scheduler queue,
+        final Builds toolchain, final Outcomes cache,
+        final PersistentLogs logs, final LogBus topics,
+        final ExecutorService pushers, final Jobs registry,
+        final long appended, final Uploads parts) {
+        this.jobs = registry;
+        this.scheduler = queue;
+        this.builds = toolchain;
+        this.outcomes = cache;
+        this.dbmesg = logs;
+        this.bus = topics;
+        this.streams = pushers;
+        this.appendable = appended;
+        this.uploads = parts;
     }
 
     /**
@@ -100,39 +190,538 @@ public final class CompilerResource {
 
     /**
      * Compile the sources.
+     *
+     * <p>Uploads identical to a build in flight or recently succeeded are
+     * not built again, the outcome of that build is reused.
+     *
      * @param user User name.
      * @param stream File input stream.
      * @param details File content details.
      * @return Request id.
+     * @throws WebApplicationException With status 400 if the archive is not
+     *  a zip archive with a POM file, 413 if it is too large, 429 if the
+     *  queue is full or 507 if there is no disk space for the workspace.
      */
     @Path("/source")
     @POST
     @Timed
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @Produces(MediaType.TEXT_PLAIN)
-    public Integer compileSources(@Auth final String user,
+    public Long compileSources(@Auth final String user,
         @FormDataParam("file") final InputStream stream,
         @FormDataParam("file") final FormDataContentDisposition details) {
-        final int request = this.random.nextInt();
-        this.dbi.withHandle(
-            han -> han.insert(
-                "INSERT INTO requests (req, mesg) VALUES (?, ?)",
-                request,
-                "Compiling Job started"
+        return this.compile(user, stream);
+    }
+
+    /**
+     * Start the upload of an archive in parts.
+     * @param user User name.
+     * @param size Bytes of the archive.
+     * @param part Bytes of a part.
+     * @return State of the upload.
+     * @throws WebApplicationException With status 400 if the sizes are not
+     *  accepted, 413 if the archive is too large, 429 if the user has too
+     *  many open uploads or 507 if there is no disk space for it.
+     */
+    @Path("/uploads")
+    @POST
+    @Timed
+    @Produces(MediaType.APPLICATION_JSON)
+    public UploadStatus openUpload(@Auth final String user,
+        @QueryParam("size") final long size,
+        @QueryParam("part") final long part) {
+        final Optional<String> invalid = this.uploads.invalid(size, part);
+        if (invalid.isPresent()) {
+            throw new WebApplicationException(
+                Response.status(Response.Status.BAD_REQUEST)
+                    .entity(invalid.get()).type(MediaType.TEXT_PLAIN).build()
+            );
+        }
+        final Optional<Uploads.Session> session;
+        try {
+            session = this.uploads.open(user, size, part);
+        } catch (final IOException ex) {
+            throw new WebApplicationException(
+                Response.status(CompilerResource.INSUFFICIENT)
+                    .entity(ex.getMessage()).type(MediaType.TEXT_PLAIN).build()
+            );
+        }
+        return session.orElseThrow(
+            () -> new WebApplicationException(
+                Response.status(CompilerResource.TOO_MANY)
+                    .entity("Too many open uploads, finish or delete them")
+                    .type(MediaType.TEXT_PLAIN).build()
             )
+        ).status();
+    }
+
+    /**
+     * Show the state of the upload, to resume it.
+     * @param user User name.
+     * @param upload Upload id.
+     * @return State of the upload.
+     * @throws WebApplicationException With status 404 if the upload is not
+     *  known.
+     */
+    @Path("/uploads/{upload}")
+    @GET
+    @Timed
+    @Produces(MediaType.APPLICATION_JSON)
+    public UploadStatus showUpload(@Auth final String user,
+        @PathParam("upload") final String upload) {
+        return this.upload(user, upload).status();
+    }
+
+    /**
+     * Receive the part of the upload.
+     *
+     * <p>Parts already received are accepted again without being written.
+     *
+     * @param user User name.
+     * @param upload Upload id.
+     * @param index Part number.
+     * @param digest SHA-256 checksum of the part, as {@code sha-256=} and the
+     *  Base64 encoded hash.
+     * @param body Content of the part.
+     * @return State of the upload.
+     * @throws IOException If writing the part fails.
+     * @throws WebApplicationException With status 400 if the part is not
+     *  received, it has to be sent again, or 404 if the upload is not known.
+     * @checkstyle ParameterNumberCheck (7 lines)
+     */
+    @Path("/uploads/{upload}/{index}")
+    @PUT
+    @Timed
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_JSON)
+    public UploadStatus uploadPart(@Auth final String user,
+        @PathParam("upload") final String upload,
+        @PathParam("index") final int index,
+        @HeaderParam(CompilerResource.DIGEST) final String digest,
+        final InputStream body) throws IOException {
+        final Uploads.Session session = this.upload(user, upload);
+        final Optional<String> reason = session.write(
+            index, body, CompilerResource.sha(digest)
+        );
+        if (reason.isPresent()) {
+            throw new WebApplicationException(
+                Response.status(Response.Status.BAD_REQUEST)
+                    .entity(reason.get()).type(MediaType.TEXT_PLAIN).build()
+            );
+        }
+        return session.status();
+    }
+
+    /**
+     * Compile the sources of the complete upload.
+     * @param user User name.
+     * @param upload Upload id.
+     * @return Request id.
+     * @throws IOException If reading the archive fails.
+     * @throws WebApplicationException With status 404 if the upload is not
+     *  known, 409 if some parts are missing, or as when the sources are
+     *  uploaded at once. The upload is kept for another try only if the
+     *  queue is full or there is no disk space.
+     */
+    @Path("/uploads/{upload}")
+    @POST
+    @Timed
+    @Produces(MediaType.TEXT_PLAIN)
+    public Long compileUpload(@Auth final String user,
+        @PathParam("upload") final String upload) throws IOException {
+        final Uploads.Session session = this.upload(user, upload);
+        final Optional<InputStream> archive = session.archive();
+        if (!archive.isPresent()) {
+            throw new WebApplicationException(
+                Response.status(Response.Status.CONFLICT)
+                    .entity("Upload incomplete or already compiled")
+                    .type(MediaType.TEXT_PLAIN).build()
+            );
+        }
+        boolean retry = false;
+        try (InputStream stream = archive.get()) {
+            return this.compile(user, stream);
+        } catch (final WebApplicationException ex) {
+            final int status = ex.getResponse().getStatus();
+            retry = status == CompilerResource.TOO_MANY
+                || status == CompilerResource.INSUFFICIENT;
+            throw ex;
+        } finally {
+            if (retry) {
+                session.release();
+            } else {
+                this.uploads.delete(upload);
+            }
+        }
+    }
+
+    /**
+     * Abandon the upload.
+     * @param user User name.
+     * @param upload Upload id.
+     * @throws WebApplicationException With status 404 if the upload is not
+     *  known.
+     */
+    @Path("/uploads/{upload}")
+    @DELETE
+    @Timed
+    public void deleteUpload(@Auth final String user,
+        @PathParam("upload") final String upload) {
+        this.upload(user, upload);
+        this.uploads.delete(upload);
+    }
+
+    /**
+     * Compile the uploaded archive.
+     * @param user User name.
+     * @param stream Archive.
+     * @return Request id.
+     * @throws WebApplicationException With status 400 if the archive is not
+     *  a zip archive with a POM file, 413 if it is too large, 429 if the
+     *  queue is full or 507 if there is no disk space for the workspace.
+     */
+    private Long compile(final String user, final InputStream stream) {
+        final long request = this.jobs.create(user);
+        this.bus.open(request);
+        this.dbmesg.append(request, "Compiling Job started");
+        final Upload upload;
+        try {
+            upload = this.builds.upload(request, stream);
+        } catch (final IOException ex) {
+            throw this.reject(
+                request,
+                String.format("Workspace not created: %s", ex.getMessage()),
+                Response.status(CompilerResource.INSUFFICIENT)
+            );
+        }
+        final Contents contents = this.inspect(request, upload);
+        final Optional<RecordedLogs> lead = this.outcomes.lead(
+            upload.hash(), request, this.dbmesg,
+            outcome -> {
+                this.jobs.record(request, outcome.events());
+                this.jobs.finish(
+                    request, outcome.stopped().orElse(Job.Status.REUSED),
+                    outcome.exit()
+                );
+                this.bus.close(request);
+            }
+        );
+        lead.ifPresent(logs -> this.jobs.reach(request, Job.Stage.QUEUE));
+        if (lead.isPresent() && !this.scheduler.submit(
+            user, request,
+            () -> this.build(lead.get(), request, upload, contents)
+        )) {
+            lead.get().abort(Job.Status.REJECTED);
+            throw this.reject(
+                request, upload, "Compiling Job rejected, queue full",
+                Response.status(CompilerResource.TOO_MANY)
+                    .header(
+                        HttpHeaders.RETRY_AFTER,
+                        this.scheduler.retryAfter()
+                    )
+            );
+        }
+        if (!lead.isPresent()) {
+            upload.discard();
+        }
+        return request;
+    }
+
+    /**
+     * Upload of the user.
+     * @param user User name.
+     * @param upload Upload id.
+     * @return Upload.
+     * @throws WebApplicationException With status 404 if the upload is not
+     *  known.
+     */
+    private Uploads.Session upload(final String user, final String upload) {
+        return this.uploads.session(user, upload).orElseThrow(
+            () -> new WebApplicationException(Response.Status.NOT_FOUND)
+        );
+    }
+
+    /**
+     * SHA-256 hash given in the digest header.
+     * @param header Digest header, with hashes as algorithm, equals sign and
+     *  Base64 encoded hash separated by commas.
+     * @return Hash.
+     * @throws WebApplicationException With status 400 if there is no valid
+     *  SHA-256 hash.
+     */
+    private static byte[] sha(final String header) {
+        final Optional<String> hash = Optional.ofNullable(header)
+            .flatMap(
+                value -> Arrays.stream(value.split(","))
+                    .map(String::trim)
+                    .filter(
+                        item -> item.toLowerCase(Locale.ENGLISH)
+                            .startsWith(CompilerResource.SHA)
+                    )
+                    .findFirst()
+            );
+        if (!hash.isPresent()) {
+            throw new WebApplicationException(
+                Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Digest header with SHA-256 hash required")
+                    .type(MediaType.TEXT_PLAIN).build()
+            );
+        }
+        try {
+            return Base64.getDecoder().decode(
+                hash.get().substring(CompilerResource.SHA.length())
+            );
+        } catch (final IllegalArgumentException ex) {
+            throw new WebApplicationException(
+                ex, Response.Status.BAD_REQUEST
+            );
+        }
+    }
+
+    /**
+     * Scan the central directory of the uploaded archive.
+     * @param request Request id.
+     * @param upload Uploaded archive.
+     * @return Contents of a buildable archive.
+     * @throws WebApplicationException If the archive cannot be built.
+     */
+    private Contents inspect(final long request, final Upload upload) {
+        final Contents contents;
+        try {
+            contents = this.builds.scan(upload);
+        } catch (final IOException ex) {
+            throw this.reject(
+                request, upload,
+                String.format("Not a zip archive: %s", ex.getMessage()),
+                Response.status(Response.Status.BAD_REQUEST)
+            );
+        }
+        final Optional<String> oversized = this.builds.oversized(contents);
+        if (oversized.isPresent()) {
+            throw this.reject(
+                request, upload, oversized.get(),
+                Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE)
+            );
+        }
+        if (!contents.pom().isPresent()) {
+            throw this.reject(
+                request, upload, "POM file not found",
+                Response.status(Response.Status.BAD_REQUEST)
+            );
+        }
+        if (!upload.workspace().reserve(contents.size())) {
+            throw this.reject(
+                request, upload, "Workspace quota exhausted",
+                Response.status(CompilerResource.INSUFFICIENT).header(
+                    HttpHeaders.RETRY_AFTER, this.scheduler.retryAfter()
+                )
+            );
+        }
+        return contents;
+    }
+
+    /**
+     * Server messages tagged with the sequence number of the last one.
+     * @param http HTTP request with its preconditions.
+     * @param request User request.
+     * @param format Format of the messages, text or json.
+     * @param after Sequence number after which messages are shown.
+     * @param limit Maximal number of messages.
+     * @return Messages, or 304 if the tag matches.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    private Response logs(final Request http, final long request,
+        final String format, final long after, final int limit) {
+        final EntityTag tag = new EntityTag(
+            String.format("%d-%s", this.dbmesg.last(request), format)
         );
-        final InputStreamCache cache = new InputStreamCache(stream);
-        this.executor.execute(
-            () -> {
+        Response.ResponseBuilder response = http.evaluatePreconditions(tag);
+        if (response == null) {
+            response = Response.ok(
+                new LogsOutput(
+                    this.dbmesg, request, after, limit, "json".equals(format)
+                )
+            );
+        }
+        final CacheControl cache = new CacheControl();
+        cache.setNoCache(true);
+        return response.tag(tag).cacheControl(cache).build();
+    }
+
+    /**
+     * Append the lines of the body as one batch.
+     * @param request User request.
+     * @param input Lines of the body.
+     * @return Sequence numbers of the first and the last appended line.
+     * @throws IOException If reading the lines fails.
+     */
+    private Appended append(final long request, final LinesInput input)
+        throws IOException {
+        final List<String> lines = input.lines();
+        final long last = this.dbmesg.append(request, lines);
+        return new Appended(last - lines.size() + 1L, last);
+    }
+
+    /**
+     * Reject the job, deleting its workspace.
+     * @param request Request id.
+     * @param upload Uploaded archive.
+     * @param mesg Reason of the rejection.
+     * @param response Response to the client.
+     * @return Exception to throw.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    private WebApplicationException reject(final long request,
+        final Upload upload, final String mesg,
+        final Response.ResponseBuilder response) {
+        upload.discard();
+        return this.reject(request, mesg, response);
+    }
+
+    /**
+     * Reject the job before its workspace is created.
+     * @param request Request id.
+     * @param mesg Reason of the rejection.
+     * @param response Response to the client.
+     * @return Exception to throw.
+     */
+    private WebApplicationException reject(final long request,
+        final String mesg, final Response.ResponseBuilder response) {
+        this.dbmesg.append(request, mesg);
+        this.dbmesg.flush(request);
+        this.jobs.finish(request, Job.Status.REJECTED, Optional.empty());
+        this.bus.close(request);
+        return new WebApplicationException(
+            response.entity(mesg).type(MediaType.TEXT_PLAIN).build()
+        );
+    }
+
+    /**
+     * Build the uploaded sources.
+     *
+     * <p>Outcomes of failed, cancelled and timed out builds are not reused.
+     *
+     * @param logs Log messages recording the outcome.
+     * @param request Request id.
+     * @param upload Uploaded archive.
+     * @param contents Contents of the archive.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    private void build(final RecordedLogs logs, final long request,
+        final Upload upload, final Contents contents) {
+        Optional<Integer> exit = Optional.empty();
+        final ParsedLogs parsed = new ParsedLogs(logs, CompilerResource.EVENTS);
+        try {
+            if (!Thread.currentThread().isInterrupted()) {
+                this.jobs.reach(request, Job.Stage.EXTRACT);
                 final Optional<java.nio.file.Path> dir =
-                    new Archive(this.dbmesg, request, cache.file())
-                        .uncompress();
-                if (dir.isPresent()) {
-                    new Maven(this.dbmesg, request, dir.get()).build();
+                    this.builds.extract(logs, request, upload);
+                if (dir.isPresent()
+                    && !Thread.currentThread().isInterrupted()) {
+                    this.jobs.reach(request, Job.Stage.BUILD);
+                    exit = this.builds.build(
+                        parsed, request, dir.get(), contents
+                    );
                 }
             }
+        } finally {
+            final Optional<Job.Status> stopped =
+                this.scheduler.stopped(request);
+            Thread.interrupted();
+            upload.close();
+            final List<Event> events = parsed.events();
+            if (stopped.isPresent()) {
+                logs.append(
+                    request,
+                    String.format(
+                        "Compiling Job %s",
+                        stopped.get().name().toLowerCase(Locale.ENGLISH)
+                            .replace('_', ' ')
+                    )
+                );
+                logs.flush(request);
+                logs.abort(stopped.get());
+            } else {
+                logs.flush(request);
+                logs.finish(exit, events);
+            }
+            this.jobs.record(request, events);
+            this.jobs.finish(
+                request, stopped.orElse(CompilerResource.status(exit)), exit
+            );
+            this.bus.close(request);
+        }
+    }
+
+    /**
+     * Status of the build which ran to the end.
+     * @param exit Exit code of Maven, empty if it did not run to the end.
+     * @return Succeeded or failed.
+     */
+    private static Job.Status status(final Optional<Integer> exit) {
+        Job.Status status = Job.Status.FAILED;
+        if (exit.isPresent() && exit.get() == 0) {
+            status = Job.Status.SUCCEEDED;
+        }
+        return status;
+    }
+
+    /**
+     * Show the state of the job.
+     * @param user User name.
+     * @param request User request.
+     * @return Job.
+     * @throws WebApplicationException With status 404 if the job is not
+     *  known.
+     */
+    @Path("/jobs/{request}")
+    @GET
+    @Timed
+    @Produces(MediaType.APPLICATION_JSON)
+    public Job showJob(@Auth final String user,
+        @PathParam("request") final long request) {
+        return this.jobs.get(request).orElseThrow(
+            () -> new WebApplicationException(Response.Status.NOT_FOUND)
         );
-        return request;
+    }
+
+    /**
+     * Show the build events of the job, found in its Maven output.
+     * @param user User name.
+     * @param request User request.
+     * @return Modules, plugin goals, compiler errors, test results and
+     *  failed tests in order of their log lines, empty until the build
+     *  finishes.
+     * @throws WebApplicationException With status 404 if the job is not
+     *  known.
+     */
+    @Path("/jobs/{request}/summary")
+    @GET
+    @Timed
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<Event> showSummary(@Auth final String user,
+        @PathParam("request") final long request) {
+        if (!this.jobs.get(request).isPresent()) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        return this.jobs.events(request);
+    }
+
+    /**
+     * Cancel the build, killing the running Maven processes.
+     * @param user User name.
+     * @param request User request.
+     * @throws WebApplicationException With status 404 if the job is not
+     *  waiting nor running.
+     */
+    @Path("/jobs/{request}")
+    @DELETE
+    @Timed
+    public void cancelJob(@Auth final String user,
+        @PathParam("request") final long request) {
+        if (!this.scheduler.cancel(request)) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
     }
 
     /**
@@ -148,27 +737,140 @@ public final class CompilerResource {
     @Produces(MediaType.TEXT_PLAIN)
     public void appendLogs(@Auth final String user,
         @FormParam("log") final String line,
-        @PathParam("request") final int request) {
+        @PathParam("request") final long request) {
         this.dbmesg.append(request, line);
     }
 
+    /**
+     * Append server logs given as lines of text in one go.
+     * @param user User name.
+     * @param request User request.
+     * @param body Lines separated with new line characters.
+     * @return Sequence numbers of the first and the last appended line.
+     * @throws IOException If reading the lines fails.
+     * @throws WebApplicationException With status 413 if the lines are too
+     *  large, 400 if there are none.
+     */
+    @Path("/logs/{request}")
+    @POST
+    @Timed
+    @Consumes(MediaType.TEXT_PLAIN)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Appended appendText(@Auth final String user,
+        @PathParam("request") final long request, final InputStream body)
+        throws IOException {
+        return this.append(
+            request, new LinesInput(body, this.appendable, false)
+        );
+    }
+
+    /**
+     * Append server logs given as JSON lines in one go.
+     * @param user User name.
+     * @param request User request.
+     * @param body JSON lines with the message in the mesg field.
+     * @return Sequence numbers of the first and the last appended line.
+     * @throws IOException If reading the lines fails.
+     * @throws WebApplicationException With status 413 if the lines are too
+     *  large, 400 if there are none or some are malformed.
+     */
+    @Path("/logs/{request}")
+    @POST
+    @Timed
+    @Consumes(CompilerResource.NDJSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Appended appendLines(@Auth final String user,
+        @PathParam("request") final long request, final InputStream body)
+        throws IOException {
+        return this.append(
+            request, new LinesInput(body, this.appendable, true)
+        );
+    }
+
     /**
      * Show server messages.
+     *
+     * <p>The entity tag is the sequence number of the last message, so
+     * unchanged messages are answered with 304 without reading them.
+     *
      * @param user User name.
      * @param request User request.
+     * @param after Sequence number after which messages are shown.
+     * @param limit Maximal number of messages.
+     * @param http HTTP request with its preconditions.
      * @return Messages as string joined on system new line character.
+     * @checkstyle ParameterNumberCheck (8 lines)
      */
     @Path("/logs/{request}")
     @GET
     @Timed
     @Produces(MediaType.TEXT_PLAIN)
-    public String showLogs(@Auth final String user,
-        @PathParam("request") final int request) {
-        return this.dbi.withHandle(
-            han -> han.createQuery(
-                "SELECT mesg FROM requests WHERE req = :r ORDER BY timestmp ASC"
-            ).bind("r", request).map(StringMapper.FIRST).list()
-        ).stream().collect(Collectors.joining(System.lineSeparator()));
+    public Response showLogs(@Auth final String user,
+        @PathParam("request") final long request,
+        @QueryParam("after") @DefaultValue("0") final long after,
+        @QueryParam("limit") @DefaultValue(CompilerResource.ALL)
+        final int limit, @Context final Request http) {
+        return this.logs(http, request, "text", after, limit);
+    }
+
+    /**
+     * Show server messages with their sequence numbers.
+     * @param user User name.
+     * @param request User request.
+     * @param after Sequence number after which messages are shown.
+     * @param limit Maximal number of messages.
+     * @param http HTTP request with its preconditions.
+     * @return Messages as JSON lines.
+     * @checkstyle ParameterNumberCheck (8 lines)
+     */
+    @Path("/logs/{request}")
+    @GET
+    @Timed
+    @Produces(CompilerResource.NDJSON)
+    public Response showLines(@Auth final String user,
+        @PathParam("request") final long request,
+        @QueryParam("after") @DefaultValue("0") final long after,
+        @QueryParam("limit") @DefaultValue(CompilerResource.ALL)
+        final int limit, @Context final Request http) {
+        return this.logs(http, request, "json", after, limit);
+    }
+
+    /**
+     * Push server messages as they are appended until the job finishes.
+     *
+     * <p>Messages after the given sequence number are sent first. Clients
+     * reconnecting send the id of the last event received instead.
+     *
+     * @param user User name.
+     * @param request User request.
+     * @param after Sequence number after which messages are pushed.
+     * @param last Id of the last event received by a reconnecting client.
+     * @return Server-sent events with sequence numbers as ids.
+     * @throws WebApplicationException With status 503 if too many clients.
+     * @checkstyle ParameterNumberCheck (7 lines)
+     */
+    @Path("/logs/{request}/events")
+    @GET
+    @Produces(SseFeature.SERVER_SENT_EVENTS)
+    public EventOutput streamLogs(@Auth final String user,
+        @PathParam("request") final long request,
+        @QueryParam("after") @DefaultValue("0") final long after,
+        @HeaderParam(SseFeature.LAST_EVENT_ID_HEADER) @DefaultValue("0")
+        final long last) {
+        final EventOutput output = new EventOutput();
+        try {
+            this.streams.execute(
+                new LogsEvents(
+                    this.dbmesg, this.bus, request, Math.max(after, last),
+                    output
+                )
+            );
+        } catch (final RejectedExecutionException ex) {
+            throw new WebApplicationException(
+                ex, Response.Status.SERVICE_UNAVAILABLE
+            );
+        }
+        return output;
     }
 
     /**
@@ -181,13 +883,9 @@ public final class CompilerResource {
     @DELETE
     @Timed
     @Produces(MediaType.TEXT_PLAIN)
-    public Integer deleteLogs(@Auth final String user,
+    public Long deleteLogs(@Auth final String user,
         @PathParam("request") final long request) {
-        return this.dbi.withHandle(
-            han -> han.update(
-                "DELETE FROM requests WHERE req = ?", request
-            )
-        );
+        return this.dbmesg.delete(request);
     }
 
     /**
@@ -0,0 +1,158 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import io.dropwizard.jackson.Jackson;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Log lines read from the request body.
+ *
+ * <p>Plain lines are separated with new line characters, JSON lines are
+ * objects with the message in the {@code mesg} field, as written by the
+ * logs output, and blank ones are skipped. The body is read whole before
+ * any line is appended, so a refused body appends nothing.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+final class LinesInput {
+    /**
+     * JSON mapper.
+     */
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+    /**
+     * Request body.
+     */
+    private final transient InputStream body;
+    /**
+     * Maximal size of the body in bytes.
+     */
+    private final transient long limit;
+    /**
+     * Whether to read JSON lines.
+     */
+    private final transient boolean json;
+
+    /**
+     * Class constructor.
+     * @param input Request body.
+     * @param max Maximal size of the body in bytes.
+     * @param lines Whether to read JSON lines.
+     */
+    LinesInput(final InputStream input, final long max, final boolean lines) {
+        this.body = input;
+        this.limit = max;
+        this.json = lines;
+    }
+
+    /**
+     * Read the message lines.
+     * @return Lines, at least one.
+     * @throws IOException If reading the body fails.
+     * @throws WebApplicationException With status 413 if the body is larger
+     *  than the limit, 400 if it has no lines or a JSON line is malformed.
+     */
+    public List<String> lines() throws IOException {
+        final byte[] bytes = ByteStreams.toByteArray(
+            ByteStreams.limit(this.body, this.limit + 1L)
+        );
+        if (bytes.length > this.limit) {
+            throw LinesInput.refuse(
+                Response.Status.REQUEST_ENTITY_TOO_LARGE,
+                String.format("Lines larger than %d bytes", this.limit)
+            );
+        }
+        final BufferedReader reader = new BufferedReader(
+            new InputStreamReader(
+                new ByteArrayInputStream(bytes), StandardCharsets.UTF_8
+            )
+        );
+        final List<String> lines = new ArrayList<>(0);
+        for (String line = reader.readLine(); line != null;
+            line = reader.readLine()) {
+            if (!this.json) {
+                lines.add(line);
+            } else if (!line.trim().isEmpty()) {
+                lines.add(LinesInput.mesg(line, lines.size() + 1));
+            }
+        }
+        if (lines.isEmpty()) {
+            throw LinesInput.refuse(Response.Status.BAD_REQUEST, "No lines");
+        }
+        return lines;
+    }
+
+    /**
+     * Message of the JSON line.
+     * @param line JSON line.
+     * @param number Number of the line in the body.
+     * @return Message.
+     * @throws WebApplicationException With status 400 if the line is
+     *  malformed.
+     */
+    private static String mesg(final String line, final int number) {
+        JsonNode node;
+        try {
+            node = LinesInput.MAPPER.readTree(line).path("mesg");
+        } catch (final IOException ex) {
+            node = null;
+        }
+        if (node == null || !node.isTextual()) {
+            throw LinesInput.refuse(
+                Response.Status.BAD_REQUEST,
+                String.format("Line %d has no message", number)
+            );
+        }
+        return node.textValue();
+    }
+
+    /**
+     * Refuse the body.
+     * @param status Response status.
+     * @param mesg Reason of the refusal.
+     * @return Exception to throw.
+     */
+    private static WebApplicationException refuse(
+        final Response.Status status, final String mesg) {
+        return new WebApplicationException(
+            Response.status(status).entity(mesg).type(MediaType.TEXT_PLAIN)
+                .build()
+        );
+    }
+}
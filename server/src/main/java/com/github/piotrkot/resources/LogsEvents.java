@@ -0,0 +1,181 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.resources;
+
+import com.github.piotrkot.api.Line;
+import com.github.piotrkot.api.PersistentLogs;
+import com.github.piotrkot.core.LogBus;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+
+/**
+ * Log lines of a request pushed to the client as server-sent events.
+ *
+ * <p>The lines after the given sequence number are replayed from the
+ * persistent logs, then the lines published on the bus follow until the job
+ * finishes. Each event carries the sequence number as its id so a client
+ * reconnecting with it does not miss nor repeat lines. Gaps in the published
+ * lines, for instance after the subscriber buffer overflowed, are filled
+ * from the persistent logs. The stream ends with an {@code end} event.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+final class LogsEvents implements Runnable {
+    /**
+     * Persistent log messages.
+     */
+    private final transient PersistentLogs logs;
+    /**
+     * Bus of the lines.
+     */
+    private final transient LogBus bus;
+    /**
+     * Client request.
+     */
+    private final transient long request;
+    /**
+     * Sequence number of the last line sent.
+     */
+    private final transient AtomicLong last;
+    /**
+     * Events output.
+     */
+    private final transient EventOutput output;
+
+    /**
+     * Class constructor.
+     * @param messages Persistent log messages.
+     * @param topics Bus of the lines.
+     * @param req Client request.
+     * @param seq Sequence number after which lines are sent.
+     * @param events Events output.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    LogsEvents(final PersistentLogs messages, final LogBus topics,
+        final long req, final long seq, final EventOutput events) {
+        this.logs = messages;
+        this.bus = topics;
+        this.request = req;
+        this.last = new AtomicLong(seq);
+        this.output = events;
+    }
+
+    @Override
+    public void run() {
+        final LogBus.Subscription sub = this.bus.subscribe(this.request);
+        try {
+            this.replay();
+            while (!sub.ended()) {
+                final Optional<Line> next = sub.poll();
+                if (sub.lagging()) {
+                    this.replay();
+                } else if (next.isPresent()) {
+                    this.send(next.get());
+                } else if (!sub.ended()) {
+                    this.output.write(
+                        new OutboundEvent.Builder().comment("").build()
+                    );
+                }
+            }
+            this.replay();
+            this.output.write(
+                new OutboundEvent.Builder()
+                    .name("end")
+                    .data(String.class, "")
+                    .build()
+            );
+        } catch (final IOException | UncheckedIOException ex) {
+            log.debug("Events client of request {} gone", this.request);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sub.cancel();
+            this.close();
+        }
+    }
+
+    /**
+     * Send the published line, filling the gap before it if any.
+     * @param line Log line.
+     * @throws IOException If client is gone.
+     */
+    private void send(final Line line) throws IOException {
+        if (line.getSeq() > this.last.get() + 1L) {
+            this.replay();
+        }
+        if (line.getSeq() > this.last.get()) {
+            this.write(line);
+        }
+    }
+
+    /**
+     * Send the persistent lines after the last one sent.
+     */
+    private void replay() {
+        this.logs.read(
+            this.request, this.last.get(), Integer.MAX_VALUE,
+            line -> {
+                try {
+                    this.write(line);
+                } catch (final IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        );
+    }
+
+    /**
+     * Send the line.
+     * @param line Log line.
+     * @throws IOException If client is gone.
+     */
+    private void write(final Line line) throws IOException {
+        this.output.write(
+            new OutboundEvent.Builder()
+                .id(Long.toString(line.getSeq()))
+                .data(String.class, line.getMesg())
+                .build()
+        );
+        this.last.set(line.getSeq());
+    }
+
+    /**
+     * Close the events output.
+     */
+    private void close() {
+        try {
+            this.output.close();
+        } catch (final IOException ex) {
+            log.debug("Events output of request {} not closed", this.request);
+        }
+    }
+}
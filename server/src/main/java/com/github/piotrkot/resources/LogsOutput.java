@@ -0,0 +1,133 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.piotrkot.api.Line;
+import com.github.piotrkot.api.PersistentLogs;
+import io.dropwizard.jackson.Jackson;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Log lines streamed to the response as they are read.
+ *
+ * <p>Plain lines are joined on system new line character, JSON lines carry
+ * their sequence numbers and are terminated with new line character each.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+final class LogsOutput implements StreamingOutput {
+    /**
+     * JSON mapper.
+     */
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+    /**
+     * Persistent log messages.
+     */
+    private final transient PersistentLogs logs;
+    /**
+     * Client request.
+     */
+    private final transient long request;
+    /**
+     * Sequence number after which lines are read.
+     */
+    private final transient long after;
+    /**
+     * Maximal number of lines.
+     */
+    private final transient int limit;
+    /**
+     * Whether to write JSON lines.
+     */
+    private final transient boolean json;
+
+    /**
+     * Class constructor.
+     * @param messages Persistent log messages.
+     * @param req Client request.
+     * @param seq Sequence number after which lines are read.
+     * @param max Maximal number of lines.
+     * @param lines Whether to write JSON lines.
+     * @checkstyle ParameterNumberCheck (3 lines)
+     */
+    LogsOutput(final PersistentLogs messages, final long req, final long seq,
+        final int max, final boolean lines) {
+        this.logs = messages;
+        this.request = req;
+        this.after = seq;
+        this.limit = max;
+        this.json = lines;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        final Writer writer = new BufferedWriter(
+            new OutputStreamWriter(output, StandardCharsets.UTF_8)
+        );
+        final AtomicBoolean first = new AtomicBoolean(true);
+        try {
+            this.logs.read(
+                this.request, this.after, this.limit,
+                line -> this.write(writer, line, first.getAndSet(false))
+            );
+        } catch (final UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write the line.
+     * @param writer Response writer.
+     * @param line Log line.
+     * @param first Whether it is the first line.
+     */
+    private void write(final Writer writer, final Line line,
+        final boolean first) {
+        try {
+            if (this.json) {
+                writer.write(LogsOutput.MAPPER.writeValueAsString(line));
+                writer.write('\n');
+            } else {
+                if (!first) {
+                    writer.write(System.lineSeparator());
+                }
+                writer.write(line.getMesg());
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
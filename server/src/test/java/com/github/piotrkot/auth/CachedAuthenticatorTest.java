@@ -0,0 +1,70 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.auth;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import io.dropwizard.auth.basic.BasicCredentials;
+import io.dropwizard.util.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for authenticator remembering authentications.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class CachedAuthenticatorTest {
+    /**
+     * Successful authentication should be checked only once.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testRemember() throws Exception {
+        final AtomicInteger checks = new AtomicInteger();
+        final CachedAuthenticator<String> auth = new CachedAuthenticator<>(
+            cred -> {
+                checks.incrementAndGet();
+                return Optional.fromNullable(
+                    "pass".equals(cred.getPassword())
+                        ? cred.getUsername() : null
+                );
+            },
+            10L, Duration.minutes(1L), new MetricRegistry()
+        );
+        final BasicCredentials good = new BasicCredentials("user", "pass");
+        final BasicCredentials bad = new BasicCredentials("user", "other");
+        Assert.assertEquals(Optional.of("user"), auth.authenticate(good));
+        Assert.assertEquals(Optional.of("user"), auth.authenticate(good));
+        Assert.assertEquals(1, checks.get());
+        Assert.assertFalse(auth.authenticate(bad).isPresent());
+        Assert.assertFalse(auth.authenticate(bad).isPresent());
+        Assert.assertEquals(3, checks.get());
+        auth.invalidate(good);
+        auth.authenticate(good);
+        Assert.assertEquals(4, checks.get());
+    }
+}
@@ -23,11 +23,11 @@
  */
 package com.github.piotrkot.core;
 
-import com.github.piotrkot.api.PersistentLogs;
+import com.codahale.metrics.MetricRegistry;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
-import lombok.extern.slf4j.Slf4j;
 import org.apache.maven.shared.invoker.InvocationResult;
 import org.junit.Assert;
 import org.junit.Test;
@@ -38,22 +38,11 @@ import org.junit.Test;
  * @version $Id$
  * @since 1.0
  */
-@Slf4j
 public final class ArchiveTest {
     /**
      * Fake logs.
      */
-    private final transient PersistentLogs logs = new PersistentLogs() {
-        @Override
-        public void append(final int request, final String line) {
-            log.info("Request {}, mesg: {}", request, line);
-        }
-
-        @Override
-        public void append(final int request, final Throwable error) {
-            log.error("Request {}, error: {}", request, error.getMessage());
-        }
-    };
+    private final transient FakeLogs logs = new FakeLogs();
 
     /**
      * Archive should unzip content. Later Maven should properly build project.
@@ -61,12 +50,18 @@ public final class ArchiveTest {
      */
     @Test
     public void testBuild() throws Exception {
-        final int request = 0;
-        final Optional<Path> uncompressed = new Archive(
-            this.logs,
-            request,
-            Paths.get("simple-cli.zip").toFile()
-        ).uncompress();
+        final long request = 0;
+        final Optional<Path> uncompressed;
+        try (InputStreamCache cache = new InputStreamCache(
+            Files.newInputStream(Paths.get("simple-cli.zip")),
+            new Spool(1L << 20, 1L << 20, new MetricRegistry())
+        )) {
+            uncompressed = new Archive(
+                this.logs, request, cache,
+                new Extractor(2, 2, new MetricRegistry()),
+                Files.createTempDirectory("unzip")
+            ).uncompress();
+        }
         Assert.assertTrue(uncompressed.isPresent());
         final Optional<InvocationResult> result =
             new Maven(this.logs, request, uncompressed.get()).build();
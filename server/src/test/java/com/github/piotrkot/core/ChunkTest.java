@@ -0,0 +1,79 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Line;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for compressed chunk of log lines.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class ChunkTest {
+    /**
+     * Chunk should give back the packed lines after the sequence number.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testUnpack() throws Exception {
+        final Chunk chunk = Chunk.unpacked(
+            5L,
+            new Chunk(5L, Arrays.asList("first", "", "żółw", "last"))
+                .packed()
+        );
+        Assert.assertEquals(8L, chunk.last());
+        final List<Line> lines = new ArrayList<>(0);
+        Assert.assertEquals(2, chunk.read(5L, 2, lines::add));
+        Assert.assertEquals(
+            Arrays.asList(new Line(6L, ""), new Line(7L, "żółw")), lines
+        );
+        Assert.assertEquals(0, chunk.read(8L, 2, lines::add));
+    }
+
+    /**
+     * Chunk of repetitive lines should be much smaller than the lines.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testCompress() throws Exception {
+        final List<String> lines = new ArrayList<>(0);
+        int size = 0;
+        for (int num = 0; num < 1000; ++num) {
+            final String line = String.format(
+                "Downloading: https://repo.maven.apache.org/maven2/org/%d.pom",
+                num
+            );
+            lines.add(line);
+            size += line.length();
+        }
+        // @checkstyle MagicNumber (1 line)
+        Assert.assertTrue(new Chunk(1L, lines).packed().length * 5 < size);
+    }
+}
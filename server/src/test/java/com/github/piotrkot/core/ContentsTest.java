@@ -0,0 +1,152 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for contents of an uploaded archive.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class ContentsTest {
+    /**
+     * Contents should know the POM files, the top one first.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testPoms() throws Exception {
+        final Contents contents = ContentsTest.contents(
+            "app/module/pom.xml", "app/", "app/pom.xml", "app/notpom.xml",
+            "app/a/pom.xml"
+        );
+        Assert.assertEquals(5, contents.count());
+        Assert.assertEquals(4L * 10L, contents.size());
+        Assert.assertEquals(
+            Arrays.asList("app/pom.xml", "app/a/pom.xml", "app/module/pom.xml"),
+            contents.poms()
+        );
+        Assert.assertEquals("app/pom.xml", contents.pom().get());
+    }
+
+    /**
+     * Contents should know there is no POM file.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testNoPom() throws Exception {
+        Assert.assertFalse(
+            ContentsTest.contents("src/Main.java").pom().isPresent()
+        );
+    }
+
+    /**
+     * Contents should only count the entries of archives with too many.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testTooMany() throws Exception {
+        final Contents contents = ContentsTest.contents(
+            ContentsTest.archive("a/pom.xml", "a/b.txt", "a/c.txt"), 2
+        );
+        Assert.assertEquals(3, contents.count());
+        Assert.assertTrue(contents.entries().isEmpty());
+    }
+
+    /**
+     * Contents should reject more entries than the directory can hold.
+     * @throws Exception If something fails.
+     */
+    @Test(expected = IOException.class)
+    public void testCraftedCount() throws Exception {
+        final byte[] archive = ContentsTest.archive("pom.xml");
+        final ByteBuffer buffer = ByteBuffer.wrap(archive)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        // @checkstyle MagicNumber (3 lines)
+        final int end = archive.length - 22;
+        buffer.putShort(end + 8, (short) 0xfffe);
+        buffer.putShort(end + 10, (short) 0xfffe);
+        ContentsTest.contents(archive, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Contents of the archive with the entries.
+     * @param names Entry names, files have ten bytes.
+     * @return Contents.
+     * @throws IOException If fails.
+     */
+    private static Contents contents(final String... names)
+        throws IOException {
+        return ContentsTest.contents(
+            ContentsTest.archive(names), Integer.MAX_VALUE
+        );
+    }
+
+    /**
+     * Contents of the archive.
+     * @param archive Archive content.
+     * @param max Maximal number of entries read.
+     * @return Contents.
+     * @throws IOException If fails.
+     */
+    private static Contents contents(final byte[] archive, final int max)
+        throws IOException {
+        try (InputStreamCache cache = new InputStreamCache(
+            new ByteArrayInputStream(archive),
+            new Spool(1L << 20, 1L << 20, new MetricRegistry())
+        )) {
+            return new Contents(cache, max);
+        }
+    }
+
+    /**
+     * Archive with the entries.
+     * @param names Entry names, files have ten bytes.
+     * @return Archive content.
+     * @throws IOException If fails.
+     */
+    private static byte[] archive(final String... names) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (final String name : names) {
+                zip.putNextEntry(new ZipEntry(name));
+                if (!name.endsWith("/")) {
+                    zip.write(new byte[10]);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import net.lingala.zip4j.core.ZipFile;
+import org.junit.Test;
+
+/**
+ * Benchmark of parallel extraction against zip4j.
+ *
+ * <p>Not run with the tests, run it with
+ * {@code mvn test -Dtest=ExtractionBenchmark}.
+ *
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class ExtractionBenchmark {
+    /**
+     * Number of measured runs.
+     */
+    private static final int RUNS = 3;
+
+    /**
+     * Compare extraction of archives with one thousand entries.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void benchThousand() throws Exception {
+        ExtractionBenchmark.compare(1_000);
+    }
+
+    /**
+     * Compare extraction of archives with ten thousand entries.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void benchTenThousand() throws Exception {
+        ExtractionBenchmark.compare(10_000);
+    }
+
+    /**
+     * Compare extraction of archives with fifty thousand entries.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void benchFiftyThousand() throws Exception {
+        ExtractionBenchmark.compare(50_000);
+    }
+
+    /**
+     * Compare extraction of the archive with the given number of entries.
+     * @param entries Number of entries.
+     * @throws Exception If something fails.
+     */
+    private static void compare(final int entries) throws Exception {
+        final Path zip = ExtractionBenchmark.archive(entries);
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final MetricRegistry metrics = new MetricRegistry();
+        final Extractor extractor = new Extractor(threads, threads, metrics);
+        try (InputStreamCache cache = new InputStreamCache(
+            Files.newInputStream(zip), new Spool(0L, 0L, metrics)
+        )) {
+            long zipfour = Long.MAX_VALUE;
+            long parallel = Long.MAX_VALUE;
+            for (int run = 0; run <= ExtractionBenchmark.RUNS; ++run) {
+                final Path first = Files.createTempDirectory("zip4j");
+                long start = System.nanoTime();
+                new ZipFile(zip.toFile()).extractAll(first.toString());
+                final long single = System.nanoTime() - start;
+                final Path second = Files.createTempDirectory("parallel");
+                start = System.nanoTime();
+                extractor.extract(cache::channel, second);
+                final long multi = System.nanoTime() - start;
+                if (run > 0) {
+                    zipfour = Math.min(zipfour, single);
+                    parallel = Math.min(parallel, multi);
+                }
+            }
+            log.info(
+                "{} entries: zip4j {} ms, parallel on {} threads {} ms",
+                entries,
+                TimeUnit.NANOSECONDS.toMillis(zipfour),
+                threads,
+                TimeUnit.NANOSECONDS.toMillis(parallel)
+            );
+        } finally {
+            extractor.stop();
+        }
+    }
+
+    /**
+     * Multi-module project archive with the given number of entries.
+     * @param entries Number of entries.
+     * @return Archive file.
+     * @throws IOException If fails.
+     */
+    private static Path archive(final int entries) throws IOException {
+        final Path zip = Files.createTempFile("bench", ".zip");
+        try (OutputStream out = Files.newOutputStream(zip);
+            ZipOutputStream stream = new ZipOutputStream(out)) {
+            for (int idx = 0; idx < entries; ++idx) {
+                stream.putNextEntry(
+                    new ZipEntry(
+                        String.format(
+                            "module%d/src/main/java/Class%d.java",
+                            idx % 100, idx
+                        )
+                    )
+                );
+                final StringBuilder text = new StringBuilder();
+                for (int line = 0; line < 100; ++line) {
+                    text.append("    private int field").append(line)
+                        .append(" = ").append(idx * line).append(";\n");
+                }
+                stream.write(text.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return zip;
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for parallel extraction of zip archives.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class ExtractorTest {
+    /**
+     * Extractor should extract stored and deflated entries.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testExtract() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("proj/"));
+            for (int idx = 0; idx < 100; ++idx) {
+                zip.putNextEntry(
+                    new ZipEntry(String.format("proj/src/F%d.java", idx))
+                );
+                zip.write(ExtractorTest.content(idx));
+            }
+            final byte[] pom = "<project/>".getBytes(StandardCharsets.UTF_8);
+            final ZipEntry stored = new ZipEntry("proj/pom.xml");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(pom.length);
+            final CRC32 crc = new CRC32();
+            crc.update(pom);
+            stored.setCrc(crc.getValue());
+            zip.putNextEntry(stored);
+            zip.write(pom);
+        }
+        final Path dir = Files.createTempDirectory("extract");
+        Assert.assertEquals(
+            101, ExtractorTest.extract(bytes.toByteArray(), dir)
+        );
+        Assert.assertArrayEquals(
+            "<project/>".getBytes(StandardCharsets.UTF_8),
+            Files.readAllBytes(dir.resolve("proj/pom.xml"))
+        );
+        for (int idx = 0; idx < 100; ++idx) {
+            Assert.assertArrayEquals(
+                ExtractorTest.content(idx),
+                Files.readAllBytes(
+                    dir.resolve(String.format("proj/src/F%d.java", idx))
+                )
+            );
+        }
+    }
+
+    /**
+     * Extractor should not write outside the target directory.
+     * @throws Exception If something fails.
+     */
+    @Test(expected = IOException.class)
+    public void testOutside() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("../evil.txt"));
+            zip.write(1);
+        }
+        ExtractorTest.extract(
+            bytes.toByteArray(), Files.createTempDirectory("extract")
+        );
+    }
+
+    /**
+     * Extractor should not inflate more than the declared size.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testUnderstated() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("bomb.txt"));
+            zip.write(new byte[1 << 20]);
+        }
+        final byte[] archive = bytes.toByteArray();
+        final ByteBuffer buffer = ByteBuffer.wrap(archive)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        final int header = ExtractorTest.find(archive, 0x02014b50);
+        buffer.putInt(header + 24, 10);
+        final Path dir = Files.createTempDirectory("extract");
+        try {
+            ExtractorTest.extract(archive, dir);
+            Assert.fail("Understated entry extracted");
+        } catch (final IOException ex) {
+            Assert.assertTrue(Files.size(dir.resolve("bomb.txt")) <= 11L);
+        }
+    }
+
+    /**
+     * Extractor should reject entries with the same name.
+     * @throws Exception If something fails.
+     */
+    @Test(expected = IOException.class)
+    public void testDuplicate() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("a.txt"));
+            zip.write(1);
+            zip.putNextEntry(new ZipEntry("b.txt"));
+            zip.write(2);
+        }
+        final byte[] archive = bytes.toByteArray();
+        for (int idx = 0; idx < archive.length - 4; ++idx) {
+            if (archive[idx] == 'b' && archive[idx + 1] == '.') {
+                archive[idx] = 'a';
+            }
+        }
+        ExtractorTest.extract(archive, Files.createTempDirectory("extract"));
+    }
+
+    /**
+     * Extractor should reject what is not a zip archive.
+     * @throws Exception If something fails.
+     */
+    @Test(expected = IOException.class)
+    public void testGarbage() throws Exception {
+        ExtractorTest.extract(
+            "not a zip".getBytes(StandardCharsets.UTF_8),
+            Files.createTempDirectory("extract")
+        );
+    }
+
+    /**
+     * Extractor should stop when the calling thread is interrupted.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testInterrupted() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("a.txt"));
+            zip.write(1);
+        }
+        Thread.currentThread().interrupt();
+        try {
+            ExtractorTest.extract(
+                bytes.toByteArray(), Files.createTempDirectory("extract")
+            );
+            Assert.fail("Extraction not interrupted");
+        } catch (final InterruptedIOException ex) {
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Extract the archive.
+     * @param archive Archive content.
+     * @param dir Target directory.
+     * @return Number of extracted files.
+     * @throws IOException If fails.
+     */
+    private static int extract(final byte[] archive, final Path dir)
+        throws IOException {
+        final MetricRegistry metrics = new MetricRegistry();
+        final Extractor extractor = new Extractor(4, 4, metrics);
+        try (InputStreamCache cache = new InputStreamCache(
+            new ByteArrayInputStream(archive),
+            new Spool(1L << 20, 1L << 20, metrics)
+        )) {
+            return extractor.extract(cache::channel, dir);
+        }
+    }
+
+    /**
+     * Position of the signature in the archive.
+     * @param archive Archive content.
+     * @param signature Signature of the record.
+     * @return Position of the first record.
+     */
+    private static int find(final byte[] archive, final int signature) {
+        final ByteBuffer buffer = ByteBuffer.wrap(archive)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        int pos = 0;
+        while (buffer.getInt(pos) != signature) {
+            ++pos;
+        }
+        return pos;
+    }
+
+    /**
+     * Content of a file.
+     * @param idx Index of the file.
+     * @return Bytes.
+     */
+    private static byte[] content(final int idx) {
+        final StringBuilder text = new StringBuilder();
+        for (int line = 0; line < idx * 10; ++line) {
+            text.append("class F").append(idx).append(" {}\n");
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Line;
+import com.github.piotrkot.api.PersistentLogs;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fake log messages kept in memory.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Slf4j
+public final class FakeLogs implements PersistentLogs {
+    /**
+     * Lines of the requests.
+     */
+    private final transient Map<Long, List<String>> lines =
+        new ConcurrentHashMap<>(0);
+
+    @Override
+    public long append(final long request, final String line) {
+        log.info("Request {}, mesg: {}", request, line);
+        final List<String> all = this.lines(request);
+        synchronized (all) {
+            all.add(line);
+            return all.size();
+        }
+    }
+
+    @Override
+    public long append(final long request, final List<String> added) {
+        log.info("Request {}, {} lines", request, added.size());
+        final List<String> all = this.lines(request);
+        synchronized (all) {
+            all.addAll(added);
+            return all.size();
+        }
+    }
+
+    @Override
+    public long append(final long request, final Throwable error) {
+        log.error("Request {}, error: {}", request, error.getMessage());
+        return this.append(request, error.getMessage());
+    }
+
+    @Override
+    public void read(final long request, final long after, final int limit,
+        final Consumer<Line> reader) {
+        final List<String> all = this.lines(request);
+        for (int seq = (int) after + 1;
+            seq <= Math.min(all.size(), after + limit); seq += 1) {
+            reader.accept(new Line(seq, all.get(seq - 1)));
+        }
+    }
+
+    @Override
+    public long last(final long request) {
+        return this.lines(request).size();
+    }
+
+    @Override
+    public long delete(final long request) {
+        final List<String> all = this.lines(request);
+        synchronized (all) {
+            final long deleted = all.size();
+            all.clear();
+            return deleted;
+        }
+    }
+
+    /**
+     * Lines of the request.
+     * @param request Client request.
+     * @return Lines.
+     */
+    public List<String> lines(final long request) {
+        return this.lines.computeIfAbsent(
+            request, key -> new CopyOnWriteArrayList<>()
+        );
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Event;
+import com.github.piotrkot.api.Job;
+import io.dropwizard.jackson.Jackson;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for build jobs in files.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class FileJobsTest {
+    /**
+     * Jobs and their events should be read as stored.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testStore() throws Exception {
+        final FileJobs jobs = new FileJobs(
+            Files.createTempDirectory("jobs"), Jackson.newObjectMapper()
+        );
+        jobs.start();
+        final Job job = new Job(Long.MAX_VALUE, "user", 1L);
+        jobs.insert(job);
+        Assert.assertEquals(Optional.of(job), jobs.find(Long.MAX_VALUE));
+        final Job done = job.reached(Job.Stage.EXTRACT, 2L)
+            .finish(Job.Status.FAILED, 1, 3L);
+        jobs.update(done);
+        Assert.assertEquals(Optional.of(done), jobs.find(Long.MAX_VALUE));
+        Assert.assertFalse(jobs.find(1L).isPresent());
+        final List<Event> events = Arrays.asList(
+            new Event(1L, Event.Kind.MODULE, null, "app"),
+            new Event(
+                2L, Event.Kind.ERROR, "app", "cannot find symbol",
+                "src/A.java", 3, null
+            ),
+            new Event(
+                4L, Event.Kind.TESTS, "app", null, null, null,
+                new Event.Tests(5, 1, 0, 2)
+            )
+        );
+        jobs.record(Long.MAX_VALUE, events);
+        Assert.assertEquals(events, jobs.events(Long.MAX_VALUE));
+        Assert.assertTrue(jobs.events(1L).isEmpty());
+        jobs.stop();
+    }
+}
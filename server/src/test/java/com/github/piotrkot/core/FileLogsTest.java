@@ -0,0 +1,203 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.piotrkot.api.Line;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for file log messages appender.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class FileLogsTest {
+    /**
+     * Lines should be read after any sequence number across segments.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testRead() throws Exception {
+        final FileLogs logs = new FileLogs(
+            Files.createTempDirectory("logs"), 64L, new MetricRegistry()
+        );
+        logs.start();
+        for (int num = 1; num <= 100; ++num) {
+            logs.append(1, String.format("line %d", num));
+        }
+        Assert.assertEquals(
+            2L, logs.append(2, Arrays.asList("first", "second"))
+        );
+        final List<Line> lines = new ArrayList<>(0);
+        logs.read(1, 47L, 3, lines::add);
+        Assert.assertEquals(
+            Arrays.asList(
+                new Line(48L, "line 48"), new Line(49L, "line 49"),
+                new Line(50L, "line 50")
+            ),
+            lines
+        );
+        lines.clear();
+        logs.read(1, 98L, 10, lines::add);
+        Assert.assertEquals(2, lines.size());
+        Assert.assertEquals(new Line(100L, "line 100"), lines.get(1));
+        lines.clear();
+        logs.read(2, 0L, 10, lines::add);
+        Assert.assertEquals(new Line(2L, "second"), lines.get(1));
+        logs.stop();
+    }
+
+    /**
+     * Lines should be found through the sparse index of a segment.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testIndex() throws Exception {
+        final FileLogs logs = new FileLogs(
+            Files.createTempDirectory("logs"), 1L << 20, new MetricRegistry()
+        );
+        logs.start();
+        final List<String> added = new ArrayList<>(0);
+        for (int num = 1; num <= 1000; ++num) {
+            added.add(String.format("line %d", num));
+        }
+        Assert.assertEquals(1000L, logs.append(1, added));
+        final List<Line> lines = new ArrayList<>(0);
+        logs.read(1, 700L, 1, lines::add);
+        Assert.assertEquals(
+            Arrays.asList(new Line(701L, "line 701")), lines
+        );
+        logs.stop();
+    }
+
+    /**
+     * Last sequence number should be known without opening the journal.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testLast() throws Exception {
+        final Path dir = Files.createTempDirectory("logs");
+        final FileLogs logs = new FileLogs(dir, 1L << 20, new MetricRegistry());
+        logs.start();
+        final List<String> added = new ArrayList<>(0);
+        for (int num = 1; num <= 1000; ++num) {
+            added.add(String.format("line %d", num));
+        }
+        logs.append(1, added);
+        Assert.assertEquals(1000L, logs.last(1));
+        logs.stop();
+        final FileLogs again = new FileLogs(
+            dir, 1L << 20, new MetricRegistry()
+        );
+        again.start();
+        Assert.assertEquals(1000L, again.last(1));
+        Assert.assertEquals(0L, again.last(2));
+        again.stop();
+    }
+
+    /**
+     * Partially written line should be dropped when appending again.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testRecover() throws Exception {
+        final Path dir = Files.createTempDirectory("logs");
+        final FileLogs logs = new FileLogs(dir, 1024L, new MetricRegistry());
+        logs.start();
+        logs.append(1, Arrays.asList("first", "second"));
+        logs.stop();
+        Files.write(
+            dir.resolve("1").resolve(String.format("%019d.log", 1)),
+            new byte[] {0, 0, 0, 9, 'x'},
+            StandardOpenOption.APPEND
+        );
+        final FileLogs again = new FileLogs(
+            dir, 1024L, new MetricRegistry()
+        );
+        again.start();
+        Assert.assertEquals(3L, again.append(1, "third"));
+        final List<Line> lines = new ArrayList<>(0);
+        again.read(1, 1L, 10, lines::add);
+        Assert.assertEquals(
+            Arrays.asList(new Line(2L, "second"), new Line(3L, "third")),
+            lines
+        );
+        again.stop();
+    }
+
+    /**
+     * Deleted lines should be counted and numbered from start again.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testDelete() throws Exception {
+        final FileLogs logs = new FileLogs(
+            Files.createTempDirectory("logs"), 16L, new MetricRegistry()
+        );
+        logs.start();
+        logs.append(1, Arrays.asList("first", "second", "third"));
+        Assert.assertEquals(3L, logs.delete(1));
+        Assert.assertEquals(0L, logs.delete(2));
+        final List<Line> lines = new ArrayList<>(0);
+        logs.read(1, 0L, 10, lines::add);
+        Assert.assertTrue(lines.isEmpty());
+        Assert.assertEquals(1L, logs.append(1, "again"));
+        logs.stop();
+    }
+
+    /**
+     * Journal failing to write should be reopened on the next append.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testFailure() throws Exception {
+        final Path dir = Files.createTempDirectory("logs");
+        final FileLogs logs = new FileLogs(dir, 16L, new MetricRegistry());
+        logs.start();
+        logs.append(1, Arrays.asList("first", "second"));
+        for (final String name : new String[] {"log", "idx"}) {
+            Files.delete(
+                dir.resolve("1").resolve(String.format("%019d.%s", 1, name))
+            );
+        }
+        Files.delete(dir.resolve("1"));
+        try {
+            logs.append(1, "third");
+            Assert.fail("Append to a deleted directory should fail");
+        } catch (final UncheckedIOException ex) {
+            Assert.assertNotNull(ex.getCause());
+        }
+        Assert.assertEquals(1L, logs.append(1, "again"));
+        logs.stop();
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for temporary cache of input stream.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class InputStreamCacheTest {
+    /**
+     * Size of the content.
+     */
+    private static final int SIZE = 200_000;
+
+    /**
+     * Cache should keep small content in memory and give it back on close.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testMemory() throws Exception {
+        final Spool spool = new Spool(1L << 20, 4L << 16, new MetricRegistry());
+        final byte[] content = InputStreamCacheTest.content();
+        try (InputStreamCache cache = new InputStreamCache(
+            new ByteArrayInputStream(content), spool
+        )) {
+            Assert.assertFalse(cache.file().isPresent());
+            Assert.assertEquals(content.length, cache.size());
+            Assert.assertArrayEquals(
+                content, ByteStreams.toByteArray(cache.reader())
+            );
+            InputStreamCacheTest.seek(cache, content);
+            Assert.assertFalse(spool.acquire().isPresent());
+        }
+        Assert.assertTrue(spool.acquire().isPresent());
+    }
+
+    /**
+     * Cache should spill large content to disk and delete it on close.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testSpill() throws Exception {
+        final Spool spool = new Spool(100_000L, 1L << 20, new MetricRegistry());
+        final byte[] content = InputStreamCacheTest.content();
+        final Path file;
+        try (InputStreamCache cache = new InputStreamCache(
+            new ByteArrayInputStream(content), spool
+        )) {
+            Assert.assertTrue(cache.file().isPresent());
+            file = cache.file().get();
+            Assert.assertArrayEquals(content, Files.readAllBytes(file));
+            InputStreamCacheTest.seek(cache, content);
+        }
+        Assert.assertFalse(Files.exists(file));
+    }
+
+    /**
+     * Cache should hash the same content equally wherever it is kept.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testHash() throws Exception {
+        final byte[] content = InputStreamCacheTest.content();
+        try (
+            InputStreamCache memory = new InputStreamCache(
+                new ByteArrayInputStream(content),
+                new Spool(1L << 20, 1L << 20, new MetricRegistry())
+            );
+            InputStreamCache disk = new InputStreamCache(
+                new ByteArrayInputStream(content),
+                new Spool(0L, 0L, new MetricRegistry())
+            )
+        ) {
+            Assert.assertEquals(memory.hash(), disk.hash());
+        }
+    }
+
+    /**
+     * Read the cache at a random position.
+     * @param cache Cache.
+     * @param content Expected content.
+     * @throws Exception If something fails.
+     */
+    private static void seek(final InputStreamCache cache,
+        final byte[] content) throws Exception {
+        final int pos = 65_530;
+        final ByteBuffer buffer = ByteBuffer.allocate(100);
+        try (SeekableByteChannel channel = cache.channel()) {
+            Assert.assertEquals(content.length, channel.size());
+            channel.position(pos);
+            while (buffer.hasRemaining()) {
+                channel.read(buffer);
+            }
+        }
+        for (int idx = 0; idx < buffer.capacity(); ++idx) {
+            Assert.assertEquals(content[pos + idx], buffer.get(idx));
+        }
+    }
+
+    /**
+     * Random content.
+     * @return Bytes.
+     */
+    private static byte[] content() {
+        final byte[] content = new byte[InputStreamCacheTest.SIZE];
+        new Random(1L).nextBytes(content);
+        return content;
+    }
+}
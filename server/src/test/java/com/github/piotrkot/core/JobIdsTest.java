@@ -0,0 +1,93 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for generator of job ids.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JobIdsTest {
+    /**
+     * Ids should grow even when the clock stands or goes back.
+     */
+    @Test
+    public void testOrdered() {
+        final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        final JobIds ids = new JobIds(5, clock::get);
+        long last = ids.next();
+        for (int idx = 0; idx < 10_000; ++idx) {
+            if (idx % 1000 == 0) {
+                clock.addAndGet(-1L);
+            }
+            final long next = ids.next();
+            Assert.assertTrue(next > last);
+            Assert.assertEquals(5L, next >>> 12 & 1023L);
+            last = next;
+        }
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(1L));
+        Assert.assertEquals(0L, ids.next() & 4095L);
+    }
+
+    /**
+     * Ids should be unique when generated concurrently.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testConcurrent() throws Exception {
+        final JobIds ids = new JobIds(0);
+        final Set<Long> generated = ConcurrentHashMap.newKeySet();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int task = 0; task < 4; ++task) {
+            executor.execute(
+                () -> {
+                    for (int idx = 0; idx < 25_000; ++idx) {
+                        generated.add(ids.next());
+                    }
+                }
+            );
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1L, TimeUnit.MINUTES));
+        Assert.assertEquals(100_000, generated.size());
+    }
+
+    /**
+     * Node should be within the range.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNode() {
+        new JobIds(JobIds.NODES + 1);
+    }
+}
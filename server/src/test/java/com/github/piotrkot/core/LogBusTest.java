@@ -0,0 +1,92 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.piotrkot.api.Line;
+import java.util.Optional;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for bus of log lines.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class LogBusTest {
+    /**
+     * Bus should pass published lines until the topic is closed.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testPublish() throws Exception {
+        final LogBus bus = new LogBus(2, 10L, new MetricRegistry());
+        bus.open(1);
+        final LogBus.Subscription sub = bus.subscribe(1);
+        bus.publish(1, new Line(1L, "first"));
+        bus.publish(2, new Line(1L, "other"));
+        final Optional<Line> line = sub.poll();
+        Assert.assertTrue(line.isPresent());
+        Assert.assertEquals("first", line.get().getMesg());
+        Assert.assertFalse(sub.poll().isPresent());
+        Assert.assertFalse(sub.ended());
+        bus.publish(1, new Line(2L, "second"));
+        bus.close(1);
+        Assert.assertFalse(sub.ended());
+        Assert.assertEquals(2L, sub.poll().get().getSeq());
+        Assert.assertTrue(sub.ended());
+    }
+
+    /**
+     * Bus should mark subscribers with overflowing buffers as lagging.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testOverflow() throws Exception {
+        final LogBus bus = new LogBus(2, 10L, new MetricRegistry());
+        bus.open(1);
+        final LogBus.Subscription sub = bus.subscribe(1);
+        for (long seq = 1L; seq <= 3L; ++seq) {
+            bus.publish(1, new Line(seq, "line"));
+        }
+        Assert.assertFalse(sub.poll().isPresent());
+        Assert.assertTrue(sub.lagging());
+        Assert.assertFalse(sub.lagging());
+        bus.publish(1, new Line(4L, "line"));
+        Assert.assertEquals(4L, sub.poll().get().getSeq());
+    }
+
+    /**
+     * Bus should end subscriptions to requests not running.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testClosed() throws Exception {
+        final LogBus bus = new LogBus(2, 10L, new MetricRegistry());
+        final LogBus.Subscription sub = bus.subscribe(1);
+        Assert.assertTrue(sub.ended());
+        Assert.assertFalse(sub.poll().isPresent());
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.github.piotrkot.api.Event;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for parser of the Maven output.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class MavenOutputTest {
+    /**
+     * Parser should find modules, goals, errors and tests in the output.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testParse() throws Exception {
+        final String app = "app";
+        final ParsedLogs logs = new ParsedLogs(new FakeLogs(), 100);
+        logs.append(
+            1,
+            Arrays.asList(
+                "[INFO] Scanning for projects...",
+                "[INFO] Building app 1.0-SNAPSHOT [2/3]",
+                String.join(
+                    "",
+                    "[INFO] --- maven-compiler-plugin:3.1:compile",
+                    " (default-compile) @ app ---"
+                ),
+                "[ERROR] /src/main/java/App.java:[12,8] cannot find symbol",
+                "[INFO] Building jar: /target/app.jar",
+                "Running com.app.AppTest",
+                String.join(
+                    "",
+                    "Tests run: 2, Failures: 1, Errors: 0, Skipped: 0, ",
+                    "Time elapsed: 0.05 sec <<< FAILURE!"
+                ),
+                String.join(
+                    "",
+                    "testApp(com.app.AppTest)  Time elapsed: 0.01 sec",
+                    "  <<< FAILURE!"
+                ),
+                "\u001B[1;31mTests run: 2, Failures: 1, Errors: 0, Skipped: 0"
+            )
+        );
+        final List<Event> events = logs.events();
+        Assert.assertEquals(
+            Arrays.asList(
+                new Event(2L, Event.Kind.MODULE, app, app),
+                new Event(
+                    3L, Event.Kind.PHASE, app,
+                    "maven-compiler-plugin:3.1:compile (default-compile)"
+                ),
+                new Event(
+                    4L, Event.Kind.ERROR, app, "cannot find symbol",
+                    "/src/main/java/App.java", 12, null
+                ),
+                new Event(
+                    7L, Event.Kind.TESTS, app, "com.app.AppTest", null, null,
+                    new Event.Tests(2, 1, 0, 0)
+                ),
+                new Event(
+                    8L, Event.Kind.FAILURE, app, "testApp(com.app.AppTest)"
+                ),
+                new Event(
+                    9L, Event.Kind.TESTS, app, null, null, null,
+                    new Event.Tests(2, 1, 0, 0)
+                )
+            ),
+            events
+        );
+    }
+
+    /**
+     * Parser should name test classes of newer Surefire output.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testSurefire() throws Exception {
+        Assert.assertEquals(
+            "com.app.AppTest",
+            new MavenOutput().parse(
+                1L,
+                String.join(
+                    "",
+                    "[ERROR] Tests run: 3, Failures: 0, Errors: 1, ",
+                    "Skipped: 1, Time elapsed: 0.1 s <<< FAILURE! ",
+                    "-- in com.app.AppTest"
+                )
+            ).get().getText()
+        );
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.piotrkot.api.Event;
+import com.github.piotrkot.api.Job;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for outcomes of identical builds.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class OutcomesTest {
+    /**
+     * Fake logs.
+     */
+    private final transient FakeLogs logs = new FakeLogs();
+    /**
+     * Replayed outcomes.
+     */
+    private final transient List<Outcome> replayed =
+        new CopyOnWriteArrayList<>();
+
+    /**
+     * Outcomes should attach identical builds and replay the outcome.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testCoalescing() throws Exception {
+        final String hash = "abc";
+        final String built = "built";
+        final Outcomes outcomes =
+            new Outcomes(1, 60L, 10, new MetricRegistry());
+        final Optional<RecordedLogs> lead = this.lead(outcomes, hash, 1);
+        Assert.assertTrue(lead.isPresent());
+        Assert.assertFalse(this.lead(outcomes, hash, 2).isPresent());
+        Assert.assertTrue(this.replayed.isEmpty());
+        lead.get().append(1, built);
+        lead.get().finish(Optional.of(0), Collections.emptyList());
+        Assert.assertFalse(this.lead(outcomes, hash, 3).isPresent());
+        Assert.assertEquals(2, this.replayed.size());
+        final String reuse = "Reusing identical build abc";
+        Assert.assertEquals(
+            Collections.singletonList(built), this.logs.lines(1)
+        );
+        Assert.assertEquals(Arrays.asList(reuse, built), this.logs.lines(2));
+        Assert.assertEquals(Arrays.asList(reuse, built), this.logs.lines(3));
+    }
+
+    /**
+     * Outcomes should replay the exit code and the events at the replayed
+     * lines, and not keep failed builds.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testFailure() throws Exception {
+        final String hash = "ghi";
+        final String error = "[ERROR] COMPILATION ERROR";
+        final Outcomes outcomes =
+            new Outcomes(1, 60L, 10, new MetricRegistry());
+        final Optional<RecordedLogs> lead = this.lead(outcomes, hash, 1);
+        Assert.assertFalse(this.lead(outcomes, hash, 2).isPresent());
+        lead.get().append(1, "building");
+        final long seq = lead.get().append(1, error);
+        lead.get().finish(
+            Optional.of(1),
+            Collections.singletonList(
+                new Event(seq, Event.Kind.ERROR, "app", error)
+            )
+        );
+        Assert.assertEquals(1, this.replayed.size());
+        Assert.assertEquals(Optional.of(1), this.replayed.get(0).exit());
+        Assert.assertEquals(
+            Collections.singletonList(
+                new Event(3L, Event.Kind.ERROR, "app", error)
+            ),
+            this.replayed.get(0).events()
+        );
+        Assert.assertTrue(this.lead(outcomes, hash, 3).isPresent());
+    }
+
+    /**
+     * Outcomes should stop the attached requests of aborted builds with
+     * the same status and not keep them.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testAbort() throws Exception {
+        final String hash = "def";
+        final Outcomes outcomes =
+            new Outcomes(1, 60L, 10, new MetricRegistry());
+        final Optional<RecordedLogs> lead = this.lead(outcomes, hash, 1);
+        Assert.assertFalse(this.lead(outcomes, hash, 2).isPresent());
+        lead.get().abort(Job.Status.CANCELLED);
+        Assert.assertEquals(1, this.replayed.size());
+        Assert.assertEquals(
+            Optional.of(Job.Status.CANCELLED), this.replayed.get(0).stopped()
+        );
+        Assert.assertFalse(this.replayed.get(0).exit().isPresent());
+        Assert.assertEquals(
+            Arrays.asList(
+                "Reusing identical build def", "Identical build cancelled"
+            ),
+            this.logs.lines(2)
+        );
+        Assert.assertTrue(this.lead(outcomes, hash, 3).isPresent());
+    }
+
+    /**
+     * Lead the build of the archive.
+     * @param outcomes Outcomes of identical builds.
+     * @param hash Archive hash.
+     * @param request Request id.
+     * @return Recording logs if leading.
+     */
+    private Optional<RecordedLogs> lead(final Outcomes outcomes,
+        final String hash, final long request) {
+        return outcomes.lead(
+            hash, request, this.logs, this.replayed::add
+        );
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import java.sql.SQLException;
+import java.time.temporal.ChronoUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+
+/**
+ * Test for health of the log partitions.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class PartitionsCheckTest {
+    /**
+     * Partitions which could not be created should be unhealthy.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testMissing() throws Exception {
+        final Partitions partitions = new Partitions(
+            new DBI(
+                () -> {
+                    throw new SQLException("DB down");
+                }
+            ),
+            ChronoUnit.DAYS, 0L, new MetricRegistry()
+        );
+        final PartitionsCheck check = new PartitionsCheck(partitions);
+        Assert.assertTrue(check.execute().isHealthy());
+        partitions.maintain();
+        Assert.assertEquals(3, partitions.missing().size());
+        Assert.assertFalse(check.execute().isHealthy());
+    }
+}
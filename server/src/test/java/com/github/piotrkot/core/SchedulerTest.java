@@ -0,0 +1,165 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.piotrkot.api.Job;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for build scheduler.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class SchedulerTest {
+    /**
+     * Scheduler should serve users in turns and reject jobs over capacity.
+     * @throws Exception If something fails.
+     * @checkstyle ExecutableStatementCountCheck (40 lines)
+     */
+    @Test
+    public void testFairQueuing() throws Exception {
+        final String first = "a";
+        final String second = "b";
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Scheduler scheduler = new Scheduler(
+            executor, 1, 3, Executors.newSingleThreadScheduledExecutor(), 0L,
+            new MetricRegistry()
+        );
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> order = new CopyOnWriteArrayList<>();
+        Assert.assertTrue(
+            scheduler.submit(
+                first, 0,
+                () -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            )
+        );
+        started.await();
+        Assert.assertTrue(scheduler.submit(first, 1, () -> order.add("a1")));
+        Assert.assertTrue(scheduler.submit(first, 2, () -> order.add("a2")));
+        Assert.assertTrue(scheduler.submit(second, 3, () -> order.add("b1")));
+        Assert.assertFalse(
+            scheduler.submit(second, 4, () -> order.add("b2"))
+        );
+        release.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1L, TimeUnit.MINUTES));
+        Assert.assertEquals("[a1, b1, a2]", order.toString());
+    }
+
+    /**
+     * Scheduler should interrupt cancelled running jobs and only release
+     * cancelled waiting ones.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testCancel() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Scheduler scheduler = new Scheduler(
+            executor, 1, 2, Executors.newSingleThreadScheduledExecutor(), 0L,
+            new MetricRegistry()
+        );
+        final CountDownLatch started = new CountDownLatch(1);
+        final List<String> order = new CopyOnWriteArrayList<>();
+        scheduler.submit(
+            "a", 1,
+            () -> {
+                started.countDown();
+                SchedulerTest.sleep();
+                order.add(
+                    scheduler.stopped(1).map(Job.Status::name).orElse("done")
+                );
+            }
+        );
+        started.await();
+        scheduler.submit(
+            "a", 2,
+            () -> order.add(
+                String.valueOf(Thread.currentThread().isInterrupted())
+            )
+        );
+        Assert.assertTrue(scheduler.cancel(2));
+        Assert.assertTrue(scheduler.cancel(1));
+        Assert.assertFalse(scheduler.cancel(3));
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1L, TimeUnit.MINUTES));
+        Assert.assertEquals(
+            "[true, CANCELLED]", order.toString()
+        );
+        Assert.assertFalse(scheduler.cancel(1));
+    }
+
+    /**
+     * Scheduler should interrupt jobs running longer than the timeout.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testTimeout() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Scheduler scheduler = new Scheduler(
+            executor, 1, 2, Executors.newSingleThreadScheduledExecutor(),
+            10L, new MetricRegistry()
+        );
+        final List<String> order = new CopyOnWriteArrayList<>();
+        scheduler.submit(
+            "a", 1,
+            () -> {
+                SchedulerTest.sleep();
+                order.add(
+                    scheduler.stopped(1).map(Job.Status::name).orElse("done")
+                );
+            }
+        );
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1L, TimeUnit.MINUTES));
+        Assert.assertEquals("[TIMED_OUT]", order.toString());
+    }
+
+    /**
+     * Sleep until interrupted.
+     */
+    private static void sleep() {
+        try {
+            TimeUnit.MINUTES.sleep(1L);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for uploaded archive.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class UploadTest {
+    /**
+     * POM content.
+     */
+    private static final byte[] POM =
+        "<project/>".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Upload should extract the archive while it arrives.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testStreaming() throws Exception {
+        final byte[] zip = UploadTest.archive();
+        UploadTest.extracted(new ByteArrayInputStream(zip));
+        UploadTest.extracted(new UploadTest.Trickle(zip));
+    }
+
+    /**
+     * Upload should discard the extraction it could not complete.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testFallback() throws Exception {
+        final byte[] zip = UploadTest.archive();
+        zip[6] |= 8;
+        try (Upload upload = UploadTest.upload(new ByteArrayInputStream(zip))) {
+            Assert.assertEquals(3, upload.scan(Integer.MAX_VALUE).count());
+            Assert.assertFalse(upload.extracted().isPresent());
+        }
+    }
+
+    /**
+     * Upload should not extract more than the limit or the workspace quota
+     * while the archive arrives.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testLimits() throws Exception {
+        final byte[] zip = UploadTest.archive();
+        final int size = UploadTest.POM.length + UploadTest.source().length;
+        try (Upload upload = UploadTest.upload(
+            new ByteArrayInputStream(zip), size - 1L, Long.MAX_VALUE
+        )) {
+            Assert.assertEquals(3, upload.scan(Integer.MAX_VALUE).count());
+            Assert.assertFalse(upload.extracted().isPresent());
+        }
+        try (Upload upload = UploadTest.upload(
+            new ByteArrayInputStream(zip), Long.MAX_VALUE, size - 1L
+        )) {
+            Assert.assertEquals(3, upload.scan(Integer.MAX_VALUE).count());
+            Assert.assertFalse(upload.extracted().isPresent());
+        }
+    }
+
+    /**
+     * Check the archive is extracted while arriving.
+     * @param stream Uploaded stream.
+     * @throws Exception If something fails.
+     */
+    private static void extracted(final InputStream stream) throws Exception {
+        try (Upload upload = UploadTest.upload(stream)) {
+            upload.scan(Integer.MAX_VALUE);
+            Assert.assertTrue(upload.extracted().isPresent());
+            final Path dir = upload.extracted().get();
+            Assert.assertArrayEquals(
+                UploadTest.POM, Files.readAllBytes(dir.resolve("app/pom.xml"))
+            );
+            Assert.assertArrayEquals(
+                UploadTest.source(),
+                Files.readAllBytes(dir.resolve("app/src/Main.java"))
+            );
+        }
+    }
+
+    /**
+     * Upload in streaming mode.
+     * @param stream Uploaded stream.
+     * @return Upload.
+     * @throws IOException If fails.
+     */
+    private static Upload upload(final InputStream stream)
+        throws IOException {
+        return UploadTest.upload(stream, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Upload in streaming mode within the limits.
+     * @param stream Uploaded stream.
+     * @param limit Maximal bytes extracted while arriving.
+     * @param quota Maximal bytes taken by all workspaces.
+     * @return Upload.
+     * @throws IOException If fails.
+     */
+    private static Upload upload(final InputStream stream, final long limit,
+        final long quota) throws IOException {
+        return new Upload(
+            stream, new Spool(1L << 20, 1L << 20, new MetricRegistry()),
+            new Workspaces(
+                Files.createTempDirectory("spaces"), quota,
+                Long.MAX_VALUE, 0L, request -> { }, new MetricRegistry()
+            ).allocate(0),
+            true,
+            limit
+        );
+    }
+
+    /**
+     * Archive with a stored and a deflated entry.
+     * @return Archive content.
+     * @throws IOException If fails.
+     */
+    private static byte[] archive() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            final ZipEntry stored = new ZipEntry("app/pom.xml");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(UploadTest.POM.length);
+            final CRC32 crc = new CRC32();
+            crc.update(UploadTest.POM);
+            stored.setCrc(crc.getValue());
+            zip.putNextEntry(stored);
+            zip.write(UploadTest.POM);
+            zip.putNextEntry(new ZipEntry("app/src/"));
+            zip.putNextEntry(new ZipEntry("app/src/Main.java"));
+            zip.write(UploadTest.source());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Source file content.
+     * @return Bytes.
+     */
+    private static byte[] source() {
+        final StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 1000; ++line) {
+            text.append("// line ").append(line).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stream giving one byte at a time.
+     */
+    private static final class Trickle extends FilterInputStream {
+        /**
+         * Class constructor.
+         * @param bytes Content.
+         */
+        Trickle(final byte[] bytes) {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset,
+            final int length) throws IOException {
+            return super.read(bytes, offset, Math.min(1, length));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for archives uploaded in parts.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class UploadsTest {
+    /**
+     * Parts sent in any order should be assembled into the archive.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testAssemble() throws Exception {
+        final Uploads uploads = new Uploads(
+            Files.createTempDirectory("uploads"), 100L, 4L, 60_000L, 4, 100L,
+            new MetricRegistry()
+        );
+        uploads.start();
+        final Uploads.Session session = uploads.open("user", 10L, 4L).get();
+        final String id = session.status().getId();
+        Assert.assertEquals(
+            Arrays.asList(0, 1, 2), session.status().getMissing()
+        );
+        Assert.assertFalse(
+            UploadsTest.write(session, 2, "ij").isPresent()
+        );
+        Assert.assertFalse(
+            UploadsTest.write(session, 0, "abcd").isPresent()
+        );
+        Assert.assertFalse(session.archive().isPresent());
+        Assert.assertFalse(uploads.session("other", id).isPresent());
+        Assert.assertFalse(
+            UploadsTest.write(uploads.session("user", id).get(), 1, "efgh")
+                .isPresent()
+        );
+        Assert.assertEquals(
+            Collections.emptyList(), session.status().getMissing()
+        );
+        try (InputStream archive = session.archive().get()) {
+            Assert.assertEquals(
+                "abcdefghij",
+                new String(ByteStreams.toByteArray(archive))
+            );
+        }
+        Assert.assertFalse(session.archive().isPresent());
+        uploads.delete(id);
+        Assert.assertFalse(uploads.session("user", id).isPresent());
+        uploads.stop();
+    }
+
+    /**
+     * Parts with wrong length or checksum should be sent again.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testReject() throws Exception {
+        final Uploads uploads = new Uploads(
+            Files.createTempDirectory("uploads"), 100L, 4L, 60_000L, 4, 100L,
+            new MetricRegistry()
+        );
+        uploads.start();
+        Assert.assertTrue(uploads.invalid(101L, 4L).isPresent());
+        Assert.assertTrue(uploads.invalid(10L, 5L).isPresent());
+        Assert.assertFalse(uploads.invalid(10L, 4L).isPresent());
+        final Uploads.Session session = uploads.open("user", 6L, 4L).get();
+        Assert.assertTrue(UploadsTest.write(session, 0, "abc").isPresent());
+        Assert.assertTrue(UploadsTest.write(session, 1, "efg").isPresent());
+        Assert.assertTrue(UploadsTest.write(session, 2, "ef").isPresent());
+        Assert.assertTrue(
+            session.write(
+                0,
+                new ByteArrayInputStream("abcd".getBytes()),
+                UploadsTest.sha("abce")
+            ).isPresent()
+        );
+        Assert.assertEquals(Arrays.asList(0, 1), session.status().getMissing());
+        uploads.stop();
+    }
+
+    /**
+     * Uploads over the limit of a user or the disk budget should not open.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testLimit() throws Exception {
+        final Uploads uploads = new Uploads(
+            Files.createTempDirectory("uploads"), 100L, 4L, 60_000L, 2, 150L,
+            new MetricRegistry()
+        );
+        uploads.start();
+        final Uploads.Session first = uploads.open("user", 100L, 4L).get();
+        Assert.assertTrue(uploads.open("user", 10L, 4L).isPresent());
+        Assert.assertFalse(uploads.open("user", 10L, 4L).isPresent());
+        try {
+            uploads.open("other", 50L, 4L);
+            Assert.fail("Upload over the disk budget opened");
+        } catch (final IOException ex) {
+            Assert.assertTrue(ex.getMessage().contains("No space"));
+        }
+        uploads.delete(first.status().getId());
+        Assert.assertTrue(uploads.open("other", 50L, 4L).isPresent());
+        uploads.stop();
+    }
+
+    /**
+     * Write the part with its checksum.
+     * @param session Upload.
+     * @param index Part number.
+     * @param text Content of the part.
+     * @return Reason the part was not received.
+     * @throws Exception If something fails.
+     */
+    private static Optional<String> write(final Uploads.Session session,
+        final int index, final String text) throws Exception {
+        return session.write(
+            index,
+            new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)),
+            UploadsTest.sha(text)
+        );
+    }
+
+    /**
+     * SHA-256 hash of the text.
+     * @param text Text.
+     * @return Hash.
+     */
+    private static byte[] sha(final String text) {
+        return Hashing.sha256()
+            .hashString(text, StandardCharsets.UTF_8).asBytes();
+    }
+}
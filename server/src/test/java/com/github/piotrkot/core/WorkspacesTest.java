@@ -0,0 +1,157 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.core;
+
+import com.codahale.metrics.MetricRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for working directories of the builds.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class WorkspacesTest {
+    /**
+     * Workspaces should keep the reservations and the usage within quota.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testQuota() throws Exception {
+        final List<Long> stopped = new ArrayList<>(0);
+        final Workspaces spaces = new Workspaces(
+            Files.createTempDirectory("spaces"), 100L, 100L, 0L,
+            stopped::add, new MetricRegistry()
+        );
+        final Workspaces.Workspace first = spaces.allocate(1);
+        final Workspaces.Workspace second = spaces.allocate(2);
+        Assert.assertTrue(first.reserve(60L));
+        Assert.assertFalse(second.reserve(60L));
+        Assert.assertTrue(second.reserve(40L));
+        Assert.assertTrue(first.reserve(10L));
+        Files.write(first.dir().resolve("big"), new byte[80]);
+        spaces.reap();
+        Assert.assertFalse(second.reserve(30L));
+        Assert.assertTrue(second.reserve(20L));
+        Assert.assertEquals(Collections.singletonList(1L), stopped);
+    }
+
+    /**
+     * Workspaces should stop the job whose workspace grows past the cap.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testCap() throws Exception {
+        final List<Long> stopped = new ArrayList<>(0);
+        final Workspaces spaces = new Workspaces(
+            Files.createTempDirectory("spaces"), 1000L, 100L, 0L,
+            stopped::add, new MetricRegistry()
+        );
+        final Workspaces.Workspace small = spaces.allocate(1);
+        final Workspaces.Workspace big = spaces.allocate(2);
+        final Workspaces.Workspace done = spaces.allocate(3);
+        Files.write(small.dir().resolve("pom.xml"), new byte[50]);
+        Files.write(big.dir().resolve("big"), new byte[150]);
+        Files.write(done.dir().resolve("big"), new byte[150]);
+        done.release();
+        spaces.reap();
+        spaces.reap();
+        Assert.assertEquals(Collections.singletonList(2L), stopped);
+    }
+
+    /**
+     * Workspaces should delete released workspaces after the retention.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testReap() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final Workspaces spaces = new Workspaces(
+            Files.createTempDirectory("spaces"), 100L, 100L, 0L,
+            request -> { }, metrics
+        );
+        final Workspaces.Workspace used = spaces.allocate(1);
+        final Workspaces.Workspace done = spaces.allocate(2);
+        Files.createDirectories(done.dir().resolve("target/classes"));
+        Files.write(done.dir().resolve("target/classes/A.class"), new byte[8]);
+        Files.write(used.dir().resolve("pom.xml"), new byte[4]);
+        done.release();
+        Thread.sleep(2L);
+        spaces.reap();
+        Assert.assertFalse(Files.exists(done.dir()));
+        Assert.assertTrue(Files.exists(used.dir()));
+        Assert.assertEquals(
+            4L,
+            metrics.getGauges().get(
+                MetricRegistry.name(Workspaces.class, "used")
+            ).getValue()
+        );
+    }
+
+    /**
+     * Workspaces should adopt and delete those left by the previous run.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testLeftovers() throws Exception {
+        final Path root = Files.createTempDirectory("spaces");
+        final Path left = Files.createDirectory(root.resolve("job7-1"));
+        Files.write(left.resolve("pom.xml"), new byte[4]);
+        final Workspaces spaces = new Workspaces(
+            root, 100L, 100L, 0L, request -> { }, new MetricRegistry()
+        );
+        spaces.start();
+        try {
+            Thread.sleep(2L);
+            spaces.reap();
+        } finally {
+            spaces.stop();
+        }
+        Assert.assertFalse(Files.exists(left));
+        Assert.assertTrue(Files.exists(root));
+    }
+
+    /**
+     * Workspace should be cleared without removing its directory.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testClear() throws Exception {
+        final Workspaces.Workspace space = new Workspaces(
+            Files.createTempDirectory("spaces"), 100L, 100L, 0L,
+            request -> { }, new MetricRegistry()
+        ).allocate(1);
+        Files.createDirectories(space.dir().resolve("app/src"));
+        Files.write(space.dir().resolve("app/src/Main.java"), new byte[4]);
+        space.clear();
+        Assert.assertTrue(Files.exists(space.dir()));
+        Assert.assertEquals(0L, Files.list(space.dir()).count());
+    }
+}
@@ -29,8 +29,12 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.Range;
 import io.dropwizard.testing.junit.DropwizardAppRule;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.Base64;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.apache.http.Header;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.fluent.Form;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.entity.ContentType;
@@ -108,24 +112,71 @@ public final class CompilerResourceTest {
      */
     @Test
     public void testCompileSources() throws Exception {
-        final String uri = String.format(
-            "http://localhost:%d/compiler/source",
-            CompilerResourceTest.APP_RULE.getLocalPort()
-        );
+        final ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream entries = new ZipOutputStream(zip)) {
+            entries.putNextEntry(new ZipEntry("project/pom.xml"));
+            entries.write("<project/>".getBytes());
+        }
         Assert.assertTrue(
             HTTP_RESP_OK.contains(
-                Request.Post(uri).setHeader(OK_AUTH)
-                    .body(MultipartEntityBuilder.create().addBinaryBody(
-                            "file",
-                            new ByteArrayInputStream("hello".getBytes()),
-                            ContentType.DEFAULT_BINARY,
-                            "noname"
-                        ).build()
-                    ).execute().returnResponse().getStatusLine().getStatusCode()
+                CompilerResourceTest.upload(zip.toByteArray())
             )
         );
     }
 
+    /**
+     * POST upload file method should reject what cannot be built.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testRejectSources() throws Exception {
+        Assert.assertEquals(
+            HttpStatus.SC_BAD_REQUEST,
+            CompilerResourceTest.upload("hello".getBytes())
+        );
+    }
+
+    /**
+     * Submitted jobs should be known by their ids.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testJobs() throws Exception {
+        final ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream entries = new ZipOutputStream(zip)) {
+            entries.putNextEntry(new ZipEntry("pom.xml"));
+            entries.write("<project/>".getBytes());
+        }
+        final String job = Request.Post(
+            String.format(
+                "http://localhost:%d/compiler/source",
+                CompilerResourceTest.APP_RULE.getLocalPort()
+            )
+        ).setHeader(OK_AUTH).body(
+            MultipartEntityBuilder.create().addBinaryBody(
+                "file", new ByteArrayInputStream(zip.toByteArray()),
+                ContentType.DEFAULT_BINARY, "noname"
+            ).build()
+        ).execute().returnContent().asString();
+        final String uri = String.format(
+            "http://localhost:%d/compiler/jobs/%s",
+            CompilerResourceTest.APP_RULE.getLocalPort(), job
+        );
+        Assert.assertTrue(
+            Request.Get(uri).setHeader(OK_AUTH).execute().returnContent()
+                .asString().contains(String.format("\"id\":\"%s\"", job))
+        );
+        Assert.assertEquals(
+            HttpStatus.SC_NOT_FOUND,
+            Request.Get(String.format("%s1", uri)).setHeader(OK_AUTH)
+                .execute().returnResponse().getStatusLine().getStatusCode()
+        );
+        Assert.assertTrue(
+            Request.Get(String.format("%s/summary", uri)).setHeader(OK_AUTH)
+                .execute().returnContent().asString().startsWith("[")
+        );
+    }
+
     /**
      * Appending logs should add them on the server.
      * @throws Exception If something fails.
@@ -166,4 +217,121 @@ public final class CompilerResourceTest {
                 .execute().returnContent().asString()
         );
     }
+
+    /**
+     * Appending many lines at once should return their sequence numbers.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testAppendLines() throws Exception {
+        final String uri = String.format(
+            "http://localhost:%d/compiler/logs/2",
+            CompilerResourceTest.APP_RULE.getLocalPort()
+        );
+        Request.Delete(uri).setHeader(OK_AUTH).execute().discardContent();
+        Assert.assertEquals(
+            "{\"first\":1,\"last\":2}",
+            Request.Post(uri).setHeader(OK_AUTH)
+                .bodyString("first\nsecond\n", ContentType.TEXT_PLAIN)
+                .execute().returnContent().asString()
+        );
+        Assert.assertEquals(
+            "{\"first\":3,\"last\":3}",
+            Request.Post(uri).setHeader(OK_AUTH)
+                .bodyString(
+                    "{\"mesg\":\"third\"}\n",
+                    ContentType.create("application/x-ndjson")
+                ).execute().returnContent().asString()
+        );
+        Assert.assertEquals(
+            Joiner.on(System.lineSeparator()).join("first", "second", "third"),
+            Request.Get(uri).setHeader(OK_AUTH)
+                .execute().returnContent().asString()
+        );
+    }
+
+    /**
+     * Reading logs after a sequence number should return only newer ones.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testTailLogs() throws Exception {
+        final String req = "log";
+        final String uri = String.format(
+            "http://localhost:%d/compiler/logs/1",
+            CompilerResourceTest.APP_RULE.getLocalPort()
+        );
+        Request.Delete(uri).setHeader(OK_AUTH).execute().discardContent();
+        for (final String mesg : new String[] {"first", "second", "third"}) {
+            Request.Post(uri).setHeader(OK_AUTH)
+                .bodyForm(Form.form().add(req, mesg).build())
+                .execute().discardContent();
+        }
+        Assert.assertEquals(
+            "second",
+            Request.Get(String.format("%s?after=1&limit=1", uri))
+                .setHeader(OK_AUTH).execute().returnContent().asString()
+        );
+        Assert.assertEquals(
+            "{\"seq\":3,\"mesg\":\"third\"}\n",
+            Request.Get(String.format("%s?after=2", uri))
+                .setHeader(OK_AUTH)
+                .addHeader("Accept", "application/x-ndjson")
+                .execute().returnContent().asString()
+        );
+    }
+
+    /**
+     * Unchanged logs should not be sent again.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testCachedLogs() throws Exception {
+        final String uri = String.format(
+            "http://localhost:%d/compiler/logs/3",
+            CompilerResourceTest.APP_RULE.getLocalPort()
+        );
+        Request.Delete(uri).setHeader(OK_AUTH).execute().discardContent();
+        Request.Post(uri).setHeader(OK_AUTH)
+            .bodyString("first\n", ContentType.TEXT_PLAIN)
+            .execute().discardContent();
+        final String tag = Request.Get(uri).setHeader(OK_AUTH).execute()
+            .returnResponse().getFirstHeader("ETag").getValue();
+        Assert.assertEquals(
+            HttpStatus.SC_NOT_MODIFIED,
+            Request.Get(uri).setHeader(OK_AUTH)
+                .addHeader("If-None-Match", tag)
+                .execute().returnResponse().getStatusLine().getStatusCode()
+        );
+        Request.Post(uri).setHeader(OK_AUTH)
+            .bodyString("second\n", ContentType.TEXT_PLAIN)
+            .execute().discardContent();
+        Assert.assertEquals(
+            HttpStatus.SC_OK,
+            Request.Get(uri).setHeader(OK_AUTH)
+                .addHeader("If-None-Match", tag)
+                .execute().returnResponse().getStatusLine().getStatusCode()
+        );
+    }
+
+    /**
+     * Upload the sources.
+     * @param content Uploaded file.
+     * @return Response status.
+     * @throws Exception If something fails.
+     */
+    private static int upload(final byte[] content) throws Exception {
+        final String uri = String.format(
+            "http://localhost:%d/compiler/source",
+            CompilerResourceTest.APP_RULE.getLocalPort()
+        );
+        return Request.Post(uri).setHeader(OK_AUTH)
+            .body(MultipartEntityBuilder.create().addBinaryBody(
+                    "file",
+                    new ByteArrayInputStream(content),
+                    ContentType.DEFAULT_BINARY,
+                    "noname"
+                ).build()
+            ).execute().returnResponse().getStatusLine().getStatusCode();
+    }
 }
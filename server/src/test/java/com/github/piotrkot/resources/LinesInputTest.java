@@ -0,0 +1,105 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 piotrkot
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.piotrkot.resources;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import javax.ws.rs.WebApplicationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for log lines read from the request body.
+ * @author Piotr Kotlicki (piotr.kotlicki@gmail.com)
+ * @version $Id$
+ * @since 1.0
+ */
+public final class LinesInputTest {
+    /**
+     * Plain lines should be split on new line characters.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testText() throws Exception {
+        Assert.assertEquals(
+            Arrays.asList("first", "", "third"),
+            new LinesInput(
+                new ByteArrayInputStream("first\r\n\nthird\n".getBytes()),
+                100L, false
+            ).lines()
+        );
+    }
+
+    /**
+     * JSON lines should give their messages, skipping blank ones.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testJson() throws Exception {
+        Assert.assertEquals(
+            Arrays.asList("first", "second"),
+            new LinesInput(
+                new ByteArrayInputStream(
+                    "{\"seq\":1,\"mesg\":\"first\"}\n\n{\"mesg\":\"second\"}"
+                        .getBytes()
+                ),
+                100L, true
+            ).lines()
+        );
+    }
+
+    /**
+     * Bodies over the limit, empty or malformed should be refused.
+     * @throws Exception If something fails.
+     */
+    @Test
+    public void testRefused() throws Exception {
+        // @checkstyle MagicNumber (3 lines)
+        Assert.assertEquals(413, LinesInputTest.status("12345\n", 5L, false));
+        Assert.assertEquals(400, LinesInputTest.status("", 5L, false));
+        Assert.assertEquals(400, LinesInputTest.status("{}", 5L, true));
+        Assert.assertEquals(400, LinesInputTest.status("mesg", 5L, true));
+    }
+
+    /**
+     * Status of the refused body.
+     * @param body Request body.
+     * @param max Maximal size of the body.
+     * @param json Whether to read JSON lines.
+     * @return Response status, zero if not refused.
+     * @throws Exception If something fails.
+     */
+    private static int status(final String body, final long max,
+        final boolean json) throws Exception {
+        int status = 0;
+        try {
+            new LinesInput(
+                new ByteArrayInputStream(body.getBytes()), max, json
+            ).lines();
+        } catch (final WebApplicationException ex) {
+            status = ex.getResponse().getStatus();
+        }
+        return status;
+    }
+}